@@ -1,58 +1,51 @@
 package org.intellifix;
 
+import org.intellifix.redis.BinaryBatchDecoder;
+import org.intellifix.redis.BinaryBatchEncoder;
+import org.intellifix.redis.StreamConsumerPool;
+import org.intellifix.redis.StreamRecord;
+import org.intellifix.redis.config.ConsumerConfig;
+import redis.clients.jedis.ConnectionPoolConfig;
 import redis.clients.jedis.JedisPooled;
-import redis.clients.jedis.StreamEntryID;
-import redis.clients.jedis.params.XReadGroupParams;
-import redis.clients.jedis.resps.StreamEntry;
-
-import java.util.List;
-import java.util.Map;
 
 public class App {
-    private static final String STREAM_KEY = "fix-stream";
-    private static final String GROUP_NAME = "fix-group";
-    private static final String CONSUMER_NAME = "consumer_1";
+    private static final int REDIS_PORT = 6379;
+    // consumers run on their own threads, each needs its own decoder
+    private static final ThreadLocal<BinaryBatchDecoder> DECODERS = ThreadLocal.withInitial(BinaryBatchDecoder::new);
 
     public static void main(String[] args) {
 
         String redisUri = "localhost";
+        ConsumerConfig config = ConsumerConfig.fromSystemProperties();
+
+        // every consumer holds a connection while it blocks in XREADGROUP, plus reclaim and metrics
+        ConnectionPoolConfig poolConfig = new ConnectionPoolConfig();
+        poolConfig.setMaxTotal(config.consumers() + 4);
+        poolConfig.setMaxIdle(config.consumers() + 4);
+        int socketTimeout = config.blockMillis() + 2000;
 
-        try (JedisPooled jedis = new JedisPooled(redisUri)) {
+        try (JedisPooled jedis = new JedisPooled(poolConfig, redisUri, REDIS_PORT, socketTimeout);
+                StreamConsumerPool consumers = new StreamConsumerPool(jedis, config, App::processMessage)) {
             System.out.println("Connected to Redis Cloud...");
-            Thread.ofVirtual().start(() -> consumeMessages(jedis));
+            consumers.start();
             Thread.sleep(Long.MAX_VALUE);
         } catch (InterruptedException e) {
             throw new RuntimeException(e);
         }
     }
 
-    private static void consumeMessages(JedisPooled jedis) {
-        System.out.println("Starting to consume messages...");
-
-        while (!Thread.interrupted()) {
-            // Read messages from the group
-            // ">" means: read messages that have never been delivered to other consumers in the group.
-            // block(0) makes the call wait indefinitely until a new message arrives.
-            List<Map.Entry<String, List<StreamEntry>>> results = jedis.xreadGroup(
-                    GROUP_NAME,
-                    CONSUMER_NAME,
-                    XReadGroupParams.xReadGroupParams().block(0).count(10),
-                    Map.of(STREAM_KEY, StreamEntryID.UNRECEIVED_ENTRY)
-            );
-
-            if (results != null) {
-                for (Map.Entry<String, List<StreamEntry>> streamEntry : results) {
-                    for (StreamEntry message : streamEntry.getValue()) {
-                        processMessage(jedis, message);
-                    }
-                }
-            }
-        }
+    public String getGreeting() {
+        return "IntelliFIX stream consumer";
     }
 
-    private static void processMessage(JedisPooled jedis, StreamEntry message) {
-        System.out.println("Processing Message ID: " + message.getID());
-        System.out.println("Payload: " + message.getFields());
-        jedis.xack(STREAM_KEY, GROUP_NAME, message.getID());
+    private static void processMessage(StreamRecord message) {
+        System.out.println("Processing Message ID: " + message.id());
+        byte[] batch = message.fields().get(BinaryBatchEncoder.FIELD);
+        if (batch == null) {
+            System.out.println("Payload: " + message.strings());
+            return;
+        }
+        DECODERS.get().decode(batch, event -> System.out.println("Payload: " + event.timestampNanos() + " "
+                + (event.isText() ? "" : event.sessionID() + " ") + event.format()));
     }
 }
@@ -0,0 +1,154 @@
+package org.intellifix.common;
+
+import java.util.Arrays;
+
+/**
+ * Compressor and decompressor for the LZ4 block format (no frame, no checksum), so the output can
+ * be read by any LZ4 implementation given the uncompressed length.
+ * <p>
+ * The compressor is the single-probe greedy variant: one hash table slot per 4-byte sequence and
+ * no match search beyond it, which trades ratio for speed. An instance keeps its hash table and is
+ * not thread-safe; decompression is static.
+ */
+public final class Lz4Block {
+
+    private static final int MIN_MATCH = 4;
+    private static final int LAST_LITERALS = 5;
+    private static final int MF_LIMIT = 12;
+    private static final int MAX_OFFSET = 65535;
+    private static final int HASH_LOG = 12;
+
+    private final int[] table = new int[1 << HASH_LOG];
+
+    /**
+     * Worst-case compressed size of {@code length} bytes.
+     */
+    public static int maxCompressedLength(int length) {
+        return length + length / 255 + 16;
+    }
+
+    /**
+     * Compresses {@code src[0, length)} into {@code dst}, which must hold
+     * {@link #maxCompressedLength}, and returns the compressed length.
+     */
+    public int compress(byte[] src, int length, byte[] dst) {
+        Arrays.fill(table, -1);
+        int anchor = 0;
+        int op = 0;
+        int ip = 0;
+        int limit = length - MF_LIMIT;
+        int matchLimit = length - LAST_LITERALS;
+        while (ip < limit) {
+            int sequence = readInt(src, ip);
+            int hash = (sequence * -1640531535) >>> (32 - HASH_LOG);
+            int ref = table[hash];
+            table[hash] = ip;
+            if (ref < 0 || ip - ref > MAX_OFFSET || readInt(src, ref) != sequence) {
+                ip++;
+                continue;
+            }
+            while (ip > anchor && ref > 0 && src[ip - 1] == src[ref - 1]) {
+                ip--;
+                ref--;
+            }
+            int matchLength = MIN_MATCH;
+            while (ip + matchLength < matchLimit && src[ref + matchLength] == src[ip + matchLength]) {
+                matchLength++;
+            }
+            int token = op;
+            op = writeSequence(src, anchor, ip - anchor, dst, op);
+            dst[op++] = (byte) (ip - ref);
+            dst[op++] = (byte) ((ip - ref) >>> 8);
+            int extra = matchLength - MIN_MATCH;
+            if (extra >= 15) {
+                dst[token] |= 0x0F;
+                op = writeLength(dst, op, extra - 15);
+            } else {
+                dst[token] |= (byte) extra;
+            }
+            ip += matchLength;
+            anchor = ip;
+        }
+        return writeSequence(src, anchor, length - anchor, dst, op);
+    }
+
+    // token with the literal length (the caller adds the match length), then the literals
+    private static int writeSequence(byte[] src, int from, int literals, byte[] dst, int op) {
+        int token = op++;
+        if (literals >= 15) {
+            dst[token] = (byte) 0xF0;
+            op = writeLength(dst, op, literals - 15);
+        } else {
+            dst[token] = (byte) (literals << 4);
+        }
+        System.arraycopy(src, from, dst, op, literals);
+        return op + literals;
+    }
+
+    private static int writeLength(byte[] dst, int op, int remaining) {
+        while (remaining >= 255) {
+            dst[op++] = (byte) 255;
+            remaining -= 255;
+        }
+        dst[op++] = (byte) remaining;
+        return op;
+    }
+
+    /**
+     * Decompresses {@code src[offset, offset + length)} into {@code dst}, which must be large enough
+     * for the uncompressed data, and returns the number of bytes written.
+     *
+     * @throws IllegalArgumentException if the input is not a valid block
+     */
+    public static int decompress(byte[] src, int offset, int length, byte[] dst) {
+        int ip = offset;
+        int end = offset + length;
+        int op = 0;
+        try {
+            while (ip < end) {
+                int token = src[ip++] & 0xFF;
+                int literals = token >>> 4;
+                if (literals == 15) {
+                    int b;
+                    do {
+                        b = src[ip++] & 0xFF;
+                        literals += b;
+                    } while (b == 255);
+                }
+                System.arraycopy(src, ip, dst, op, literals);
+                ip += literals;
+                op += literals;
+                if (ip >= end) {
+                    break;
+                }
+                int matchOffset = (src[ip] & 0xFF) | (src[ip + 1] & 0xFF) << 8;
+                ip += 2;
+                int matchLength = token & 0x0F;
+                if (matchLength == 15) {
+                    int b;
+                    do {
+                        b = src[ip++] & 0xFF;
+                        matchLength += b;
+                    } while (b == 255);
+                }
+                matchLength += MIN_MATCH;
+                int from = op - matchOffset;
+                if (matchOffset == 0 || from < 0) {
+                    throw new IllegalArgumentException("Invalid LZ4 match offset " + matchOffset + " at " + op);
+                }
+                // overlapping matches repeat the bytes just written
+                for (int i = 0; i < matchLength; i++) {
+                    dst[op + i] = dst[from + i];
+                }
+                op += matchLength;
+            }
+        } catch (IndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Truncated or oversized LZ4 block", e);
+        }
+        return op;
+    }
+
+    private static int readInt(byte[] b, int i) {
+        return (b[i] & 0xFF) | (b[i + 1] & 0xFF) << 8 | (b[i + 2] & 0xFF) << 16 | (b[i + 3] & 0xFF) << 24;
+    }
+}
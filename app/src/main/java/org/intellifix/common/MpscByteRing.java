@@ -0,0 +1,124 @@
+package org.intellifix.common;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded multi-producer / single-consumer ring of variable-length byte records.
+ * <p>
+ * A record starts with its length as a 4-byte int (the length includes those 4 bytes) and
+ * occupies a multiple of 8 bytes. Producers reserve space with one CAS on the tail, write their
+ * bytes in place and publish the record by storing its length last; a record that would run
+ * past the end of the array is preceded by a padding record and starts again at offset 0.
+ * Nothing is allocated per record, and a full ring is reported to the producer instead of
+ * blocking it.
+ */
+public final class MpscByteRing {
+
+    public static final int LENGTH_BYTES = 4;
+
+    private static final VarHandle INT = MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.LITTLE_ENDIAN);
+
+    /**
+     * Receives records from {@link #drain}; the bytes are only valid during the call.
+     */
+    @FunctionalInterface
+    public interface RecordHandler {
+        void onRecord(byte[] buffer, int offset, int length);
+    }
+
+    private final byte[] buffer;
+    private final int capacity;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLong head = new AtomicLong();
+
+    public MpscByteRing(int requestedCapacity) {
+        this.capacity = Integer.highestOneBit(Math.max(64, requestedCapacity - 1)) << 1;
+        this.mask = capacity - 1;
+        this.buffer = new byte[capacity];
+    }
+
+    /**
+     * The backing array, which producers write claimed records into.
+     */
+    public byte[] buffer() {
+        return buffer;
+    }
+
+    /**
+     * Reserves a record of {@code length} bytes, length word included, and returns its offset in
+     * {@link #buffer()}, or -1 if the ring is full. The caller fills bytes
+     * {@code [offset + LENGTH_BYTES, offset + length)} and then calls {@link #commit}.
+     */
+    public int claim(int length) {
+        int required = align(length);
+        if (length <= LENGTH_BYTES || required > capacity) {
+            throw new IllegalArgumentException("Record length " + length + " does not fit a ring of " + capacity);
+        }
+        long consumed = head.getAcquire();
+        long claimed;
+        int offset;
+        int padding;
+        do {
+            claimed = tail.get();
+            offset = (int) (claimed & mask);
+            padding = required > capacity - offset ? capacity - offset : 0;
+            if (claimed + padding + required - consumed > capacity) {
+                consumed = head.getAcquire();
+                if (claimed + padding + required - consumed > capacity) {
+                    return -1;
+                }
+            }
+        } while (!tail.compareAndSet(claimed, claimed + padding + required));
+        if (padding != 0) {
+            INT.setRelease(buffer, offset, -padding);
+            offset = 0;
+        }
+        return offset;
+    }
+
+    public void commit(int offset, int length) {
+        INT.setRelease(buffer, offset, length);
+    }
+
+    /**
+     * Hands up to {@code max} published records to {@code handler} in claim order and frees their
+     * space. Consumer thread only.
+     */
+    public int drain(RecordHandler handler, int max) {
+        long position = head.getPlain();
+        int drained = 0;
+        while (drained < max) {
+            int offset = (int) (position & mask);
+            int length = (int) INT.getAcquire(buffer, offset);
+            if (length == 0) {
+                break;
+            }
+            int size = length < 0 ? -length : align(length);
+            if (length > 0) {
+                handler.onRecord(buffer, offset, length);
+                drained++;
+            }
+            Arrays.fill(buffer, offset, offset + size, (byte) 0);
+            position += size;
+            head.setRelease(position);
+        }
+        return drained;
+    }
+
+    public boolean isEmpty() {
+        return tail.get() == head.getAcquire();
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    private static int align(int length) {
+        return (length + 7) & ~7;
+    }
+}
@@ -0,0 +1,94 @@
+package org.intellifix.common;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded multi-producer / single-consumer ring buffer.
+ * Producers claim a slot with a single CAS on the tail and never block; a full buffer is
+ * reported back to the caller so it can apply its own overflow policy.
+ */
+public final class MpscRingBuffer<E> {
+
+    private final int mask;
+    private final AtomicReferenceArray<E> buffer;
+    private final AtomicLongArray sequences;
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLong head = new AtomicLong();
+
+    public MpscRingBuffer(int requestedCapacity) {
+        int capacity = Integer.highestOneBit(Math.max(2, requestedCapacity - 1)) << 1;
+        this.mask = capacity - 1;
+        this.buffer = new AtomicReferenceArray<>(capacity);
+        this.sequences = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    public boolean offer(E element) {
+        long pos = tail.get();
+        int index;
+        while (true) {
+            index = (int) (pos & mask);
+            long diff = sequences.getAcquire(index) - pos;
+            if (diff == 0) {
+                if (tail.compareAndSet(pos, pos + 1)) {
+                    break;
+                }
+                pos = tail.get();
+            } else if (diff < 0) {
+                return false;
+            } else {
+                pos = tail.get();
+            }
+        }
+        buffer.setPlain(index, element);
+        sequences.setRelease(index, pos + 1);
+        return true;
+    }
+
+    /**
+     * Must only be called from the single consumer thread.
+     */
+    public E poll() {
+        long pos = head.getPlain();
+        int index = (int) (pos & mask);
+        if (sequences.getAcquire(index) != pos + 1) {
+            return null;
+        }
+        E element = buffer.getPlain(index);
+        buffer.setPlain(index, null);
+        sequences.setRelease(index, pos + mask + 1);
+        head.setRelease(pos + 1);
+        return element;
+    }
+
+    /**
+     * Moves up to {@code max} elements into {@code sink}. Consumer thread only.
+     */
+    public int drainTo(List<? super E> sink, int max) {
+        int drained = 0;
+        E element;
+        while (drained < max && (element = poll()) != null) {
+            sink.add(element);
+            drained++;
+        }
+        return drained;
+    }
+
+    public int size() {
+        long size = tail.get() - head.getAcquire();
+        return (int) Math.max(0, Math.min(size, capacity()));
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    public int capacity() {
+        return mask + 1;
+    }
+}
@@ -0,0 +1,74 @@
+package org.intellifix.common;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded single-producer / single-consumer ring buffer.
+ * No CAS on either side: each index is written by one thread and published with a release store,
+ * and each side caches the other's index so it only re-reads it when the ring looks full or empty.
+ */
+public final class SpscRingBuffer<E> {
+
+    private final int mask;
+    private final AtomicReferenceArray<E> buffer;
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLong head = new AtomicLong();
+    // producer only
+    private long headCache;
+    // consumer only
+    private long tailCache;
+
+    public SpscRingBuffer(int requestedCapacity) {
+        int capacity = Integer.highestOneBit(Math.max(2, requestedCapacity - 1)) << 1;
+        this.mask = capacity - 1;
+        this.buffer = new AtomicReferenceArray<>(capacity);
+    }
+
+    /**
+     * Must only be called from the single producer thread. Returns {@code false} when full.
+     */
+    public boolean offer(E element) {
+        long pos = tail.getPlain();
+        if (pos - headCache > mask) {
+            headCache = head.getAcquire();
+            if (pos - headCache > mask) {
+                return false;
+            }
+        }
+        buffer.setPlain((int) (pos & mask), element);
+        tail.setRelease(pos + 1);
+        return true;
+    }
+
+    /**
+     * Must only be called from the single consumer thread.
+     */
+    public E poll() {
+        long pos = head.getPlain();
+        if (pos == tailCache) {
+            tailCache = tail.getAcquire();
+            if (pos == tailCache) {
+                return null;
+            }
+        }
+        int index = (int) (pos & mask);
+        E element = buffer.getPlain(index);
+        buffer.setPlain(index, null);
+        head.setRelease(pos + 1);
+        return element;
+    }
+
+    public int size() {
+        long size = tail.getAcquire() - head.getAcquire();
+        return (int) Math.max(0, Math.min(size, capacity()));
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    public int capacity() {
+        return mask + 1;
+    }
+}
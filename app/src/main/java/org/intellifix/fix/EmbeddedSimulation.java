@@ -0,0 +1,138 @@
+package org.intellifix.fix;
+
+import lombok.extern.slf4j.Slf4j;
+import org.intellifix.fix.apps.BrokerApp;
+import org.intellifix.fix.apps.ClientApp;
+import org.intellifix.fix.apps.HubApp;
+import org.intellifix.fix.base.DataDictionaryCache;
+import org.intellifix.fix.base.MatchRules;
+import org.intellifix.fix.log.SessionLogs;
+import org.intellifix.fix.loopback.LoopbackConnector;
+import org.intellifix.fix.model.ScenarioResult;
+import org.intellifix.metrics.LatencyRecorder;
+import org.intellifix.redis.RedisMessagePublisher;
+import org.intellifix.redis.base.MessagePublisher;
+import quickfix.*;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Runs client, hub and broker in one JVM, connected by a {@link LoopbackConnector} instead of
+ * TCP. The three usual session configs are read unchanged (socket settings are ignored) and
+ * sessions use in-memory stores, so each run starts from sequence number 1; the session log
+ * follows the hub config's {@code SessionLogType}. Without a broker scenario the broker only
+ * answers orders, with the matching engine if {@code MatchingEngine=Y}.
+ */
+@Slf4j
+public class EmbeddedSimulation {
+
+    private final SessionSettings clientSettings;
+    private final SessionSettings hubSettings;
+    private final SessionSettings brokerSettings;
+    private final DataDictionary dd;
+    private final MessagePublisher messagePublisher;
+    private final ClientApp clientApp;
+    private final HubApp hubApp;
+    private final BrokerApp brokerApp;
+    private final LoopbackConnector connector;
+
+    public EmbeddedSimulation(SessionSettings clientSettings, SessionSettings hubSettings,
+            SessionSettings brokerSettings, DataDictionary dd, MessagePublisher messagePublisher,
+            LogFactory logFactory) throws ConfigError, FieldConvertError {
+        this.clientSettings = clientSettings;
+        this.hubSettings = hubSettings;
+        this.brokerSettings = brokerSettings;
+        this.dd = dd;
+        this.messagePublisher = messagePublisher;
+
+        this.clientApp = new ClientApp(clientSettings, dd, messagePublisher);
+        this.hubApp = HubSimulator.createApp(hubSettings);
+        boolean matching = brokerSettings.isSetting(FixBrokerSimulator.MATCHING_ENGINE)
+                && brokerSettings.getBool(FixBrokerSimulator.MATCHING_ENGINE);
+        this.brokerApp = new BrokerApp(messagePublisher, new LatencyRecorder(), matching,
+                MatchRules.fromSettings(brokerSettings, BrokerApp.DEFAULT_MATCH_RULES));
+
+        this.connector = new LoopbackConnector(new MemoryStoreFactory(), logFactory, new DefaultMessageFactory());
+        connector.add(clientApp, clientSettings);
+        connector.add(hubApp, hubSettings);
+        connector.add(brokerApp, brokerSettings);
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 5) {
+            log.error("[ERROR]: Usage: EmbeddedSimulation <client cfg> <hub cfg> <broker cfg> <data dictionary> "
+                    + "<client scenario> [broker scenario]");
+            System.exit(2);
+        }
+        var clientSettings = new SessionSettings(args[0]);
+        var hubSettings = new SessionSettings(args[1]);
+        var brokerSettings = new SessionSettings(args[2]);
+        DataDictionary dd = DataDictionaryCache.get(args[3]);
+        String clientScenario = args[4];
+        String brokerScenario = args.length > 5 ? args[5] : null;
+
+        MessagePublisher messagePublisher = new RedisMessagePublisher();
+        var simulation = new EmbeddedSimulation(clientSettings, hubSettings, brokerSettings, dd, messagePublisher,
+                SessionLogs.fromSettings(hubSettings, "embedded"));
+        simulation.start(60);
+        ScenarioResult[] results = simulation.run(clientScenario, brokerScenario);
+
+        log.info("[DONE] Embedded simulation completed. Stopping.");
+        simulation.writeLatencyReports();
+        simulation.stop(5);
+        messagePublisher.close();
+
+        boolean passed = report(results[0]) & (results[1] == null || report(results[1]));
+        System.exit(passed ? 0 : 1);
+    }
+
+    /**
+     * Starts the sessions and waits until client and broker are logged on.
+     */
+    public void start(long logonTimeoutSeconds) throws InterruptedException {
+        connector.start();
+        brokerApp.awaitLogon(logonTimeoutSeconds);
+        clientApp.awaitLogon(logonTimeoutSeconds);
+        log.info("[START] Client, hub and broker logged on over loopback");
+    }
+
+    /**
+     * Runs the client scenario, and the broker scenario alongside it if there is one. Returns the
+     * client and broker results; the broker's is {@code null} without a broker scenario.
+     */
+    public ScenarioResult[] run(String clientScenario, String brokerScenario) throws InterruptedException {
+        AtomicReference<ScenarioResult> brokerResult = new AtomicReference<>();
+        Thread brokerThread = null;
+        if (brokerScenario != null) {
+            SessionID brokerSid = brokerApp.getActiveSession();
+            brokerThread = new Thread(() -> brokerResult.set(new FixBrokerSimulator()
+                    .run(brokerSettings, brokerScenario, dd, brokerApp, brokerSid)), "embedded-broker");
+            brokerThread.start();
+        }
+
+        ScenarioResult clientResult = new FixClientSimulator()
+                .run(clientSettings, clientScenario, dd, clientApp, clientApp.getActiveSession());
+        if (brokerThread != null) {
+            brokerThread.join();
+        }
+        return new ScenarioResult[] { clientResult, brokerResult.get() };
+    }
+
+    public void writeLatencyReports() throws ConfigError, FieldConvertError {
+        clientApp.latency().writeReport(LatencyRecorder.reportPath(clientSettings, "client"), messagePublisher);
+        hubApp.latency().writeReport(LatencyRecorder.reportPath(hubSettings, "hub"), messagePublisher);
+        brokerApp.latency().writeReport(LatencyRecorder.reportPath(brokerSettings, "broker"), messagePublisher);
+    }
+
+    public void stop(long timeoutSeconds) throws InterruptedException {
+        hubApp.close();
+        connector.stop(timeoutSeconds);
+    }
+
+    private static boolean report(ScenarioResult result) {
+        log.info("[RESULT] {} {} {} steps={} in {} ms{}", result.passed() ? "PASS" : "FAIL", result.sessionID(),
+                result.scenario(), result.steps(), result.elapsedMillis(),
+                result.passed() ? "" : " error=" + result.error());
+        return result.passed();
+    }
+}
@@ -1,8 +1,14 @@
 package org.intellifix.fix;
 
 import lombok.extern.slf4j.Slf4j;
+import org.intellifix.fix.base.DataDictionaryCache;
+import org.intellifix.fix.base.MatchRules;
 import org.intellifix.fix.base.SimulatorAppBase;
 import org.intellifix.fix.base.SimulatorEngine;
+import org.intellifix.fix.log.SessionLogs;
+import org.intellifix.fix.scenario.StepSource;
+import org.intellifix.fix.store.ConfiguredStoreFactory;
+import org.intellifix.metrics.LatencyRecorder;
 import org.intellifix.redis.base.MessagePublisher;
 import org.intellifix.redis.RedisMessagePublisher;
 import quickfix.*;
@@ -12,18 +18,11 @@ import quickfix.field.TargetCompID;
 import org.intellifix.fix.apps.BrokerApp;
 import org.intellifix.fix.model.*;
 
-import java.util.List;
-import java.util.concurrent.CountDownLatch;
-import java.util.concurrent.TimeUnit;
 
 @Slf4j
 public final class FixBrokerSimulator extends SimulatorEngine {
 
-    private MessagePublisher messagePublisher;
-
-    public FixBrokerSimulator(MessagePublisher messagePublisher) {
-        this.messagePublisher = messagePublisher;
-    }
+    public static final String MATCHING_ENGINE = "MatchingEngine";
 
     @Override
     protected StepType determineStepType(Message message) {
@@ -40,33 +39,40 @@ public final class FixBrokerSimulator extends SimulatorEngine {
     }
 
     @Override
-    protected void runScenario(List<Step> steps, SimulatorAppBase app, SessionID sid) throws Exception {
+    protected void runScenario(Iterable<Step> steps, SimulatorAppBase app, SessionID sid) throws Exception {
         for (Step step : steps) {
             switch (step) {
                 case Step(StepType type, Message message) when type == StepType.EXPECT_INBOUND -> {
-                    System.out.println("Broker Simulator -> EXPECT_INBOUND");
-                    CountDownLatch latch = new CountDownLatch(1);
-                    app.setExpectedInbound(message, latch);
-                    boolean isResponseOk = latch.await(120, TimeUnit.SECONDS);
-                    app.clearExpectedInbound();
+                    log.info("Broker Simulator -> EXPECT_INBOUND");
+                    boolean isResponseOk = awaitInbound(app, message, 120);
                     if (!isResponseOk) {
                         throw new RuntimeException("Timed out waiting for inbound: " + pretty(message));
                     }
                 }
                 case Step(StepType type, Message message) when type == StepType.OUTBOUND -> {
-                    System.out.println("Broker Simulator -> OUTBOUND");
-                    handleOutbound(message, sid);
-                    boolean isResponseOk = Session.sendToTarget(message, sid);
-                    if (!isResponseOk) {
-                        throw new RuntimeException(
-                                "Failed to send execution report (Session.sendToTarget returned false)");
-                    }
+                    log.info("Broker Simulator -> OUTBOUND");
+                    sendStep(message, sid);
                 }
                 default -> throw new IllegalStateException("Unsupported step: " + step);
             }
         }
     }
 
+    @Override
+    protected void sendStep(Message message, SessionID sid) throws Exception {
+        handleOutbound(message, sid);
+        boolean isResponseOk = Session.sendToTarget(message, sid);
+        if (!isResponseOk) {
+            throw new RuntimeException(
+                    "Failed to send execution report (Session.sendToTarget returned false)");
+        }
+    }
+
+    @Override
+    protected long defaultExpectTimeoutSeconds() {
+        return 120;
+    }
+
     @Override
     protected void handleOutbound(Message out, SessionID sid) throws Exception {
         if (!out.getHeader().isSetField(SenderCompID.FIELD)
@@ -84,13 +90,15 @@ public final class FixBrokerSimulator extends SimulatorEngine {
 
         MessagePublisher messagePublisher = new RedisMessagePublisher();
 
-        var instance = new FixBrokerSimulator(messagePublisher);
+        var instance = new FixBrokerSimulator();
         var settings = new SessionSettings(args[0]);
-        var dd = new DataDictionary(args[1]);
+        var dd = DataDictionaryCache.get(args[1]);
 
-        var app = new BrokerApp(messagePublisher);
-        var storeFactory = new FileStoreFactory(settings);
-        var logFactory = new ScreenLogFactory(true, true, true, true);
+        boolean matching = settings.isSetting(MATCHING_ENGINE) && settings.getBool(MATCHING_ENGINE);
+        var app = new BrokerApp(messagePublisher, new LatencyRecorder(), matching,
+                MatchRules.fromSettings(settings, BrokerApp.DEFAULT_MATCH_RULES));
+        var storeFactory = new ConfiguredStoreFactory(settings);
+        var logFactory = SessionLogs.fromSettings(settings, "broker");
         var messageFactory = new DefaultMessageFactory();
 
         var acceptor = new SocketAcceptor(app, storeFactory, settings, logFactory, messageFactory);
@@ -102,10 +110,13 @@ public final class FixBrokerSimulator extends SimulatorEngine {
         if (sid == null)
             throw new RuntimeException("No active session");
 
-        List<Step> steps = instance.readSteps(args[2], dd, sid);
-        instance.runScenario(steps, app, sid);
+        try (StepSource steps = instance.openSteps(settings, args[2], dd, sid)) {
+            instance.execute(settings, steps, app, sid);
+        }
 
         log.info("[DONE] Scenario completed. Stopping acceptor.");
+        app.latency().writeReport(LatencyRecorder.reportPath(settings, "broker"), messagePublisher);
         acceptor.stop();
+        messagePublisher.close();
     }
 }
@@ -1,28 +1,23 @@
 package org.intellifix.fix;
 
 import lombok.extern.slf4j.Slf4j;
+import org.intellifix.fix.base.DataDictionaryCache;
 import org.intellifix.fix.base.SimulatorAppBase;
 import org.intellifix.fix.base.SimulatorEngine;
-import org.intellifix.redis.base.MessagePublisher;
+import org.intellifix.fix.log.SessionLogs;
+import org.intellifix.fix.scenario.StepSource;
+import org.intellifix.fix.store.ConfiguredStoreFactory;
+import org.intellifix.metrics.LatencyRecorder;
 import org.intellifix.redis.RedisMessagePublisher;
 import quickfix.*;
 import org.intellifix.fix.apps.ClientApp;
 import org.intellifix.fix.model.*;
 import quickfix.field.MsgType;
 
-import java.util.List;
-import java.util.concurrent.CountDownLatch;
-import java.util.concurrent.TimeUnit;
 
 @Slf4j
 public final class FixClientSimulator extends SimulatorEngine {
 
-    private MessagePublisher messagePublisher;
-
-    public FixClientSimulator(MessagePublisher messagePublisher) {
-        this.messagePublisher = messagePublisher;
-    }
-
     @Override
     protected StepType determineStepType(Message message) {
         try {
@@ -38,26 +33,12 @@ public final class FixClientSimulator extends SimulatorEngine {
     }
 
     @Override
-    protected void runScenario(List<Step> steps, SimulatorAppBase app, SessionID sid) throws Exception {
+    protected void runScenario(Iterable<Step> steps, SimulatorAppBase app, SessionID sid) throws Exception {
         for (Step step : steps) {
             switch (step) {
-                case Step(StepType type, Message message) when type == StepType.OUTBOUND -> {
-                    if (message.isSetField(526)) {
-                        log.info("[SKIP] Message with 526=" + message.getString(526) + " ignored.");
-                    } else {
-                        // handleOutbound(message, sid);
-                        boolean isResponseOk = Session.sendToTarget(message, sid);
-                        if (!isResponseOk) {
-                            throw new RuntimeException(
-                                    "Failed to send message to target (Session.sendToTarget returned false)");
-                        }
-                    }
-                }
+                case Step(StepType type, Message message) when type == StepType.OUTBOUND -> sendStep(message, sid);
                 case Step(StepType type, Message message) when type == StepType.EXPECT_INBOUND -> {
-                    CountDownLatch latch = new CountDownLatch(1);
-                    app.setExpectedInbound(message, latch);
-                    boolean isResponseOk = latch.await(60, TimeUnit.SECONDS);
-                    app.clearExpectedInbound();
+                    boolean isResponseOk = awaitInbound(app, message, 60);
                     if (!isResponseOk) {
                         throw new RuntimeException(
                                 "Timed out waiting for expected inbound message: " + pretty(message));
@@ -68,13 +49,29 @@ public final class FixClientSimulator extends SimulatorEngine {
         }
     }
 
+    @Override
+    protected void sendStep(Message message, SessionID sid) throws Exception {
+        if (!skipsStep(message)) {
+            // handleOutbound(message, sid);
+            boolean isResponseOk = Session.sendToTarget(message, sid);
+            if (!isResponseOk) {
+                throw new RuntimeException(
+                        "Failed to send message to target (Session.sendToTarget returned false)");
+            }
+        }
+    }
+
+    @Override
+    protected boolean skipsStep(Message message) throws FieldNotFound {
+        if (message.isSetField(526)) {
+            log.info("[SKIP] Message with 526=" + message.getString(526) + " ignored.");
+            return true;
+        }
+        return false;
+    }
+
     @Override
     protected void handleOutbound(Message message, SessionID sid) throws Exception {
-        /*
-         * String msgType = message.getHeader().getString(MsgType.FIELD);
-         * messagePublisher.publishMessage("[OUT] 35=" + msgType + " " +
-         * pretty(message));
-         */
     }
 
     public static void main(String[] args) throws Exception {
@@ -83,13 +80,13 @@ public final class FixClientSimulator extends SimulatorEngine {
             System.exit(2);
         }
         var messagePublisher = new RedisMessagePublisher();
-        var instance = new FixClientSimulator(messagePublisher);
+        var instance = new FixClientSimulator();
         var settings = new SessionSettings(args[0]);
-        var dd = new DataDictionary(args[1]);
+        var dd = DataDictionaryCache.get(args[1]);
 
         var app = new ClientApp(settings, dd, messagePublisher);
-        var storeFactory = new FileStoreFactory(settings);
-        var logFactory = new ScreenLogFactory(true, true, true, true);
+        var storeFactory = new ConfiguredStoreFactory(settings);
+        var logFactory = SessionLogs.fromSettings(settings, "client");
         var messageFactory = new DefaultMessageFactory();
 
         var initiator = new SocketInitiator(app, storeFactory, settings, logFactory, messageFactory);
@@ -101,10 +98,13 @@ public final class FixClientSimulator extends SimulatorEngine {
         if (sid == null)
             throw new RuntimeException("No active session ID");
 
-        List<Step> steps = instance.readSteps(args[2], dd, sid);
-        instance.runScenario(steps, app, sid);
+        try (StepSource steps = instance.openSteps(settings, args[2], dd, sid)) {
+            instance.execute(settings, steps, app, sid);
+        }
 
         log.info("[DONE] Scenario completed. Stopping initiator.");
+        app.latency().writeReport(LatencyRecorder.reportPath(settings, "client"), messagePublisher);
         initiator.stop();
+        messagePublisher.close();
     }
 }
@@ -2,15 +2,90 @@ package org.intellifix.fix;
 
 import lombok.extern.slf4j.Slf4j;
 import org.intellifix.fix.apps.HubApp;
+import org.intellifix.fix.hub.ClOrdIdStore;
+import org.intellifix.fix.hub.HubPipeline;
+import org.intellifix.fix.hub.HubRouter;
+import org.intellifix.fix.log.SessionLogs;
+import org.intellifix.fix.hub.StoreAndForward;
+import org.intellifix.fix.model.ForwardMode;
+import org.intellifix.fix.model.ForwardOverflow;
+import org.intellifix.fix.model.StoreForwardConfig;
+import org.intellifix.fix.store.ConfiguredStoreFactory;
+import org.intellifix.metrics.LatencyRecorder;
 import org.intellifix.redis.base.MessagePublisher;
 import org.intellifix.redis.RedisMessagePublisher;
 import quickfix.*;
 
+import java.nio.file.Path;
+
 @Slf4j
 public class HubSimulator {
 
-    private final static String CLIENT_COMP_ID = "ClientCompID";
-    private final static String BROKER_COMP_ID = "BrokerCompID";
+    private final static String FORWARD_MODE = "ForwardMode";
+    final static String CLORDID_CAPACITY = "ClOrdIdCapacity";
+    private final static String CLORDID_TTL_SECONDS = "ClOrdIdTtlSeconds";
+    private final static String HUB_PIPELINE = "HubPipeline";
+    private final static String HUB_QUEUE_CAPACITY = "HubQueueCapacity";
+    private final static String STORE_FORWARD = "StoreForward";
+    private final static String STORE_FORWARD_PATH = "StoreForwardPath";
+    private final static String STORE_FORWARD_BYTES = "StoreForwardBytes";
+    private final static String STORE_FORWARD_DRAIN_RATE = "StoreForwardDrainRate";
+    private final static String STORE_FORWARD_OVERFLOW = "StoreForwardOverflow";
+    private final static String STORE_FORWARD_SYNC_MILLIS = "StoreForwardSyncMillis";
+
+    /**
+     * Builds the hub application from the routing, forwarding and ClOrdID settings in {@code settings}.
+     */
+    public static HubApp createApp(SessionSettings settings) throws ConfigError, FieldConvertError {
+        HubRouter router = HubRouter.fromSettings(settings);
+
+        ForwardMode forwardMode = settings.isSetting(FORWARD_MODE)
+                ? ForwardMode.valueOf(settings.getString(FORWARD_MODE).toUpperCase())
+                : ForwardMode.IN_PLACE;
+
+        int clOrdIdCapacity = settings.isSetting(CLORDID_CAPACITY)
+                ? (int) settings.getLong(CLORDID_CAPACITY)
+                : ClOrdIdStore.DEFAULT_CAPACITY;
+        long clOrdIdTtlMillis = settings.isSetting(CLORDID_TTL_SECONDS)
+                ? settings.getLong(CLORDID_TTL_SECONDS) * 1000L
+                : ClOrdIdStore.DEFAULT_TTL_MILLIS;
+
+        int pipelineCapacity = 0;
+        if (isPipeline(settings)) {
+            pipelineCapacity = settings.isSetting(HUB_QUEUE_CAPACITY)
+                    ? (int) settings.getLong(HUB_QUEUE_CAPACITY)
+                    : HubPipeline.DEFAULT_QUEUE_CAPACITY;
+        }
+
+        return new HubApp(router, forwardMode,
+                new ClOrdIdStore(clOrdIdCapacity, clOrdIdTtlMillis), pipelineCapacity, storeForward(settings));
+    }
+
+    private static StoreForwardConfig storeForward(SessionSettings settings) throws ConfigError, FieldConvertError {
+        if (!settings.isSetting(STORE_FORWARD) || !settings.getBool(STORE_FORWARD)) {
+            return null;
+        }
+        return new StoreForwardConfig(
+                Path.of(settings.isSetting(STORE_FORWARD_PATH)
+                        ? settings.getString(STORE_FORWARD_PATH)
+                        : StoreAndForward.DEFAULT_DIRECTORY),
+                settings.isSetting(STORE_FORWARD_BYTES)
+                        ? settings.getLong(STORE_FORWARD_BYTES)
+                        : StoreAndForward.DEFAULT_QUEUE_BYTES,
+                settings.isSetting(STORE_FORWARD_DRAIN_RATE)
+                        ? settings.getDouble(STORE_FORWARD_DRAIN_RATE)
+                        : StoreAndForward.DEFAULT_DRAIN_RATE,
+                settings.isSetting(STORE_FORWARD_OVERFLOW)
+                        ? ForwardOverflow.valueOf(settings.getString(STORE_FORWARD_OVERFLOW).trim().toUpperCase())
+                        : ForwardOverflow.DROP_NEWEST,
+                settings.isSetting(STORE_FORWARD_SYNC_MILLIS)
+                        ? settings.getLong(STORE_FORWARD_SYNC_MILLIS)
+                        : StoreAndForward.DEFAULT_SYNC_MILLIS);
+    }
+
+    private static boolean isPipeline(SessionSettings settings) throws ConfigError, FieldConvertError {
+        return settings.isSetting(HUB_PIPELINE) && settings.getBool(HUB_PIPELINE);
+    }
 
     public static void main(String[] args) throws Exception {
         if (args.length < 1) {
@@ -23,19 +98,24 @@ public class HubSimulator {
         String configPath = args[0];
         SessionSettings settings = new SessionSettings(configPath);
 
-        String clientCompID = settings.getString(CLIENT_COMP_ID);
-        String brokerCompID = settings.getString(BROKER_COMP_ID);
-
-        HubApp app = new HubApp(messagePublisher, clientCompID, brokerCompID);
+        HubApp app = createApp(settings);
 
-        MessageStoreFactory storeFactory = new FileStoreFactory(settings);
-        LogFactory logFactory = new ScreenLogFactory(true, true, true, true);
+        MessageStoreFactory storeFactory = new ConfiguredStoreFactory(settings);
+        LogFactory logFactory = SessionLogs.fromSettings(settings, "hub");
         MessageFactory messageFactory = new DefaultMessageFactory();
 
-        Acceptor acceptor = new SocketAcceptor(app, storeFactory, settings, logFactory, messageFactory);
-        Initiator initiator = new SocketInitiator(app, storeFactory, settings, logFactory, messageFactory);
+        Path latencyReport = LatencyRecorder.reportPath(settings, "hub");
+
+        // the pipeline needs a thread per session, so one session's callbacks never wait on another's
+        boolean pipeline = isPipeline(settings);
+        Acceptor acceptor = pipeline
+                ? new ThreadedSocketAcceptor(app, storeFactory, settings, logFactory, messageFactory)
+                : new SocketAcceptor(app, storeFactory, settings, logFactory, messageFactory);
+        Initiator initiator = pipeline
+                ? new ThreadedSocketInitiator(app, storeFactory, settings, logFactory, messageFactory)
+                : new SocketInitiator(app, storeFactory, settings, logFactory, messageFactory);
 
-        log.info("Starting Hub...");
+        log.info("Starting Hub{}...", pipeline ? " in pipeline mode" : "");
         acceptor.start();
         initiator.start();
 
@@ -44,8 +124,11 @@ public class HubSimulator {
         // Keeps running until interrupted
         Runtime.getRuntime().addShutdownHook(new Thread(() -> {
             log.info("Stopping Hub...");
+            app.close();
             acceptor.stop();
             initiator.stop();
+            app.latency().writeReport(latencyReport, messagePublisher);
+            messagePublisher.close();
         }));
 
         while (true) {
@@ -0,0 +1,170 @@
+package org.intellifix.fix;
+
+import lombok.extern.slf4j.Slf4j;
+import org.intellifix.fix.apps.ClientApp;
+import org.intellifix.fix.base.DataDictionaryCache;
+import org.intellifix.fix.base.SessionDispatcher;
+import org.intellifix.fix.log.SessionLogs;
+import org.intellifix.fix.model.ScenarioResult;
+import org.intellifix.fix.store.ConfiguredStoreFactory;
+import org.intellifix.metrics.LatencyRecorder;
+import org.intellifix.redis.RedisMessagePublisher;
+import org.intellifix.redis.base.MessagePublisher;
+import quickfix.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+/**
+ * Runs many client scenarios in one JVM.
+ * <p>
+ * Input is either a manifest file with one {@code <session config> <scenario file>} pair per
+ * line, or a directory in which every {@code name.cfg} is paired with the scenario file of the
+ * same base name. All sessions share one SocketInitiator, one publisher and one parsed data
+ * dictionary; a {@link SessionDispatcher} hands each session's callbacks to its own ClientApp,
+ * and every scenario runs on its own virtual thread.
+ */
+@Slf4j
+public class MultiScenarioRunner {
+
+    private record Job(Path config, Path scenario) {
+    }
+
+    private record ScenarioTask(SessionID sessionID, SessionSettings settings, Path scenario, ClientApp app) {
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            log.error("[ERROR]: Usage: MultiScenarioRunner <data dictionary> <manifest file | directory>");
+            System.exit(2);
+        }
+        DataDictionary dd = DataDictionaryCache.get(args[0]);
+        List<Job> jobs = readJobs(Path.of(args[1]));
+
+        var messagePublisher = new RedisMessagePublisher();
+        var latency = new LatencyRecorder();
+        var dispatcher = new SessionDispatcher();
+        var combined = new SessionSettings();
+        List<ScenarioTask> tasks = new ArrayList<>();
+
+        for (Job job : jobs) {
+            SessionSettings settings = new SessionSettings(job.config().toString());
+            for (Iterator<SessionID> it = settings.sectionIterator(); it.hasNext();) {
+                SessionID sid = it.next();
+                if (tasks.stream().anyMatch(task -> task.sessionID().equals(sid))) {
+                    throw new ConfigError("Session " + sid + " appears in more than one config");
+                }
+                combined.set(sid, new Dictionary(null, settings.getSessionProperties(sid, true)));
+                var app = new ClientApp(settings, dd, messagePublisher, latency);
+                dispatcher.register(sid, app);
+                tasks.add(new ScenarioTask(sid, settings, job.scenario(), app));
+            }
+        }
+        if (tasks.isEmpty()) {
+            log.error("[ERROR]: No sessions found in {}", args[1]);
+            System.exit(2);
+        }
+
+        var initiator = new SocketInitiator(dispatcher, new ConfiguredStoreFactory(combined), combined,
+                SessionLogs.fromSettings(tasks.get(0).settings(), "multi"), new DefaultMessageFactory());
+        initiator.start();
+        log.info("[START] Started Initiator with {} sessions", tasks.size());
+
+        long started = System.nanoTime();
+        List<ScenarioResult> results = new ArrayList<>(tasks.size());
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<ScenarioResult>> futures = new ArrayList<>(tasks.size());
+            for (ScenarioTask task : tasks) {
+                futures.add(executor.submit(() -> run(task, dd, messagePublisher)));
+            }
+            for (Future<ScenarioResult> future : futures) {
+                results.add(future.get());
+            }
+        }
+        long wallMillis = Math.max(1, (System.nanoTime() - started) / 1_000_000);
+
+        report(results, wallMillis, messagePublisher);
+        latency.writeReport(LatencyRecorder.reportPath(combined, "multi"), messagePublisher);
+        initiator.stop();
+        messagePublisher.close();
+        System.exit(results.stream().allMatch(ScenarioResult::passed) ? 0 : 1);
+    }
+
+    private static ScenarioResult run(ScenarioTask task, DataDictionary dd, MessagePublisher messagePublisher) {
+        try {
+            task.app().awaitLogon(60);
+        } catch (Exception e) {
+            return new ScenarioResult(task.sessionID().toString(), task.scenario().toString(), false, 0, 0,
+                    String.valueOf(e.getMessage()));
+        }
+        return new FixClientSimulator()
+                .run(task.settings(), task.scenario().toString(), dd, task.app(), task.sessionID());
+    }
+
+    private static void report(List<ScenarioResult> results, long wallMillis, MessagePublisher messagePublisher) {
+        long passed = results.stream().filter(ScenarioResult::passed).count();
+        long steps = results.stream().mapToLong(ScenarioResult::steps).sum();
+        for (ScenarioResult result : results) {
+            String line = "[RESULT] " + (result.passed() ? "PASS" : "FAIL") + " " + result.sessionID() + " "
+                    + result.scenario() + " steps=" + result.steps() + " in " + result.elapsedMillis() + " ms ("
+                    + result.stepsPerSecond() + " steps/s)" + (result.passed() ? "" : " error=" + result.error());
+            log.info(line);
+            messagePublisher.publishMessage(line);
+        }
+        String summary = "[SUMMARY] scenarios=" + results.size() + " passed=" + passed + " failed="
+                + (results.size() - passed) + " steps=" + steps + " wall=" + wallMillis + " ms throughput="
+                + steps * 1000 / wallMillis + " steps/s";
+        log.info(summary);
+        messagePublisher.publishMessage(summary);
+    }
+
+    private static List<Job> readJobs(Path source) throws IOException, ConfigError {
+        List<Job> jobs = new ArrayList<>();
+        if (Files.isDirectory(source)) {
+            try (Stream<Path> files = Files.list(source)) {
+                for (Path config : files.filter(f -> f.toString().endsWith(".cfg")).sorted().toList()) {
+                    String stem = config.getFileName().toString().replaceFirst("\\.cfg$", "");
+                    jobs.add(new Job(config, scenarioFor(source, stem)));
+                }
+            }
+        } else {
+            for (String line : Files.readAllLines(source)) {
+                String trimmed = line.trim();
+                if (trimmed.isEmpty() || trimmed.startsWith("#")) {
+                    continue;
+                }
+                String[] pair = trimmed.split("\\s+");
+                if (pair.length != 2) {
+                    throw new ConfigError("Expected '<session config> <scenario file>' but got: " + line);
+                }
+                jobs.add(new Job(Path.of(pair[0]), Path.of(pair[1])));
+            }
+        }
+        return jobs;
+    }
+
+    private static Path scenarioFor(Path directory, String stem) throws IOException, ConfigError {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(f -> !f.toString().endsWith(".cfg"))
+                    .filter(f -> stem.equals(baseName(f)))
+                    .sorted()
+                    .findFirst()
+                    .orElseThrow(() -> new ConfigError("No scenario file for " + stem + ".cfg in " + directory));
+        }
+    }
+
+    // the file name without its last extension, so "a.b.txt" is "a.b" and does not pair with a.cfg
+    private static String baseName(Path file) {
+        String name = file.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        return dot < 0 ? name : name.substring(0, dot);
+    }
+}
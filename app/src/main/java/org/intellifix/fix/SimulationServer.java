@@ -0,0 +1,190 @@
+package org.intellifix.fix;
+
+import lombok.extern.slf4j.Slf4j;
+import org.intellifix.fix.base.DataDictionaryCache;
+import org.intellifix.fix.log.SessionLogs;
+import org.intellifix.fix.model.ScenarioResult;
+import org.intellifix.fix.server.SimulationJob;
+import org.intellifix.redis.RedisMessagePublisher;
+import org.intellifix.redis.StreamConsumerPool;
+import org.intellifix.redis.StreamRecord;
+import org.intellifix.redis.base.MessagePublisher;
+import org.intellifix.redis.config.ConsumerConfig;
+import org.intellifix.redis.config.RedisClientConfig;
+import quickfix.LogFactory;
+import quickfix.SessionSettings;
+import redis.clients.jedis.JedisPooled;
+import redis.clients.jedis.StreamEntryID;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Resident simulator that runs jobs from a Redis stream instead of one JVM per run.
+ * <p>
+ * Each entry of {@code fix-simulation-jobs} carries a job in its {@code job} field, shaped like
+ * {@code stream/fix_simulation_stream.json}. The job's sessions are added to the {@code [default]}
+ * sections of the client, hub and broker configs given on the command line, run as an
+ * {@link EmbeddedSimulation} over the loopback transport, and the outcome is written to the hash
+ * {@code fix-simulation-result:<sim_id>} and appended to {@code fix-simulation-results}.
+ * Dictionaries, the publisher, the Redis pools and the JIT stay warm between jobs.
+ * <p>
+ * Jobs are read through a {@link StreamConsumerPool} ({@code intellifix.simserver.*} properties)
+ * and run one at a time, since concurrent jobs must not share CompIDs. A job is acknowledged once
+ * its result is written. Reclaiming is off by default: a reclaim of a job that is merely slow would
+ * run it a second time next to the first. Jobs left by a crashed server stay pending until a
+ * {@code claimIdleMillis} longer than any job is set; even then an entry this server is still
+ * running is refused rather than started again.
+ */
+@Slf4j
+public class SimulationServer {
+
+    public static final String JOB_FIELD = "job";
+
+    private static final String PREFIX = "intellifix.simserver.";
+    private static final long LOGON_TIMEOUT_SECONDS = 30;
+    private static final long STOP_TIMEOUT_SECONDS = 5;
+    // the hub's default table takes tens of milliseconds to allocate, for every job
+    private static final int JOB_CLORDID_CAPACITY = 1 << 16;
+
+    private final SessionSettings clientTemplate;
+    private final SessionSettings hubTemplate;
+    private final SessionSettings brokerTemplate;
+    private final JedisPooled jedis;
+    private final MessagePublisher messagePublisher;
+    private final LogFactory logFactory;
+    private final String resultStream = System.getProperty(PREFIX + "resultStream", "fix-simulation-results");
+    private final String resultKeyPrefix = System.getProperty(PREFIX + "resultKeyPrefix", "fix-simulation-result:");
+    private final Set<StreamEntryID> inFlight = ConcurrentHashMap.newKeySet();
+    private final Object jobLock = new Object();
+
+    public SimulationServer(SessionSettings clientTemplate, SessionSettings hubTemplate,
+            SessionSettings brokerTemplate, JedisPooled jedis, MessagePublisher messagePublisher,
+            LogFactory logFactory) {
+        this.clientTemplate = clientTemplate;
+        this.hubTemplate = hubTemplate;
+        this.brokerTemplate = brokerTemplate;
+        this.jedis = jedis;
+        this.messagePublisher = messagePublisher;
+        this.logFactory = logFactory;
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 3) {
+            log.error("[ERROR]: Usage: SimulationServer <client cfg> <hub cfg> <broker cfg>");
+            System.exit(2);
+        }
+        var hubTemplate = new SessionSettings(args[1]);
+        ConsumerConfig config = ConsumerConfig.fromSystemProperties(PREFIX, new ConsumerConfig(
+                "fix-simulation-jobs", "simulation-servers", "simserver-" + ProcessHandle.current().pid(),
+                1, 1, 1, 1000, Long.MAX_VALUE, 1, 0, 0, 60_000, 60_000, 3, "fix-simulation-jobs-dead"));
+
+        JedisPooled jedis = RedisClientConfig.jedis();
+        MessagePublisher messagePublisher = new RedisMessagePublisher();
+        var server = new SimulationServer(new SessionSettings(args[0]), hubTemplate, new SessionSettings(args[2]),
+                jedis, messagePublisher, SessionLogs.fromSettings(hubTemplate, "simserver"));
+        var consumers = new StreamConsumerPool(jedis, config, server::runJob);
+
+        CountDownLatch stopped = new CountDownLatch(1);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            log.info("[SERVER] Stopping simulation server...");
+            consumers.close();
+            messagePublisher.close();
+            jedis.close();
+            stopped.countDown();
+        }));
+        consumers.start();
+        log.info("[SERVER] Waiting for jobs on {}", config.streamKey());
+        stopped.await();
+    }
+
+    /**
+     * Runs one job entry and publishes its result. Failures are reported as results rather than
+     * thrown, so a bad job is acknowledged instead of being reclaimed forever. An entry that is
+     * already running is refused with an exception, which leaves it pending for the run in
+     * progress to acknowledge.
+     */
+    public void runJob(StreamRecord entry) {
+        if (!inFlight.add(entry.id())) {
+            throw new IllegalStateException("Job " + entry.id() + " is already running");
+        }
+        try {
+            synchronized (jobLock) {
+                run(entry);
+            }
+        } finally {
+            inFlight.remove(entry.id());
+        }
+    }
+
+    private void run(StreamRecord entry) {
+        long received = System.nanoTime();
+        String simId = entry.id().toString();
+        Map<String, String> result = new LinkedHashMap<>();
+        try {
+            String json = entry.string(JOB_FIELD);
+            if (json == null) {
+                throw new IllegalArgumentException("Entry has no " + JOB_FIELD + " field");
+            }
+            SimulationJob job = SimulationJob.parse(json);
+            simId = job.simId();
+            log.info("[SERVER] Job {} ({})", simId, entry.id());
+
+            SessionSettings hubSettings = job.hubSettings(hubTemplate);
+            if (!hubSettings.isSetting(HubSimulator.CLORDID_CAPACITY)) {
+                hubSettings.setLong(HubSimulator.CLORDID_CAPACITY, JOB_CLORDID_CAPACITY);
+            }
+            var simulation = new EmbeddedSimulation(job.clientSettings(clientTemplate), hubSettings,
+                    job.brokerSettings(brokerTemplate), DataDictionaryCache.get(job.fixSpec()), messagePublisher,
+                    logFactory);
+            ScenarioResult[] results;
+            try {
+                simulation.start(LOGON_TIMEOUT_SECONDS);
+                result.put("startup_ms", Long.toString(elapsedMillis(received)));
+                results = simulation.run(job.scenario(), job.scenario());
+            } finally {
+                simulation.stop(STOP_TIMEOUT_SECONDS);
+            }
+            boolean passed = results[0].passed() && (results[1] == null || results[1].passed());
+            result.put("status", passed ? "PASS" : "FAIL");
+            put(result, "client", results[0]);
+            put(result, "broker", results[1]);
+        } catch (Exception e) {
+            log.error("[SERVER] Job {} failed", simId, e);
+            result.put("status", "ERROR");
+            result.put("error", String.valueOf(e.getMessage()));
+        }
+        result.put("sim_id", simId);
+        result.put("queued_ms", Long.toString(Math.max(0, System.currentTimeMillis() - entry.id().getTime()
+                - elapsedMillis(received))));
+        result.put("elapsed_ms", Long.toString(elapsedMillis(received)));
+        publish(simId, result);
+    }
+
+    private void publish(String simId, Map<String, String> result) {
+        jedis.hset(resultKeyPrefix + simId, result);
+        jedis.xadd(resultStream, StreamEntryID.NEW_ENTRY, result);
+        log.info("[SERVER] Job {} {} in {} ms (startup {} ms)", simId, result.get("status"),
+                result.get("elapsed_ms"), result.getOrDefault("startup_ms", "-"));
+    }
+
+    private static void put(Map<String, String> result, String role, ScenarioResult scenario) {
+        if (scenario == null) {
+            return;
+        }
+        result.put(role + "_passed", Boolean.toString(scenario.passed()));
+        result.put(role + "_steps", Long.toString(scenario.steps()));
+        result.put(role + "_elapsed_ms", Long.toString(scenario.elapsedMillis()));
+        if (scenario.error() != null) {
+            result.put(role + "_error", scenario.error());
+        }
+    }
+
+    private static long elapsedMillis(long since) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - since);
+    }
+}
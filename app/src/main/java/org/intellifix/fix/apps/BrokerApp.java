@@ -2,24 +2,77 @@ package org.intellifix.fix.apps;
 
 import lombok.extern.slf4j.Slf4j;
 import org.intellifix.redis.base.MessagePublisher;
+import org.intellifix.fix.base.Expectation;
+import org.intellifix.fix.base.ExpectationRegistry;
+import org.intellifix.fix.base.MatchRules;
 import org.intellifix.fix.base.SimulatorAppBase;
+import org.intellifix.fix.matching.ExecutionListener;
+import org.intellifix.fix.matching.MatchingEngine;
+import org.intellifix.fix.matching.Order;
+import org.intellifix.fix.model.MessageDirection;
+import org.intellifix.metrics.Hop;
+import org.intellifix.metrics.LatencyRecorder;
 import quickfix.*;
-import quickfix.field.MsgType;
+import quickfix.field.*;
 import quickfix.fix44.ExecutionReport;
-import java.util.concurrent.CountDownLatch;
+import quickfix.fix44.OrderCancelReject;
+
+import java.util.concurrent.atomic.AtomicLong;
 
 @Slf4j
 public class BrokerApp extends MessageCracker implements Application, SimulatorAppBase {
 
+    private static final String SOURCE = "Broker";
+    /** Built-in {@link MatchRules}: 526 must come back, compared after any prefix. */
+    public static final String DEFAULT_MATCH_RULES = "* 526 suffix";
+
     private volatile SessionID activeSession;
     private volatile boolean loggedOn = false;
-    private volatile Message expectedInbound = null;
-    private volatile CountDownLatch expectedLatch = null;
+    private final ExpectationRegistry expectations;
 
     private MessagePublisher messagePublisher;
+    private final LatencyRecorder latency;
+    private final MatchingEngine engine;
+    private final MatchRules matchRules;
+    private final AtomicLong ids = new AtomicLong(System.currentTimeMillis());
 
     public BrokerApp(MessagePublisher messagePublisher) {
+        this(messagePublisher, new LatencyRecorder());
+    }
+
+    public BrokerApp(MessagePublisher messagePublisher, LatencyRecorder latency) {
+        this(messagePublisher, latency, false);
+    }
+
+    /**
+     * With {@code matching} set, orders are matched against each other in a {@link MatchingEngine}
+     * and every fill, cancel and replace is reported; otherwise each order is just acknowledged.
+     */
+    public BrokerApp(MessagePublisher messagePublisher, LatencyRecorder latency, boolean matching) {
+        this(messagePublisher, latency, matching, defaultMatchRules());
+    }
+
+    public BrokerApp(MessagePublisher messagePublisher, LatencyRecorder latency, boolean matching,
+            MatchRules matchRules) {
         this.messagePublisher = messagePublisher;
+        this.latency = latency;
+        this.engine = matching ? new MatchingEngine(new ReportSender()) : null;
+        this.matchRules = matchRules;
+        // the matcher takes the rules rather than this, which is not fully constructed yet
+        this.expectations = new ExpectationRegistry(526, matchRules, ExpectationRegistry.DEFAULT_EARLY_CAPACITY,
+                (expected, actual) -> matches(matchRules, expected, actual));
+    }
+
+    private static MatchRules defaultMatchRules() {
+        try {
+            return MatchRules.parse(DEFAULT_MATCH_RULES);
+        } catch (ConfigError e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public LatencyRecorder latency() {
+        return latency;
     }
 
     public void awaitLogon(long timeoutSeconds) throws InterruptedException {
@@ -40,32 +93,32 @@ public class BrokerApp extends MessageCracker implements Application, SimulatorA
         return null;
     }
 
-    public void setExpectedInbound(Message expected, CountDownLatch latch) {
-        this.expectedInbound = expected;
-        this.expectedLatch = latch;
+    @Override
+    public void expect(Expectation expectation) {
+        expectations.expect(expectation);
     }
 
-    public void clearExpectedInbound() {
-        this.expectedInbound = null;
-        this.expectedLatch = null;
+    @Override
+    public void cancel(Expectation expectation) {
+        expectations.cancel(expectation);
     }
 
     @Override
     public void onCreate(SessionID sessionID) {
-        System.out.println("[BROKER] onCreate: " + sessionID);
+        log.info("[BROKER] onCreate: " + sessionID);
         this.activeSession = sessionID;
     }
 
     @Override
     public void onLogon(SessionID sessionID) {
-        System.out.println("[BROKER] onLogon: " + sessionID);
+        log.info("[BROKER] onLogon: " + sessionID);
         this.loggedOn = true;
         this.activeSession = sessionID;
     }
 
     @Override
     public void onLogout(SessionID sessionID) {
-        System.out.println("[BROKER] onLogout: " + sessionID);
+        log.info("[BROKER] onLogout: " + sessionID);
         this.loggedOn = false;
     }
 
@@ -89,7 +142,7 @@ public class BrokerApp extends MessageCracker implements Application, SimulatorA
         } catch (FieldNotFound e) {
             throw new RuntimeException(e);
         }
-        messagePublisher.publishMessage("Broker sent 35=" + msgType + " " + pretty(message));
+        messagePublisher.publishEvent(SOURCE, MessageDirection.SENT, sessionID, msgType, null, message);
     }
 
     @Override
@@ -97,32 +150,36 @@ public class BrokerApp extends MessageCracker implements Application, SimulatorA
             throws FieldNotFound, IncorrectDataFormat, IncorrectTagValue, UnsupportedMessageType {
 
         String msgType = message.getHeader().getString(MsgType.FIELD);
-        messagePublisher.publishMessage("Broker received 35=" + msgType + " " + pretty(message));
-        // Try to satisfy expected inbound (D/G/F) when waiting
-        Message expected = this.expectedInbound;
-        CountDownLatch latch = this.expectedLatch;
-        if (expected != null && latch != null) {
-
-            if (matchesExpected(expected, message)) {
-                System.out.println("[MATCH] Expected inbound satisfied.");
-                latch.countDown();
-                this.clearExpectedInbound();
-            } else {
-                System.out.println("[NO_MATCH_FOUND]");
-            }
+        messagePublisher.publishEvent(SOURCE, MessageDirection.RECEIVED, sessionID, msgType, null, message);
+        // Try to satisfy a pending expectation (D/G/F); unmatched messages are kept for later steps
+        if (expectations.onInbound(message)) {
+            log.info("[MATCH] Expected inbound satisfied.");
+        } else {
+            log.info("[NO_MATCH_FOUND]");
         }
         crack(message, sessionID);
     }
 
     public void onMessage(quickfix.fix44.NewOrderSingle order, SessionID sessionID)
             throws FieldNotFound, UnsupportedMessageType, IncorrectTagValue {
-        System.out.println("[BROKER] Received NewOrderSingle. Sending ExecutionReport...");
+        long received = System.nanoTime();
+        if (engine != null) {
+            engine.newOrder(sessionID, order.getClOrdID().getValue(), optional(order, 526), order.getSymbol().getValue(),
+                    order.getSide().getValue(), order.getOrdType().getValue(),
+                    order.isSetField(TimeInForce.FIELD) ? order.getTimeInForce().getValue() : TimeInForce.DAY,
+                    MatchingEngine.toQuantity(order.getOrderQty().getValue()),
+                    order.isSetField(Price.FIELD) ? MatchingEngine.toTicks(order.getPrice().getValue()) : 0);
+            latency.record(Hop.BROKER_TURNAROUND, sessionID, MsgType.ORDER_SINGLE, System.nanoTime() - received);
+            return;
+        }
+        log.info("[BROKER] Received NewOrderSingle. Sending ExecutionReport...");
 
         // Construct Execution Report using setters to avoid constructor signature
         // issues
         ExecutionReport execReport = new ExecutionReport();
-        execReport.set(new quickfix.field.OrderID("ORD" + System.currentTimeMillis()));
-        execReport.set(new quickfix.field.ExecID("EXEC" + System.currentTimeMillis()));
+        long id = ids.incrementAndGet();
+        execReport.set(new quickfix.field.OrderID("ORD" + id));
+        execReport.set(new quickfix.field.ExecID("EXEC" + id));
         execReport.set(new quickfix.field.ExecType(quickfix.field.ExecType.NEW));
         execReport.set(new quickfix.field.OrdStatus(quickfix.field.OrdStatus.NEW));
         execReport.set(order.getSymbol());
@@ -138,49 +195,141 @@ public class BrokerApp extends MessageCracker implements Application, SimulatorA
 
         try {
             Session.sendToTarget(execReport, sessionID);
+            latency.record(Hop.BROKER_TURNAROUND, sessionID, MsgType.ORDER_SINGLE, System.nanoTime() - received);
         } catch (SessionNotFound e) {
-            e.printStackTrace();
+            log.error("[BROKER] Could not send ExecutionReport: " + e.getMessage(), e);
+        }
+    }
+
+    public void onMessage(quickfix.fix44.OrderCancelRequest request, SessionID sessionID)
+            throws FieldNotFound, UnsupportedMessageType, IncorrectTagValue {
+        if (engine == null) {
+            throw new UnsupportedMessageType();
+        }
+        long received = System.nanoTime();
+        engine.cancel(sessionID, request.getClOrdID().getValue(), request.getOrigClOrdID().getValue(),
+                optional(request, 526));
+        latency.record(Hop.BROKER_TURNAROUND, sessionID, MsgType.ORDER_CANCEL_REQUEST, System.nanoTime() - received);
+    }
+
+    public void onMessage(quickfix.fix44.OrderCancelReplaceRequest request, SessionID sessionID)
+            throws FieldNotFound, UnsupportedMessageType, IncorrectTagValue {
+        if (engine == null) {
+            throw new UnsupportedMessageType();
         }
+        long received = System.nanoTime();
+        engine.replace(sessionID, request.getClOrdID().getValue(), request.getOrigClOrdID().getValue(),
+                optional(request, 526), MatchingEngine.toQuantity(request.getOrderQty().getValue()),
+                request.isSetField(Price.FIELD) ? MatchingEngine.toTicks(request.getPrice().getValue()) : 0);
+        latency.record(Hop.BROKER_TURNAROUND, sessionID, MsgType.ORDER_CANCEL_REPLACE_REQUEST,
+                System.nanoTime() - received);
     }
 
     public void onMessage(ExecutionReport report, SessionID sessionID) {
     }
 
-    private boolean matchesExpected(Message expected, Message actual) {
-        try {
-            System.out.println("EXPECTED: " + expected);
-            System.out.println("ACTUAL: " + actual);
-            String expType = expected.getHeader().getString(MsgType.FIELD);
-            String actType = actual.getHeader().getString(MsgType.FIELD);
-
-            if (!expType.equals(actType))
-                return false;
-            // multiple tags can be added as comma separated values
-            int[] mandatoryTags = new int[] {
-                    526
-            };
-
-            for (int tag : mandatoryTags) {
-                if (expected.isSetField(tag)) {
-                    String actualValue = null;
-                    if (actual.isSetField(526)) {
-                        String val526 = actual.getString(526);
-                        actualValue = val526.contains("-") ? val526.substring(val526.lastIndexOf("-") + 1) : val526;
-                    } else if (actual.isSetField(tag)) {
-                        actualValue = actual.getString(tag);
-                    }
-                    if (actualValue == null || !expected.getString(tag).equals(actualValue)) {
-                        return false;
-                    }
-                }
+    boolean matchesExpected(Message expected, Message actual) {
+        return matches(matchRules, expected, actual);
+    }
+
+    private static boolean matches(MatchRules rules, Message expected, Message actual) {
+        log.debug("EXPECTED: {}", expected);
+        log.debug("ACTUAL: {}", actual);
+        return rules.test(expected, actual);
+    }
+
+    private static String optional(FieldMap message, int tag) throws FieldNotFound {
+        return message.isSetField(tag) ? message.getString(tag) : null;
+    }
+
+    /**
+     * Turns engine events into ExecutionReports and OrderCancelRejects for the order's session.
+     */
+    private final class ReportSender implements ExecutionListener {
+
+        @Override
+        public void onNew(Order order) {
+            send(report(order, ExecType.NEW, OrdStatus.NEW), order.session());
+        }
+
+        @Override
+        public void onFill(Order order, long lastQty, long lastPxTicks) {
+            ExecutionReport report = report(order, ExecType.TRADE,
+                    order.leaves() == 0 ? OrdStatus.FILLED : OrdStatus.PARTIALLY_FILLED);
+            report.set(new LastQty(lastQty));
+            report.set(new LastPx(MatchingEngine.toPrice(lastPxTicks)));
+            send(report, order.session());
+        }
+
+        @Override
+        public void onCanceled(Order order) {
+            send(report(order, ExecType.CANCELED, OrdStatus.CANCELED), order.session());
+        }
+
+        @Override
+        public void onReplaced(Order order) {
+            send(report(order, ExecType.REPLACED, order.cumQty() > 0 ? OrdStatus.PARTIALLY_FILLED : OrdStatus.NEW),
+                    order.session());
+        }
+
+        @Override
+        public void onRejected(Order order, String reason) {
+            ExecutionReport report = report(order, ExecType.REJECTED, OrdStatus.REJECTED);
+            report.set(new Text(reason));
+            send(report, order.session());
+        }
+
+        @Override
+        public void onCancelRejected(SessionID session, String clOrdId, String origClOrdId, String secondaryClOrdId,
+                boolean replace, String reason) {
+            OrderCancelReject reject = new OrderCancelReject();
+            reject.set(new OrderID("NONE"));
+            reject.set(new ClOrdID(clOrdId));
+            reject.set(new OrigClOrdID(origClOrdId));
+            reject.set(new OrdStatus(OrdStatus.REJECTED));
+            reject.set(new CxlRejResponseTo(replace
+                    ? CxlRejResponseTo.ORDER_CANCEL_REPLACE_REQUEST
+                    : CxlRejResponseTo.ORDER_CANCEL_REQUEST));
+            reject.set(new CxlRejReason(CxlRejReason.UNKNOWN_ORDER));
+            reject.set(new Text(reason));
+            if (secondaryClOrdId != null) {
+                reject.setString(526, secondaryClOrdId);
             }
-            return true;
-        } catch (Exception e) {
-            return false;
+            send(reject, session);
         }
-    }
 
-    private String pretty(Message m) {
-        return m.toString().replace('\u0001', '|');
+        private ExecutionReport report(Order order, char execType, char ordStatus) {
+            ExecutionReport report = new ExecutionReport();
+            report.set(new OrderID(String.valueOf(order.id())));
+            report.set(new ExecID(String.valueOf(engine.nextExecId())));
+            report.set(new ExecType(execType));
+            report.set(new OrdStatus(ordStatus));
+            report.set(new Symbol(order.symbol()));
+            report.set(new Side(order.side()));
+            report.set(new OrdType(order.ordType()));
+            report.set(new OrderQty(order.quantity()));
+            if (order.ordType() == OrdType.LIMIT) {
+                report.set(new Price(MatchingEngine.toPrice(order.priceTicks())));
+            }
+            report.set(new LeavesQty(order.leaves()));
+            report.set(new CumQty(order.cumQty()));
+            report.set(new AvgPx(order.avgPx()));
+            report.set(new ClOrdID(order.clOrdId()));
+            if (order.origClOrdId() != null) {
+                report.set(new OrigClOrdID(order.origClOrdId()));
+            }
+            if (order.secondaryClOrdId() != null) {
+                report.setString(526, order.secondaryClOrdId());
+            }
+            return report;
+        }
+
+        private void send(Message message, SessionID sessionID) {
+            try {
+                Session.sendToTarget(message, sessionID);
+            } catch (SessionNotFound e) {
+                log.error("[BROKER] Session {} not found for report", sessionID, e);
+            }
+        }
     }
 }
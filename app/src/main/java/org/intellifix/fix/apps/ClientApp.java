@@ -1,24 +1,76 @@
 package org.intellifix.fix.apps;
 
 import lombok.extern.slf4j.Slf4j;
+import org.intellifix.fix.base.Expectation;
+import org.intellifix.fix.base.ExpectationRegistry;
+import org.intellifix.fix.base.MatchRules;
 import org.intellifix.fix.base.SimulatorAppBase;
+import org.intellifix.fix.model.MessageDirection;
+import org.intellifix.metrics.LatencyRecorder;
 import org.intellifix.redis.base.MessagePublisher;
 import quickfix.*;
+import quickfix.field.ClOrdID;
 import quickfix.field.MsgType;
 import quickfix.fix44.ExecutionReport;
-import java.util.concurrent.CountDownLatch;
 
 @Slf4j
 public class ClientApp extends MessageCracker implements Application, SimulatorAppBase {
 
+    /** Session setting naming the simulation; prefixed to every ClOrdID and published with each message. */
+    public static final String SIM_ID = "SimId";
+    private static final String DEFAULT_SIM_ID = "sim1";
+    private static final String SOURCE = "Client";
+    /** Built-in {@link MatchRules}: 11 after the client's prefix, when the inbound message has one. */
+    public static final String DEFAULT_MATCH_RULES = "* 11 suffix?";
+
     private volatile SessionID activeSession;
     private volatile boolean loggedOn = false;
-    private volatile Message expectedInbound = null;
-    private volatile CountDownLatch expectedLatch = null;
+    private final ExpectationRegistry expectations;
     private MessagePublisher messagePublisher;
+    private final LatencyRecorder latency;
+    private final String simId;
+    private final MatchRules matchRules;
+    private volatile long scheduledSendNanos;
 
     public ClientApp(SessionSettings settings, DataDictionary dd, MessagePublisher messagePublisher) {
+        this(settings, dd, messagePublisher, new LatencyRecorder());
+    }
+
+    public ClientApp(SessionSettings settings, DataDictionary dd, MessagePublisher messagePublisher,
+            LatencyRecorder latency) {
         this.messagePublisher = messagePublisher;
+        this.latency = latency;
+        this.simId = simId(settings);
+        MatchRules rules = matchRules(settings);
+        this.matchRules = rules;
+        // the matcher takes the rules rather than this, which is not fully constructed yet
+        this.expectations = new ExpectationRegistry(ClOrdID.FIELD, rules,
+                ExpectationRegistry.DEFAULT_EARLY_CAPACITY, (expected, actual) -> matches(rules, expected, actual));
+    }
+
+    private static String simId(SessionSettings settings) {
+        try {
+            return settings != null && settings.isSetting(SIM_ID) ? settings.getString(SIM_ID) : DEFAULT_SIM_ID;
+        } catch (ConfigError e) {
+            return DEFAULT_SIM_ID;
+        }
+    }
+
+    private static MatchRules matchRules(SessionSettings settings) {
+        try {
+            return MatchRules.fromSettings(settings, DEFAULT_MATCH_RULES);
+        } catch (ConfigError e) {
+            throw new IllegalArgumentException(e.getMessage(), e);
+        }
+    }
+
+    public LatencyRecorder latency() {
+        return latency;
+    }
+
+    @Override
+    public void scheduleNextSend(long intendedNanos) {
+        this.scheduledSendNanos = intendedNanos;
     }
 
     public void awaitLogon(long timeoutSeconds) throws InterruptedException {
@@ -30,14 +82,14 @@ public class ClientApp extends MessageCracker implements Application, SimulatorA
             throw new RuntimeException("Logon not completed within timeout");
     }
 
-    public void setExpectedInbound(Message expected, CountDownLatch latch) {
-        this.expectedInbound = expected;
-        this.expectedLatch = latch;
+    @Override
+    public void expect(Expectation expectation) {
+        expectations.expect(expectation);
     }
 
-    public void clearExpectedInbound() {
-        this.expectedInbound = null;
-        this.expectedLatch = null;
+    @Override
+    public void cancel(Expectation expectation) {
+        expectations.cancel(expectation);
     }
 
     public boolean isLoggedOn() {
@@ -96,10 +148,10 @@ public class ClientApp extends MessageCracker implements Application, SimulatorA
         if (msgType.equals(MsgType.ORDER_SINGLE) || msgType.equals(MsgType.ORDER_CANCEL_REPLACE_REQUEST)
                 || msgType.equals(MsgType.ORDER_CANCEL_REQUEST)) {
             updatedClientOrderIdForHub(message);
+            markSent(message, msgType);
         }
 
-        messagePublisher
-                .publishMessage("Client sent 35=" + msgType + " " + pretty(message));
+        messagePublisher.publishEvent(SOURCE, MessageDirection.SENT, sessionID, msgType, simId, message);
     }
 
     @Override
@@ -107,25 +159,32 @@ public class ClientApp extends MessageCracker implements Application, SimulatorA
             throws FieldNotFound, IncorrectDataFormat, IncorrectTagValue, UnsupportedMessageType {
 
         String msgType = message.getHeader().getString(MsgType.FIELD);
-        messagePublisher.publishMessage("Client received 35=" + msgType + " " + pretty(message));
-
-        Message expected = this.expectedInbound;
-        CountDownLatch latch = this.expectedLatch;
-
-        if (expected != null && latch != null) {
-            if (matchesExpected(expected, message)) {
-                log.info("[MATCH] Expected inbound satisfied.");
-                latch.countDown();
-            } else {
-                System.out.println("[NO_MATCH_FOUND]");
-            }
+        if (MsgType.EXECUTION_REPORT.equals(msgType) && message.isSetField(ClOrdID.FIELD)) {
+            latency.recordReply(sessionID, message.getString(ClOrdID.FIELD), System.nanoTime());
+        }
+        messagePublisher.publishEvent(SOURCE, MessageDirection.RECEIVED, sessionID, msgType, simId, message);
+
+        if (expectations.onInbound(message)) {
+            log.info("[MATCH] Expected inbound satisfied.");
+        } else {
+            log.info("[NO_MATCH_FOUND]");
         }
         crack(message, sessionID);
     }
 
+    // paced runs measure from the scheduled send time so that sender stalls count as latency
+    private void markSent(Message message, String msgType) {
+        long scheduled = scheduledSendNanos;
+        scheduledSendNanos = 0;
+        try {
+            latency.markSent(message.getString(ClOrdID.FIELD), msgType, scheduled != 0 ? scheduled : System.nanoTime());
+        } catch (FieldNotFound e) {
+            // nothing to correlate the reply with
+        }
+    }
+
     private void updatedClientOrderIdForHub(Message message) {
         String msgType = null;
-        String simId = "sim1";
         try {
             msgType = message.getHeader().getString(MsgType.FIELD);
             String clientOrderID = message.getString(11);
@@ -141,50 +200,13 @@ public class ClientApp extends MessageCracker implements Application, SimulatorA
     public void onMessage(ExecutionReport report, SessionID sessionID) {
     }
 
-    private boolean matchesExpected(Message expected, Message actual) {
-        try {
-            System.out.println("EXPECTED: "+expected);
-            System.out.println("ACTUAL: "+actual);
-            String expType = expected.getHeader().getString(MsgType.FIELD);
-            String actType = actual.getHeader().getString(MsgType.FIELD);
-            if (!expType.equals(actType))
-                return false;
-
-            // multiple tags can be added as comma separated values
-            int[] mandatoryTags = new int[] {
-                    11
-            };
-
-            for (int tag : mandatoryTags) {
-                if (tag == 11) {
-                    // tag 11 validation
-                    String expectedVal11 = expected.getString(11);
-                    String actualVal11 = null;
-                    if (actual.isSetField(11)) {
-                        String val11 = actual.getString(11);
-                        actualVal11 = val11.contains("-") ? val11.substring(val11.lastIndexOf("-") + 1) : val11;
-                    }
-                    if (actualVal11 != null) {
-                        if (!expectedVal11.equals(actualVal11))
-                            return false;
-                    }
-                } else if (expected.isSetField(tag)) {
-                    // other tags validation
-                    if (!actual.isSetField(tag))
-                        return false;
-                    String ev = expected.getString(tag);
-                    String av = actual.getString(tag);
-                    if (!ev.equals(av))
-                        return false;
-                }
-            }
-            return true;
-        } catch (Exception e) {
-            return false;
-        }
+    boolean matchesExpected(Message expected, Message actual) {
+        return matches(matchRules, expected, actual);
     }
 
-    private String pretty(Message m) {
-        return m.toString().replace('\u0001', '|');
+    private static boolean matches(MatchRules rules, Message expected, Message actual) {
+        log.debug("EXPECTED: {}", expected);
+        log.debug("ACTUAL: {}", actual);
+        return rules.test(expected, actual);
     }
 }
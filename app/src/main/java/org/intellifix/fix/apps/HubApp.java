@@ -1,53 +1,113 @@
 package org.intellifix.fix.apps;
 
 import lombok.extern.slf4j.Slf4j;
-import org.intellifix.redis.base.MessagePublisher;
+import org.intellifix.fix.hub.ClOrdIdGenerator;
+import org.intellifix.fix.hub.ClOrdIdStore;
+import org.intellifix.fix.hub.ForwardQueue;
+import org.intellifix.fix.hub.HubPipeline;
+import org.intellifix.fix.hub.HubRouter;
+import org.intellifix.fix.hub.StoreAndForward;
+import org.intellifix.fix.model.ForwardMode;
+import org.intellifix.fix.model.StoreForwardConfig;
+import org.intellifix.metrics.Hop;
+import org.intellifix.metrics.LatencyRecorder;
 import quickfix.*;
+import quickfix.field.ClOrdID;
+import quickfix.field.ExecType;
 import quickfix.field.MsgType;
+import quickfix.field.OrdStatus;
+import quickfix.field.OrigClOrdID;
+import quickfix.field.OrigSendingTime;
+import quickfix.field.PossDupFlag;
+import quickfix.field.PossResend;
 
-import java.util.Map;
-import java.util.Random;
-import java.util.concurrent.ConcurrentHashMap;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Set;
 
 @Slf4j
 public class HubApp extends MessageCracker implements Application {
-    private volatile SessionID clientSession;
-    private volatile SessionID brokerSession;
 
-    private MessagePublisher messagePublisher;
-    private final String clientCompID;
-    private final String brokerCompID;
-    private final Random random = new Random();
-    private final Map<String, String> clOrdIDMap = new ConcurrentHashMap<>();
+    private final HubRouter router;
+    private final ForwardMode forwardMode;
+    private final ClOrdIdGenerator clOrdIdGenerator = new ClOrdIdGenerator();
+    private final ClOrdIdStore clOrdIdStore;
+    private final LatencyRecorder latency = new LatencyRecorder();
+    private final HubPipeline pipeline;
+    private final StoreAndForward storeForward;
 
-    public HubApp(MessagePublisher messagePublisher, String clientCompID, String brokerCompID) {
-        this.messagePublisher = messagePublisher;
-        this.clientCompID = clientCompID;
-        this.brokerCompID = brokerCompID;
+    public HubApp(String clientCompID, String brokerCompID) {
+        this(new HubRouter(Set.of(clientCompID), Set.of(brokerCompID)), ForwardMode.IN_PLACE,
+                new ClOrdIdStore(ClOrdIdStore.DEFAULT_CAPACITY, ClOrdIdStore.DEFAULT_TTL_MILLIS));
+    }
+
+    public HubApp(HubRouter router, ForwardMode forwardMode, ClOrdIdStore clOrdIdStore) {
+        this(router, forwardMode, clOrdIdStore, 0);
+    }
+
+    /**
+     * With a positive {@code pipelineCapacity}, messages are routed and translated on the thread
+     * of the session that received them and sent from a {@link HubPipeline} thread per
+     * destination, through rings of that capacity; otherwise they are sent inline.
+     */
+    public HubApp(HubRouter router, ForwardMode forwardMode, ClOrdIdStore clOrdIdStore,
+            int pipelineCapacity) {
+        this(router, forwardMode, clOrdIdStore, pipelineCapacity, null);
+    }
+
+    /**
+     * With a {@code storeForward} config, messages for a session that is not logged on are held
+     * in a {@link StoreAndForward} queue and sent when it logs on, instead of being dropped.
+     */
+    public HubApp(HubRouter router, ForwardMode forwardMode, ClOrdIdStore clOrdIdStore,
+            int pipelineCapacity, StoreForwardConfig storeForward) {
+        this.router = router;
+        this.forwardMode = forwardMode;
+        this.clOrdIdStore = clOrdIdStore;
+        this.pipeline = pipelineCapacity > 0 ? new HubPipeline(pipelineCapacity, this::send) : null;
+        try {
+            this.storeForward = storeForward != null ? new StoreAndForward(storeForward, this::deliverHeld) : null;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open store-and-forward queues in " + storeForward.directory(), e);
+        }
+    }
+
+    public LatencyRecorder latency() {
+        return latency;
+    }
+
+    /**
+     * Sends what the pipeline still holds and closes the store-and-forward queues.
+     */
+    public void close() {
+        if (pipeline != null) {
+            pipeline.close();
+        }
+        if (storeForward != null) {
+            storeForward.close();
+        }
     }
 
     @Override
     public void onCreate(SessionID sessionID) {
-        System.out.println("[HUB] onCreate: " + sessionID);
+        log.info("[HUB] onCreate: " + sessionID);
     }
 
     @Override
     public void onLogon(SessionID sessionID) {
         log.info("[HUB] onLogon: " + sessionID);
-        if (clientCompID.equals(sessionID.getTargetCompID())) {
-            clientSession = sessionID;
-        } else if (brokerCompID.equals(sessionID.getTargetCompID())) {
-            brokerSession = sessionID;
+        router.onLogon(sessionID);
+        if (storeForward != null) {
+            storeForward.onLogon(sessionID);
         }
     }
 
     @Override
     public void onLogout(SessionID sessionID) {
         log.info("[HUB] onLogout: " + sessionID);
-        if (sessionID.equals(clientSession)) {
-            clientSession = null;
-        } else if (sessionID.equals(brokerSession)) {
-            brokerSession = null;
+        router.onLogout(sessionID);
+        if (storeForward != null) {
+            storeForward.onLogout(sessionID);
         }
     }
 
@@ -69,56 +129,214 @@ public class HubApp extends MessageCracker implements Application {
     public void fromApp(Message message, SessionID sessionID)
             throws FieldNotFound, IncorrectDataFormat, IncorrectTagValue, UnsupportedMessageType {
 
+        long received = System.nanoTime();
         String msgType = message.getHeader().getString(MsgType.FIELD);
-        String sender = sessionID.getSenderCompID();
-        String target = sessionID.getTargetCompID();
 
         log.info("[HUB] Received 35=" + msgType + " from " + sessionID.getTargetCompID());
 
-        if (sessionID.equals(clientSession)) {
-            if (brokerSession != null) {
-                log.info("[HUB] Forwarding to Broker...session:" + brokerSession);
-                String tag11 = message.getString(11);
-                message.setString(526, tag11);
-                String newTag11 = getRunningNumber();
-                clOrdIDMap.put(newTag11, tag11);
-                message.setString(11, newTag11);
-                forward(message, brokerSession);
-            } else {
-                log.info("[HUB] WARN: Broker session not logged on. Cannot forward.");
+        if (router.isClient(sessionID)) {
+            routeToBroker(message, msgType, sessionID, received);
+        } else if (router.isBroker(sessionID)) {
+            routeToClient(message, msgType, sessionID, received);
+        }
+        if (pipeline == null) {
+            latency.record(Hop.HUB_HOP, sessionID, msgType, System.nanoTime() - received);
+        }
+    }
+
+    private void routeToBroker(Message message, String msgType, SessionID clientSession, long received)
+            throws FieldNotFound {
+        // cancel/replace requests follow the original order to the broker that holds it
+        long origHubId = message.isSetField(OrigClOrdID.FIELD)
+                ? clOrdIdStore.idFor(clientSession, message.getString(OrigClOrdID.FIELD))
+                : -1;
+        SessionID heldBy = clOrdIdStore.brokerSessionOf(origHubId);
+        SessionID brokerSession = heldBy != null && router.isLoggedOn(heldBy) ? heldBy : router.route(message);
+        if (brokerSession == null) {
+            String intended = heldBy != null ? heldBy.getTargetCompID() : router.intendedBroker(message);
+            if (storeForward != null && intended != null) {
+                // held untranslated: the hub ClOrdID is issued for the session it finally goes to
+                storeForward.park(intended, ForwardQueue.UNTRANSLATED, clientSession, message);
+                return;
+            }
+            log.info("[HUB] WARN: Broker session not logged on. Cannot forward.");
+            return;
+        }
+        if (storeForward != null && storeForward.parkIfBacklogged(brokerSession.getTargetCompID(),
+                ForwardQueue.UNTRANSLATED, clientSession, message)) {
+            return;
+        }
+        log.info("[HUB] Forwarding to Broker...session:" + brokerSession);
+        prepareForBroker(message, msgType, clientSession, brokerSession, origHubId);
+        forward(message, msgType, clientSession, brokerSession, received);
+    }
+
+    private void prepareForBroker(Message message, String msgType, SessionID clientSession, SessionID brokerSession,
+            long origHubId) throws FieldNotFound {
+        translateToBroker(message, clientSession, brokerSession, origHubId);
+        if (MsgType.ORDER_SINGLE.equals(msgType)) {
+            router.orderOpened(brokerSession);
+        }
+    }
+
+    private void routeToClient(Message message, String msgType, SessionID brokerSession, long received)
+            throws FieldNotFound {
+        SessionID clientSession = translateToClient(message, msgType, brokerSession);
+        if (clientSession == null) {
+            clientSession = router.soleClient();
+        }
+        if (clientSession == null || !router.isLoggedOn(clientSession)) {
+            String intended = clientSession != null ? clientSession.getTargetCompID() : router.soleClientCompID();
+            if (storeForward != null && intended != null) {
+                storeForward.park(intended, ForwardQueue.TRANSLATED, brokerSession, message);
+                return;
             }
-        } else if (sessionID.equals(brokerSession)) {
-            if (clientSession != null) {
-                log.info("[HUB] Forwarding to Client...session: " + clientSession);
-                if (message.isSetField(11)) {
-                    String simulatedClOrdID = clOrdIDMap.get(message.getString(11));
-                    message.setString(11, simulatedClOrdID);
-                    log.info("[HUB] Restored tag 11 to " + simulatedClOrdID);
-                }
-                forward(message, clientSession);
+            log.info("[HUB] WARN: Client session not logged on. Cannot forward.");
+            return;
+        }
+        if (storeForward != null && storeForward.parkIfBacklogged(clientSession.getTargetCompID(),
+                ForwardQueue.TRANSLATED, brokerSession, message)) {
+            return;
+        }
+        log.info("[HUB] Forwarding to Client...session: " + clientSession);
+        forward(message, msgType, brokerSession, clientSession, received);
+    }
+
+    private void translateToBroker(Message message, SessionID clientSession, SessionID brokerSession,
+            long origHubId) throws FieldNotFound {
+        if (!message.isSetField(ClOrdID.FIELD)) {
+            return;
+        }
+        String tag11 = message.getString(ClOrdID.FIELD);
+        message.setString(526, tag11);
+        long hubId = clOrdIdStore.issue(clOrdIdGenerator, tag11, clientSession, brokerSession,
+                System.currentTimeMillis());
+        message.setString(ClOrdID.FIELD, Long.toString(hubId));
+
+        if (message.isSetField(OrigClOrdID.FIELD)) {
+            if (origHubId > 0) {
+                message.setString(OrigClOrdID.FIELD, Long.toString(origHubId));
             } else {
-                log.info("[HUB] WARN: Client session not logged on. Cannot forward.");
+                log.info("[HUB] WARN: No hub ClOrdID for 41=" + message.getString(OrigClOrdID.FIELD));
+            }
+        }
+    }
+
+    /**
+     * Restores the client's 11/41, retires finished orders and returns the client session the
+     * order came from, if it is still known.
+     */
+    private SessionID translateToClient(Message message, String msgType, SessionID brokerSession)
+            throws FieldNotFound {
+        long hubId = message.isSetField(ClOrdID.FIELD)
+                ? ClOrdIdGenerator.parse(message.getString(ClOrdID.FIELD))
+                : -1;
+        SessionID clientSession = clOrdIdStore.clientSessionOf(hubId);
+        restore(message, ClOrdID.FIELD);
+        long origHubId = restore(message, OrigClOrdID.FIELD);
+
+        if (MsgType.EXECUTION_REPORT.equals(msgType)) {
+            if (message.isSetField(OrdStatus.FIELD) && isTerminal(message.getChar(OrdStatus.FIELD))) {
+                clOrdIdStore.complete(hubId);
+                clOrdIdStore.complete(origHubId);
+                router.orderClosed(brokerSession);
+            } else if (message.isSetField(ExecType.FIELD) && message.getChar(ExecType.FIELD) == ExecType.REPLACED) {
+                // the replaced order lives on under the new 11
+                clOrdIdStore.complete(origHubId);
+            }
+        } else if (MsgType.ORDER_CANCEL_REJECT.equals(msgType)) {
+            // the rejected cancel/replace request is done, the original order is not
+            clOrdIdStore.complete(hubId);
+        }
+        return clientSession;
+    }
+
+    private long restore(Message message, int tag) throws FieldNotFound {
+        if (!message.isSetField(tag)) {
+            return -1;
+        }
+        long hubId = ClOrdIdGenerator.parse(message.getString(tag));
+        String clientClOrdId = clOrdIdStore.get(hubId);
+        if (clientClOrdId == null) {
+            log.info("[HUB] WARN: Unknown or expired hub ClOrdID " + tag + "=" + message.getString(tag));
+            return -1;
+        }
+        message.setString(tag, clientClOrdId);
+        log.info("[HUB] Restored tag " + tag + " to " + clientClOrdId);
+        return hubId;
+    }
+
+    private static boolean isTerminal(char ordStatus) {
+        return switch (ordStatus) {
+            case OrdStatus.FILLED, OrdStatus.CANCELED, OrdStatus.REJECTED, OrdStatus.EXPIRED,
+                    OrdStatus.DONE_FOR_DAY -> true;
+            default -> false;
+        };
+    }
+
+    private void forward(Message message, String msgType, SessionID sourceSessionID, SessionID targetSessionID,
+            long received) {
+        if (pipeline != null) {
+            pipeline.submit(sourceSessionID, targetSessionID, message, msgType, received);
+        } else {
+            forward(message, targetSessionID);
+        }
+    }
+
+    // pipeline sender thread: the hub hop then includes the time spent queued
+    private void send(Message message, String msgType, SessionID sourceSessionID, SessionID targetSessionID,
+            long received) {
+        forward(message, targetSessionID);
+        latency.record(Hop.HUB_HOP, sourceSessionID, msgType, System.nanoTime() - received);
+    }
+
+    /*
+     * Store-and-forward drain thread, once the destination has logged on. It stands in for the
+     * source session on the pipeline: that session's own messages for the destination are parked
+     * behind the held ones until the drain ends, so the pair's ring still has one producer at a
+     * time, and held messages leave ahead of them.
+     */
+    private void deliverHeld(SessionID source, Message message, boolean translated, SessionID destination) {
+        try {
+            String msgType = message.getHeader().getString(MsgType.FIELD);
+            if (!translated) {
+                long origHubId = message.isSetField(OrigClOrdID.FIELD)
+                        ? clOrdIdStore.idFor(source, message.getString(OrigClOrdID.FIELD))
+                        : -1;
+                prepareForBroker(message, msgType, source, destination, origHubId);
             }
+            forward(message, msgType, source, destination, System.nanoTime());
+        } catch (FieldNotFound e) {
+            log.error("[HUB] Held message for " + destination + " is missing a field: " + e.getMessage());
         }
     }
 
     private void forward(Message message, SessionID targetSessionID) {
         try {
-            String rawMessage = message.toString();
-            Message forwardMsg = new Message();
-            forwardMsg.fromString(rawMessage, null, false);
+            Message forwardMsg = forwardMode == ForwardMode.REPARSE ? reparse(message) : prepareInPlace(message);
             Session.sendToTarget(forwardMsg, targetSessionID);
         } catch (Exception e) {
-            log.error("[HUB] Error forwarding message: " + e.getMessage());
-            e.printStackTrace();
+            log.error("[HUB] Error forwarding message: " + e.getMessage(), e);
         }
     }
 
-    private String pretty(Message m) {
-        return m.toString().replace('\u0001', '|');
+    /*
+     * The routing fields (11/526) have already been rewritten on the parsed message, and
+     * sendToTarget re-stamps 8/49/56/34/52 for the outbound hop. Only the resend markers that
+     * describe the inbound hop must not leak onto the new session.
+     */
+    private Message prepareInPlace(Message message) {
+        Message.Header header = message.getHeader();
+        header.removeField(PossDupFlag.FIELD);
+        header.removeField(PossResend.FIELD);
+        header.removeField(OrigSendingTime.FIELD);
+        return message;
     }
 
-    private String getRunningNumber() {
-        return "%d%d".formatted(random.nextInt(1000, 10000), System.currentTimeMillis());
+    private Message reparse(Message message) throws InvalidMessage {
+        String rawMessage = message.toString();
+        Message forwardMsg = new Message();
+        forwardMsg.fromString(rawMessage, null, false);
+        return forwardMsg;
     }
 }
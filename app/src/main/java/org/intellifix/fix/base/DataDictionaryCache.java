@@ -0,0 +1,53 @@
+package org.intellifix.fix.base;
+
+import lombok.extern.slf4j.Slf4j;
+import quickfix.ConfigError;
+import quickfix.DataDictionary;
+import quickfix.DefaultSessionFactory;
+
+import java.lang.reflect.Field;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Parsed data dictionaries shared by every simulator in the JVM, keyed by location. A
+ * DataDictionary is read-only once loaded, so one instance can serve any number of sessions.
+ * <p>
+ * Dictionaries come from a {@link DataDictionarySnapshot} when there is one. Each is also handed
+ * to QuickFIX/J's own session factory cache under the same location, so a session configured
+ * with {@code DataDictionary=<location>} does not parse the XML a second time.
+ */
+@Slf4j
+public final class DataDictionaryCache {
+
+    private static final Map<String, DataDictionary> DICTIONARIES = new ConcurrentHashMap<>();
+
+    private DataDictionaryCache() {
+    }
+
+    public static DataDictionary get(String location) throws ConfigError {
+        DataDictionary dd = DICTIONARIES.get(location);
+        if (dd == null) {
+            synchronized (DICTIONARIES) {
+                dd = DICTIONARIES.get(location);
+                if (dd == null) {
+                    dd = DataDictionarySnapshot.load(location);
+                    DICTIONARIES.put(location, dd);
+                    shareWithSessions(location, dd);
+                }
+            }
+        }
+        return dd;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void shareWithSessions(String location, DataDictionary dd) {
+        try {
+            Field cache = DefaultSessionFactory.class.getDeclaredField("dictionaryCache");
+            cache.setAccessible(true);
+            ((Map<String, DataDictionary>) cache.get(null)).putIfAbsent(location, dd);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            log.debug("[DICTIONARY] Session factory cache not shared: {}", e.toString());
+        }
+    }
+}
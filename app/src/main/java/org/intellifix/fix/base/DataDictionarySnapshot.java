@@ -0,0 +1,495 @@
+package org.intellifix.fix.base;
+
+import lombok.extern.slf4j.Slf4j;
+import quickfix.ConfigError;
+import quickfix.DataDictionary;
+import quickfix.FieldType;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Binary snapshots of parsed data dictionaries, so a simulator skips the XML parse on startup.
+ * <p>
+ * DataDictionary offers no way to build one other than parsing XML, so a snapshot is a dump of
+ * its private tables, written and restored by reflection. The tables that only serve the parse
+ * (the DOM of the components) are left out, and the group dictionaries that QuickFIX/J repeats
+ * for every message using a group are stored, and restored, once. A snapshot is named after the
+ * XML's CRC and only read back by the QuickFIX/J version that wrote it; anything else falls back
+ * to the XML.
+ * <p>
+ * {@link #load} writes the snapshot on first use; {@link #main} builds them ahead of time.
+ * Snapshots live in {@code intellifix.dictionary.snapshotDir} (default
+ * {@code build/dictionary-snapshots}); {@code -Dintellifix.dictionary.snapshot=false} disables
+ * them.
+ */
+@Slf4j
+public final class DataDictionarySnapshot {
+
+    private static final String PREFIX = "intellifix.dictionary.";
+    private static final int MAGIC = 0x49464444; // "IFDD"
+    private static final int FORMAT = 1;
+    private static final String SUFFIX = ".ddsnap";
+    // only needed while parsing, and holds on to the whole DOM
+    private static final String COMPONENTS = "components";
+
+    private static final int NULL = 0;
+    private static final int STRING = 1;
+    private static final int STRING_REF = 2;
+    private static final int INTEGER = 3;
+    private static final int TRUE = 4;
+    private static final int FALSE = 5;
+    private static final int FIELD_TYPE = 6;
+    private static final int INT_ARRAY = 7;
+    private static final int HASH_SET = 8;
+    private static final int LINKED_HASH_SET = 9;
+    private static final int HASH_MAP = 10;
+    private static final int INTEGER_STRING_MAP = 11;
+    private static final int STRING_INTEGER_MAP = 12;
+    private static final int GROUP_INFO = 13;
+    private static final int DICTIONARY = 14;
+    private static final int DICTIONARY_REF = 15;
+
+    private static final Field[] FIELDS;
+    private static final String SIGNATURE;
+    private static final String QFJ_VERSION;
+    private static final Constructor<DataDictionary> NEW_DICTIONARY;
+    private static final Constructor<?> NEW_GROUP_INFO;
+    private static final Constructor<?> NEW_INTEGER_STRING_MAP;
+    private static final Constructor<?> NEW_STRING_INTEGER_MAP;
+    private static final Class<?> INTEGER_STRING_MAP_CLASS;
+    private static final Class<?> STRING_INTEGER_MAP_CLASS;
+    private static final FieldType[] FIELD_TYPES = FieldType.values();
+
+    static {
+        List<Field> fields = new ArrayList<>();
+        for (Field field : DataDictionary.class.getDeclaredFields()) {
+            if (!Modifier.isStatic(field.getModifiers()) && !field.getName().equals(COMPONENTS)) {
+                fields.add(field);
+            }
+        }
+        fields.sort(Comparator.comparing(Field::getName));
+        FIELDS = fields.toArray(new Field[0]);
+        StringBuilder signature = new StringBuilder();
+        for (Field field : FIELDS) {
+            signature.append(field.getName()).append(':').append(field.getType().getName()).append(';');
+        }
+        SIGNATURE = signature.toString();
+        String version = DataDictionary.class.getPackage().getImplementationVersion();
+        QFJ_VERSION = version == null ? "unknown" : version;
+
+        Constructor<DataDictionary> newDictionary = null;
+        Constructor<?> newGroupInfo = null;
+        Constructor<?> newIntegerStringMap = null;
+        Constructor<?> newStringIntegerMap = null;
+        try {
+            for (Field field : FIELDS) {
+                field.setAccessible(true);
+            }
+            newDictionary = DataDictionary.class.getDeclaredConstructor();
+            newDictionary.setAccessible(true);
+            newGroupInfo = DataDictionary.GroupInfo.class.getDeclaredConstructor(int.class, DataDictionary.class);
+            newGroupInfo.setAccessible(true);
+            newIntegerStringMap = Class.forName("quickfix.DataDictionary$IntegerStringMap").getDeclaredConstructor();
+            newIntegerStringMap.setAccessible(true);
+            newStringIntegerMap = Class.forName("quickfix.DataDictionary$StringIntegerMap").getDeclaredConstructor();
+            newStringIntegerMap.setAccessible(true);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            log.warn("[DICTIONARY] Snapshots unavailable for this QuickFIX/J version: {}", e.toString());
+            newDictionary = null;
+        }
+        NEW_DICTIONARY = newDictionary;
+        NEW_GROUP_INFO = newGroupInfo;
+        NEW_INTEGER_STRING_MAP = newIntegerStringMap;
+        NEW_STRING_INTEGER_MAP = newStringIntegerMap;
+        INTEGER_STRING_MAP_CLASS = newIntegerStringMap == null ? null : newIntegerStringMap.getDeclaringClass();
+        STRING_INTEGER_MAP_CLASS = newStringIntegerMap == null ? null : newStringIntegerMap.getDeclaringClass();
+    }
+
+    private DataDictionarySnapshot() {
+    }
+
+    /**
+     * Builds snapshots for the given dictionaries: {@code DataDictionarySnapshot <xml>...}.
+     */
+    public static void main(String[] args) throws Exception {
+        for (String location : args) {
+            byte[] xml = readXml(location);
+            Path snapshot = snapshotPath(location, xml);
+            long started = System.nanoTime();
+            write(new DataDictionary(new ByteArrayInputStream(xml)), snapshot);
+            log.info("[DICTIONARY] {} -> {} ({} bytes) in {} ms", location, snapshot, Files.size(snapshot),
+                    (System.nanoTime() - started) / 1_000_000);
+        }
+    }
+
+    /**
+     * Loads a dictionary from its snapshot if there is a current one, otherwise from the XML,
+     * writing the snapshot for next time.
+     */
+    public static DataDictionary load(String location) throws ConfigError {
+        byte[] xml = readXml(location);
+        if (!enabled()) {
+            return new DataDictionary(new ByteArrayInputStream(xml));
+        }
+        Path snapshot = snapshotPath(location, xml);
+        if (Files.exists(snapshot)) {
+            try {
+                long started = System.nanoTime();
+                DataDictionary dd = read(snapshot);
+                log.info("[DICTIONARY] Loaded {} from snapshot in {} us", location,
+                        (System.nanoTime() - started) / 1000);
+                return dd;
+            } catch (IOException | RuntimeException e) {
+                log.warn("[DICTIONARY] Ignoring snapshot {}: {}", snapshot, e.toString());
+            }
+        }
+        DataDictionary dd = new DataDictionary(new ByteArrayInputStream(xml));
+        try {
+            write(dd, snapshot);
+            log.info("[DICTIONARY] Wrote snapshot {}", snapshot);
+        } catch (IOException | RuntimeException e) {
+            log.warn("[DICTIONARY] Could not write snapshot {}: {}", snapshot, e.toString());
+        }
+        return dd;
+    }
+
+    static boolean enabled() {
+        return NEW_DICTIONARY != null
+                && Boolean.parseBoolean(System.getProperty(PREFIX + "snapshot", "true"));
+    }
+
+    /**
+     * Snapshot file for the dictionary XML {@code xml} read from {@code location}.
+     */
+    public static Path snapshotPath(String location, byte[] xml) {
+        CRC32 crc = new CRC32();
+        crc.update(xml);
+        String name = Path.of(location).getFileName().toString().replaceFirst("\\.xml$", "");
+        return Path.of(System.getProperty(PREFIX + "snapshotDir", "build/dictionary-snapshots"))
+                .resolve(name + "-" + Long.toHexString(crc.getValue()) + SUFFIX);
+    }
+
+    /**
+     * Reads the XML the way DataDictionary does: a file, else a class path resource.
+     */
+    public static byte[] readXml(String location) throws ConfigError {
+        try {
+            Path path = Path.of(location);
+            if (Files.isRegularFile(path)) {
+                return Files.readAllBytes(path);
+            }
+            ClassLoader loader = Thread.currentThread().getContextClassLoader();
+            if (loader == null || loader.getResource(location) == null) {
+                loader = DataDictionary.class.getClassLoader();
+            }
+            try (InputStream in = loader.getResourceAsStream(location)) {
+                if (in == null) {
+                    throw new ConfigError("Could not find data dictionary: " + location);
+                }
+                return in.readAllBytes();
+            }
+        } catch (IOException e) {
+            throw new ConfigError("Could not read data dictionary " + location + ": " + e.getMessage());
+        }
+    }
+
+    public static void write(DataDictionary dd, Path snapshot) throws IOException {
+        if (NEW_DICTIONARY == null) {
+            throw new IOException("Snapshots unavailable for this QuickFIX/J version");
+        }
+        Files.createDirectories(snapshot.toAbsolutePath().getParent());
+        Path tmp = Files.createTempFile(snapshot.toAbsolutePath().getParent(), snapshot.getFileName().toString(),
+                ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT);
+                out.writeUTF(QFJ_VERSION);
+                out.writeUTF(SIGNATURE);
+                new Writer(out).value(dd);
+            }
+            // readers never see a partial file
+            Files.move(tmp, snapshot, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    public static DataDictionary read(Path snapshot) throws IOException {
+        if (NEW_DICTIONARY == null) {
+            throw new IOException("Snapshots unavailable for this QuickFIX/J version");
+        }
+        try (FileChannel channel = FileChannel.open(snapshot)) {
+            ByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            Reader reader = new Reader(in);
+            if (in.getInt() != MAGIC || in.getInt() != FORMAT) {
+                throw new IOException("Not a dictionary snapshot");
+            }
+            String version = reader.utf();
+            if (!version.equals(QFJ_VERSION) || !reader.utf().equals(SIGNATURE)) {
+                throw new IOException("Snapshot written by QuickFIX/J " + version + ", running " + QFJ_VERSION);
+            }
+            if (!(reader.value() instanceof DataDictionary dd)) {
+                throw new IOException("Snapshot holds no dictionary");
+            }
+            return dd;
+        } catch (ReflectiveOperationException | ClassCastException | IndexOutOfBoundsException
+                | BufferUnderflowException e) {
+            throw new IOException("Corrupt dictionary snapshot " + snapshot, e);
+        }
+    }
+
+    private static final class Writer {
+
+        private final DataOutputStream out;
+        private final Map<String, Integer> strings = new HashMap<>();
+        // keyed by the dictionary's own encoding, so equal content means equal keys
+        private final Map<ByteBuffer, Integer> dictionaries = new HashMap<>();
+
+        Writer(DataOutputStream out) {
+            this.out = out;
+        }
+
+        void value(Object value) throws IOException {
+            try {
+                write(value);
+            } catch (IllegalAccessException e) {
+                throw new IOException(e);
+            }
+        }
+
+        private void write(Object value) throws IOException, IllegalAccessException {
+            if (value == null) {
+                out.writeByte(NULL);
+            } else if (value instanceof String s) {
+                Integer index = strings.get(s);
+                if (index != null) {
+                    out.writeByte(STRING_REF);
+                    out.writeInt(index);
+                } else {
+                    strings.put(s, strings.size());
+                    out.writeByte(STRING);
+                    byte[] utf8 = s.getBytes(StandardCharsets.UTF_8);
+                    out.writeInt(utf8.length);
+                    out.write(utf8);
+                }
+            } else if (value instanceof Integer i) {
+                out.writeByte(INTEGER);
+                out.writeInt(i);
+            } else if (value instanceof Boolean b) {
+                out.writeByte(b ? TRUE : FALSE);
+            } else if (value instanceof FieldType type) {
+                out.writeByte(FIELD_TYPE);
+                out.writeInt(type.ordinal());
+            } else if (value instanceof int[] ints) {
+                out.writeByte(INT_ARRAY);
+                out.writeInt(ints.length);
+                for (int i : ints) {
+                    out.writeInt(i);
+                }
+            } else if (value instanceof DataDictionary dd) {
+                ByteBuffer key = ByteBuffer.wrap(encode(dd));
+                Integer index = dictionaries.get(key);
+                if (index != null) {
+                    out.writeByte(DICTIONARY_REF);
+                    out.writeInt(index);
+                    return;
+                }
+                out.writeByte(DICTIONARY);
+                for (Field field : FIELDS) {
+                    write(field.get(dd));
+                }
+                dictionaries.put(key, dictionaries.size());
+            } else if (value instanceof DataDictionary.GroupInfo group) {
+                out.writeByte(GROUP_INFO);
+                out.writeInt(group.getDelimiterField());
+                write(group.getDataDictionary());
+            } else if (value.getClass() == LinkedHashSet.class || value.getClass() == HashSet.class) {
+                Collection<?> set = (Collection<?>) value;
+                out.writeByte(value.getClass() == HashSet.class ? HASH_SET : LINKED_HASH_SET);
+                out.writeInt(set.size());
+                for (Object element : set) {
+                    write(element);
+                }
+            } else if (value instanceof HashMap<?, ?> map) {
+                out.writeByte(mapTag(map));
+                out.writeInt(map.size());
+                for (Map.Entry<?, ?> entry : map.entrySet()) {
+                    write(entry.getKey());
+                    write(entry.getValue());
+                }
+            } else {
+                throw new IOException("Unsupported dictionary value " + value.getClass().getName());
+            }
+        }
+
+        private static byte[] encode(DataDictionary dd) throws IOException, IllegalAccessException {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            Writer writer = new Writer(new DataOutputStream(bytes));
+            for (Field field : FIELDS) {
+                writer.write(field.get(dd));
+            }
+            writer.out.flush();
+            return bytes.toByteArray();
+        }
+
+        private static int mapTag(HashMap<?, ?> map) throws IOException {
+            if (map.getClass() == HashMap.class) {
+                return HASH_MAP;
+            } else if (map.getClass() == INTEGER_STRING_MAP_CLASS) {
+                return INTEGER_STRING_MAP;
+            } else if (map.getClass() == STRING_INTEGER_MAP_CLASS) {
+                return STRING_INTEGER_MAP;
+            }
+            throw new IOException("Unsupported dictionary map " + map.getClass().getName());
+        }
+    }
+
+    private static final class Reader {
+
+        private final ByteBuffer in;
+        private final List<String> strings = new ArrayList<>();
+        private final List<DataDictionary> dictionaries = new ArrayList<>();
+        private byte[] chars = new byte[256];
+
+        Reader(ByteBuffer in) {
+            this.in = in;
+        }
+
+        String utf() {
+            int length = in.getShort() & 0xFFFF;
+            return string(length);
+        }
+
+        Object value() throws ReflectiveOperationException, IOException {
+            return value(null);
+        }
+
+        /**
+         * Reads a value; collections are filled into {@code reuse} when it is an empty one of the
+         * same class, as the fields of a new DataDictionary are.
+         */
+        @SuppressWarnings("unchecked")
+        private Object value(Object reuse) throws ReflectiveOperationException, IOException {
+            int tag = in.get();
+            switch (tag) {
+                case NULL:
+                    return null;
+                case STRING: {
+                    String s = string(in.getInt());
+                    strings.add(s);
+                    return s;
+                }
+                case STRING_REF:
+                    return strings.get(in.getInt());
+                case INTEGER:
+                    return in.getInt();
+                case TRUE:
+                    return Boolean.TRUE;
+                case FALSE:
+                    return Boolean.FALSE;
+                case FIELD_TYPE:
+                    return FIELD_TYPES[in.getInt()];
+                case INT_ARRAY: {
+                    int[] ints = new int[in.getInt()];
+                    for (int i = 0; i < ints.length; i++) {
+                        ints[i] = in.getInt();
+                    }
+                    return ints;
+                }
+                case DICTIONARY: {
+                    DataDictionary dd = NEW_DICTIONARY.newInstance();
+                    for (Field field : FIELDS) {
+                        Object current = field.get(dd);
+                        Object value = value(current);
+                        if (value != current) {
+                            field.set(dd, value);
+                        }
+                    }
+                    dictionaries.add(dd);
+                    return dd;
+                }
+                case DICTIONARY_REF:
+                    return dictionaries.get(in.getInt());
+                case GROUP_INFO: {
+                    int delimiter = in.getInt();
+                    return NEW_GROUP_INFO.newInstance(delimiter, value());
+                }
+                case HASH_SET:
+                case LINKED_HASH_SET: {
+                    int size = in.getInt();
+                    Class<?> type = tag == HASH_SET ? HashSet.class : LinkedHashSet.class;
+                    Collection<Object> set = reusable(reuse, type) ? (Collection<Object>) reuse
+                            : tag == HASH_SET ? new HashSet<>(capacity(size)) : new LinkedHashSet<>(capacity(size));
+                    for (int i = 0; i < size; i++) {
+                        set.add(value());
+                    }
+                    return set;
+                }
+                case HASH_MAP:
+                case INTEGER_STRING_MAP:
+                case STRING_INTEGER_MAP: {
+                    int size = in.getInt();
+                    Class<?> type = switch (tag) {
+                        case INTEGER_STRING_MAP -> INTEGER_STRING_MAP_CLASS;
+                        case STRING_INTEGER_MAP -> STRING_INTEGER_MAP_CLASS;
+                        default -> HashMap.class;
+                    };
+                    Map<Object, Object> map = reusable(reuse, type) ? (Map<Object, Object>) reuse : switch (tag) {
+                        case INTEGER_STRING_MAP -> (Map<Object, Object>) NEW_INTEGER_STRING_MAP.newInstance();
+                        case STRING_INTEGER_MAP -> (Map<Object, Object>) NEW_STRING_INTEGER_MAP.newInstance();
+                        default -> new HashMap<>(capacity(size));
+                    };
+                    for (int i = 0; i < size; i++) {
+                        map.put(value(), value());
+                    }
+                    return map;
+                }
+                default:
+                    throw new IOException("Unknown snapshot tag " + tag + " at " + (in.position() - 1));
+            }
+        }
+
+        private String string(int length) {
+            if (chars.length < length) {
+                chars = Arrays.copyOf(chars, Math.max(length, chars.length * 2));
+            }
+            in.get(chars, 0, length);
+            return new String(chars, 0, length, StandardCharsets.UTF_8);
+        }
+
+        private static boolean reusable(Object reuse, Class<?> type) {
+            return reuse != null && reuse.getClass() == type
+                    && (reuse instanceof Map<?, ?> map ? map.isEmpty() : ((Collection<?>) reuse).isEmpty());
+        }
+
+        private static int capacity(int size) {
+            return (int) (size / 0.75f) + 1;
+        }
+    }
+}
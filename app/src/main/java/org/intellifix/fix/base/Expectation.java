@@ -0,0 +1,51 @@
+package org.intellifix.fix.base;
+
+import quickfix.Message;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * One pending EXPECT_INBOUND step: the expected message, the time by which it must have been
+ * matched, and the inbound message that satisfied it. Completion happens at most once.
+ */
+public final class Expectation {
+
+    private final Message expected;
+    private final long deadlineNanos;
+    private final Runnable onComplete;
+    private final AtomicReference<Message> actual = new AtomicReference<>();
+
+    public Expectation(Message expected, long deadlineNanos, Runnable onComplete) {
+        this.expected = expected;
+        this.deadlineNanos = deadlineNanos;
+        this.onComplete = onComplete;
+    }
+
+    public Message expected() {
+        return expected;
+    }
+
+    public long deadlineNanos() {
+        return deadlineNanos;
+    }
+
+    public boolean isDone() {
+        return actual.get() != null;
+    }
+
+    public boolean isExpired(long nowNanos) {
+        return !isDone() && nowNanos - deadlineNanos >= 0;
+    }
+
+    /**
+     * Marks the expectation as satisfied by {@code message}. Returns {@code false} if it had
+     * already been completed.
+     */
+    public boolean complete(Message message) {
+        if (actual.compareAndSet(null, message)) {
+            onComplete.run();
+            return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,212 @@
+package org.intellifix.fix.base;
+
+import lombok.extern.slf4j.Slf4j;
+import quickfix.FieldNotFound;
+import quickfix.Message;
+import quickfix.field.MsgType;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.function.BiPredicate;
+import java.util.function.Predicate;
+
+/**
+ * Pending expectations and early inbound messages of one simulator, indexed by MsgType and
+ * correlation key.
+ * <p>
+ * The key of a message is its {@code keyTag} as {@link MatchRules#indexKey} normalizes it: the
+ * whole value under an exact rule, the part after the separator under a suffix rule, which
+ * strips the {@code simId-senderCompId-} prefix the client adds to 11. Messages only share a key
+ * when those rules would let them match, so the index never hides a candidate. A message without
+ * a key, because it lacks the tag or the tag is compared some other way, matches any counterpart
+ * of the same MsgType, oldest first, as the single-slot matching did.
+ * <p>
+ * Inbound messages that match nothing are kept in a bounded buffer, oldest evicted first, and
+ * are checked when a later expectation is registered.
+ */
+@Slf4j
+public final class ExpectationRegistry {
+
+    public static final int DEFAULT_EARLY_CAPACITY = 1024;
+
+    private final int keyTag;
+    private final MatchRules keys;
+    private final int earlyCapacity;
+    private final BiPredicate<Message, Message> matcher;
+
+    private final Index<Expectation> pending = new Index<>();
+    private final Index<Message> early = new Index<>();
+    private long earlyEvictions;
+
+    /**
+     * {@code matcher} decides whether two messages match; it is expected to apply {@code keys}.
+     */
+    public ExpectationRegistry(int keyTag, MatchRules keys, int earlyCapacity,
+            BiPredicate<Message, Message> matcher) {
+        this.keyTag = keyTag;
+        this.keys = keys;
+        this.earlyCapacity = earlyCapacity;
+        this.matcher = matcher;
+    }
+
+    /**
+     * Registers an expectation, completing it at once if a matching message already arrived.
+     */
+    public void expect(Expectation expectation) {
+        Message expected = expectation.expected();
+        String msgType = msgType(expected);
+        String key = keys.indexKey(msgType, keyTag, expected);
+        Message arrived;
+        synchronized (this) {
+            arrived = early.poll(msgType, key, m -> matcher.test(expected, m));
+            if (arrived == null) {
+                pending.add(msgType, key, expectation);
+                return;
+            }
+        }
+        log.info("[MATCH] Expected inbound satisfied by an earlier arrival.");
+        expectation.complete(arrived);
+    }
+
+    public synchronized void cancel(Expectation expectation) {
+        pending.remove(expectation);
+    }
+
+    /**
+     * Completes the oldest pending expectation {@code message} satisfies, or buffers the message.
+     * Returns {@code true} if an expectation was completed.
+     */
+    public boolean onInbound(Message message) {
+        String msgType = msgType(message);
+        String key = keys.indexKey(msgType, keyTag, message);
+        Expectation matched;
+        synchronized (this) {
+            matched = pending.poll(msgType, key, e -> matcher.test(e.expected(), message));
+            if (matched == null) {
+                early.add(msgType, key, message);
+                if (early.size() > earlyCapacity) {
+                    early.remove(early.oldest());
+                    earlyEvictions++;
+                }
+                return false;
+            }
+        }
+        return matched.complete(message);
+    }
+
+    public synchronized int pendingCount() {
+        return pending.size();
+    }
+
+    public synchronized int earlyCount() {
+        return early.size();
+    }
+
+    public synchronized long earlyEvictions() {
+        return earlyEvictions;
+    }
+
+    private static String msgType(Message message) {
+        try {
+            return message.getHeader().getString(MsgType.FIELD);
+        } catch (FieldNotFound e) {
+            return "";
+        }
+    }
+
+    /**
+     * Entries by (MsgType, key) plus insertion order per MsgType and overall. Keyless entries sit
+     * under a {@code null} key; every removal is O(1) apart from the short per-key queue.
+     */
+    private static final class Index<T> {
+
+        private final Map<String, Map<String, ArrayDeque<T>>> byKey = new HashMap<>();
+        private final Map<String, LinkedHashSet<T>> byType = new HashMap<>();
+        private final LinkedHashMap<T, Slot> location = new LinkedHashMap<>();
+        private long sequence;
+
+        private record Slot(String msgType, String key, long seq) {
+        }
+
+        void add(String msgType, String key, T item) {
+            byKey.computeIfAbsent(msgType, t -> new HashMap<>()).computeIfAbsent(key, k -> new ArrayDeque<>(2))
+                    .add(item);
+            byType.computeIfAbsent(msgType, t -> new LinkedHashSet<>()).add(item);
+            location.put(item, new Slot(msgType, key, sequence++));
+        }
+
+        /**
+         * Removes and returns the oldest entry matching the (MsgType, key) pair and
+         * {@code accept}. A {@code null} key takes the oldest entry of the MsgType; otherwise the
+         * older of the exact-key and keyless heads wins.
+         */
+        T poll(String msgType, String key, Predicate<T> accept) {
+            T found = null;
+            if (key == null) {
+                LinkedHashSet<T> ofType = byType.get(msgType);
+                found = ofType == null ? null : first(ofType, accept);
+            } else {
+                Map<String, ArrayDeque<T>> keys = byKey.get(msgType);
+                if (keys != null) {
+                    T exact = first(keys.get(key), accept);
+                    T keyless = first(keys.get(null), accept);
+                    found = exact == null || (keyless != null && seq(keyless) < seq(exact)) ? keyless : exact;
+                }
+            }
+            if (found != null) {
+                remove(found);
+            }
+            return found;
+        }
+
+        void remove(T item) {
+            Slot at = location.remove(item);
+            if (at == null) {
+                return;
+            }
+            LinkedHashSet<T> ofType = byType.get(at.msgType());
+            ofType.remove(item);
+            if (ofType.isEmpty()) {
+                byType.remove(at.msgType());
+            }
+            Map<String, ArrayDeque<T>> keys = byKey.get(at.msgType());
+            ArrayDeque<T> queue = keys.get(at.key());
+            queue.remove(item);
+            if (queue.isEmpty()) {
+                keys.remove(at.key());
+                if (keys.isEmpty()) {
+                    byKey.remove(at.msgType());
+                }
+            }
+        }
+
+        T oldest() {
+            return location.keySet().iterator().next();
+        }
+
+        int size() {
+            return location.size();
+        }
+
+        private long seq(T item) {
+            return location.get(item).seq();
+        }
+
+        private static <T> T first(Iterable<T> items, Predicate<T> accept) {
+            if (items == null) {
+                return null;
+            }
+            for (Iterator<T> it = items.iterator(); it.hasNext();) {
+                T item = it.next();
+                if (accept.test(item)) {
+                    return item;
+                }
+            }
+            return null;
+        }
+    }
+}
@@ -0,0 +1,344 @@
+package org.intellifix.fix.base;
+
+import org.intellifix.fix.model.MatchMode;
+import quickfix.ConfigError;
+import quickfix.FieldMap;
+import quickfix.Message;
+import quickfix.SessionSettings;
+import quickfix.field.MsgType;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiPredicate;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * How an inbound message is matched against the expected one, as declarative rules compiled
+ * once into per-MsgType matcher arrays.
+ * <p>
+ * One rule per line, {@code #} starts a comment:
+ * <pre>
+ * # MsgType|*  tag  mode[?]  [argument]
+ * *   11   suffix?          after the last '-' (or the given separator)
+ * 8   44   tolerance 0.01   absolute, for prices and quantities
+ * 8   17   ignore
+ * 8   58   regex ^Fill.*
+ * 8   9999 absent
+ * </pre>
+ * A rule for a MsgType replaces the {@code *} rule for the same tag. Exact, suffix and tolerance
+ * rules only apply when the expected message carries the tag; the actual message must carry it
+ * too unless the mode ends in {@code ?}. Regex, present and absent rules look at the actual
+ * message only. Tags without a rule are not compared, and the MsgTypes must always agree.
+ * <p>
+ * Values are compared in place on the strings the parsed messages already hold: no substrings,
+ * no number parsing into objects, one reused regex matcher per rule. That makes an instance
+ * stateful; an {@link ExpectationRegistry} serializes its calls, so give each registry its own.
+ */
+public final class MatchRules implements BiPredicate<Message, Message> {
+
+    /** Session setting naming a rules file; without it the application's built-in rules apply. */
+    public static final String MATCH_RULES = "MatchRules";
+
+    private static final String ANY_TYPE = "*";
+    private static final int SCALE = 9;
+    private static final long INVALID = Long.MIN_VALUE;
+
+    private final FieldMatcher[] common;
+    private final Map<String, FieldMatcher[]> byType;
+
+    private MatchRules(FieldMatcher[] common, Map<String, FieldMatcher[]> byType) {
+        this.common = common;
+        this.byType = byType;
+    }
+
+    /**
+     * The rules file named by {@code MatchRules}, or {@code defaults} when it is not set.
+     */
+    public static MatchRules fromSettings(SessionSettings settings, String defaults) throws ConfigError {
+        if (settings == null || !settings.isSetting(MATCH_RULES)) {
+            return parse(defaults);
+        }
+        Path path = Path.of(settings.getString(MATCH_RULES));
+        try {
+            return parse(Files.readString(path));
+        } catch (IOException e) {
+            throw new ConfigError("Could not read match rules " + path + ": " + e.getMessage());
+        }
+    }
+
+    public static MatchRules parse(String text) throws ConfigError {
+        Map<String, Map<Integer, FieldMatcher>> rules = new LinkedHashMap<>();
+        int lineNumber = 0;
+        for (String line : text.split("\n")) {
+            lineNumber++;
+            int comment = line.indexOf('#');
+            String rule = (comment < 0 ? line : line.substring(0, comment)).trim();
+            if (rule.isEmpty()) {
+                continue;
+            }
+            String[] parts = rule.split("\\s+", 4);
+            if (parts.length < 3) {
+                throw new ConfigError("Match rule " + lineNumber + " needs a MsgType, a tag and a mode: " + rule);
+            }
+            FieldMatcher matcher = compile(parts, lineNumber);
+            rules.computeIfAbsent(parts[0], t -> new LinkedHashMap<>()).put(matcher.tag, matcher);
+        }
+
+        Map<Integer, FieldMatcher> wildcard = rules.getOrDefault(ANY_TYPE, Map.of());
+        Map<String, FieldMatcher[]> byType = new HashMap<>();
+        for (Map.Entry<String, Map<Integer, FieldMatcher>> entry : rules.entrySet()) {
+            if (entry.getKey().equals(ANY_TYPE)) {
+                continue;
+            }
+            Map<Integer, FieldMatcher> merged = new LinkedHashMap<>();
+            for (FieldMatcher matcher : wildcard.values()) {
+                // regex matchers are stateful, so every MsgType gets its own copy
+                merged.put(matcher.tag, matcher.copy());
+            }
+            merged.putAll(entry.getValue());
+            byType.put(entry.getKey(), withoutIgnored(merged));
+        }
+        return new MatchRules(withoutIgnored(wildcard), byType);
+    }
+
+    private static FieldMatcher compile(String[] parts, int lineNumber) throws ConfigError {
+        int tag;
+        try {
+            tag = Integer.parseInt(parts[1]);
+        } catch (NumberFormatException e) {
+            tag = 0;
+        }
+        if (tag <= 0) {
+            throw new ConfigError("Match rule " + lineNumber + " has an invalid tag: " + parts[1]);
+        }
+        String modeName = parts[2];
+        boolean optional = modeName.endsWith("?");
+        if (optional) {
+            modeName = modeName.substring(0, modeName.length() - 1);
+        }
+        MatchMode mode;
+        try {
+            mode = MatchMode.valueOf(modeName.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new ConfigError("Match rule " + lineNumber + " has an unknown mode: " + parts[2]);
+        }
+        String argument = parts.length > 3 ? parts[3].trim() : null;
+
+        return switch (mode) {
+            case SUFFIX -> {
+                if (argument != null && argument.length() != 1) {
+                    throw new ConfigError("Match rule " + lineNumber + " separator must be one character");
+                }
+                yield new FieldMatcher(tag, mode, optional, argument == null ? '-' : argument.charAt(0), null, 0);
+            }
+            case REGEX -> {
+                if (argument == null) {
+                    throw new ConfigError("Match rule " + lineNumber + " needs a pattern");
+                }
+                try {
+                    yield new FieldMatcher(tag, mode, optional, '-', Pattern.compile(argument), 0);
+                } catch (PatternSyntaxException e) {
+                    throw new ConfigError("Match rule " + lineNumber + " has an invalid pattern: " + e.getMessage());
+                }
+            }
+            case TOLERANCE -> {
+                long tolerance = argument == null ? INVALID : scaled(argument);
+                if (tolerance == INVALID || tolerance < 0) {
+                    throw new ConfigError("Match rule " + lineNumber + " needs a tolerance such as 0.01");
+                }
+                yield new FieldMatcher(tag, mode, optional, '-', null, tolerance);
+            }
+            default -> new FieldMatcher(tag, mode, optional, '-', null, 0);
+        };
+    }
+
+    private static FieldMatcher[] withoutIgnored(Map<Integer, FieldMatcher> rules) {
+        List<FieldMatcher> matchers = new ArrayList<>(rules.size());
+        for (FieldMatcher matcher : rules.values()) {
+            if (matcher.mode != MatchMode.IGNORE) {
+                matchers.add(matcher);
+            }
+        }
+        return matchers.toArray(new FieldMatcher[0]);
+    }
+
+    @Override
+    public boolean test(Message expected, Message actual) {
+        String type = value(expected.getHeader(), MsgType.FIELD);
+        if (type == null || !type.equals(value(actual.getHeader(), MsgType.FIELD))) {
+            return false;
+        }
+        FieldMatcher[] matchers = byType.getOrDefault(type, common);
+        for (FieldMatcher matcher : matchers) {
+            if (!matcher.matches(expected, actual)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * What two messages of {@code msgType} must share in {@code tag} to match, for indexing: the
+     * whole value under an exact rule, the part after the separator under a suffix rule. Returns
+     * {@code null} when the message lacks the tag or its rule compares it any other way, so the
+     * message has to be tried against every counterpart of its MsgType.
+     */
+    public String indexKey(String msgType, int tag, FieldMap message) {
+        FieldMatcher rule = null;
+        for (FieldMatcher matcher : byType.getOrDefault(msgType, common)) {
+            if (matcher.tag == tag) {
+                rule = matcher;
+                break;
+            }
+        }
+        String value = rule == null ? null : value(message, tag);
+        if (value == null) {
+            return null;
+        }
+        return switch (rule.mode) {
+            case EXACT -> value;
+            case SUFFIX -> value.substring(value.lastIndexOf(rule.separator) + 1);
+            default -> null;
+        };
+    }
+
+    // the string the field already holds, or null; one map lookup, and the Optional does not escape
+    private static String value(FieldMap message, int tag) {
+        return message.getOptionalString(tag).orElse(null);
+    }
+
+    /**
+     * {@code value} times 10^9 for a plain decimal, digits past the ninth decimal dropped;
+     * {@link #INVALID} for anything else or beyond about ±9.2e9.
+     */
+    static long scaled(String value) {
+        int length = value.length();
+        int i = 0;
+        boolean negative = false;
+        if (length > 0 && (value.charAt(0) == '-' || value.charAt(0) == '+')) {
+            negative = value.charAt(0) == '-';
+            i = 1;
+        }
+        long result = 0;
+        int decimals = -1;
+        boolean digits = false;
+        for (; i < length; i++) {
+            char c = value.charAt(i);
+            if (c == '.' && decimals < 0) {
+                decimals = 0;
+                continue;
+            }
+            if (c < '0' || c > '9') {
+                return INVALID;
+            }
+            digits = true;
+            if (decimals >= SCALE) {
+                continue;
+            }
+            if (result > (Long.MAX_VALUE - 9) / 10) {
+                return INVALID;
+            }
+            result = result * 10 + (c - '0');
+            if (decimals >= 0) {
+                decimals++;
+            }
+        }
+        if (!digits) {
+            return INVALID;
+        }
+        for (int d = Math.max(decimals, 0); d < SCALE; d++) {
+            if (result > Long.MAX_VALUE / 10) {
+                return INVALID;
+            }
+            result *= 10;
+        }
+        return negative ? -result : result;
+    }
+
+    /**
+     * One compiled rule.
+     */
+    private static final class FieldMatcher {
+
+        final int tag;
+        final MatchMode mode;
+        final boolean optional;
+        final char separator;
+        final Pattern pattern;
+        final Matcher matcher;
+        final long tolerance;
+
+        FieldMatcher(int tag, MatchMode mode, boolean optional, char separator, Pattern pattern, long tolerance) {
+            this.tag = tag;
+            this.mode = mode;
+            this.optional = optional;
+            this.separator = separator;
+            this.pattern = pattern;
+            this.matcher = pattern == null ? null : pattern.matcher("");
+            this.tolerance = tolerance;
+        }
+
+        FieldMatcher copy() {
+            return new FieldMatcher(tag, mode, optional, separator, pattern, tolerance);
+        }
+
+        boolean matches(Message expectedMessage, Message actualMessage) {
+            switch (mode) {
+                case PRESENT:
+                    return value(actualMessage, tag) != null;
+                case ABSENT:
+                    return value(actualMessage, tag) == null;
+                case REGEX: {
+                    String actual = value(actualMessage, tag);
+                    return actual == null ? optional : matcher.reset(actual).matches();
+                }
+                case IGNORE:
+                    return true;
+                default:
+                    break;
+            }
+            String expected = value(expectedMessage, tag);
+            if (expected == null) {
+                return true;
+            }
+            String actual = value(actualMessage, tag);
+            if (actual == null) {
+                return optional;
+            }
+            return switch (mode) {
+                case SUFFIX -> sameSuffix(expected, actual);
+                case TOLERANCE -> withinTolerance(expected, actual);
+                default -> expected.equals(actual);
+            };
+        }
+
+        private boolean sameSuffix(String expected, String actual) {
+            int e = expected.lastIndexOf(separator) + 1;
+            int a = actual.lastIndexOf(separator) + 1;
+            int length = expected.length() - e;
+            return actual.length() - a == length && expected.regionMatches(e, actual, a, length);
+        }
+
+        private boolean withinTolerance(String expected, String actual) {
+            long e = scaled(expected);
+            long a = scaled(actual);
+            if (e == INVALID || a == INVALID) {
+                return false;
+            }
+            long difference = e - a;
+            // opposite signs that overflow are far apart anyway
+            if (((e ^ a) & (e ^ difference)) < 0) {
+                return false;
+            }
+            return Math.abs(difference) <= tolerance;
+        }
+    }
+}
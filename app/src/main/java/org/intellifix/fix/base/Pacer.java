@@ -0,0 +1,180 @@
+package org.intellifix.fix.base;
+
+import lombok.extern.slf4j.Slf4j;
+import org.intellifix.fix.model.PacingMode;
+import quickfix.ConfigError;
+import quickfix.FieldConvertError;
+import quickfix.FieldNotFound;
+import quickfix.Message;
+import quickfix.SessionSettings;
+import quickfix.field.SendingTime;
+import quickfix.field.converter.UtcTimestampConverter;
+
+import java.time.ZoneOffset;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Open-loop schedule for outbound steps.
+ * <p>
+ * The intended send time of every message is fixed by the schedule alone, measured from the
+ * start of the run. A sender that falls behind sends the next message at once and keeps the
+ * original schedule instead of restarting it, so a slow hub shows up as drift (and, downstream,
+ * as latency measured from the intended time) rather than as a silently lower rate.
+ */
+@Slf4j
+public final class Pacer {
+
+    public static final String PACING_MODE = "PacingMode";
+    public static final String REPLAY_SPEED = "ReplaySpeed";
+    public static final String SEND_RATE = "SendRate";
+    public static final String RAMP_START_RATE = "RampStartRate";
+    public static final String RAMP_END_RATE = "RampEndRate";
+    public static final String RAMP_SECONDS = "RampSeconds";
+
+    private static final long SPIN_NANOS = 50_000;
+    private static final long LATE_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final PacingMode mode;
+    private final double replaySpeed;
+    private final double rate;
+    private final double rampStartRate;
+    private final double rampEndRate;
+    private final double rampSeconds;
+
+    private long startNanos;
+    private long sent;
+    private long firstSendingTimeNanos = Long.MIN_VALUE;
+    private long lastReplayOffsetNanos;
+
+    private long totalDriftNanos;
+    private long maxDriftNanos;
+    private long late;
+
+    public Pacer(PacingMode mode, double replaySpeed, double rate, double rampStartRate, double rampEndRate,
+            double rampSeconds) {
+        this.mode = mode;
+        this.replaySpeed = replaySpeed;
+        this.rate = rate;
+        this.rampStartRate = rampStartRate;
+        this.rampEndRate = rampEndRate;
+        this.rampSeconds = rampSeconds;
+    }
+
+    /**
+     * Reads {@code PacingMode} and its parameters; returns {@code null} when pacing is off.
+     */
+    public static Pacer fromSettings(SessionSettings settings) throws ConfigError, FieldConvertError {
+        PacingMode mode = settings.isSetting(PACING_MODE)
+                ? PacingMode.valueOf(settings.getString(PACING_MODE).trim().toUpperCase())
+                : PacingMode.NONE;
+        if (mode == PacingMode.NONE) {
+            return null;
+        }
+        return new Pacer(mode,
+                settings.isSetting(REPLAY_SPEED) ? settings.getDouble(REPLAY_SPEED) : 1.0,
+                settings.isSetting(SEND_RATE) ? settings.getDouble(SEND_RATE) : 1000.0,
+                settings.isSetting(RAMP_START_RATE) ? settings.getDouble(RAMP_START_RATE) : 100.0,
+                settings.isSetting(RAMP_END_RATE) ? settings.getDouble(RAMP_END_RATE) : 1000.0,
+                settings.isSetting(RAMP_SECONDS) ? settings.getDouble(RAMP_SECONDS) : 60.0);
+    }
+
+    public PacingMode mode() {
+        return mode;
+    }
+
+    public void start() {
+        startNanos = System.nanoTime();
+        sent = 0;
+    }
+
+    /**
+     * Waits until the intended send time of {@code message}, records how late the caller is, and
+     * returns the intended time in {@link System#nanoTime()} terms.
+     */
+    public long awaitSlot(Message message) {
+        long intended = startNanos + offsetNanos(message, sent++);
+        long now = System.nanoTime();
+        long remaining = intended - now;
+        if (remaining > SPIN_NANOS) {
+            LockSupport.parkNanos(remaining - SPIN_NANOS);
+        }
+        while ((now = System.nanoTime()) < intended) {
+            Thread.onSpinWait();
+        }
+        long drift = now - intended;
+        totalDriftNanos += drift;
+        if (drift > maxDriftNanos) {
+            maxDriftNanos = drift;
+        }
+        if (drift > LATE_NANOS) {
+            late++;
+        }
+        return intended;
+    }
+
+    public void report() {
+        if (sent == 0) {
+            return;
+        }
+        long elapsedNanos = Math.max(1, System.nanoTime() - startNanos);
+        log.info("[PACING] mode={} sent={} achieved={} msg/s drift mean={} us max={} us late(>1ms)={}", mode, sent,
+                sent * 1_000_000_000L / elapsedNanos, totalDriftNanos / sent / 1000, maxDriftNanos / 1000, late);
+    }
+
+    private long offsetNanos(Message message, long index) {
+        return switch (mode) {
+            case NONE -> 0;
+            case REPLAY -> replayOffset(message);
+            case RATE -> (long) (index * 1e9 / rate);
+            case RAMP -> rampOffset(index);
+        };
+    }
+
+    // messages without a usable 52 follow the previous one immediately
+    private long replayOffset(Message message) {
+        long sendingTime = sendingTimeNanos(message);
+        if (sendingTime == Long.MIN_VALUE) {
+            return lastReplayOffsetNanos;
+        }
+        if (firstSendingTimeNanos == Long.MIN_VALUE) {
+            firstSendingTimeNanos = sendingTime;
+        }
+        long offset = (long) ((sendingTime - firstSendingTimeNanos) / replaySpeed);
+        lastReplayOffsetNanos = Math.max(lastReplayOffsetNanos, offset);
+        return lastReplayOffsetNanos;
+    }
+
+    /*
+     * During the ramp the rate is r(t) = r0 + (r1 - r0) t / T, so the n-th message is due at the t
+     * solving n = r0 t + (r1 - r0) t^2 / 2T; afterwards the rate stays at r1.
+     */
+    private long rampOffset(long index) {
+        double r0 = rampStartRate;
+        double r1 = rampEndRate;
+        double t = rampSeconds;
+        double rampMessages = (r0 + r1) * t / 2;
+        double seconds;
+        if (index >= rampMessages || t <= 0) {
+            seconds = t + (index - rampMessages) / r1;
+        } else if (r1 == r0) {
+            seconds = index / r0;
+        } else {
+            double a = (r1 - r0) / (2 * t);
+            seconds = (-r0 + Math.sqrt(r0 * r0 + 4 * a * index)) / (2 * a);
+        }
+        return (long) (seconds * 1e9);
+    }
+
+    private static long sendingTimeNanos(Message message) {
+        try {
+            if (!message.getHeader().isSetField(SendingTime.FIELD)) {
+                return Long.MIN_VALUE;
+            }
+            var time = UtcTimestampConverter.convertToLocalDateTime(message.getHeader().getString(SendingTime.FIELD));
+            return time.toEpochSecond(ZoneOffset.UTC) * 1_000_000_000L + time.getNano();
+        } catch (FieldNotFound | FieldConvertError e) {
+            return Long.MIN_VALUE;
+        }
+    }
+}
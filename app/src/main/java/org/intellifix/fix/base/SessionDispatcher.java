@@ -0,0 +1,90 @@
+package org.intellifix.fix.base;
+
+import lombok.extern.slf4j.Slf4j;
+import quickfix.Application;
+import quickfix.DoNotSend;
+import quickfix.FieldNotFound;
+import quickfix.IncorrectDataFormat;
+import quickfix.IncorrectTagValue;
+import quickfix.Message;
+import quickfix.RejectLogon;
+import quickfix.SessionID;
+import quickfix.UnsupportedMessageType;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Lets one connector serve many simulators: every callback is handed to the application
+ * registered for its session. Applications must be registered before the connector starts.
+ */
+@Slf4j
+public class SessionDispatcher implements Application {
+
+    private final Map<SessionID, Application> applications = new ConcurrentHashMap<>();
+
+    public void register(SessionID sessionID, Application application) {
+        applications.put(sessionID, application);
+    }
+
+    @Override
+    public void onCreate(SessionID sessionID) {
+        Application application = applications.get(sessionID);
+        if (application == null) {
+            log.warn("[DISPATCH] No application registered for session {}", sessionID);
+            return;
+        }
+        application.onCreate(sessionID);
+    }
+
+    @Override
+    public void onLogon(SessionID sessionID) {
+        Application application = applications.get(sessionID);
+        if (application != null) {
+            application.onLogon(sessionID);
+        }
+    }
+
+    @Override
+    public void onLogout(SessionID sessionID) {
+        Application application = applications.get(sessionID);
+        if (application != null) {
+            application.onLogout(sessionID);
+        }
+    }
+
+    @Override
+    public void toAdmin(Message message, SessionID sessionID) {
+        Application application = applications.get(sessionID);
+        if (application != null) {
+            application.toAdmin(message, sessionID);
+        }
+    }
+
+    @Override
+    public void fromAdmin(Message message, SessionID sessionID)
+            throws FieldNotFound, IncorrectDataFormat, IncorrectTagValue, RejectLogon {
+        Application application = applications.get(sessionID);
+        if (application != null) {
+            application.fromAdmin(message, sessionID);
+        }
+    }
+
+    @Override
+    public void toApp(Message message, SessionID sessionID) throws DoNotSend {
+        Application application = applications.get(sessionID);
+        if (application != null) {
+            application.toApp(message, sessionID);
+        }
+    }
+
+    @Override
+    public void fromApp(Message message, SessionID sessionID)
+            throws FieldNotFound, IncorrectDataFormat, IncorrectTagValue, UnsupportedMessageType {
+        Application application = applications.get(sessionID);
+        if (application == null) {
+            throw new UnsupportedMessageType();
+        }
+        application.fromApp(message, sessionID);
+    }
+}
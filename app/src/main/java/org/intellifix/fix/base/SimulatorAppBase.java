@@ -2,14 +2,24 @@ package org.intellifix.fix.base;
 
 import quickfix.Message;
 import quickfix.SessionID;
-import java.util.concurrent.CountDownLatch;
 
 public interface SimulatorAppBase {
     void awaitLogon(long timeoutSeconds) throws InterruptedException;
 
-    void setExpectedInbound(Message expected, CountDownLatch latch);
+    /**
+     * Registers a pending expectation. It completes when a matching inbound message arrives, or
+     * at once if one arrived before it was registered.
+     */
+    void expect(Expectation expectation);
 
-    void clearExpectedInbound();
+    void cancel(Expectation expectation);
+
+    /**
+     * Intended send time (System.nanoTime) of the next outbound message on a paced run, so
+     * latency is measured from the schedule rather than from a late actual send.
+     */
+    default void scheduleNextSend(long intendedNanos) {
+    }
 
     SessionID getActiveSession();
 
@@ -4,20 +4,163 @@ import lombok.extern.slf4j.Slf4j;
 import quickfix.*;
 import quickfix.field.MsgType;
 import org.intellifix.fix.model.*;
+import org.intellifix.fix.scenario.MappedStepReader;
+import org.intellifix.fix.scenario.ScenarioCompiler;
+import org.intellifix.fix.scenario.StepSource;
 
 import java.io.BufferedReader;
 import java.io.FileReader;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 
 @Slf4j
 public abstract class SimulatorEngine {
 
+    private static final String SCENARIO_CACHE = "ScenarioCache";
+    private static final String SCENARIO_CACHE_PATH = "ScenarioCachePath";
+    private static final String DEFAULT_SCENARIO_CACHE_PATH = "scenario_cache";
+    private static final String SCENARIO_WINDOW = "ScenarioWindow";
+    private static final String EXPECT_TIMEOUT_SECONDS = "ExpectTimeoutSeconds";
+
     protected abstract StepType determineStepType(Message message);
 
-    protected abstract void runScenario(List<Step> steps, SimulatorAppBase app, SessionID sid) throws Exception;
+    protected abstract void runScenario(Iterable<Step> steps, SimulatorAppBase app, SessionID sid) throws Exception;
 
     protected abstract void handleOutbound(Message out, SessionID sid) throws Exception;
 
+    /**
+     * Sends one OUTBOUND step. Shared by the lockstep and pipelined runners.
+     */
+    protected abstract void sendStep(Message message, SessionID sid) throws Exception;
+
+    /**
+     * Whether an OUTBOUND step is left out rather than sent. The pipelined runner asks before the
+     * step takes a pacing slot, so a skipped step neither delays the schedule nor leaves its
+     * intended send time to the next message.
+     */
+    protected boolean skipsStep(Message message) throws FieldNotFound {
+        return false;
+    }
+
+    protected long defaultExpectTimeoutSeconds() {
+        return 60;
+    }
+
+    /**
+     * Lockstep wait for one expected inbound message.
+     */
+    protected boolean awaitInbound(SimulatorAppBase app, Message expected, long timeoutSeconds)
+            throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(1);
+        Expectation expectation = new Expectation(expected,
+                System.nanoTime() + TimeUnit.SECONDS.toNanos(timeoutSeconds), latch::countDown);
+        app.expect(expectation);
+        if (latch.await(timeoutSeconds, TimeUnit.SECONDS)) {
+            return true;
+        }
+        app.cancel(expectation);
+        return expectation.isDone();
+    }
+
+    /**
+     * Runs the scenario in the mode the session config asks for: {@code ScenarioWindow} above 1
+     * or a {@code PacingMode} other than NONE selects the pipelined runner with that many
+     * outstanding expectations, otherwise the lockstep {@link #runScenario}.
+     */
+    public void execute(SessionSettings settings, Iterable<Step> steps, SimulatorAppBase app, SessionID sid)
+            throws Exception {
+        int window = settings.isSetting(SCENARIO_WINDOW) ? (int) settings.getLong(SCENARIO_WINDOW) : 1;
+        Pacer pacer = Pacer.fromSettings(settings);
+        if (window <= 1 && pacer == null) {
+            runScenario(steps, app, sid);
+            return;
+        }
+        long timeoutSeconds = settings.isSetting(EXPECT_TIMEOUT_SECONDS)
+                ? settings.getLong(EXPECT_TIMEOUT_SECONDS)
+                : defaultExpectTimeoutSeconds();
+        runPipelined(steps, app, sid, Math.max(1, window), TimeUnit.SECONDS.toNanos(timeoutSeconds), pacer);
+    }
+
+    /**
+     * Pipelined execution: outbound steps keep flowing while up to {@code window} expectations
+     * are pending. Inbound messages may satisfy pending expectations in any order; each
+     * expectation fails on its own deadline. With a {@link Pacer} outbound steps are sent on its
+     * open-loop schedule; a full window then delays sends and shows up as drift.
+     */
+    protected void runPipelined(Iterable<Step> steps, SimulatorAppBase app, SessionID sid, int window,
+            long timeoutNanos, Pacer pacer) throws Exception {
+        Semaphore slots = new Semaphore(window);
+        Deque<Expectation> inFlight = new ArrayDeque<>(window);
+        long sent = 0;
+        long expected = 0;
+        long started = System.nanoTime();
+        if (pacer != null) {
+            pacer.start();
+        }
+
+        for (Step step : steps) {
+            switch (step.type()) {
+                case OUTBOUND -> {
+                    if (skipsStep(step.message())) {
+                        break;
+                    }
+                    if (pacer != null) {
+                        app.scheduleNextSend(pacer.awaitSlot(step.message()));
+                    }
+                    sendStep(step.message(), sid);
+                    sent++;
+                }
+                case EXPECT_INBOUND -> {
+                    while (!slots.tryAcquire(nanosToNextDeadline(inFlight), TimeUnit.NANOSECONDS)) {
+                        failExpired(app, inFlight);
+                    }
+                    Expectation expectation = new Expectation(step.message(), System.nanoTime() + timeoutNanos,
+                            slots::release);
+                    inFlight.add(expectation);
+                    app.expect(expectation);
+                    expected++;
+                }
+            }
+            failExpired(app, inFlight);
+        }
+
+        while (!slots.tryAcquire(window, nanosToNextDeadline(inFlight), TimeUnit.NANOSECONDS)) {
+            failExpired(app, inFlight);
+        }
+        long elapsedMillis = Math.max(1, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+        log.info("[PIPELINE] window={} sent={} matched={} in {} ms ({} steps/s)", window, sent, expected,
+                elapsedMillis, (sent + expected) * 1000 / elapsedMillis);
+        if (pacer != null) {
+            pacer.report();
+        }
+    }
+
+    // all expectations share one timeout, so the oldest pending one always has the earliest deadline
+    private long nanosToNextDeadline(Deque<Expectation> inFlight) {
+        while (!inFlight.isEmpty() && inFlight.peekFirst().isDone()) {
+            inFlight.pollFirst();
+        }
+        return inFlight.isEmpty() ? TimeUnit.SECONDS.toNanos(1)
+                : Math.max(1, inFlight.peekFirst().deadlineNanos() - System.nanoTime());
+    }
+
+    private void failExpired(SimulatorAppBase app, Deque<Expectation> inFlight) {
+        while (!inFlight.isEmpty() && inFlight.peekFirst().isDone()) {
+            inFlight.pollFirst();
+        }
+        Expectation oldest = inFlight.peekFirst();
+        if (oldest != null && oldest.isExpired(System.nanoTime())) {
+            inFlight.forEach(app::cancel);
+            throw new RuntimeException("Timed out waiting for inbound: " + pretty(oldest.expected()));
+        }
+    }
+
     protected List<Step> readSteps(String path, DataDictionary dd, SessionID sid) throws Exception {
         java.util.concurrent.atomic.AtomicInteger ln = new java.util.concurrent.atomic.AtomicInteger(0);
         try (BufferedReader br = new BufferedReader(new FileReader(path))) {
@@ -35,35 +178,7 @@ public abstract class SimulatorEngine {
                             if (!line.endsWith("\u0001")) {
                                 line += "\u0001";
                             }
-                            Message msg = new Message(line, dd, false);
-
-                            String msgSender = msg.getHeader().getString(49);
-                            String msgTarget = msg.getHeader().getString(56);
-                            String ourSender = sid.getSenderCompID();
-
-                            StepType type = determineStepType(msg);
-                            if (type == null) {
-                                String msgType = msg.getHeader().getString(MsgType.FIELD);
-                                log.info("[SKIP] line " + ln.get() + " msgType=" + msgType
-                                        + " - Not handled by simulator");
-                                return null;
-                            }
-
-                            if (type == StepType.OUTBOUND) {
-                                if (!msgSender.equals(ourSender)) {
-                                    log.info("[SKIP] line " + ln.get()
-                                            + " - OUTBOUND message has different SenderCompID: " + msgSender);
-                                    return null;
-                                }
-                            } else if (type == StepType.EXPECT_INBOUND) {
-                                if (!msgTarget.equals(ourSender)) {
-                                    log.info("[SKIP] line " + ln.get()
-                                            + " - EXPECT_INBOUND message has different TargetCompID: " + msgTarget);
-                                    return null;
-                                }
-                            }
-
-                            return new Step(type, msg);
+                            return toStep(line, ln.get(), dd, sid);
                         } catch (Exception e) {
                             log.error("Failed to parse line {}: {}", ln.get(), line, e);
                             throw new RuntimeException(e);
@@ -74,6 +189,109 @@ public abstract class SimulatorEngine {
         }
     }
 
+    /**
+     * Lazy alternative to {@link #readSteps}: steps are parsed from a memory-mapped file as the
+     * scenario reaches them, so memory stays bounded for captures of any size.
+     */
+    protected StepSource streamSteps(String path, DataDictionary dd, SessionID sid) throws Exception {
+        return new MappedStepReader(Path.of(path), (line, lineNumber) -> toStep(line, lineNumber, dd, sid));
+    }
+
+    /**
+     * Loads steps from the binary step cache, compiling the scenario in parallel first when the
+     * cache is missing or the source has changed.
+     */
+    protected StepSource compiledSteps(String path, DataDictionary dd, SessionID sid, Path cacheDir)
+            throws Exception {
+        String variant = getClass().getName() + "|" + sid.getSenderCompID();
+        return new ScenarioCompiler(cacheDir)
+                .open(Path.of(path), variant, (line, lineNumber) -> toStep(line, lineNumber, dd, sid));
+    }
+
+    /**
+     * Opens the scenario the way the session config asks for: {@code ScenarioCache=Y} uses the
+     * compiled step cache under {@code ScenarioCachePath}, anything else streams the text file.
+     */
+    protected StepSource openSteps(SessionSettings settings, String path, DataDictionary dd, SessionID sid)
+            throws Exception {
+        if (settings.isSetting(SCENARIO_CACHE) && settings.getBool(SCENARIO_CACHE)) {
+            String cacheDir = settings.isSetting(SCENARIO_CACHE_PATH)
+                    ? settings.getString(SCENARIO_CACHE_PATH)
+                    : DEFAULT_SCENARIO_CACHE_PATH;
+            return compiledSteps(path, dd, sid, Path.of(cacheDir));
+        }
+        return streamSteps(path, dd, sid);
+    }
+
+    /**
+     * Parses one normalized scenario line and applies the step type and CompID filters.
+     * Returns {@code null} for lines this simulator does not handle.
+     */
+    protected Step toStep(String line, long lineNumber, DataDictionary dd, SessionID sid) throws Exception {
+        Message msg = new Message(line, dd, false);
+
+        String msgSender = msg.getHeader().getString(49);
+        String msgTarget = msg.getHeader().getString(56);
+        String ourSender = sid.getSenderCompID();
+
+        StepType type = determineStepType(msg);
+        if (type == null) {
+            String msgType = msg.getHeader().getString(MsgType.FIELD);
+            log.info("[SKIP] line " + lineNumber + " msgType=" + msgType
+                    + " - Not handled by simulator");
+            return null;
+        }
+
+        if (type == StepType.OUTBOUND) {
+            if (!msgSender.equals(ourSender)) {
+                log.info("[SKIP] line " + lineNumber
+                        + " - OUTBOUND message has different SenderCompID: " + msgSender);
+                return null;
+            }
+        } else if (type == StepType.EXPECT_INBOUND) {
+            if (!msgTarget.equals(ourSender)) {
+                log.info("[SKIP] line " + lineNumber
+                        + " - EXPECT_INBOUND message has different TargetCompID: " + msgTarget);
+                return null;
+            }
+        }
+
+        return new Step(type, msg);
+    }
+
+    /**
+     * Runs one scenario file end to end and reports the outcome instead of throwing, for runners
+     * that drive many scenarios at once.
+     */
+    public ScenarioResult run(SessionSettings settings, String scenarioPath, DataDictionary dd, SimulatorAppBase app,
+            SessionID sid) {
+        long started = System.nanoTime();
+        long[] count = new long[1];
+        try (StepSource steps = openSteps(settings, scenarioPath, dd, sid)) {
+            Iterable<Step> counted = () -> new Iterator<>() {
+                private final Iterator<Step> it = steps.iterator();
+
+                @Override
+                public boolean hasNext() {
+                    return it.hasNext();
+                }
+
+                @Override
+                public Step next() {
+                    count[0]++;
+                    return it.next();
+                }
+            };
+            execute(settings, counted, app, sid);
+            return new ScenarioResult(sid.toString(), scenarioPath, true, count[0],
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started), null);
+        } catch (Exception e) {
+            log.error("[FAIL] Scenario {} on {} failed at step {}", scenarioPath, sid, count[0], e);
+            return new ScenarioResult(sid.toString(), scenarioPath, false, count[0],
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started), String.valueOf(e.getMessage()));
+        }
+    }
+
     protected String pretty(Message m) {
         return m.toString().replace('\u0001', '|');
     }
@@ -0,0 +1,47 @@
+package org.intellifix.fix.hub;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Issues numeric ClOrdIDs of the form {@code startMillis * 1_000_000 + sequence}.
+ * IDs are strictly increasing within a run, and a restart always begins above anything the
+ * previous run could have issued unless it sustained more than a million orders per millisecond.
+ */
+public final class ClOrdIdGenerator {
+
+    private static final long SEQUENCE_SPACE = 1_000_000L;
+
+    private final AtomicLong next;
+
+    public ClOrdIdGenerator() {
+        this(System.currentTimeMillis());
+    }
+
+    public ClOrdIdGenerator(long startMillis) {
+        this.next = new AtomicLong(startMillis * SEQUENCE_SPACE);
+    }
+
+    public long next() {
+        return next.getAndIncrement();
+    }
+
+    /**
+     * Parses an ID issued by this generator without allocating. Returns -1 for anything that is
+     * not a plain positive decimal, e.g. IDs the hub did not issue.
+     */
+    public static long parse(String value) {
+        int length = value.length();
+        if (length == 0 || length > 19) {
+            return -1;
+        }
+        long result = 0;
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            result = result * 10 + (c - '0');
+        }
+        return result < 0 ? -1 : result;
+    }
+}
@@ -0,0 +1,235 @@
+package org.intellifix.fix.hub;
+
+import quickfix.SessionID;
+
+import java.util.Objects;
+
+/**
+ * Bounded translation table between hub-issued ClOrdIDs and the client's original ClOrdID.
+ * <p>
+ * Hub IDs come from {@link ClOrdIdGenerator} and are consecutive, so {@code id & mask} is a
+ * collision-free slot in a fixed ring of primitive arrays. IDs are issued under the table's lock,
+ * so they enter the ring in order even when several sessions route at once. Entries leave the
+ * table when the order reaches a terminal state, when they outlive the TTL, or when the ring
+ * wraps onto them. A second open-addressing table maps the client session and its ClOrdID back
+ * to the hub ID so that OrigClOrdID (41) on cancel/replace requests can be translated as well;
+ * two clients may use the same ClOrdID. Each entry also remembers the client and broker session
+ * the order travels between.
+ */
+public final class ClOrdIdStore {
+
+    public static final int DEFAULT_CAPACITY = 1 << 20;
+    public static final long DEFAULT_TTL_MILLIS = 24 * 60 * 60 * 1000L;
+
+    private static final long EMPTY = 0L;
+
+    private final int mask;
+    private final long ttlMillis;
+
+    private final long[] ids;
+    private final String[] clientClOrdIds;
+    private final long[] createdAt;
+    private final SessionID[] clientSessions;
+    private final SessionID[] brokerSessions;
+
+    private final int reverseMask;
+    private final long[] reverse;
+
+    private long oldest = EMPTY;
+    private long newest = EMPTY;
+    private int size;
+    private long ttlEvictions;
+    private long capacityEvictions;
+    private long completed;
+
+    public ClOrdIdStore(int requestedCapacity, long ttlMillis) {
+        int capacity = Integer.highestOneBit(Math.max(2, requestedCapacity - 1)) << 1;
+        this.mask = capacity - 1;
+        this.ttlMillis = ttlMillis;
+        this.ids = new long[capacity];
+        this.clientClOrdIds = new String[capacity];
+        this.createdAt = new long[capacity];
+        this.clientSessions = new SessionID[capacity];
+        this.brokerSessions = new SessionID[capacity];
+        this.reverse = new long[capacity << 1];
+        this.reverseMask = reverse.length - 1;
+    }
+
+    /**
+     * Issues the next hub ID from {@code generator} for a client order and records it.
+     */
+    public synchronized long issue(ClOrdIdGenerator generator, String clientClOrdId, SessionID clientSession,
+            SessionID brokerSession, long nowMillis) {
+        long id = generator.next();
+        put(id, clientClOrdId, clientSession, brokerSession, nowMillis);
+        return id;
+    }
+
+    private void put(long id, String clientClOrdId, SessionID clientSession, SessionID brokerSession,
+            long nowMillis) {
+        evictExpired(nowMillis);
+        int slot = slot(id);
+        if (ids[slot] != EMPTY) {
+            capacityEvictions++;
+            clear(slot);
+        }
+        ids[slot] = id;
+        clientClOrdIds[slot] = clientClOrdId;
+        createdAt[slot] = nowMillis;
+        clientSessions[slot] = clientSession;
+        brokerSessions[slot] = brokerSession;
+        size++;
+        if (oldest == EMPTY) {
+            oldest = id;
+        }
+        newest = id;
+        reverseInsert(id, clientSession, clientClOrdId);
+    }
+
+    /**
+     * Returns the client's original ClOrdID for a hub ID, or {@code null} if unknown or evicted.
+     */
+    public synchronized String get(long id) {
+        int slot = slot(id);
+        return id > 0 && ids[slot] == id ? clientClOrdIds[slot] : null;
+    }
+
+    public synchronized SessionID clientSessionOf(long id) {
+        int slot = slot(id);
+        return id > 0 && ids[slot] == id ? clientSessions[slot] : null;
+    }
+
+    public synchronized SessionID brokerSessionOf(long id) {
+        int slot = slot(id);
+        return id > 0 && ids[slot] == id ? brokerSessions[slot] : null;
+    }
+
+    /**
+     * Returns the hub ID issued for a live ClOrdID of {@code clientSession}, or -1.
+     */
+    public synchronized long idFor(SessionID clientSession, String clientClOrdId) {
+        int pos = reverseFind(clientSession, clientClOrdId);
+        return pos < 0 ? -1 : reverse[pos];
+    }
+
+    /**
+     * Drops a hub ID whose order has reached a terminal state.
+     */
+    public synchronized void complete(long id) {
+        int slot = slot(id);
+        if (id > 0 && ids[slot] == id) {
+            completed++;
+            clear(slot);
+        }
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    public synchronized long ttlEvictions() {
+        return ttlEvictions;
+    }
+
+    public synchronized long capacityEvictions() {
+        return capacityEvictions;
+    }
+
+    public synchronized long completed() {
+        return completed;
+    }
+
+    public int capacity() {
+        return mask + 1;
+    }
+
+    private void evictExpired(long nowMillis) {
+        if (ttlMillis <= 0) {
+            return;
+        }
+        while (oldest != EMPTY && oldest <= newest) {
+            int slot = slot(oldest);
+            if (ids[slot] == oldest) {
+                if (nowMillis - createdAt[slot] < ttlMillis) {
+                    return;
+                }
+                ttlEvictions++;
+                clear(slot);
+            }
+            oldest++;
+        }
+    }
+
+    private void clear(int slot) {
+        reverseDelete(ids[slot], clientSessions[slot], clientClOrdIds[slot]);
+        ids[slot] = EMPTY;
+        clientClOrdIds[slot] = null;
+        clientSessions[slot] = null;
+        brokerSessions[slot] = null;
+        size--;
+    }
+
+    private int slot(long id) {
+        return (int) (id & mask);
+    }
+
+    private int home(SessionID clientSession, String clientClOrdId) {
+        int h = (clientClOrdId.hashCode() * 31 + Objects.hashCode(clientSession)) * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & reverseMask;
+    }
+
+    private void reverseInsert(long id, SessionID clientSession, String clientClOrdId) {
+        int pos = reverseFind(clientSession, clientClOrdId);
+        if (pos < 0) {
+            pos = home(clientSession, clientClOrdId);
+            while (reverse[pos] != EMPTY) {
+                pos = (pos + 1) & reverseMask;
+            }
+        }
+        reverse[pos] = id;
+    }
+
+    private int reverseFind(SessionID clientSession, String clientClOrdId) {
+        int pos = home(clientSession, clientClOrdId);
+        long candidate;
+        while ((candidate = reverse[pos]) != EMPTY) {
+            int slot = slot(candidate);
+            if (ids[slot] == candidate && clientClOrdId.equals(clientClOrdIds[slot])
+                    && Objects.equals(clientSession, clientSessions[slot])) {
+                return pos;
+            }
+            pos = (pos + 1) & reverseMask;
+        }
+        return -1;
+    }
+
+    // backward-shift deletion keeps probe chains intact without tombstones
+    private void reverseDelete(long id, SessionID clientSession, String clientClOrdId) {
+        int pos = home(clientSession, clientClOrdId);
+        while (reverse[pos] != id) {
+            if (reverse[pos] == EMPTY) {
+                return;
+            }
+            pos = (pos + 1) & reverseMask;
+        }
+        int gap = pos;
+        int next = pos;
+        while (true) {
+            next = (next + 1) & reverseMask;
+            long candidate = reverse[next];
+            if (candidate == EMPTY) {
+                break;
+            }
+            int candidateSlot = slot(candidate);
+            int candidateHome = home(clientSessions[candidateSlot], clientClOrdIds[candidateSlot]);
+            boolean movable = gap <= next
+                    ? candidateHome <= gap || candidateHome > next
+                    : candidateHome <= gap && candidateHome > next;
+            if (movable) {
+                reverse[gap] = candidate;
+                gap = next;
+            }
+        }
+        reverse[gap] = EMPTY;
+    }
+}
@@ -0,0 +1,408 @@
+package org.intellifix.fix.hub;
+
+import lombok.extern.slf4j.Slf4j;
+import org.intellifix.fix.model.ForwardOverflow;
+import org.quickfixj.CharsetSupport;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Bounded FIFO of messages held for one absent session, in a memory-mapped file.
+ * <p>
+ * The file is a 64-byte header followed by a circular data area. Head and tail are byte
+ * positions that grow until the queue is empty again; a record is its length, a kind byte, the
+ * time it was queued, the session it came from and the message text, padded to 8 bytes. A
+ * record that would run past the end of the area is preceded by a wrap marker and starts again
+ * at the beginning.
+ * <p>
+ * Everything lives in the mapping, so the queue survives a hub restart. As with the mapped
+ * session store, the pages are only forced to disk by {@link #sync}, which the owner calls
+ * periodically, and by {@link #close}; a crash of the machine itself can lose what was written
+ * since the last sync. A record whose length or offsets do not fit the file, as such a crash can
+ * leave behind, is treated as the end of the queue: it and everything after it are counted as
+ * dropped. The header also keeps the parked, dropped and drained counters across restarts.
+ */
+@Slf4j
+public final class ForwardQueue implements Closeable {
+
+    /** The message still has to be routed and translated for the destination. */
+    public static final byte UNTRANSLATED = 0;
+    /** The message is ready to be sent as it is. */
+    public static final byte TRANSLATED = 1;
+
+    private static final int MAGIC = 0x49464651;
+    private static final int FORMAT = 1;
+    private static final int HEADER_BYTES = 64;
+    private static final int CAPACITY = 8;
+    private static final int HEAD = 16;
+    private static final int TAIL = 24;
+    private static final int COUNT = 32;
+    private static final int PARKED = 40;
+    private static final int DROPPED = 48;
+    private static final int DRAINED = 56;
+
+    private static final int RECORD_HEADER_BYTES = 16;
+    private static final int KIND = 4;
+    private static final int SOURCE_LENGTH = 6;
+    private static final int QUEUED_MILLIS = 8;
+    private static final int WRAP = -1;
+
+    /**
+     * The record at the head, as read by {@link #peek}.
+     */
+    public static final class Entry {
+        private long removals;
+        private byte kind;
+        private long queuedMillis;
+        private String source;
+        private String message;
+
+        public byte kind() {
+            return kind;
+        }
+
+        public long queuedMillis() {
+            return queuedMillis;
+        }
+
+        public String source() {
+            return source;
+        }
+
+        public String message() {
+            return message;
+        }
+    }
+
+    private final Path file;
+    private final FileChannel channel;
+    private final MappedByteBuffer map;
+    private final long capacity;
+    private final ForwardOverflow overflow;
+    private final Charset charset = CharsetSupport.getCharsetInstance();
+
+    // mirrors of the header and drain state, for the check on every live message
+    private volatile long count;
+    private volatile boolean draining;
+    // written since the last sync
+    private volatile boolean dirty;
+    // records taken off the head since start-up, to tell whether a peeked entry is still there
+    private long removals;
+
+    public ForwardQueue(Path file, long requestedCapacity, ForwardOverflow overflow) throws IOException {
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        this.file = file;
+        this.overflow = overflow;
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        long existing = existingCapacity(channel);
+        long dataBytes = existing > 0 ? existing : align(Math.max(1024, requestedCapacity));
+        if (HEADER_BYTES + dataBytes > Integer.MAX_VALUE) {
+            channel.close();
+            throw new IOException("Store-and-forward queue of " + dataBytes + " bytes is too large");
+        }
+        this.capacity = dataBytes;
+        this.map = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES + dataBytes);
+        if (existing <= 0) {
+            map.putInt(0, MAGIC);
+            map.putInt(4, FORMAT);
+            map.putLong(CAPACITY, dataBytes);
+            for (int offset = HEAD; offset < HEADER_BYTES; offset += Long.BYTES) {
+                map.putLong(offset, 0);
+            }
+        }
+        this.count = map.getLong(COUNT);
+        long used = map.getLong(TAIL) - map.getLong(HEAD);
+        if (count < 0 || used < 0 || used > capacity || (count > 0 && used == 0)) {
+            discardFromHead();
+        }
+    }
+
+    // the data size of a queue written earlier, or 0 for a new or foreign file
+    private static long existingCapacity(FileChannel channel) throws IOException {
+        if (channel.size() < HEADER_BYTES) {
+            return 0;
+        }
+        MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES);
+        if (header.getInt(0) != MAGIC || header.getInt(4) != FORMAT) {
+            return 0;
+        }
+        long capacity = header.getLong(CAPACITY);
+        return capacity > 0 && HEADER_BYTES + capacity <= channel.size() ? capacity : 0;
+    }
+
+    /**
+     * Appends a message, applying the overflow policy when it does not fit. Returns {@code false}
+     * if the message itself was dropped.
+     */
+    public synchronized boolean offer(byte kind, String source, String message, long nowMillis) {
+        byte[] sourceBytes = source.getBytes(charset);
+        byte[] messageBytes = message.getBytes(charset);
+        int length = RECORD_HEADER_BYTES + sourceBytes.length + messageBytes.length;
+        long required = align(length);
+        if (required > capacity || sourceBytes.length > Short.MAX_VALUE) {
+            increment(DROPPED);
+            return false;
+        }
+        long wrapBytes;
+        while (true) {
+            if (count == 0) {
+                // an empty queue starts again at the beginning of the area
+                map.putLong(HEAD, 0);
+                map.putLong(TAIL, 0);
+            }
+            long offset = map.getLong(TAIL) % capacity;
+            wrapBytes = offset + required > capacity ? capacity - offset : 0;
+            if (free() >= wrapBytes + required) {
+                break;
+            }
+            if (overflow == ForwardOverflow.DROP_NEWEST) {
+                increment(DROPPED);
+                return false;
+            }
+            if (removeHead()) {
+                increment(DROPPED);
+            }
+        }
+        long tail = map.getLong(TAIL);
+        long offset = tail % capacity;
+        if (wrapBytes > 0) {
+            map.putInt(HEADER_BYTES + (int) offset, WRAP);
+            tail += wrapBytes;
+            offset = 0;
+        }
+        int position = HEADER_BYTES + (int) offset;
+        map.putInt(position, length);
+        map.put(position + KIND, kind);
+        map.putShort(position + SOURCE_LENGTH, (short) sourceBytes.length);
+        map.putLong(position + QUEUED_MILLIS, nowMillis);
+        map.put(position + RECORD_HEADER_BYTES, sourceBytes);
+        map.put(position + RECORD_HEADER_BYTES + sourceBytes.length, messageBytes);
+        map.putLong(TAIL, tail + required);
+        setCount(count + 1);
+        increment(PARKED);
+        dirty = true;
+        return true;
+    }
+
+    /**
+     * Appends a message only while earlier ones are held or being drained, so that it cannot
+     * overtake them. Returns {@code false} if the caller may send it directly.
+     */
+    public boolean offerIfBacklogged(byte kind, String source, String message, long nowMillis) {
+        if (count == 0 && !draining) {
+            return false;
+        }
+        synchronized (this) {
+            if (count == 0 && !draining) {
+                return false;
+            }
+            offer(kind, source, message, nowMillis);
+            return true;
+        }
+    }
+
+    /**
+     * Whether messages are held or being drained; racy, {@link #offerIfBacklogged} decides.
+     */
+    public boolean backlogged() {
+        return count > 0 || draining;
+    }
+
+    /**
+     * Marks the queue as draining unless it is empty or already draining.
+     */
+    public synchronized boolean startDraining() {
+        if (draining || count == 0) {
+            return false;
+        }
+        draining = true;
+        return true;
+    }
+
+    /**
+     * Reads the head record into {@code entry}. When the queue is empty, or the rest of it is
+     * unreadable and has been dropped, draining ends and this returns {@code false}.
+     */
+    public synchronized boolean peek(Entry entry) {
+        int length = count == 0 ? 0 : headLength();
+        if (length < 0) {
+            discardFromHead();
+        }
+        if (count == 0) {
+            draining = false;
+            return false;
+        }
+        int position = HEADER_BYTES + (int) (map.getLong(HEAD) % capacity);
+        int sourceLength = map.getShort(position + SOURCE_LENGTH);
+        byte[] bytes = new byte[length - RECORD_HEADER_BYTES];
+        map.get(position + RECORD_HEADER_BYTES, bytes);
+        entry.removals = removals;
+        entry.kind = map.get(position + KIND);
+        entry.queuedMillis = map.getLong(position + QUEUED_MILLIS);
+        entry.source = new String(bytes, 0, sourceLength, charset);
+        entry.message = new String(bytes, sourceLength, bytes.length - sourceLength, charset);
+        return true;
+    }
+
+    /**
+     * Removes the record read by {@link #peek}, unless the overflow policy evicted it meanwhile.
+     */
+    public synchronized void remove(Entry entry) {
+        if (count == 0 || removals != entry.removals) {
+            return;
+        }
+        if (removeHead()) {
+            increment(DRAINED);
+        }
+    }
+
+    /**
+     * Ends draining early, e.g. because the destination logged out again.
+     */
+    public synchronized void stopDraining() {
+        draining = false;
+    }
+
+    public long size() {
+        return count;
+    }
+
+    public synchronized long usedBytes() {
+        return map.getLong(TAIL) - map.getLong(HEAD);
+    }
+
+    public long capacity() {
+        return capacity;
+    }
+
+    /**
+     * How long the oldest held message has been waiting, or 0 when the queue is empty.
+     */
+    public synchronized long oldestAgeMillis(long nowMillis) {
+        if (count == 0 || headLength() < 0) {
+            return 0;
+        }
+        return nowMillis - map.getLong(HEADER_BYTES + (int) (map.getLong(HEAD) % capacity) + QUEUED_MILLIS);
+    }
+
+    public synchronized long parked() {
+        return map.getLong(PARKED);
+    }
+
+    public synchronized long dropped() {
+        return map.getLong(DROPPED);
+    }
+
+    public synchronized long drained() {
+        return map.getLong(DRAINED);
+    }
+
+    public ForwardOverflow overflow() {
+        return overflow;
+    }
+
+    public Path file() {
+        return file;
+    }
+
+    /**
+     * Forces what was written since the last call to disk. Runs without the queue's lock, so
+     * senders and the drain never wait for the msync; a write racing with it goes with the next.
+     */
+    public void sync() {
+        if (!dirty) {
+            return;
+        }
+        dirty = false;
+        map.force();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        map.force();
+        channel.close();
+    }
+
+    private long free() {
+        return capacity - (map.getLong(TAIL) - map.getLong(HEAD));
+    }
+
+    /**
+     * Moves the head past a wrap marker and returns the length of the record there, or -1 if the
+     * bytes cannot be one: a length or source length that runs past the record, the area or the
+     * tail, or a head that is not a record position at all.
+     */
+    private int headLength() {
+        long head = map.getLong(HEAD);
+        if (head < 0 || (head & 7) != 0) {
+            return -1;
+        }
+        long offset = head % capacity;
+        if (map.getInt(HEADER_BYTES + (int) offset) == WRAP) {
+            head += capacity - offset;
+            offset = 0;
+            map.putLong(HEAD, head);
+        }
+        long used = map.getLong(TAIL) - head;
+        if (offset + RECORD_HEADER_BYTES > capacity || used < RECORD_HEADER_BYTES) {
+            return -1;
+        }
+        int position = HEADER_BYTES + (int) offset;
+        int length = map.getInt(position);
+        int sourceLength = map.getShort(position + SOURCE_LENGTH);
+        if (length < RECORD_HEADER_BYTES || offset + align(length) > capacity || align(length) > used
+                || sourceLength < 0 || sourceLength > length - RECORD_HEADER_BYTES) {
+            return -1;
+        }
+        return length;
+    }
+
+    // false if the head was unreadable and the whole queue went instead
+    private boolean removeHead() {
+        int length = headLength();
+        if (length < 0) {
+            discardFromHead();
+            return false;
+        }
+        map.putLong(HEAD, map.getLong(HEAD) + align(length));
+        setCount(count - 1);
+        removals++;
+        dirty = true;
+        return true;
+    }
+
+    // the records from the head on cannot be read back; drop them and start the area afresh
+    private void discardFromHead() {
+        log.error("[HUB] Store-and-forward queue {} is corrupt at offset {}, dropping its {} held messages", file,
+                map.getLong(HEAD), count);
+        map.putLong(DROPPED, map.getLong(DROPPED) + Math.max(0, count));
+        map.putLong(HEAD, 0);
+        map.putLong(TAIL, 0);
+        setCount(0);
+        removals++;
+        dirty = true;
+    }
+
+    private void setCount(long value) {
+        count = value;
+        map.putLong(COUNT, value);
+    }
+
+    private void increment(int counter) {
+        map.putLong(counter, map.getLong(counter) + 1);
+    }
+
+    private static long align(long length) {
+        return (length + 7) & ~7L;
+    }
+}
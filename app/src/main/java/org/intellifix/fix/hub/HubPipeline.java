@@ -0,0 +1,273 @@
+package org.intellifix.fix.hub;
+
+import lombok.extern.slf4j.Slf4j;
+import org.intellifix.common.SpscRingBuffer;
+import quickfix.Message;
+import quickfix.SessionID;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Outbound stage of the hub: decouples the session that received a message from the session it
+ * is forwarded to.
+ * <p>
+ * Every destination session has its own sender thread, and every (source, destination) pair its
+ * own {@link SpscRingBuffer}: the source session's thread is the only producer, the destination's
+ * sender the only consumer. Messages from one source therefore reach a destination in the order
+ * they arrived, and a slow destination only fills its own rings. When a ring is full the source
+ * waits for room rather than dropping, so backpressure reaches only the sessions feeding that
+ * destination.
+ * <p>
+ * That relies on each source session calling {@link #submit} from one thread at a time, as the
+ * threaded socket connectors and the loopback connector do. A submit that races {@link #close}
+ * waits for the sender to stop and sends what is left in its own ring itself.
+ */
+@Slf4j
+public final class HubPipeline implements AutoCloseable {
+
+    public static final int DEFAULT_QUEUE_CAPACITY = 4096;
+
+    private static final int BATCH = 64;
+    private static final int SPIN_LIMIT = 1000;
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final long BLOCK_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+    private static final long STATS_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(10);
+    private static final long CLOSE_TIMEOUT_MS = 5000;
+
+    /**
+     * Sends one message on the destination's sender thread.
+     */
+    @FunctionalInterface
+    public interface Sink {
+        void send(Message message, String msgType, SessionID source, SessionID destination, long receivedNanos);
+    }
+
+    private record Forward(Message message, String msgType, SessionID source, long receivedNanos) {
+    }
+
+    private final int queueCapacity;
+    private final Sink sink;
+    private final Map<SessionID, Lane> lanes = new ConcurrentHashMap<>();
+    private final Thread statsThread;
+
+    private volatile boolean running = true;
+
+    public HubPipeline(int queueCapacity, Sink sink) {
+        this.queueCapacity = queueCapacity;
+        this.sink = sink;
+        this.statsThread = new Thread(this::logStatsPeriodically, "hub-pipeline-stats");
+        this.statsThread.setDaemon(true);
+        this.statsThread.start();
+    }
+
+    /**
+     * Queues {@code message} for {@code destination}, waiting while that source's ring is full.
+     * After {@link #close} the message is sent on the calling thread instead.
+     */
+    public void submit(SessionID source, SessionID destination, Message message, String msgType,
+            long receivedNanos) {
+        if (!running) {
+            sink.send(message, msgType, source, destination, receivedNanos);
+            return;
+        }
+        Lane lane = lanes.get(destination);
+        if (lane == null) {
+            lane = lanes.computeIfAbsent(destination, Lane::new);
+        }
+        lane.offer(source, new Forward(message, msgType, source, receivedNanos));
+    }
+
+    /**
+     * Messages waiting for {@code destination}, over all sources.
+     */
+    public int depth(SessionID destination) {
+        Lane lane = lanes.get(destination);
+        return lane == null ? 0 : lane.depth();
+    }
+
+    /**
+     * Lets the sender threads drain what is queued and stops them.
+     */
+    @Override
+    public void close() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        statsThread.interrupt();
+        long deadline = System.currentTimeMillis() + CLOSE_TIMEOUT_MS;
+        for (Lane lane : lanes.values()) {
+            LockSupport.unpark(lane.thread);
+            try {
+                lane.thread.join(Math.max(1, deadline - System.currentTimeMillis()));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        logStats();
+    }
+
+    private void logStatsPeriodically() {
+        while (running) {
+            LockSupport.parkNanos(STATS_INTERVAL_NANOS);
+            if (running) {
+                logStats();
+            }
+        }
+    }
+
+    private void logStats() {
+        for (Lane lane : lanes.values()) {
+            log.info("[HUB] Queue to {}: depth={} maxDepth={} sent={} stalls={}", lane.destination, lane.depth(),
+                    lane.maxDepth.get(), lane.sent.sum(), lane.stalls.sum());
+        }
+    }
+
+    /**
+     * Everything bound for one destination session, and the thread that sends it.
+     */
+    private final class Lane implements Runnable {
+
+        final SessionID destination;
+        final Thread thread;
+        final Map<SessionID, SpscRingBuffer<Forward>> bySource = new ConcurrentHashMap<>();
+        final AtomicInteger maxDepth = new AtomicInteger();
+        final LongAdder sent = new LongAdder();
+        final LongAdder stalls = new LongAdder();
+
+        // copy-on-write snapshot of bySource's rings for the sender thread
+        volatile List<SpscRingBuffer<Forward>> rings = List.of();
+        volatile boolean sleeping;
+
+        Lane(SessionID destination) {
+            this.destination = destination;
+            this.thread = new Thread(this, "hub-out-" + destination.getTargetCompID());
+            this.thread.setDaemon(true);
+            this.thread.start();
+        }
+
+        void offer(SessionID source, Forward forward) {
+            SpscRingBuffer<Forward> ring = bySource.get(source);
+            if (ring == null) {
+                ring = ringFor(source);
+            }
+            if (!ring.offer(forward)) {
+                stalls.increment();
+                do {
+                    if (!thread.isAlive()) {
+                        sendLeftovers(ring);
+                        sink.send(forward.message(), forward.msgType(), source, destination, forward.receivedNanos());
+                        return;
+                    }
+                    LockSupport.unpark(thread);
+                    LockSupport.parkNanos(BLOCK_PARK_NANOS);
+                } while (!ring.offer(forward));
+            }
+            int depth = ring.size();
+            if (depth > maxDepth.get()) {
+                maxDepth.accumulateAndGet(depth, Math::max);
+            }
+            if (sleeping) {
+                LockSupport.unpark(thread);
+            }
+            if (!running) {
+                // the sender may have made its last pass before this forward went in
+                sendLeftovers(ring);
+            }
+        }
+
+        /**
+         * Sends what remains in {@code ring} on the calling thread once the sender has stopped.
+         * Only the ring's producer calls this, so after the sender it is the ring's only consumer.
+         */
+        private void sendLeftovers(SpscRingBuffer<Forward> ring) {
+            LockSupport.unpark(thread);
+            try {
+                thread.join(CLOSE_TIMEOUT_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (thread.isAlive()) {
+                log.warn("[HUB] Sender to {} did not stop; {} messages left queued", destination, ring.size());
+                return;
+            }
+            sent.add(send(ring, Integer.MAX_VALUE));
+        }
+
+        private synchronized SpscRingBuffer<Forward> ringFor(SessionID source) {
+            SpscRingBuffer<Forward> ring = bySource.get(source);
+            if (ring == null) {
+                ring = new SpscRingBuffer<>(queueCapacity);
+                List<SpscRingBuffer<Forward>> next = new ArrayList<>(rings);
+                next.add(ring);
+                rings = List.copyOf(next);
+                bySource.put(source, ring);
+            }
+            return ring;
+        }
+
+        int depth() {
+            int depth = 0;
+            for (SpscRingBuffer<Forward> ring : rings) {
+                depth += ring.size();
+            }
+            return depth;
+        }
+
+        @Override
+        public void run() {
+            int idle = 0;
+            while (true) {
+                if (drain() > 0) {
+                    idle = 0;
+                    continue;
+                }
+                if (!running) {
+                    break;
+                }
+                if (++idle < SPIN_LIMIT) {
+                    Thread.onSpinWait();
+                    continue;
+                }
+                sleeping = true;
+                if (depth() == 0 && running) {
+                    LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+                }
+                sleeping = false;
+            }
+        }
+
+        // a bounded batch from each source in turn, so one busy source cannot starve the others
+        private int drain() {
+            int drained = 0;
+            for (SpscRingBuffer<Forward> ring : rings) {
+                drained += send(ring, BATCH);
+            }
+            sent.add(drained);
+            return drained;
+        }
+
+        private int send(SpscRingBuffer<Forward> ring, int max) {
+            int count = 0;
+            Forward forward;
+            while (count < max && (forward = ring.poll()) != null) {
+                try {
+                    sink.send(forward.message(), forward.msgType(), forward.source(), destination,
+                            forward.receivedNanos());
+                } catch (RuntimeException e) {
+                    log.error("[HUB] Failed to send to {}", destination, e);
+                }
+                count++;
+            }
+            return count;
+        }
+    }
+}
@@ -0,0 +1,305 @@
+package org.intellifix.fix.hub;
+
+import lombok.extern.slf4j.Slf4j;
+import quickfix.ConfigError;
+import quickfix.FieldConvertError;
+import quickfix.FieldNotFound;
+import quickfix.Message;
+import quickfix.SessionID;
+import quickfix.SessionSettings;
+import quickfix.field.Account;
+import quickfix.field.DeliverToCompID;
+import quickfix.field.Symbol;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Routing table for a hub fronting many client and broker sessions.
+ * <p>
+ * Session roles and routing rules are fixed at start-up; the set of logged-on sessions is kept in
+ * immutable maps that are swapped on logon/logout, so lookups from session threads are a volatile
+ * read plus hash probes and do not depend on how many sessions exist.
+ * <p>
+ * Orders are routed by DeliverToCompID (128), then Account (1), then Symbol (55), falling back to
+ * all configured brokers. Every group keeps its logged-on brokers and their outstanding-order
+ * counters in arrays rebuilt on logon/logout. In a group of up to {@value #EXACT_SCAN_LIMIT} the
+ * broker with the fewest outstanding orders wins; a larger group compares two members picked at
+ * random, so the choice costs the same however many brokers it has and still steers orders away
+ * from the busy ones. Counts survive a logout, since the broker may still hold the orders.
+ */
+@Slf4j
+public final class HubRouter {
+
+    public static final String CLIENT_COMP_ID = "ClientCompID";
+    public static final String BROKER_COMP_ID = "BrokerCompID";
+    public static final String ROUTE_BY_TARGET = "RouteByTarget";
+    public static final String ROUTE_BY_ACCOUNT = "RouteByAccount";
+    public static final String ROUTE_BY_SYMBOL = "RouteBySymbol";
+
+    static final int EXACT_SCAN_LIMIT = 4;
+
+    private final Set<String> clientCompIDs;
+    private final Set<String> brokerCompIDs;
+    private final Map<String, Group> byTarget;
+    private final Map<String, Group> byAccount;
+    private final Map<String, Group> bySymbol;
+    private final Group defaultBrokers;
+    private final List<Group> groups = new ArrayList<>();
+    private final Map<String, AtomicInteger> outstanding;
+
+    private volatile Map<String, SessionID> liveBrokers = Map.of();
+    private volatile Set<SessionID> liveClients = Set.of();
+
+    public HubRouter(Set<String> clientCompIDs, Set<String> brokerCompIDs) {
+        this(clientCompIDs, brokerCompIDs, Map.of(), Map.of(), Map.of());
+    }
+
+    public HubRouter(Set<String> clientCompIDs, Set<String> brokerCompIDs, Map<String, String[]> byTarget,
+            Map<String, String[]> byAccount, Map<String, String[]> bySymbol) {
+        this.clientCompIDs = Set.copyOf(clientCompIDs);
+        this.brokerCompIDs = Set.copyOf(brokerCompIDs);
+        this.byTarget = toGroups(byTarget);
+        this.byAccount = toGroups(byAccount);
+        this.bySymbol = toGroups(bySymbol);
+        this.defaultBrokers = newGroup(brokerCompIDs.toArray(String[]::new));
+        Map<String, AtomicInteger> counters = new HashMap<>();
+        for (String broker : brokerCompIDs) {
+            counters.put(broker, new AtomicInteger());
+        }
+        this.outstanding = Map.copyOf(counters);
+    }
+
+    private Map<String, Group> toGroups(Map<String, String[]> rules) {
+        Map<String, Group> result = new HashMap<>();
+        rules.forEach((key, brokers) -> result.put(key, newGroup(brokers)));
+        return Map.copyOf(result);
+    }
+
+    private Group newGroup(String[] brokers) {
+        Group group = new Group(brokers);
+        groups.add(group);
+        return group;
+    }
+
+    /**
+     * Reads {@code ClientCompID}/{@code BrokerCompID} (comma separated) and the optional
+     * {@code RouteByTarget}/{@code RouteByAccount}/{@code RouteBySymbol} rules, each written as
+     * {@code KEY:BROKER1|BROKER2;KEY2:BROKER3}.
+     */
+    public static HubRouter fromSettings(SessionSettings settings) throws ConfigError, FieldConvertError {
+        return new HubRouter(
+                parseList(settings.getString(CLIENT_COMP_ID)),
+                parseList(settings.getString(BROKER_COMP_ID)),
+                parseRules(settings, ROUTE_BY_TARGET),
+                parseRules(settings, ROUTE_BY_ACCOUNT),
+                parseRules(settings, ROUTE_BY_SYMBOL));
+    }
+
+    public boolean isClient(SessionID sessionID) {
+        return clientCompIDs.contains(sessionID.getTargetCompID());
+    }
+
+    public boolean isBroker(SessionID sessionID) {
+        return brokerCompIDs.contains(sessionID.getTargetCompID());
+    }
+
+    public boolean isLoggedOn(SessionID sessionID) {
+        return liveClients.contains(sessionID) || sessionID.equals(liveBrokers.get(sessionID.getTargetCompID()));
+    }
+
+    public synchronized void onLogon(SessionID sessionID) {
+        if (isBroker(sessionID)) {
+            Map<String, SessionID> next = new HashMap<>(liveBrokers);
+            next.put(sessionID.getTargetCompID(), sessionID);
+            liveBrokers = Map.copyOf(next);
+            refreshGroups();
+        } else if (isClient(sessionID)) {
+            Set<SessionID> next = new HashSet<>(liveClients);
+            next.add(sessionID);
+            liveClients = Set.copyOf(next);
+        } else {
+            log.info("[HUB] WARN: Session " + sessionID + " is neither a configured client nor broker");
+        }
+    }
+
+    public synchronized void onLogout(SessionID sessionID) {
+        if (isBroker(sessionID) && sessionID.equals(liveBrokers.get(sessionID.getTargetCompID()))) {
+            Map<String, SessionID> next = new HashMap<>(liveBrokers);
+            next.remove(sessionID.getTargetCompID());
+            liveBrokers = Map.copyOf(next);
+            refreshGroups();
+        } else if (liveClients.contains(sessionID)) {
+            Set<SessionID> next = new HashSet<>(liveClients);
+            next.remove(sessionID);
+            liveClients = Set.copyOf(next);
+        }
+    }
+
+    /**
+     * Picks the broker session for a client message, or {@code null} if no broker in its route
+     * group is logged on.
+     */
+    public SessionID route(Message message) throws FieldNotFound {
+        return leastOutstanding(group(message));
+    }
+
+    /**
+     * The broker a client message is meant for when none of its route group is logged on: the
+     * first of the group.
+     */
+    public String intendedBroker(Message message) throws FieldNotFound {
+        String[] brokers = group(message).brokers;
+        return brokers.length == 0 ? null : brokers[0];
+    }
+
+    /**
+     * The only configured client, or {@code null} if there are several.
+     */
+    public String soleClientCompID() {
+        return clientCompIDs.size() == 1 ? clientCompIDs.iterator().next() : null;
+    }
+
+    private Group group(Message message) throws FieldNotFound {
+        Group group = null;
+        if (!byTarget.isEmpty() && message.getHeader().isSetField(DeliverToCompID.FIELD)) {
+            group = byTarget.get(message.getHeader().getString(DeliverToCompID.FIELD));
+        }
+        if (group == null && !byAccount.isEmpty() && message.isSetField(Account.FIELD)) {
+            group = byAccount.get(message.getString(Account.FIELD));
+        }
+        if (group == null && !bySymbol.isEmpty() && message.isSetField(Symbol.FIELD)) {
+            group = bySymbol.get(message.getString(Symbol.FIELD));
+        }
+        return group == null ? defaultBrokers : group;
+    }
+
+    /**
+     * The only logged-on client, used when an inbound report cannot be correlated to an order.
+     */
+    public SessionID soleClient() {
+        Set<SessionID> clients = liveClients;
+        return clients.size() == 1 ? clients.iterator().next() : null;
+    }
+
+    public void orderOpened(SessionID broker) {
+        AtomicInteger counter = outstanding.get(broker.getTargetCompID());
+        if (counter != null) {
+            counter.incrementAndGet();
+        }
+    }
+
+    public void orderClosed(SessionID broker) {
+        AtomicInteger counter = outstanding.get(broker.getTargetCompID());
+        if (counter != null) {
+            counter.updateAndGet(n -> n > 0 ? n - 1 : 0);
+        }
+    }
+
+    public int outstanding(String brokerCompID) {
+        AtomicInteger counter = outstanding.get(brokerCompID);
+        return counter == null ? 0 : counter.get();
+    }
+
+    private SessionID leastOutstanding(Group group) {
+        Live live = group.live;
+        SessionID[] sessions = live.sessions();
+        AtomicInteger[] counters = live.counters();
+        int n = sessions.length;
+        if (n <= EXACT_SCAN_LIMIT) {
+            int best = -1;
+            int bestCount = Integer.MAX_VALUE;
+            for (int i = 0; i < n; i++) {
+                int count = counters[i].get();
+                if (count < bestCount) {
+                    best = i;
+                    bestCount = count;
+                }
+            }
+            return best < 0 ? null : sessions[best];
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int first = random.nextInt(n);
+        int second = random.nextInt(n - 1);
+        if (second >= first) {
+            second++;
+        }
+        return counters[second].get() < counters[first].get() ? sessions[second] : sessions[first];
+    }
+
+    // called under the router's lock after liveBrokers changed
+    private void refreshGroups() {
+        Map<String, SessionID> brokers = liveBrokers;
+        for (Group group : groups) {
+            List<SessionID> sessions = new ArrayList<>(group.brokers.length);
+            List<AtomicInteger> counters = new ArrayList<>(group.brokers.length);
+            for (String compID : group.brokers) {
+                SessionID session = brokers.get(compID);
+                AtomicInteger counter = outstanding.get(compID);
+                if (session != null && counter != null) {
+                    sessions.add(session);
+                    counters.add(counter);
+                }
+            }
+            group.live = new Live(sessions.toArray(SessionID[]::new), counters.toArray(AtomicInteger[]::new));
+        }
+    }
+
+    /**
+     * One route group: the brokers it names, in order, and the ones among them that are logged on.
+     */
+    private static final class Group {
+        final String[] brokers;
+        volatile Live live = Live.NONE;
+
+        Group(String[] brokers) {
+            this.brokers = brokers.clone();
+        }
+    }
+
+    /**
+     * The logged-on brokers of a group with their outstanding-order counters, index for index.
+     */
+    private record Live(SessionID[] sessions, AtomicInteger[] counters) {
+        static final Live NONE = new Live(new SessionID[0], new AtomicInteger[0]);
+    }
+
+    private static Set<String> parseList(String value) {
+        Set<String> result = new LinkedHashSet<>();
+        for (String item : value.split("[,|]")) {
+            if (!item.isBlank()) {
+                result.add(item.trim());
+            }
+        }
+        return result;
+    }
+
+    private static Map<String, String[]> parseRules(SessionSettings settings, String key)
+            throws ConfigError, FieldConvertError {
+        if (!settings.isSetting(key)) {
+            return Map.of();
+        }
+        Map<String, String[]> rules = new HashMap<>();
+        for (String rule : settings.getString(key).split(";")) {
+            if (rule.isBlank()) {
+                continue;
+            }
+            int colon = rule.indexOf(':');
+            if (colon <= 0) {
+                throw new ConfigError("Invalid " + key + " rule: " + rule);
+            }
+            String[] brokers = parseList(rule.substring(colon + 1)).toArray(String[]::new);
+            rules.put(rule.substring(0, colon).trim(), brokers);
+            log.info("[HUB] Route " + key + " " + rule.substring(0, colon).trim() + " -> " + Arrays.toString(brokers));
+        }
+        return rules;
+    }
+}
@@ -0,0 +1,290 @@
+package org.intellifix.fix.hub;
+
+import lombok.extern.slf4j.Slf4j;
+import org.intellifix.fix.model.StoreForwardConfig;
+import quickfix.InvalidMessage;
+import quickfix.Message;
+import quickfix.SessionID;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Holds messages for sessions that are not logged on and sends them once they are.
+ * <p>
+ * Each destination CompID has its own {@link ForwardQueue} file in the configured directory;
+ * the files found there at start-up are picked up again, so held messages outlive a hub
+ * restart. When the destination logs on, a drain thread sends what is held at the configured
+ * rate. Until the queue is empty, new messages for that destination are queued behind it
+ * rather than overtaking it. Depth, bytes used, age of the oldest message and the parked,
+ * dropped and drained counts are logged every 10 seconds while anything is held, and the queues
+ * are forced to disk every {@code syncMillis} from a thread of their own.
+ */
+@Slf4j
+public final class StoreAndForward implements AutoCloseable {
+
+    public static final String DEFAULT_DIRECTORY = "forward_queue";
+    public static final long DEFAULT_QUEUE_BYTES = 16L << 20;
+    public static final double DEFAULT_DRAIN_RATE = 100;
+    public static final long DEFAULT_SYNC_MILLIS = 100;
+
+    private static final String SUFFIX = ".fwdq";
+    private static final long STATS_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(10);
+    private static final long CLOSE_TIMEOUT_MS = 5000;
+
+    /**
+     * Sends one held message to {@code destination}, translating it first unless it already is.
+     */
+    @FunctionalInterface
+    public interface Delivery {
+        void deliver(SessionID source, Message message, boolean translated, SessionID destination);
+    }
+
+    private final StoreForwardConfig config;
+    private final Delivery delivery;
+    private final Map<String, ForwardQueue> queues = new ConcurrentHashMap<>();
+    private final Map<String, SessionID> loggedOn = new ConcurrentHashMap<>();
+    private final Map<String, Thread> drainers = new ConcurrentHashMap<>();
+    private final Set<String> overflowing = ConcurrentHashMap.newKeySet();
+    private final Thread statsThread;
+    private final Thread syncThread;
+
+    private volatile boolean running = true;
+
+    public StoreAndForward(StoreForwardConfig config, Delivery delivery) throws IOException {
+        this.config = config;
+        this.delivery = delivery;
+        Files.createDirectories(config.directory());
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(config.directory(), "*" + SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                String destination = name.substring(0, name.length() - SUFFIX.length());
+                ForwardQueue queue = new ForwardQueue(file, config.queueBytes(), config.overflow());
+                queues.put(destination, queue);
+                if (queue.size() > 0) {
+                    log.info("[HUB] Holding {} messages for {} from before the restart", queue.size(), destination);
+                }
+            }
+        }
+        this.statsThread = new Thread(this::logStatsPeriodically, "hub-store-forward-stats");
+        this.statsThread.setDaemon(true);
+        this.statsThread.start();
+        if (config.syncMillis() > 0) {
+            this.syncThread = new Thread(this::syncPeriodically, "hub-store-forward-sync");
+            this.syncThread.setDaemon(true);
+            this.syncThread.start();
+        } else {
+            this.syncThread = null;
+        }
+    }
+
+    /**
+     * Holds {@code message} until {@code destination} logs on. Returns {@code false} if the
+     * overflow policy dropped it.
+     */
+    public boolean park(String destination, byte kind, SessionID source, Message message) {
+        ForwardQueue queue = queue(destination);
+        if (queue == null) {
+            return false;
+        }
+        long dropped = queue.dropped();
+        if (queue.size() == 0) {
+            log.info("[HUB] {} is not logged on, holding messages for it", destination);
+        }
+        boolean parked = queue.offer(kind, source.toString(), message.toString(), System.currentTimeMillis());
+        if (queue.dropped() > dropped && overflowing.add(destination)) {
+            log.warn("[HUB] Store-and-forward queue for {} is full, dropping the {} messages ({})", destination,
+                    parked ? "oldest" : "newest", stats(queue));
+        }
+        return parked;
+    }
+
+    /**
+     * Queues {@code message} behind earlier ones still held for {@code destination}. Returns
+     * {@code false} when there are none and it can be sent directly.
+     */
+    public boolean parkIfBacklogged(String destination, byte kind, SessionID source, Message message) {
+        ForwardQueue queue = queues.get(destination);
+        if (queue == null || !queue.backlogged()) {
+            return false;
+        }
+        return queue.offerIfBacklogged(kind, source.toString(), message.toString(), System.currentTimeMillis());
+    }
+
+    public void onLogon(SessionID sessionID) {
+        String destination = sessionID.getTargetCompID();
+        loggedOn.put(destination, sessionID);
+        ForwardQueue queue = queues.get(destination);
+        if (running && queue != null && queue.startDraining()) {
+            Thread drainer = new Thread(() -> drain(destination, sessionID, queue), "hub-drain-" + destination);
+            drainer.setDaemon(true);
+            drainers.put(destination, drainer);
+            drainer.start();
+        }
+    }
+
+    public void onLogout(SessionID sessionID) {
+        loggedOn.remove(sessionID.getTargetCompID(), sessionID);
+    }
+
+    /**
+     * Messages held for {@code destination}.
+     */
+    public long depth(String destination) {
+        ForwardQueue queue = queues.get(destination);
+        return queue == null ? 0 : queue.size();
+    }
+
+    /**
+     * How long the oldest message held for {@code destination} has been waiting.
+     */
+    public long oldestAgeMillis(String destination) {
+        ForwardQueue queue = queues.get(destination);
+        return queue == null ? 0 : queue.oldestAgeMillis(System.currentTimeMillis());
+    }
+
+    @Override
+    public void close() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        statsThread.interrupt();
+        List<Thread> threads = new ArrayList<>(drainers.values());
+        if (syncThread != null) {
+            // an msync must not race with closing the files
+            syncThread.interrupt();
+            threads.add(syncThread);
+        }
+        long deadline = System.currentTimeMillis() + CLOSE_TIMEOUT_MS;
+        for (Thread thread : threads) {
+            try {
+                thread.join(Math.max(1, deadline - System.currentTimeMillis()));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        queues.forEach((destination, queue) -> {
+            log.info("[HUB] Store-and-forward {}: {}", destination, stats(queue));
+            try {
+                queue.close();
+            } catch (IOException e) {
+                log.error("[HUB] Failed to close store-and-forward queue {}", queue.file(), e);
+            }
+        });
+    }
+
+    private ForwardQueue queue(String destination) {
+        ForwardQueue queue = queues.get(destination);
+        if (queue != null) {
+            return queue;
+        }
+        return queues.computeIfAbsent(destination, d -> {
+            try {
+                return new ForwardQueue(config.directory().resolve(d + SUFFIX), config.queueBytes(),
+                        config.overflow());
+            } catch (IOException e) {
+                log.error("[HUB] Cannot create store-and-forward queue for {}", d, e);
+                return null;
+            }
+        });
+    }
+
+    private void drain(String destination, SessionID sessionID, ForwardQueue queue) {
+        long intervalNanos = config.drainRate() > 0 ? (long) (1e9 / config.drainRate()) : 0;
+        log.info("[HUB] {} logged on, sending {} held messages at {}/s", destination, queue.size(),
+                intervalNanos > 0 ? config.drainRate() : "full rate");
+        ForwardQueue.Entry entry = new ForwardQueue.Entry();
+        long next = System.nanoTime();
+        long sent = 0;
+        boolean stopped = false;
+        boolean failed = false;
+        try {
+            while (queue.peek(entry)) {
+                if (!running || !sessionID.equals(loggedOn.get(destination))) {
+                    stopped = true;
+                    break;
+                }
+                for (long wait = next - System.nanoTime(); wait > 0; wait = next - System.nanoTime()) {
+                    LockSupport.parkNanos(wait);
+                }
+                // a drain that fell behind carries on at the rate instead of catching up in a burst
+                next = Math.max(next, System.nanoTime() - intervalNanos) + intervalNanos;
+
+                Message message = new Message();
+                try {
+                    message.fromString(entry.message(), null, false);
+                    delivery.deliver(new SessionID(entry.source()), message,
+                            entry.kind() == ForwardQueue.TRANSLATED, sessionID);
+                    sent++;
+                } catch (InvalidMessage | RuntimeException e) {
+                    log.error("[HUB] Dropping held message for {} that could not be sent: {}", destination,
+                            e.getMessage());
+                }
+                queue.remove(entry);
+            }
+        } catch (RuntimeException e) {
+            // what is left stays held and is tried again on the next logon
+            log.error("[HUB] Draining held messages for {} failed", destination, e);
+            failed = true;
+        }
+        if (stopped || failed) {
+            queue.stopDraining();
+        } else {
+            overflowing.remove(destination);
+        }
+        drainers.remove(destination, Thread.currentThread());
+        log.info("[HUB] Sent {} held messages to {}{}: {}", sent, destination,
+                stopped ? ", stopped" : failed ? ", failed" : "", stats(queue));
+        // logged on again while this drain was stopping
+        SessionID current = loggedOn.get(destination);
+        if (stopped && running && current != null) {
+            onLogon(current);
+        }
+    }
+
+    private void logStatsPeriodically() {
+        while (running) {
+            LockSupport.parkNanos(STATS_INTERVAL_NANOS);
+            if (!running) {
+                return;
+            }
+            queues.forEach((destination, queue) -> {
+                if (queue.backlogged()) {
+                    log.info("[HUB] Store-and-forward {}: {}", destination, stats(queue));
+                }
+            });
+        }
+    }
+
+    private void syncPeriodically() {
+        long intervalNanos = TimeUnit.MILLISECONDS.toNanos(config.syncMillis());
+        while (running) {
+            LockSupport.parkNanos(intervalNanos);
+            for (ForwardQueue queue : queues.values()) {
+                try {
+                    queue.sync();
+                } catch (RuntimeException e) {
+                    log.warn("[HUB] Failed to sync store-and-forward queue {}: {}", queue.file(), e.toString());
+                }
+            }
+        }
+    }
+
+    private String stats(ForwardQueue queue) {
+        return "depth=" + queue.size() + " bytes=" + queue.usedBytes() + "/" + queue.capacity()
+                + " oldestAgeMs=" + queue.oldestAgeMillis(System.currentTimeMillis())
+                + " parked=" + queue.parked() + " dropped=" + queue.dropped() + " drained=" + queue.drained()
+                + " overflow=" + queue.overflow();
+    }
+}
@@ -0,0 +1,303 @@
+package org.intellifix.fix.log;
+
+import lombok.extern.slf4j.Slf4j;
+import org.intellifix.common.MpscByteRing;
+import quickfix.ConfigError;
+import quickfix.FieldConvertError;
+import quickfix.Log;
+import quickfix.LogFactory;
+import quickfix.SessionID;
+import quickfix.SessionSettings;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Session log that keeps the session threads off stdout and off the disk.
+ * <p>
+ * Each message or event is copied, with a timestamp, into an {@link MpscByteRing}; a background
+ * thread drains the ring into one binary file per process. Messages can be sampled (1 in
+ * {@code BinaryLogSampleRate}) and each category switched off; when the ring is full, records
+ * are dropped and counted rather than blocking the session. {@link BinaryLogReader} renders the
+ * file as text.
+ * <p>
+ * File layout: the 8-byte {@link #MAGIC}, then records of {@code int length} (whole record),
+ * {@code byte category}, one unused byte, {@code short session}, {@code long epoch nanos} and
+ * the text as single bytes, little-endian. A {@link #SESSION} record names a session index
+ * before its first use.
+ */
+@Slf4j
+public final class BinaryLogFactory implements LogFactory, AutoCloseable {
+
+    public static final String BINARY_LOG_PATH = "BinaryLogPath";
+    public static final String BINARY_LOG_BUFFER_KB = "BinaryLogBufferKB";
+    public static final String BINARY_LOG_SAMPLE_RATE = "BinaryLogSampleRate";
+    public static final String BINARY_LOG_INCOMING = "BinaryLogIncoming";
+    public static final String BINARY_LOG_OUTGOING = "BinaryLogOutgoing";
+    public static final String BINARY_LOG_EVENTS = "BinaryLogEvents";
+    public static final String BINARY_LOG_HEARTBEATS = "BinaryLogHeartBeats";
+
+    public static final byte[] MAGIC = "IFXBLOG1".getBytes(StandardCharsets.US_ASCII);
+    public static final byte INCOMING = 1;
+    public static final byte OUTGOING = 2;
+    public static final byte EVENT = 3;
+    public static final byte ERROR_EVENT = 4;
+    public static final byte SESSION = 5;
+    public static final int RECORD_HEADER_BYTES = 16;
+
+    private static final String HEARTBEAT = "\u000135=0\u0001";
+
+    private final MpscByteRing ring;
+    private final FileChannel channel;
+    private final ByteBuffer out = ByteBuffer.allocateDirect(1 << 20).order(ByteOrder.LITTLE_ENDIAN);
+    private final boolean incoming;
+    private final boolean outgoing;
+    private final boolean events;
+    private final boolean heartbeats;
+    private final int sampleRate;
+    private final List<SessionID> sessions = new ArrayList<>();
+    private final long epochNanosAtStart;
+    private final long nanoTimeAtStart = System.nanoTime();
+    private final AtomicLong dropped = new AtomicLong();
+    private final Thread writer;
+    private final MpscByteRing.RecordHandler copier = this::copy;
+    private volatile boolean running = true;
+    private volatile boolean failed;
+    private IOException failure;
+    private long written;
+
+    public BinaryLogFactory(Path file, int bufferBytes, boolean incoming, boolean outgoing, boolean events,
+            boolean heartbeats, int sampleRate) throws IOException {
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        this.ring = new MpscByteRing(bufferBytes);
+        this.incoming = incoming;
+        this.outgoing = outgoing;
+        this.events = events;
+        this.heartbeats = heartbeats;
+        this.sampleRate = Math.max(1, sampleRate);
+        Instant now = Instant.now();
+        this.epochNanosAtStart = now.getEpochSecond() * 1_000_000_000L + now.getNano();
+
+        out.put(MAGIC);
+        this.writer = new Thread(this::drainLoop, "binary-log-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(this::close, "binary-log-close"));
+        log.info("[LOG] Binary session log {} (sample 1/{}, ring {} KB)", file, this.sampleRate,
+                ring.capacity() >> 10);
+    }
+
+    /**
+     * Reads the {@code BinaryLog*} settings; the file defaults to {@code log/<role>.binlog}.
+     */
+    public static BinaryLogFactory fromSettings(SessionSettings settings, String role)
+            throws ConfigError, FieldConvertError, IOException {
+        return new BinaryLogFactory(
+                Path.of(settings.isSetting(BINARY_LOG_PATH)
+                        ? settings.getString(BINARY_LOG_PATH)
+                        : "log/" + role + ".binlog"),
+                settings.isSetting(BINARY_LOG_BUFFER_KB) ? (int) settings.getLong(BINARY_LOG_BUFFER_KB) << 10 : 4 << 20,
+                flag(settings, BINARY_LOG_INCOMING),
+                flag(settings, BINARY_LOG_OUTGOING),
+                flag(settings, BINARY_LOG_EVENTS),
+                flag(settings, BINARY_LOG_HEARTBEATS),
+                settings.isSetting(BINARY_LOG_SAMPLE_RATE) ? (int) settings.getLong(BINARY_LOG_SAMPLE_RATE) : 1);
+    }
+
+    @Override
+    public synchronized Log create(SessionID sessionID) {
+        int index = sessions.indexOf(sessionID);
+        if (index < 0) {
+            index = sessions.size();
+            sessions.add(sessionID);
+            // the reader needs the name before any record that uses the index
+            while (!append(SESSION, index, sessionID.toString()) && running && !failed) {
+                Thread.onSpinWait();
+            }
+        }
+        return new BinaryLog(index);
+    }
+
+    public long dropped() {
+        return dropped.get();
+    }
+
+    /**
+     * Stops the writer after it has drained everything queued so far. Safe to call more than once.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (!running) {
+                return;
+            }
+            running = false;
+        }
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(5));
+            if (failed) {
+                channel.close();
+                return;
+            }
+            drainAll();
+            flush();
+            channel.force(false);
+            channel.close();
+            log.info("[LOG] Binary session log closed: {} records written, {} dropped", written, dropped.get());
+        } catch (IOException e) {
+            log.error("[LOG] Failed to close binary session log", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private boolean append(byte category, int session, String text) {
+        int length = RECORD_HEADER_BYTES + text.length();
+        if (length > ring.capacity() / 2) {
+            length = ring.capacity() / 2;
+        }
+        int offset = ring.claim(length);
+        if (offset < 0) {
+            dropped.incrementAndGet();
+            return false;
+        }
+        byte[] buffer = ring.buffer();
+        buffer[offset + 4] = category;
+        buffer[offset + 6] = (byte) session;
+        buffer[offset + 7] = (byte) (session >>> 8);
+        long nanos = epochNanosAtStart + (System.nanoTime() - nanoTimeAtStart);
+        for (int i = 0; i < 8; i++) {
+            buffer[offset + 8 + i] = (byte) (nanos >>> (i * 8));
+        }
+        int start = offset + RECORD_HEADER_BYTES;
+        int chars = length - RECORD_HEADER_BYTES;
+        for (int i = 0; i < chars; i++) {
+            char c = text.charAt(i);
+            buffer[start + i] = c <= 0xFF ? (byte) c : (byte) '?';
+        }
+        ring.commit(offset, length);
+        return true;
+    }
+
+    private void drainLoop() {
+        while (running) {
+            try {
+                if (drainAll() == 0) {
+                    flush();
+                    LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+                }
+            } catch (IOException | RuntimeException e) {
+                log.error("[LOG] Binary session log write failed; further records are dropped", e);
+                failed = true;
+                return;
+            }
+        }
+    }
+
+    private int drainAll() throws IOException {
+        int total = 0;
+        int drained;
+        while ((drained = ring.drain(copier, 1024)) > 0) {
+            if (failure != null) {
+                throw failure;
+            }
+            total += drained;
+        }
+        written += total;
+        return total;
+    }
+
+    private void copy(byte[] buffer, int offset, int length) {
+        try {
+            if (out.remaining() < length) {
+                flush();
+            }
+            if (length > out.capacity()) {
+                // records may take half the ring, which can be larger than the staging buffer
+                ByteBuffer record = ByteBuffer.wrap(buffer, offset, length);
+                while (record.hasRemaining()) {
+                    channel.write(record);
+                }
+            } else {
+                out.put(buffer, offset, length);
+            }
+        } catch (IOException e) {
+            failure = e;
+        }
+    }
+
+    private void flush() throws IOException {
+        out.flip();
+        while (out.hasRemaining()) {
+            channel.write(out);
+        }
+        out.clear();
+    }
+
+    private static boolean flag(SessionSettings settings, String key) throws ConfigError, FieldConvertError {
+        return !settings.isSetting(key) || settings.getBool(key);
+    }
+
+    private final class BinaryLog implements Log {
+
+        private final int session;
+        private final AtomicLong messages = new AtomicLong();
+
+        private BinaryLog(int session) {
+            this.session = session;
+        }
+
+        @Override
+        public void clear() {
+        }
+
+        @Override
+        public void onIncoming(String message) {
+            if (incoming && sampled(message)) {
+                append(INCOMING, session, message);
+            }
+        }
+
+        @Override
+        public void onOutgoing(String message) {
+            if (outgoing && sampled(message)) {
+                append(OUTGOING, session, message);
+            }
+        }
+
+        @Override
+        public void onEvent(String text) {
+            if (events) {
+                append(EVENT, session, text);
+            }
+        }
+
+        @Override
+        public void onErrorEvent(String text) {
+            append(ERROR_EVENT, session, text);
+        }
+
+        private boolean sampled(String message) {
+            if (!heartbeats && message.contains(HEARTBEAT)) {
+                return false;
+            }
+            return sampleRate == 1 || messages.getAndIncrement() % sampleRate == 0;
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package org.intellifix.fix.log;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Renders a {@link BinaryLogFactory} file as text, one line per record:
+ * {@code <UTC timestamp> <category> <session> <text>}, with SOH shown as '|'. An optional second
+ * argument keeps only sessions whose ID contains it.
+ */
+public final class BinaryLogReader {
+
+    private BinaryLogReader() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: BinaryLogReader <binary log file> [session filter]");
+            System.exit(2);
+        }
+        String filter = args.length > 1 ? args[1] : null;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(Path.of(args[0])),
+                1 << 16))) {
+            render(in, filter, System.out);
+        }
+    }
+
+    public static void render(DataInputStream in, String filter, PrintStream out) throws IOException {
+        byte[] magic = new byte[BinaryLogFactory.MAGIC.length];
+        in.readFully(magic);
+        if (!Arrays.equals(magic, BinaryLogFactory.MAGIC)) {
+            throw new IOException("Not a binary session log");
+        }
+        Map<Integer, String> sessions = new HashMap<>();
+        byte[] text = new byte[4096];
+        while (true) {
+            int length;
+            try {
+                length = Integer.reverseBytes(in.readInt());
+            } catch (EOFException e) {
+                return;
+            }
+            byte category = in.readByte();
+            in.readByte();
+            int session = Short.toUnsignedInt(Short.reverseBytes(in.readShort()));
+            long nanos = Long.reverseBytes(in.readLong());
+            int textLength = length - BinaryLogFactory.RECORD_HEADER_BYTES;
+            if (text.length < textLength) {
+                text = new byte[textLength];
+            }
+            in.readFully(text, 0, textLength);
+            String body = new String(text, 0, textLength, StandardCharsets.ISO_8859_1);
+
+            if (category == BinaryLogFactory.SESSION) {
+                sessions.put(session, body);
+                continue;
+            }
+            String name = sessions.getOrDefault(session, "session-" + session);
+            if (filter != null && !name.contains(filter)) {
+                continue;
+            }
+            out.println(Instant.ofEpochSecond(nanos / 1_000_000_000L, nanos % 1_000_000_000L) + " "
+                    + label(category) + " " + name + " " + body.replace('\u0001', '|'));
+        }
+    }
+
+    private static String label(byte category) {
+        return switch (category) {
+            case BinaryLogFactory.INCOMING -> "IN   ";
+            case BinaryLogFactory.OUTGOING -> "OUT  ";
+            case BinaryLogFactory.EVENT -> "EVENT";
+            case BinaryLogFactory.ERROR_EVENT -> "ERROR";
+            default -> "?" + category;
+        };
+    }
+}
@@ -0,0 +1,34 @@
+package org.intellifix.fix.log;
+
+import org.intellifix.fix.model.LogType;
+import quickfix.CompositeLogFactory;
+import quickfix.ConfigError;
+import quickfix.FieldConvertError;
+import quickfix.LogFactory;
+import quickfix.ScreenLogFactory;
+import quickfix.SessionSettings;
+
+import java.io.IOException;
+
+/**
+ * Session log chosen by {@code SessionLogType} (SCREEN, BINARY or NONE; default SCREEN).
+ */
+public final class SessionLogs {
+
+    public static final String SESSION_LOG_TYPE = "SessionLogType";
+
+    private SessionLogs() {
+    }
+
+    public static LogFactory fromSettings(SessionSettings settings, String role)
+            throws ConfigError, FieldConvertError, IOException {
+        LogType type = settings.isSetting(SESSION_LOG_TYPE)
+                ? LogType.valueOf(settings.getString(SESSION_LOG_TYPE).trim().toUpperCase())
+                : LogType.SCREEN;
+        return switch (type) {
+            case SCREEN -> new ScreenLogFactory(true, true, true, true);
+            case BINARY -> BinaryLogFactory.fromSettings(settings, role);
+            case NONE -> new CompositeLogFactory(new LogFactory[0]);
+        };
+    }
+}
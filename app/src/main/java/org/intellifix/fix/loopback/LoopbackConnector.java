@@ -0,0 +1,231 @@
+package org.intellifix.fix.loopback;
+
+import lombok.extern.slf4j.Slf4j;
+import quickfix.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Connects QuickFIX/J sessions of one JVM to each other without sockets.
+ * <p>
+ * Sessions are ordinary {@link Session}s with their own store, so logon, sequence numbers,
+ * heartbeats and resend requests behave as over TCP. Each session is paired with the session
+ * whose SenderCompID and TargetCompID are swapped; what one side writes is queued to the other
+ * and parsed and processed there on a dedicated pump thread, in order. A timer calls
+ * {@link Session#next()} once a second, as the socket connectors do, which drives initiator
+ * logons and heartbeats, and re-attaches a pair once both sides have disconnected.
+ */
+@Slf4j
+public final class LoopbackConnector {
+
+    private static final String DISCONNECT = new String("disconnect");
+
+    private final MessageStoreFactory storeFactory;
+    private final LogFactory logFactory;
+    private final MessageFactory messageFactory;
+    private final List<Endpoint> endpoints = new ArrayList<>();
+    private final List<Endpoint[]> links = new ArrayList<>();
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "loopback-timer");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private volatile boolean running;
+
+    public LoopbackConnector(MessageStoreFactory storeFactory, LogFactory logFactory, MessageFactory messageFactory) {
+        this.storeFactory = storeFactory;
+        this.logFactory = logFactory;
+        this.messageFactory = messageFactory;
+    }
+
+    /**
+     * Creates a session for every section of {@code settings}, all served by {@code application}.
+     */
+    public void add(Application application, SessionSettings settings) throws ConfigError {
+        if (running) {
+            throw new IllegalStateException("Sessions must be added before start()");
+        }
+        var factory = new DefaultSessionFactory(application, storeFactory, logFactory, messageFactory);
+        for (Iterator<SessionID> it = settings.sectionIterator(); it.hasNext();) {
+            SessionID sessionID = it.next();
+            endpoints.add(new Endpoint(factory.create(sessionID, settings)));
+        }
+    }
+
+    public void start() {
+        for (Endpoint endpoint : endpoints) {
+            if (endpoint.peer != null) {
+                continue;
+            }
+            Endpoint peer = findPeer(endpoint);
+            if (peer == null) {
+                log.warn("[LOOPBACK] No counterparty for session {}; it stays disconnected", endpoint.sessionID());
+                continue;
+            }
+            endpoint.peer = peer;
+            peer.peer = endpoint;
+            links.add(new Endpoint[] { endpoint, peer });
+        }
+        running = true;
+        for (Endpoint endpoint : endpoints) {
+            endpoint.pump.start();
+        }
+        timer.scheduleAtFixedRate(this::tick, 0, 1, TimeUnit.SECONDS);
+        log.info("[LOOPBACK] Started {} sessions in {} pairs", endpoints.size(), links.size());
+    }
+
+    /**
+     * Logs out every logged-on session, waits up to {@code timeoutSeconds} for the logouts to
+     * complete, then disconnects and closes all sessions.
+     */
+    public void stop(long timeoutSeconds) throws InterruptedException {
+        for (Endpoint endpoint : endpoints) {
+            if (endpoint.session.isLoggedOn()) {
+                endpoint.session.logout("Loopback connector stopping");
+            }
+        }
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(timeoutSeconds);
+        while (endpoints.stream().anyMatch(e -> e.session.isLoggedOn()) && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        running = false;
+        timer.shutdownNow();
+        for (Endpoint endpoint : endpoints) {
+            endpoint.pump.join(1000);
+            try {
+                endpoint.session.disconnect("Loopback connector stopped", false);
+                endpoint.session.close();
+            } catch (IOException e) {
+                log.warn("[LOOPBACK] Failed to close session {}", endpoint.sessionID(), e);
+            }
+        }
+        log.info("[LOOPBACK] Stopped");
+    }
+
+    private Endpoint findPeer(Endpoint endpoint) {
+        SessionID id = endpoint.sessionID();
+        for (Endpoint candidate : endpoints) {
+            SessionID other = candidate.sessionID();
+            if (candidate != endpoint && candidate.peer == null
+                    && other.getBeginString().equals(id.getBeginString())
+                    && other.getSenderCompID().equals(id.getTargetCompID())
+                    && other.getTargetCompID().equals(id.getSenderCompID())) {
+                return candidate;
+            }
+        }
+        return null;
+    }
+
+    private void tick() {
+        for (Endpoint[] link : links) {
+            Endpoint a = link[0];
+            Endpoint b = link[1];
+            if (!a.connected && !b.connected && !a.session.hasResponder() && !b.session.hasResponder()) {
+                a.attach();
+                b.attach();
+            }
+        }
+        for (Endpoint endpoint : endpoints) {
+            try {
+                endpoint.session.next();
+            } catch (IOException e) {
+                log.error("[LOOPBACK] Timer failed for session {}", endpoint.sessionID(), e);
+            } catch (RuntimeException e) {
+                log.error("[LOOPBACK] Unexpected error in timer for session {}", endpoint.sessionID(), e);
+            }
+        }
+    }
+
+    /**
+     * One side of a pair: the session's {@link Responder}, plus the queue and pump thread that
+     * feed it what the other side wrote.
+     */
+    private final class Endpoint implements Responder {
+
+        private final Session session;
+        private final BlockingQueue<String> inbound = new LinkedBlockingQueue<>();
+        private final Thread pump;
+        private volatile Endpoint peer;
+        private volatile boolean connected;
+
+        private Endpoint(Session session) {
+            this.session = session;
+            this.pump = new Thread(this::drain, "loopback-" + session.getSessionID());
+            this.pump.setDaemon(true);
+        }
+
+        SessionID sessionID() {
+            return session.getSessionID();
+        }
+
+        void attach() {
+            inbound.clear();
+            connected = true;
+            session.setResponder(this);
+        }
+
+        @Override
+        public boolean send(String data) {
+            Endpoint target = peer;
+            if (!connected || target == null || !target.connected) {
+                return false;
+            }
+            target.inbound.add(data);
+            return true;
+        }
+
+        @Override
+        public void disconnect() {
+            if (!connected) {
+                return;
+            }
+            connected = false;
+            Endpoint target = peer;
+            if (target != null) {
+                target.inbound.add(DISCONNECT);
+            }
+        }
+
+        @Override
+        public String getRemoteAddress() {
+            Endpoint target = peer;
+            return "loopback:" + (target == null ? "none" : target.sessionID());
+        }
+
+        private void drain() {
+            while (running) {
+                String data;
+                try {
+                    data = inbound.poll(100, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                if (data == null) {
+                    continue;
+                }
+                try {
+                    if (data == DISCONNECT) {
+                        if (session.hasResponder()) {
+                            session.disconnect("Loopback counterparty disconnected", false);
+                        }
+                    } else {
+                        session.next(MessageUtils.parse(session, data));
+                    }
+                } catch (InvalidMessage e) {
+                    log.warn("[LOOPBACK] Dropped unparseable message for {}: {}", sessionID(), e.getMessage());
+                } catch (Exception e) {
+                    log.error("[LOOPBACK] Error processing message for {}", sessionID(), e);
+                }
+            }
+        }
+    }
+}
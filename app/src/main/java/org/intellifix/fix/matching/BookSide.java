@@ -0,0 +1,103 @@
+package org.intellifix.fix.matching;
+
+import java.util.Arrays;
+
+/**
+ * One side of an order book: price levels in a sorted primitive array of priority keys, best
+ * level last so that removing it is a size decrement. Bids use the price as key, asks its
+ * negation, so that on both sides the best price has the highest key.
+ */
+final class BookSide {
+
+    private final boolean bid;
+    private long[] keys = new long[64];
+    private PriceLevel[] levels = new PriceLevel[64];
+    private int size;
+
+    BookSide(boolean bid) {
+        this.bid = bid;
+    }
+
+    PriceLevel best() {
+        return size == 0 ? null : levels[size - 1];
+    }
+
+    /**
+     * Whether an incoming order on the other side at {@code priceTicks} can trade with {@code level}.
+     */
+    boolean crosses(PriceLevel level, long priceTicks) {
+        return bid ? level.priceTicks >= priceTicks : level.priceTicks <= priceTicks;
+    }
+
+    /**
+     * Whether the levels an incoming order on the other side can trade with hold at least
+     * {@code quantity}; {@code limit} false means any price.
+     */
+    boolean canFill(long quantity, boolean limit, long priceTicks) {
+        long available = 0;
+        for (int i = size - 1; i >= 0 && (!limit || crosses(levels[i], priceTicks)); i--) {
+            available += levels[i].totalQty;
+            if (available >= quantity) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    PriceLevel levelFor(long priceTicks, MatchingEngine pools) {
+        long key = key(priceTicks);
+        int pos = search(key);
+        if (pos >= 0) {
+            return levels[pos];
+        }
+        int insert = -pos - 1;
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, size * 2);
+            levels = Arrays.copyOf(levels, size * 2);
+        }
+        System.arraycopy(keys, insert, keys, insert + 1, size - insert);
+        System.arraycopy(levels, insert, levels, insert + 1, size - insert);
+        PriceLevel level = pools.acquireLevel(priceTicks);
+        keys[insert] = key;
+        levels[insert] = level;
+        size++;
+        return level;
+    }
+
+    void removeLevel(PriceLevel level, MatchingEngine pools) {
+        int pos = size > 0 && levels[size - 1] == level ? size - 1 : search(key(level.priceTicks));
+        if (pos < 0) {
+            return;
+        }
+        System.arraycopy(keys, pos + 1, keys, pos, size - pos - 1);
+        System.arraycopy(levels, pos + 1, levels, pos, size - pos - 1);
+        size--;
+        levels[size] = null;
+        pools.releaseLevel(level);
+    }
+
+    int depth() {
+        return size;
+    }
+
+    private long key(long priceTicks) {
+        return bid ? priceTicks : -priceTicks;
+    }
+
+    private int search(long key) {
+        int low = 0;
+        int high = size - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            long k = keys[mid];
+            if (k < key) {
+                low = mid + 1;
+            } else if (k > key) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+}
@@ -0,0 +1,31 @@
+package org.intellifix.fix.matching;
+
+import quickfix.SessionID;
+
+/**
+ * Receives the outcome of every engine call, in order, on the calling thread. {@link Order}
+ * instances are only valid for the duration of the callback.
+ */
+public interface ExecutionListener {
+
+    void onNew(Order order);
+
+    /**
+     * One execution of {@code lastQty} at {@code lastPxTicks}; the order's cumulative fields
+     * already include it.
+     */
+    void onFill(Order order, long lastQty, long lastPxTicks);
+
+    /**
+     * The order left the book without being filled completely: cancelled on request, or the
+     * unfilled rest of a market or IOC order, or an FOK order that could not be filled completely.
+     */
+    void onCanceled(Order order);
+
+    void onReplaced(Order order);
+
+    void onRejected(Order order, String reason);
+
+    void onCancelRejected(SessionID session, String clOrdId, String origClOrdId, String secondaryClOrdId,
+            boolean replace, String reason);
+}
@@ -0,0 +1,314 @@
+package org.intellifix.fix.matching;
+
+import quickfix.SessionID;
+import quickfix.field.OrdType;
+import quickfix.field.Side;
+import quickfix.field.TimeInForce;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Price-time priority matching over per-symbol limit order books.
+ * <p>
+ * Prices are fixed-point longs ({@link #PRICE_SCALE} ticks per unit), price levels sit in sorted
+ * primitive arrays, and orders and levels are pooled, so steady-state matching allocates nothing.
+ * Limit orders rest until filled, cancelled or replaced; market and IOC orders cancel whatever
+ * does not trade immediately, and FOK orders are cancelled unless they can be filled completely. Fills execute at the resting order's price. Calls are serialized
+ * and outcomes are reported synchronously through the {@link ExecutionListener}.
+ */
+public final class MatchingEngine {
+
+    public static final long PRICE_SCALE = 10_000;
+
+    private final ExecutionListener listener;
+    private final Map<String, OrderBook> books = new HashMap<>();
+    private final OrderIndex index;
+
+    private Order[] freeOrders = new Order[1024];
+    private int freeOrderCount;
+    private PriceLevel[] freeLevels = new PriceLevel[256];
+    private int freeLevelCount;
+
+    private long nextOrderId = 1;
+    private long nextExecId = 1;
+    private long orders;
+    private long fills;
+
+    public MatchingEngine(ExecutionListener listener) {
+        this(listener, 1 << 16);
+    }
+
+    public MatchingEngine(ExecutionListener listener, int expectedOrders) {
+        this.listener = listener;
+        this.index = new OrderIndex(expectedOrders);
+    }
+
+    public static long toTicks(double price) {
+        return Math.round(price * PRICE_SCALE);
+    }
+
+    public static double toPrice(long ticks) {
+        return (double) ticks / PRICE_SCALE;
+    }
+
+    /**
+     * OrderQty as a whole number of units, or -1 if it has a fractional part, which the engine
+     * rejects rather than truncating.
+     */
+    public static long toQuantity(double quantity) {
+        return quantity == Math.rint(quantity) && Math.abs(quantity) < Long.MAX_VALUE ? (long) quantity : -1;
+    }
+
+    /**
+     * Next ExecID, unique for the life of the engine.
+     */
+    public synchronized long nextExecId() {
+        return nextExecId++;
+    }
+
+    public synchronized void newOrder(SessionID session, String clOrdId, String secondaryClOrdId, String symbol,
+            char side, char ordType, char timeInForce, long quantity, long priceTicks) {
+        Order order = acquireOrder();
+        order.id = nextOrderId++;
+        order.session = session;
+        order.clOrdId = clOrdId;
+        order.secondaryClOrdId = secondaryClOrdId;
+        order.symbol = symbol;
+        order.side = side;
+        order.ordType = ordType;
+        order.timeInForce = timeInForce;
+        order.priceTicks = priceTicks;
+        order.quantity = quantity;
+        order.leaves = quantity;
+        orders++;
+
+        String reason = validate(order);
+        if (reason == null && index.get(session, clOrdId) != null) {
+            reason = "Duplicate ClOrdID";
+        }
+        if (reason != null) {
+            order.leaves = 0;
+            listener.onRejected(order, reason);
+            releaseOrder(order);
+            return;
+        }
+        index.put(order);
+        listener.onNew(order);
+        execute(book(symbol), order);
+    }
+
+    public synchronized void cancel(SessionID session, String clOrdId, String origClOrdId, String secondaryClOrdId) {
+        Order order = index.get(session, origClOrdId);
+        if (order == null) {
+            listener.onCancelRejected(session, clOrdId, origClOrdId, secondaryClOrdId, false, "Unknown order");
+            return;
+        }
+        OrderBook book = books.get(order.symbol);
+        unlink(book, order);
+        index.remove(order);
+        order.origClOrdId = order.clOrdId;
+        order.clOrdId = clOrdId;
+        if (secondaryClOrdId != null) {
+            order.secondaryClOrdId = secondaryClOrdId;
+        }
+        order.leaves = 0;
+        listener.onCanceled(order);
+        releaseOrder(order);
+    }
+
+    /**
+     * Cancel/replace. A price change or quantity increase loses time priority and may trade at
+     * once; a quantity decrease keeps the order's place in the queue. A limit order needs a
+     * positive price, so pass 0 when 44 is absent and the request is rejected.
+     */
+    public synchronized void replace(SessionID session, String clOrdId, String origClOrdId, String secondaryClOrdId,
+            long quantity, long priceTicks) {
+        Order order = index.get(session, origClOrdId);
+        if (order == null) {
+            listener.onCancelRejected(session, clOrdId, origClOrdId, secondaryClOrdId, true, "Unknown order");
+            return;
+        }
+        if (quantity <= 0) {
+            listener.onCancelRejected(session, clOrdId, origClOrdId, secondaryClOrdId, true, "Invalid quantity");
+            return;
+        }
+        if (order.ordType == OrdType.LIMIT && priceTicks <= 0) {
+            listener.onCancelRejected(session, clOrdId, origClOrdId, secondaryClOrdId, true, "Invalid price");
+            return;
+        }
+        if (quantity <= order.cumQty) {
+            listener.onCancelRejected(session, clOrdId, origClOrdId, secondaryClOrdId, true,
+                    "Quantity not above filled quantity");
+            return;
+        }
+        if (index.get(session, clOrdId) != null) {
+            listener.onCancelRejected(session, clOrdId, origClOrdId, secondaryClOrdId, true, "Duplicate ClOrdID");
+            return;
+        }
+        OrderBook book = books.get(order.symbol);
+        boolean requeue = order.ordType == OrdType.LIMIT && priceTicks != order.priceTicks
+                || quantity > order.quantity;
+
+        index.remove(order);
+        order.origClOrdId = order.clOrdId;
+        order.clOrdId = clOrdId;
+        if (secondaryClOrdId != null) {
+            order.secondaryClOrdId = secondaryClOrdId;
+        }
+        index.put(order);
+
+        long newLeaves = quantity - order.cumQty;
+        if (requeue) {
+            unlink(book, order);
+            order.quantity = quantity;
+            order.leaves = newLeaves;
+            if (order.ordType == OrdType.LIMIT) {
+                order.priceTicks = priceTicks;
+            }
+            listener.onReplaced(order);
+            order.origClOrdId = null;
+            execute(book, order);
+        } else {
+            if (order.level != null) {
+                order.level.totalQty -= order.leaves - newLeaves;
+            }
+            order.quantity = quantity;
+            order.leaves = newLeaves;
+            listener.onReplaced(order);
+            order.origClOrdId = null;
+        }
+    }
+
+    public synchronized long orders() {
+        return orders;
+    }
+
+    public synchronized long fills() {
+        return fills;
+    }
+
+    public synchronized int liveOrders() {
+        return index.size();
+    }
+
+    /**
+     * Number of price levels on one side of a symbol's book, for monitoring.
+     */
+    public synchronized int depth(String symbol, char side) {
+        OrderBook book = books.get(symbol);
+        return book == null ? 0 : (side == Side.BUY ? book.bids : book.asks).depth();
+    }
+
+    private void execute(OrderBook book, Order order) {
+        BookSide opposite = order.side == Side.BUY ? book.asks : book.bids;
+        boolean limit = order.ordType == OrdType.LIMIT;
+        boolean fillOrKill = order.timeInForce == TimeInForce.FILL_OR_KILL;
+        // all or nothing: once the book holds enough, the loop below fills it completely
+        boolean match = !fillOrKill || opposite.canFill(order.leaves, limit, order.priceTicks);
+        PriceLevel best;
+        while (match && order.leaves > 0 && (best = opposite.best()) != null
+                && (!limit || opposite.crosses(best, order.priceTicks))) {
+            Order resting = best.head;
+            long qty = Math.min(order.leaves, resting.leaves);
+            long price = best.priceTicks;
+            best.totalQty -= qty;
+            fill(resting, qty, price);
+            fill(order, qty, price);
+            fills++;
+            boolean restingDone = resting.leaves == 0;
+            if (restingDone) {
+                best.remove(resting);
+                index.remove(resting);
+            }
+            listener.onFill(resting, qty, price);
+            listener.onFill(order, qty, price);
+            if (restingDone) {
+                releaseOrder(resting);
+            }
+            if (best.isEmpty()) {
+                opposite.removeLevel(best, this);
+            }
+        }
+
+        if (order.leaves == 0) {
+            index.remove(order);
+            releaseOrder(order);
+        } else if (limit && order.timeInForce != TimeInForce.IMMEDIATE_OR_CANCEL && !fillOrKill) {
+            (order.side == Side.BUY ? book.bids : book.asks).levelFor(order.priceTicks, this).add(order);
+        } else {
+            index.remove(order);
+            order.leaves = 0;
+            listener.onCanceled(order);
+            releaseOrder(order);
+        }
+    }
+
+    private static void fill(Order order, long qty, long priceTicks) {
+        order.leaves -= qty;
+        order.cumQty += qty;
+        order.notionalTicks += qty * priceTicks;
+    }
+
+    private void unlink(OrderBook book, Order order) {
+        PriceLevel level = order.level;
+        if (level == null) {
+            return;
+        }
+        level.remove(order);
+        if (level.isEmpty()) {
+            (order.side == Side.BUY ? book.bids : book.asks).removeLevel(level, this);
+        }
+    }
+
+    private static String validate(Order order) {
+        if (order.quantity <= 0) {
+            return "Invalid quantity";
+        }
+        if (order.side != Side.BUY && order.side != Side.SELL) {
+            return "Unsupported side";
+        }
+        if (order.ordType == OrdType.LIMIT) {
+            return order.priceTicks > 0 ? null : "Invalid price";
+        }
+        return order.ordType == OrdType.MARKET ? null : "Unsupported order type";
+    }
+
+    private OrderBook book(String symbol) {
+        OrderBook book = books.get(symbol);
+        if (book == null) {
+            book = new OrderBook(symbol);
+            books.put(symbol, book);
+        }
+        return book;
+    }
+
+    private Order acquireOrder() {
+        return freeOrderCount == 0 ? new Order() : freeOrders[--freeOrderCount];
+    }
+
+    private void releaseOrder(Order order) {
+        order.reset();
+        if (freeOrderCount == freeOrders.length) {
+            freeOrders = Arrays.copyOf(freeOrders, freeOrderCount * 2);
+        }
+        freeOrders[freeOrderCount++] = order;
+    }
+
+    PriceLevel acquireLevel(long priceTicks) {
+        PriceLevel level = freeLevelCount == 0 ? new PriceLevel() : freeLevels[--freeLevelCount];
+        level.priceTicks = priceTicks;
+        level.totalQty = 0;
+        return level;
+    }
+
+    void releaseLevel(PriceLevel level) {
+        level.head = null;
+        level.tail = null;
+        if (freeLevelCount == freeLevels.length) {
+            freeLevels = Arrays.copyOf(freeLevels, freeLevelCount * 2);
+        }
+        freeLevels[freeLevelCount++] = level;
+    }
+}
@@ -0,0 +1,98 @@
+package org.intellifix.fix.matching;
+
+import quickfix.SessionID;
+
+/**
+ * A working order inside the {@link MatchingEngine}. Instances are pooled and reused once the
+ * order is done, so listeners must not keep references beyond the callback.
+ */
+public final class Order {
+
+    long id;
+    SessionID session;
+    String clOrdId;
+    String origClOrdId;
+    String secondaryClOrdId;
+    String symbol;
+    char side;
+    char ordType;
+    char timeInForce;
+    long priceTicks;
+    long quantity;
+    long leaves;
+    long cumQty;
+    long notionalTicks;
+
+    PriceLevel level;
+    Order prev;
+    Order next;
+
+    void reset() {
+        session = null;
+        clOrdId = null;
+        origClOrdId = null;
+        secondaryClOrdId = null;
+        symbol = null;
+        level = null;
+        prev = null;
+        next = null;
+        cumQty = 0;
+        notionalTicks = 0;
+    }
+
+    public long id() {
+        return id;
+    }
+
+    public SessionID session() {
+        return session;
+    }
+
+    public String clOrdId() {
+        return clOrdId;
+    }
+
+    /**
+     * OrigClOrdID (41) of the cancel or replace request that last changed the order, or {@code null}.
+     */
+    public String origClOrdId() {
+        return origClOrdId;
+    }
+
+    /** Tag 526 as received, echoed on every report. */
+    public String secondaryClOrdId() {
+        return secondaryClOrdId;
+    }
+
+    public String symbol() {
+        return symbol;
+    }
+
+    public char side() {
+        return side;
+    }
+
+    public char ordType() {
+        return ordType;
+    }
+
+    public long priceTicks() {
+        return priceTicks;
+    }
+
+    public long quantity() {
+        return quantity;
+    }
+
+    public long leaves() {
+        return leaves;
+    }
+
+    public long cumQty() {
+        return cumQty;
+    }
+
+    public double avgPx() {
+        return cumQty == 0 ? 0 : MatchingEngine.toPrice(notionalTicks) / cumQty;
+    }
+}
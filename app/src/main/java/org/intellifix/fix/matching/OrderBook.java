@@ -0,0 +1,15 @@
+package org.intellifix.fix.matching;
+
+/**
+ * Limit order book of one symbol.
+ */
+final class OrderBook {
+
+    final String symbol;
+    final BookSide bids = new BookSide(true);
+    final BookSide asks = new BookSide(false);
+
+    OrderBook(String symbol) {
+        this.symbol = symbol;
+    }
+}
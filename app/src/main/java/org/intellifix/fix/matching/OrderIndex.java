@@ -0,0 +1,94 @@
+package org.intellifix.fix.matching;
+
+import quickfix.SessionID;
+
+/**
+ * Live orders by (session, ClOrdID) in an open-addressing table of order references, so that
+ * lookups and updates allocate nothing. Deletion uses backward shifting instead of tombstones.
+ */
+final class OrderIndex {
+
+    private Order[] table;
+    private int mask;
+    private int size;
+
+    OrderIndex(int expectedOrders) {
+        int capacity = Integer.highestOneBit(Math.max(16, expectedOrders * 2 - 1)) << 1;
+        table = new Order[capacity];
+        mask = capacity - 1;
+    }
+
+    Order get(SessionID session, String clOrdId) {
+        int pos = home(session, clOrdId);
+        Order candidate;
+        while ((candidate = table[pos]) != null) {
+            if (clOrdId.equals(candidate.clOrdId) && session.equals(candidate.session)) {
+                return candidate;
+            }
+            pos = (pos + 1) & mask;
+        }
+        return null;
+    }
+
+    void put(Order order) {
+        if ((size + 1) * 2 > table.length) {
+            grow();
+        }
+        int pos = home(order.session, order.clOrdId);
+        while (table[pos] != null) {
+            pos = (pos + 1) & mask;
+        }
+        table[pos] = order;
+        size++;
+    }
+
+    void remove(Order order) {
+        int pos = home(order.session, order.clOrdId);
+        while (table[pos] != order) {
+            if (table[pos] == null) {
+                return;
+            }
+            pos = (pos + 1) & mask;
+        }
+        int gap = pos;
+        int next = pos;
+        while (true) {
+            next = (next + 1) & mask;
+            Order candidate = table[next];
+            if (candidate == null) {
+                break;
+            }
+            int candidateHome = home(candidate.session, candidate.clOrdId);
+            boolean movable = gap <= next
+                    ? candidateHome <= gap || candidateHome > next
+                    : candidateHome <= gap && candidateHome > next;
+            if (movable) {
+                table[gap] = candidate;
+                gap = next;
+            }
+        }
+        table[gap] = null;
+        size--;
+    }
+
+    int size() {
+        return size;
+    }
+
+    private void grow() {
+        Order[] old = table;
+        table = new Order[old.length * 2];
+        mask = table.length - 1;
+        size = 0;
+        for (Order order : old) {
+            if (order != null) {
+                put(order);
+            }
+        }
+    }
+
+    private int home(SessionID session, String clOrdId) {
+        int h = (clOrdId.hashCode() * 31 + session.hashCode()) * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & mask;
+    }
+}
@@ -0,0 +1,46 @@
+package org.intellifix.fix.matching;
+
+/**
+ * All resting orders at one price, in time priority, as an intrusive doubly linked list.
+ */
+final class PriceLevel {
+
+    long priceTicks;
+    long totalQty;
+    Order head;
+    Order tail;
+
+    void add(Order order) {
+        order.level = this;
+        order.prev = tail;
+        order.next = null;
+        if (tail == null) {
+            head = order;
+        } else {
+            tail.next = order;
+        }
+        tail = order;
+        totalQty += order.leaves;
+    }
+
+    void remove(Order order) {
+        if (order.prev == null) {
+            head = order.next;
+        } else {
+            order.prev.next = order.next;
+        }
+        if (order.next == null) {
+            tail = order.prev;
+        } else {
+            order.next.prev = order.prev;
+        }
+        totalQty -= order.leaves;
+        order.level = null;
+        order.prev = null;
+        order.next = null;
+    }
+
+    boolean isEmpty() {
+        return head == null;
+    }
+}
@@ -0,0 +1,8 @@
+package org.intellifix.fix.model;
+
+public enum ForwardMode {
+    /** Rewrite routing fields on the parsed inbound message and send that same object. */
+    IN_PLACE,
+    /** Legacy path: serialize the inbound message and re-parse it into a fresh copy before sending. */
+    REPARSE
+}
@@ -0,0 +1,11 @@
+package org.intellifix.fix.model;
+
+/**
+ * What a full store-and-forward queue does with one more message.
+ */
+public enum ForwardOverflow {
+    /** Evict the oldest held messages until the new one fits. */
+    DROP_OLDEST,
+    /** Keep what is held and drop the new message. */
+    DROP_NEWEST
+}
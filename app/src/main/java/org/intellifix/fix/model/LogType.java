@@ -0,0 +1,10 @@
+package org.intellifix.fix.model;
+
+public enum LogType {
+    /** QuickFIX/J ScreenLogFactory: every message and event printed to stdout on the session thread. */
+    SCREEN,
+    /** Records queued in memory and written to a binary file by a background thread. */
+    BINARY,
+    /** No session log. */
+    NONE
+}
@@ -0,0 +1,18 @@
+package org.intellifix.fix.model;
+
+public enum MatchMode {
+    /** Same value as the expected message. */
+    EXACT,
+    /** Not compared; overrides a wildcard rule for one MsgType. */
+    IGNORE,
+    /** Same part after the last separator ({@code '-'} unless given), as for prefixed ClOrdIDs. */
+    SUFFIX,
+    /** Actual value matches the rule's pattern, whatever the expected message says. */
+    REGEX,
+    /** Numeric value within the rule's absolute tolerance of the expected one, for prices and quantities. */
+    TOLERANCE,
+    /** Actual message carries the tag. */
+    PRESENT,
+    /** Actual message does not carry the tag. */
+    ABSENT
+}
@@ -0,0 +1,18 @@
+package org.intellifix.fix.model;
+
+public enum MessageDirection {
+    /** Handed to the session by the application (toApp). */
+    SENT("sent"),
+    /** Delivered to the application by the session (fromApp). */
+    RECEIVED("received");
+
+    private final String label;
+
+    MessageDirection(String label) {
+        this.label = label;
+    }
+
+    public String label() {
+        return label;
+    }
+}
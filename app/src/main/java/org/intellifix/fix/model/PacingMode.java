@@ -0,0 +1,12 @@
+package org.intellifix.fix.model;
+
+public enum PacingMode {
+    /** Send outbound steps as fast as the runner reaches them. */
+    NONE,
+    /** Keep the gaps between SendingTime (52) values of the scenario, scaled by ReplaySpeed. */
+    REPLAY,
+    /** Fixed SendRate messages per second. */
+    RATE,
+    /** Rate rising linearly from RampStartRate to RampEndRate over RampSeconds, then held. */
+    RAMP
+}
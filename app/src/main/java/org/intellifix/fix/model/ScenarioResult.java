@@ -0,0 +1,12 @@
+package org.intellifix.fix.model;
+
+/**
+ * Outcome of one scenario run by the multi-scenario runner.
+ */
+public record ScenarioResult(String sessionID, String scenario, boolean passed, long steps, long elapsedMillis,
+        String error) {
+
+    public long stepsPerSecond() {
+        return steps * 1000 / Math.max(1, elapsedMillis);
+    }
+}
@@ -0,0 +1,12 @@
+package org.intellifix.fix.model;
+
+import java.nio.file.Path;
+
+/**
+ * Where the hub keeps messages for absent sessions, how much it keeps and how fast it sends
+ * them once the session is back. A {@code drainRate} of 0 or less sends them as fast as possible.
+ * The queues are forced to disk every {@code syncMillis}, or only on shutdown if it is 0.
+ */
+public record StoreForwardConfig(Path directory, long queueBytes, double drainRate, ForwardOverflow overflow,
+        long syncMillis) {
+}
@@ -0,0 +1,10 @@
+package org.intellifix.fix.model;
+
+public enum StoreType {
+    /** QuickFIX/J FileStore: synchronous writes per message. */
+    FILE,
+    /** Memory-mapped files with a sequence-number index, flushed to disk in the background. */
+    MAPPED,
+    /** Heap only; sequence numbers and resend history are lost when the process exits. */
+    MEMORY
+}
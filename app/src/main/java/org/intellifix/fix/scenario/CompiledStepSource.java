@@ -0,0 +1,266 @@
+package org.intellifix.fix.scenario;
+
+import lombok.extern.slf4j.Slf4j;
+import org.intellifix.fix.model.Step;
+import org.intellifix.fix.model.StepType;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Steps read back from a file written by {@link ScenarioCompiler}. Opening only validates the
+ * header; records are streamed and their messages rebuilt from the stored fields as the scenario
+ * reaches them. Every iterator holds the file open until it is exhausted or the source is closed.
+ * The key index is read on the first {@link #find} and kept.
+ */
+@Slf4j
+public final class CompiledStepSource implements StepSource {
+
+    private static final StepType[] TYPES = StepType.values();
+    // type, line number, message length
+    private static final int RECORD_PREFIX_BYTES = 1 + 8 + 4;
+
+    private final Path file;
+    private final int stepCount;
+    private final long sourceHash;
+    private final long sourceLength;
+    private final long sourceModified;
+    private final long indexOffset;
+    private final Set<Cursor> cursors = ConcurrentHashMap.newKeySet();
+    private volatile boolean closed;
+    private Map<String, long[]> index;
+
+    private CompiledStepSource(Path file, int stepCount, long sourceHash, long sourceLength, long sourceModified,
+            long indexOffset) {
+        this.file = file;
+        this.stepCount = stepCount;
+        this.sourceHash = sourceHash;
+        this.sourceLength = sourceLength;
+        this.sourceModified = sourceModified;
+        this.indexOffset = indexOffset;
+    }
+
+    /**
+     * Returns {@code null} when the cache file is missing, incomplete or not a step file of this
+     * version. Whether it is current for its source is up to the caller.
+     */
+    static CompiledStepSource open(Path file) throws IOException {
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(ScenarioCompiler.HEADER_BYTES);
+            if (channel.read(header, 0) < ScenarioCompiler.HEADER_BYTES) {
+                return null;
+            }
+            header.flip();
+            byte[] magic = new byte[ScenarioCompiler.MAGIC.length];
+            header.get(magic);
+            int version = header.getInt();
+            int stepCount = header.getInt();
+            long hash = header.getLong();
+            long length = header.getLong();
+            long modified = header.getLong();
+            long indexOffset = header.getLong();
+            long fileLength = header.getLong();
+            if (!Arrays.equals(magic, ScenarioCompiler.MAGIC) || version != ScenarioCompiler.VERSION
+                    || channel.size() != fileLength || indexOffset < ScenarioCompiler.HEADER_BYTES
+                    || indexOffset > fileLength) {
+                log.info("[SCENARIO] Ignoring unreadable step cache {}", file);
+                return null;
+            }
+            return new CompiledStepSource(file, stepCount, hash, length, modified, indexOffset);
+        }
+    }
+
+    public int size() {
+        return stepCount;
+    }
+
+    long sourceHash() {
+        return sourceHash;
+    }
+
+    long sourceLength() {
+        return sourceLength;
+    }
+
+    long sourceModified() {
+        return sourceModified;
+    }
+
+    /**
+     * The steps whose correlation key under {@code tag}, SecondaryClOrdID (526) or else ClOrdID
+     * (11), is {@code value}, in file order. Only those records are read.
+     */
+    public List<Step> find(int tag, String value) {
+        long[] offsets = index().get(tag + "=" + value);
+        if (offsets == null) {
+            return List.of();
+        }
+        List<Step> steps = new ArrayList<>(offsets.length);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer prefix = ByteBuffer.allocate(RECORD_PREFIX_BYTES);
+            for (long offset : offsets) {
+                prefix.clear();
+                readFully(channel, prefix, offset);
+                ByteBuffer record = ByteBuffer.allocate(prefix.getInt(RECORD_PREFIX_BYTES - Integer.BYTES));
+                readFully(channel, record, offset + RECORD_PREFIX_BYTES);
+                steps.add(toStep(prefix.get(0) & 0xFF, prefix.getLong(1), record.flip()));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return steps;
+    }
+
+    private synchronized Map<String, long[]> index() {
+        if (index != null) {
+            return index;
+        }
+        Map<String, long[]> keys = new HashMap<>();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer in = ByteBuffer.allocate((int) (channel.size() - indexOffset));
+            readFully(channel, in, indexOffset);
+            in.flip();
+            int entries = in.getInt();
+            for (int i = 0; i < entries; i++) {
+                String key = in.getInt() + "=" + MessageCodec.readString(in);
+                long offset = in.getLong();
+                keys.merge(key, new long[] {offset}, (a, b) -> {
+                    long[] both = Arrays.copyOf(a, a.length + 1);
+                    both[a.length] = b[0];
+                    return both;
+                });
+            }
+        } catch (IOException | RuntimeException e) {
+            throw new IllegalStateException("Unreadable key index in " + file, e);
+        }
+        index = keys;
+        return index;
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of step cache");
+            }
+        }
+    }
+
+    @Override
+    public Iterator<Step> iterator() {
+        if (closed) {
+            throw new IllegalStateException("Step source " + file + " is closed");
+        }
+        Cursor cursor;
+        try {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 256 * 1024));
+            try {
+                cursor = new Cursor(in);
+            } catch (IOException e) {
+                in.close();
+                throw e;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        cursors.add(cursor);
+        if (closed) {
+            // closed meanwhile; close() may have missed this cursor
+            cursor.closeQuietly();
+        }
+        return cursor;
+    }
+
+    /**
+     * Closes the files of the iterators that were not read to the end.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        for (Cursor cursor : cursors) {
+            cursor.closeQuietly();
+        }
+    }
+
+    private static Step toStep(int type, long lineNumber, ByteBuffer message) throws IOException {
+        if (type >= TYPES.length) {
+            throw new IOException("Corrupt compiled step type " + type + " from line " + lineNumber);
+        }
+        try {
+            return new Step(TYPES[type], MessageCodec.read(message));
+        } catch (RuntimeException e) {
+            throw new IOException("Corrupt compiled step from line " + lineNumber, e);
+        }
+    }
+
+    private final class Cursor implements Iterator<Step> {
+        private final DataInputStream in;
+        private byte[] record = new byte[1024];
+        private int remaining = stepCount;
+
+        Cursor(DataInputStream in) throws IOException {
+            this.in = in;
+            in.skipNBytes(ScenarioCompiler.HEADER_BYTES);
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (remaining == 0) {
+                closeQuietly();
+            }
+            return remaining > 0;
+        }
+
+        @Override
+        public Step next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            try {
+                int type = in.readUnsignedByte();
+                long lineNumber = in.readLong();
+                int length = in.readInt();
+                if (length < 0) {
+                    throw new IOException("Corrupt compiled step length " + length + " from line " + lineNumber);
+                }
+                if (record.length < length) {
+                    record = new byte[Math.max(length, record.length * 2)];
+                }
+                in.readFully(record, 0, length);
+                Step step = toStep(type, lineNumber, ByteBuffer.wrap(record, 0, length));
+                remaining--;
+                return step;
+            } catch (IOException e) {
+                closeQuietly();
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        void closeQuietly() {
+            remaining = 0;
+            cursors.remove(this);
+            try {
+                in.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+}
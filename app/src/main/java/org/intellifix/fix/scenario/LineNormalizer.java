@@ -0,0 +1,79 @@
+package org.intellifix.fix.scenario;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Applies the scenario line rules directly to bytes in a (mapped) buffer: trim, skip blank and
+ * {@code #}/{@code //} comment lines, drop a {@code "<n>:"} prefix, turn {@code |} into SOH when
+ * the line has no SOH, and make sure the message ends with SOH. Not thread-safe; the output
+ * buffer is reused between lines.
+ */
+final class LineNormalizer {
+
+    static final byte SOH = 0x01;
+
+    private byte[] line = new byte[1024];
+
+    /**
+     * Normalizes {@code [start, end)} of {@code src} into {@link #bytes()}.
+     * Returns the normalized length, or -1 when the line carries no message.
+     */
+    int normalize(ByteBuffer src, int start, int end) {
+        while (start < end && src.get(start) <= ' ') {
+            start++;
+        }
+        while (end > start && src.get(end - 1) <= ' ') {
+            end--;
+        }
+        if (start == end || src.get(start) == '#'
+                || (src.get(start) == '/' && start + 1 < end && src.get(start + 1) == '/')) {
+            return -1;
+        }
+
+        int p = start;
+        while (p < end && src.get(p) >= '0' && src.get(p) <= '9') {
+            p++;
+        }
+        if (p > start && p < end && src.get(p) == ':') {
+            p++;
+            while (p < end && src.get(p) <= ' ') {
+                p++;
+            }
+            start = p;
+            if (start == end) {
+                return -1;
+            }
+        }
+
+        int length = end - start;
+        if (line.length < length + 1) {
+            line = new byte[Math.max(length + 1, line.length * 2)];
+        }
+        src.get(start, line, 0, length);
+
+        boolean hasSoh = false;
+        for (int i = 0; i < length && !hasSoh; i++) {
+            hasSoh = line[i] == SOH;
+        }
+        if (!hasSoh) {
+            for (int i = 0; i < length; i++) {
+                if (line[i] == '|') {
+                    line[i] = SOH;
+                }
+            }
+        }
+        if (line[length - 1] != SOH) {
+            line[length++] = SOH;
+        }
+        return length;
+    }
+
+    byte[] bytes() {
+        return line;
+    }
+
+    String toString(int length) {
+        return new String(line, 0, length, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,156 @@
+package org.intellifix.fix.scenario;
+
+import lombok.extern.slf4j.Slf4j;
+import org.intellifix.fix.model.Step;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Lazy scenario reader over a memory-mapped file.
+ * <p>
+ * The file is mapped one window at a time and scanned for line delimiters directly in the
+ * mapping. Each line is normalized (trimmed, comments skipped, {@code "<n>: "} prefix removed,
+ * {@code |} turned into SOH) into a reused byte buffer and parsed only when the iterator reaches
+ * it, so heap use does not grow with the size of the scenario.
+ */
+@Slf4j
+public final class MappedStepReader implements StepSource {
+
+    private static final int DEFAULT_WINDOW_BYTES = 64 * 1024 * 1024;
+
+    private final Path path;
+    private final StepParser parser;
+    private final int windowBytes;
+    private final FileChannel channel;
+    private final long fileSize;
+
+    public MappedStepReader(Path path, StepParser parser) throws IOException {
+        this(path, parser, DEFAULT_WINDOW_BYTES);
+    }
+
+    public MappedStepReader(Path path, StepParser parser, int windowBytes) throws IOException {
+        this.path = path;
+        this.parser = parser;
+        this.windowBytes = windowBytes;
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        this.fileSize = channel.size();
+    }
+
+    @Override
+    public Iterator<Step> iterator() {
+        return new Cursor();
+    }
+
+    @Override
+    public void close() {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            log.warn("Failed to close scenario {}", path, e);
+        }
+    }
+
+    private final class Cursor implements Iterator<Step> {
+
+        private MappedByteBuffer window;
+        private long windowStart;
+        private int windowLimit;
+        private long position;
+        private long lineNumber;
+        private Step next;
+        private final LineNormalizer normalizer = new LineNormalizer();
+
+        @Override
+        public boolean hasNext() {
+            if (next == null) {
+                next = advance();
+            }
+            return next != null;
+        }
+
+        @Override
+        public Step next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Step step = next;
+            next = null;
+            return step;
+        }
+
+        private Step advance() {
+            try {
+                while (position < fileSize) {
+                    int lineEnd = findLineEnd();
+                    int lineStart = (int) (position - windowStart);
+                    position = windowStart + lineEnd + 1;
+                    lineNumber++;
+                    String fixMessage = normalize(lineStart, lineEnd);
+                    if (fixMessage == null) {
+                        continue;
+                    }
+                    Step step;
+                    try {
+                        step = parser.parse(fixMessage, lineNumber);
+                    } catch (Exception e) {
+                        log.error("Failed to parse line {}: {}", lineNumber, fixMessage, e);
+                        throw new RuntimeException(e);
+                    }
+                    if (step != null) {
+                        return step;
+                    }
+                }
+                return null;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        /**
+         * Returns the window-relative index of the newline ending the line at {@code position},
+         * remapping so that the whole line is inside the window.
+         */
+        private int findLineEnd() throws IOException {
+            if (window == null || position < windowStart || position >= windowStart + windowLimit) {
+                map(position);
+            }
+            int end = scan((int) (position - windowStart));
+            if (end < 0 && windowStart + windowLimit < fileSize) {
+                map(position);
+                end = scan(0);
+                if (end < 0 && windowStart + windowLimit < fileSize) {
+                    throw new IOException("Scenario line " + (lineNumber + 1) + " is longer than " + windowBytes
+                            + " bytes: " + path);
+                }
+            }
+            return end < 0 ? windowLimit : end;
+        }
+
+        private int scan(int from) {
+            for (int i = from; i < windowLimit; i++) {
+                if (window.get(i) == '\n') {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        private void map(long start) throws IOException {
+            windowStart = start;
+            windowLimit = (int) Math.min(windowBytes, fileSize - start);
+            window = channel.map(FileChannel.MapMode.READ_ONLY, start, windowLimit);
+        }
+
+        private String normalize(int start, int end) {
+            int length = normalizer.normalize(window, start, end);
+            return length < 0 ? null : normalizer.toString(length);
+        }
+    }
+}
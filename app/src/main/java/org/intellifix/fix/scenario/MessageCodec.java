@@ -0,0 +1,138 @@
+package org.intellifix.fix.scenario;
+
+import quickfix.Field;
+import quickfix.FieldMap;
+import quickfix.Group;
+import quickfix.Message;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Binary form of a parsed message for the step cache: header, body and trailer as tag/value
+ * lists, each followed by its repeating groups, nested the same way. Every group tag carries its
+ * delimiter and field order, so reading a message back is a series of field puts and needs
+ * neither a parse nor a DataDictionary.
+ * <pre>
+ * fields : int count, then per field: int tag, string value
+ *          int group tags, then per tag: int count tag, int instances and, when there are any,
+ *          int delimiter, int order length (-1 for none), order tags, then each instance's fields
+ * string : int UTF-8 length, bytes
+ * </pre>
+ * Messages are read from a heap buffer holding the whole encoding, so decoding never goes back
+ * to the stream.
+ */
+final class MessageCodec {
+
+    private MessageCodec() {
+    }
+
+    static void write(DataOutput out, Message message) throws IOException {
+        writeFields(out, message.getHeader());
+        writeFields(out, message);
+        writeFields(out, message.getTrailer());
+    }
+
+    /**
+     * @throws java.nio.BufferUnderflowException if {@code in} ends inside the message
+     */
+    static Message read(ByteBuffer in) {
+        Message message = new Message();
+        readFields(in, message.getHeader());
+        readFields(in, message);
+        readFields(in, message.getTrailer());
+        return message;
+    }
+
+    static void writeString(DataOutput out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    static String readString(ByteBuffer in) {
+        int length = in.getInt();
+        if (length < 0 || length > in.remaining()) {
+            throw new IllegalArgumentException("Invalid string length " + length);
+        }
+        String value = new String(in.array(), in.arrayOffset() + in.position(), length, StandardCharsets.UTF_8);
+        in.position(in.position() + length);
+        return value;
+    }
+
+    private static void writeFields(DataOutput out, FieldMap fields) throws IOException {
+        int count = 0;
+        for (Iterator<Field<?>> it = fields.iterator(); it.hasNext(); it.next()) {
+            count++;
+        }
+        out.writeInt(count);
+        for (Iterator<Field<?>> it = fields.iterator(); it.hasNext();) {
+            Field<?> field = it.next();
+            out.writeInt(field.getTag());
+            writeString(out, field.getObject().toString());
+        }
+
+        int groupTags = 0;
+        for (Iterator<Integer> it = fields.groupKeyIterator(); it.hasNext(); it.next()) {
+            groupTags++;
+        }
+        out.writeInt(groupTags);
+        for (Iterator<Integer> it = fields.groupKeyIterator(); it.hasNext();) {
+            int countTag = it.next();
+            List<Group> groups = fields.getGroups(countTag);
+            out.writeInt(countTag);
+            out.writeInt(groups.size());
+            if (groups.isEmpty()) {
+                continue;
+            }
+            Group first = groups.get(0);
+            out.writeInt(first.delim());
+            int[] order = first.getFieldOrder();
+            out.writeInt(order == null ? -1 : order.length);
+            if (order != null) {
+                for (int tag : order) {
+                    out.writeInt(tag);
+                }
+            }
+            for (Group group : groups) {
+                writeFields(out, group);
+            }
+        }
+    }
+
+    private static void readFields(ByteBuffer in, FieldMap fields) {
+        int count = in.getInt();
+        for (int i = 0; i < count; i++) {
+            int tag = in.getInt();
+            fields.setString(tag, readString(in));
+        }
+
+        int groupTags = in.getInt();
+        for (int g = 0; g < groupTags; g++) {
+            int countTag = in.getInt();
+            int instances = in.getInt();
+            if (instances == 0) {
+                continue;
+            }
+            int delim = in.getInt();
+            int orderLength = in.getInt();
+            int[] order = null;
+            if (orderLength >= 0) {
+                order = new int[orderLength];
+                for (int i = 0; i < orderLength; i++) {
+                    order[i] = in.getInt();
+                }
+            }
+            for (int i = 0; i < instances; i++) {
+                Group group = order == null ? new Group(countTag, delim) : new Group(countTag, delim, order);
+                readFields(in, group);
+                // sets the count field as well
+                fields.addGroupRef(group);
+            }
+        }
+    }
+}
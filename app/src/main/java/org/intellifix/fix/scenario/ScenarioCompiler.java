@@ -0,0 +1,372 @@
+package org.intellifix.fix.scenario;
+
+import lombok.extern.slf4j.Slf4j;
+import org.intellifix.fix.model.Step;
+import quickfix.Message;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.zip.CRC32C;
+
+/**
+ * Compiles a text scenario into a binary step file that later runs load without reading,
+ * normalizing, filtering or parsing the text again: each kept step is stored as the fields of its
+ * parsed message (see {@link MessageCodec}) and rebuilt field by field.
+ * <p>
+ * The source is split into chunks at line boundaries. A first fork/join pass counts lines per
+ * chunk so every line keeps its real number; a second pass normalizes and parses the chunks in
+ * parallel, applying the simulator's step type and CompID filters. Chunk output is written in
+ * source order while later chunks are still being parsed, so memory stays bounded.
+ * <p>
+ * There is one cache file per source path and variant, the variant identifying the simulator and
+ * session the filters were applied for, so recompiling a changed source replaces its old file.
+ * A cache whose recorded source length and modification time still match is used as is; otherwise
+ * the source is hashed, and only a different CRC32C means a recompile.
+ * <pre>
+ * header : magic "IFXSTEPS", version, step count, source hash, source length, source modified,
+ *          index offset, file length
+ * record : type, line number, message length and bytes
+ * index  : entry count, then per step with a key: key tag (526, else 11), value, record offset
+ * </pre>
+ */
+@Slf4j
+public final class ScenarioCompiler {
+
+    static final byte[] MAGIC = "IFXSTEPS".getBytes(StandardCharsets.US_ASCII);
+    static final int VERSION = 3;
+    static final int HEADER_BYTES = 8 + 4 + 4 + 8 + 8 + 8 + 8 + 8;
+    static final int MODIFIED_OFFSET = 8 + 4 + 4 + 8 + 8;
+    // SecondaryClOrdID first: the hub's copy of an order keeps the client's ClOrdID there
+    static final int[] KEY_TAGS = {526, 11};
+
+    private static final int CHUNK_BYTES = 8 * 1024 * 1024;
+    private static final int HASH_WINDOW_BYTES = 64 * 1024 * 1024;
+
+    private final Path cacheDir;
+    private final ForkJoinPool pool;
+
+    public ScenarioCompiler(Path cacheDir) {
+        this(cacheDir, ForkJoinPool.commonPool());
+    }
+
+    public ScenarioCompiler(Path cacheDir, ForkJoinPool pool) {
+        this.cacheDir = cacheDir;
+        this.pool = pool;
+    }
+
+    /**
+     * Returns the steps of {@code source}, from the cache when it is current, otherwise after
+     * compiling it.
+     */
+    public CompiledStepSource open(Path source, String variant, StepParser parser) throws IOException {
+        long started = System.nanoTime();
+        CRC32C variantHash = new CRC32C();
+        variantHash.update((variant + "|" + source.toAbsolutePath().normalize()).getBytes(StandardCharsets.UTF_8));
+        Path cacheFile = cacheDir.resolve("%s.%08x.steps".formatted(source.getFileName(), variantHash.getValue()));
+        long length = Files.size(source);
+        long modified = Files.getLastModifiedTime(source).toMillis();
+
+        CompiledStepSource cached = CompiledStepSource.open(cacheFile);
+        if (cached != null && !isCurrent(cached, cacheFile, source, length, modified)) {
+            log.info("[SCENARIO] {} changed, recompiling {}", source, cacheFile);
+            cached = null;
+        }
+        if (cached == null) {
+            compile(source, length, modified, cacheFile, parser);
+            cached = CompiledStepSource.open(cacheFile);
+            if (cached == null) {
+                throw new IOException("Compiled scenario cache is unreadable: " + cacheFile);
+            }
+            log.info("[SCENARIO] Compiled {} into {} in {} ms", source, cacheFile,
+                    (System.nanoTime() - started) / 1_000_000);
+        } else {
+            log.info("[SCENARIO] Loaded cached steps {} in {} ms", cacheFile, (System.nanoTime() - started) / 1_000_000);
+        }
+        return cached;
+    }
+
+    // a touched but unchanged source only costs a hash, and the new time is recorded for next run
+    private static boolean isCurrent(CompiledStepSource cached, Path cacheFile, Path source, long length,
+            long modified) throws IOException {
+        if (cached.sourceLength() != length) {
+            return false;
+        }
+        if (cached.sourceModified() == modified) {
+            return true;
+        }
+        if (hash(source) != cached.sourceHash()) {
+            return false;
+        }
+        try (FileChannel cache = FileChannel.open(cacheFile, StandardOpenOption.WRITE)) {
+            cache.write(ByteBuffer.allocate(Long.BYTES).putLong(0, modified), MODIFIED_OFFSET);
+        }
+        return true;
+    }
+
+    static long hash(Path source) throws IOException {
+        CRC32C crc = new CRC32C();
+        try (FileChannel channel = FileChannel.open(source, StandardOpenOption.READ)) {
+            long size = channel.size();
+            for (long pos = 0; pos < size; pos += HASH_WINDOW_BYTES) {
+                crc.update(channel.map(FileChannel.MapMode.READ_ONLY, pos, Math.min(HASH_WINDOW_BYTES, size - pos)));
+            }
+        }
+        return crc.getValue();
+    }
+
+    private void compile(Path source, long length, long modified, Path cacheFile, StepParser parser)
+            throws IOException {
+        Files.createDirectories(cacheDir);
+        long sourceHash = hash(source);
+        Path tmp = Files.createTempFile(cacheDir, cacheFile.getFileName().toString(), ".tmp");
+        Path indexTmp = Files.createTempFile(cacheDir, cacheFile.getFileName().toString(), ".idx");
+        try (FileChannel channel = FileChannel.open(source, StandardOpenOption.READ)) {
+            long[] bounds = chunkBounds(channel, channel.size());
+            int chunks = bounds.length - 1;
+
+            List<LineCountTask> counts = new ArrayList<>(chunks);
+            for (int i = 0; i < chunks; i++) {
+                counts.add(new LineCountTask(channel, bounds[i], bounds[i + 1]));
+            }
+            counts.forEach(pool::execute);
+            long[] firstLine = new long[chunks];
+            for (int i = 1; i < chunks; i++) {
+                firstLine[i] = firstLine[i - 1] + counts.get(i - 1).join();
+            }
+
+            int stepCount = 0;
+            int keyed = 0;
+            long position = HEADER_BYTES;
+            int inFlight = Math.max(2, pool.getParallelism() * 2);
+            Deque<ChunkTask> pending = new ArrayDeque<>();
+
+            // the index goes to a side file while the records stream out, then is appended to them
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+                try (DataOutputStream index = new DataOutputStream(
+                        new BufferedOutputStream(Files.newOutputStream(indexTmp)))) {
+                    out.write(new byte[HEADER_BYTES]);
+                    for (int i = 0; i <= chunks; i++) {
+                        if (i < chunks) {
+                            ChunkTask task = new ChunkTask(channel, bounds[i], bounds[i + 1], firstLine[i], parser);
+                            pending.add(task);
+                            pool.execute(task);
+                        }
+                        while (!pending.isEmpty() && (pending.size() >= inFlight || i == chunks)) {
+                            ChunkResult result = pending.poll().join();
+                            for (IndexEntry entry : result.keys()) {
+                                index.writeInt(entry.tag());
+                                MessageCodec.writeString(index, entry.value());
+                                index.writeLong(position + entry.offset());
+                            }
+                            keyed += result.keys().size();
+                            stepCount += result.count();
+                            out.write(result.records(), 0, result.length());
+                            position += result.length();
+                        }
+                    }
+                }
+                out.writeInt(keyed);
+                Files.copy(indexTmp, out);
+            }
+            long indexOffset = position;
+            long fileLength = indexOffset + Integer.BYTES + Files.size(indexTmp);
+
+            try (FileChannel cache = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+                header.put(MAGIC).putInt(VERSION).putInt(stepCount).putLong(sourceHash).putLong(length)
+                        .putLong(modified).putLong(indexOffset).putLong(fileLength);
+                header.flip();
+                cache.write(header, 0);
+            }
+            Files.move(tmp, cacheFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+            Files.deleteIfExists(indexTmp);
+        }
+    }
+
+    private static long[] chunkBounds(FileChannel channel, long size) throws IOException {
+        List<Long> bounds = new ArrayList<>();
+        bounds.add(0L);
+        ByteBuffer probe = ByteBuffer.allocate(64 * 1024);
+        long start = 0;
+        while (start < size) {
+            long end = Math.min(size, start + CHUNK_BYTES);
+            while (end < size) {
+                probe.clear();
+                int read = channel.read(probe, end);
+                int newline = -1;
+                for (int i = 0; i < read && newline < 0; i++) {
+                    if (probe.get(i) == '\n') {
+                        newline = i;
+                    }
+                }
+                if (newline >= 0) {
+                    end += newline + 1;
+                    break;
+                }
+                end = Math.min(size, end + read);
+            }
+            bounds.add(end);
+            start = end;
+        }
+        return bounds.stream().mapToLong(Long::longValue).toArray();
+    }
+
+    private static MappedByteBuffer map(FileChannel channel, long start, long end) {
+        try {
+            return channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static final class LineCountTask extends RecursiveTask<Long> {
+        private static final long serialVersionUID = 1L;
+
+        private final transient FileChannel channel;
+        private final long start;
+        private final long end;
+
+        LineCountTask(FileChannel channel, long start, long end) {
+            this.channel = channel;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected Long compute() {
+            MappedByteBuffer chunk = map(channel, start, end);
+            long lines = 0;
+            int limit = chunk.limit();
+            for (int i = 0; i < limit; i++) {
+                if (chunk.get(i) == '\n') {
+                    lines++;
+                }
+            }
+            return lines;
+        }
+    }
+
+    private record IndexEntry(int tag, String value, int offset) {
+    }
+
+    private record ChunkResult(byte[] records, int length, int count, List<IndexEntry> keys) {
+    }
+
+    private static final class ChunkTask extends RecursiveTask<ChunkResult> {
+        private static final long serialVersionUID = 1L;
+
+        private final transient FileChannel channel;
+        private final long start;
+        private final long end;
+        private final long firstLine;
+        private final transient StepParser parser;
+
+        ChunkTask(FileChannel channel, long start, long end, long firstLine, StepParser parser) {
+            this.channel = channel;
+            this.start = start;
+            this.end = end;
+            this.firstLine = firstLine;
+            this.parser = parser;
+        }
+
+        @Override
+        protected ChunkResult compute() {
+            MappedByteBuffer chunk = map(channel, start, end);
+            LineNormalizer normalizer = new LineNormalizer();
+            RecordBuffer records = new RecordBuffer();
+            DataOutputStream out = new DataOutputStream(records);
+            RecordBuffer message = new RecordBuffer();
+            List<IndexEntry> keys = new ArrayList<>();
+            int count = 0;
+            long lineNumber = firstLine;
+
+            int limit = chunk.limit();
+            int lineStart = 0;
+            try {
+                while (lineStart < limit) {
+                    int lineEnd = lineStart;
+                    while (lineEnd < limit && chunk.get(lineEnd) != '\n') {
+                        lineEnd++;
+                    }
+                    lineNumber++;
+                    int length = normalizer.normalize(chunk, lineStart, lineEnd);
+                    lineStart = lineEnd + 1;
+                    if (length < 0) {
+                        continue;
+                    }
+                    String fixMessage = normalizer.toString(length);
+                    Step step;
+                    try {
+                        step = parser.parse(fixMessage, lineNumber);
+                    } catch (Exception e) {
+                        log.error("Failed to parse line {}: {}", lineNumber, fixMessage, e);
+                        throw new RuntimeException(e);
+                    }
+                    if (step == null) {
+                        continue;
+                    }
+                    count++;
+                    IndexEntry key = keyOf(step.message(), records.size());
+                    if (key != null) {
+                        keys.add(key);
+                    }
+                    writeRecord(out, step, lineNumber, message);
+                }
+                out.flush();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return new ChunkResult(records.array(), records.size(), count, keys);
+        }
+
+        private static void writeRecord(DataOutputStream out, Step step, long lineNumber, RecordBuffer message)
+                throws IOException {
+            message.reset();
+            MessageCodec.write(new DataOutputStream(message), step.message());
+            out.writeByte(step.type().ordinal());
+            out.writeLong(lineNumber);
+            out.writeInt(message.size());
+            message.writeTo(out);
+        }
+
+        private static IndexEntry keyOf(Message message, int offset) {
+            for (int tag : KEY_TAGS) {
+                Optional<String> value = message.getOptionalString(tag);
+                if (value.isPresent()) {
+                    return new IndexEntry(tag, value.get(), offset);
+                }
+            }
+            return null;
+        }
+    }
+
+    private static final class RecordBuffer extends ByteArrayOutputStream {
+        RecordBuffer() {
+            super(64 * 1024);
+        }
+
+        byte[] array() {
+            return buf;
+        }
+    }
+}
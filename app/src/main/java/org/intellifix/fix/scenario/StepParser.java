@@ -0,0 +1,13 @@
+package org.intellifix.fix.scenario;
+
+import org.intellifix.fix.model.Step;
+
+/**
+ * Turns one normalized scenario line (SOH delimited, trailing SOH) into a step,
+ * or {@code null} when the simulator does not handle it.
+ */
+@FunctionalInterface
+public interface StepParser {
+
+    Step parse(String fixMessage, long lineNumber) throws Exception;
+}
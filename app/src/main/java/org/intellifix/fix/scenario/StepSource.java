@@ -0,0 +1,13 @@
+package org.intellifix.fix.scenario;
+
+import org.intellifix.fix.model.Step;
+
+/**
+ * A scenario's steps, produced in file order. Implementations may parse lazily and hold
+ * file resources, so callers close the source when the run is over.
+ */
+public interface StepSource extends Iterable<Step>, AutoCloseable {
+
+    @Override
+    void close();
+}
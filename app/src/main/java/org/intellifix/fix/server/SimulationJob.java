@@ -0,0 +1,103 @@
+package org.intellifix.fix.server;
+
+import org.intellifix.fix.apps.ClientApp;
+import org.json.JSONException;
+import org.json.JSONObject;
+import quickfix.ConfigError;
+import quickfix.SessionID;
+import quickfix.SessionSettings;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * One simulation job, in the shape of {@code stream/fix_simulation_stream.json}: a {@code sim_id},
+ * the client, broker and two hub session sections, the scenario ({@code log_path}) and the data
+ * dictionary ({@code fix_spec}).
+ * <p>
+ * The settings builders start from the {@code [default]} section of a template config and add the
+ * job's sessions, so store, log, pacing and timeout settings come from the usual configs. The hub
+ * takes its own CompID from the client's TargetCompID and its routing from the client and broker
+ * CompIDs.
+ */
+public record SimulationJob(String simId, Map<String, String> clientSession, Map<String, String> brokerSession,
+        Map<String, String> hubClientSession, Map<String, String> hubBrokerSession, String scenario,
+        String fixSpec) {
+
+    public static SimulationJob parse(String json) throws ConfigError {
+        try {
+            JSONObject job = new JSONObject(json);
+            return new SimulationJob(
+                    job.get("sim_id").toString(),
+                    section(job, "client_config_session"),
+                    section(job, "broker_config_session"),
+                    section(job, "hub_client_config_session"),
+                    section(job, "hub_broker_config_session"),
+                    job.getString("log_path"),
+                    job.getString("fix_spec"));
+        } catch (JSONException e) {
+            throw new ConfigError("Invalid simulation job: " + e.getMessage());
+        }
+    }
+
+    public SessionSettings clientSettings(SessionSettings template) throws ConfigError {
+        SessionSettings settings = defaults(template);
+        settings.setString(ClientApp.SIM_ID, simId);
+        addSession(settings, clientSession, null);
+        return settings;
+    }
+
+    public SessionSettings brokerSettings(SessionSettings template) throws ConfigError {
+        SessionSettings settings = defaults(template);
+        addSession(settings, brokerSession, null);
+        return settings;
+    }
+
+    public SessionSettings hubSettings(SessionSettings template) throws ConfigError {
+        String hubCompId = required(clientSession, SessionSettings.TARGETCOMPID);
+        SessionSettings settings = defaults(template);
+        settings.setString(SessionSettings.SENDERCOMPID, hubCompId);
+        settings.setString("ClientCompID", required(clientSession, SessionSettings.SENDERCOMPID));
+        settings.setString("BrokerCompID", required(brokerSession, SessionSettings.SENDERCOMPID));
+        addSession(settings, hubClientSession, hubCompId);
+        addSession(settings, hubBrokerSession, hubCompId);
+        return settings;
+    }
+
+    private static SessionSettings defaults(SessionSettings template) {
+        SessionSettings settings = new SessionSettings();
+        settings.set(new HashMap<>(template.getDefaultProperties()));
+        return settings;
+    }
+
+    private static void addSession(SessionSettings settings, Map<String, String> section, String senderCompId)
+            throws ConfigError {
+        String sender = senderCompId != null && !section.containsKey(SessionSettings.SENDERCOMPID)
+                ? senderCompId
+                : required(section, SessionSettings.SENDERCOMPID);
+        SessionID sessionID = new SessionID(required(section, SessionSettings.BEGINSTRING), sender,
+                required(section, SessionSettings.TARGETCOMPID));
+        settings.setString(sessionID, SessionSettings.SENDERCOMPID, sender);
+        for (Map.Entry<String, String> entry : section.entrySet()) {
+            settings.setString(sessionID, entry.getKey(), entry.getValue());
+        }
+    }
+
+    private static String required(Map<String, String> section, String key) throws ConfigError {
+        String value = section.get(key);
+        if (value == null) {
+            throw new ConfigError("Simulation job session is missing " + key);
+        }
+        return value;
+    }
+
+    private static Map<String, String> section(JSONObject job, String name) {
+        JSONObject object = job.getJSONObject(name);
+        Map<String, String> section = new LinkedHashMap<>();
+        for (String key : object.keySet()) {
+            section.put(key, object.get(key).toString());
+        }
+        return section;
+    }
+}
@@ -0,0 +1,49 @@
+package org.intellifix.fix.store;
+
+import org.intellifix.fix.model.StoreType;
+import quickfix.ConfigError;
+import quickfix.FileStoreFactory;
+import quickfix.MemoryStoreFactory;
+import quickfix.MessageStore;
+import quickfix.MessageStoreFactory;
+import quickfix.RuntimeError;
+import quickfix.SessionID;
+import quickfix.SessionSettings;
+
+/**
+ * Picks the store of each session from its {@code MessageStoreType} setting (FILE, MAPPED or
+ * MEMORY; default FILE), so one connector can mix store types across sessions.
+ */
+public class ConfiguredStoreFactory implements MessageStoreFactory {
+
+    public static final String MESSAGE_STORE_TYPE = "MessageStoreType";
+
+    private final SessionSettings settings;
+    private MessageStoreFactory file;
+    private MessageStoreFactory mapped;
+    private MessageStoreFactory memory;
+
+    public ConfiguredStoreFactory(SessionSettings settings) {
+        this.settings = settings;
+    }
+
+    @Override
+    public synchronized MessageStore create(SessionID sessionID) {
+        return switch (storeType(sessionID)) {
+            case FILE -> (file == null ? file = new FileStoreFactory(settings) : file).create(sessionID);
+            case MAPPED -> (mapped == null ? mapped = new MappedMessageStoreFactory(settings) : mapped)
+                    .create(sessionID);
+            case MEMORY -> (memory == null ? memory = new MemoryStoreFactory() : memory).create(sessionID);
+        };
+    }
+
+    private StoreType storeType(SessionID sessionID) {
+        try {
+            return settings.isSetting(sessionID, MESSAGE_STORE_TYPE)
+                    ? StoreType.valueOf(settings.getString(sessionID, MESSAGE_STORE_TYPE).trim().toUpperCase())
+                    : StoreType.FILE;
+        } catch (ConfigError | IllegalArgumentException e) {
+            throw new RuntimeError("Invalid " + MESSAGE_STORE_TYPE + " for " + sessionID, e);
+        }
+    }
+}
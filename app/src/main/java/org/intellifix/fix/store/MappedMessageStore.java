@@ -0,0 +1,324 @@
+package org.intellifix.fix.store;
+
+import lombok.extern.slf4j.Slf4j;
+import org.quickfixj.CharsetSupport;
+import quickfix.MessageStore;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Session store kept in three memory-mapped files: a small header with the sequence numbers, an
+ * index with one {@code long} per sequence number (offset and length of the message), and the
+ * message bodies appended back to back in 256 MB mapped segments; a message never spans two.
+ * <p>
+ * Writes only touch mapped memory; dirty pages are forced to disk by a background task every
+ * {@code syncMillis} (never, if it is 0), so a crash can lose the last interval but not corrupt
+ * earlier messages. The task only holds the store's lock while it notes which byte ranges were
+ * written since the last sync; the msync runs without it, so session threads never wait for it.
+ * Resend requests are served by index lookups and copies straight out of the mapping, without
+ * read calls.
+ */
+@Slf4j
+public final class MappedMessageStore implements MessageStore, Closeable {
+
+    private static final int MAGIC = 0x51464A4D;
+    private static final int HEADER_BYTES = 64;
+    private static final int NEXT_SENDER = 4;
+    private static final int NEXT_TARGET = 8;
+    private static final int HIGHEST_SEQ = 12;
+    private static final int CREATION_TIME = 16;
+    private static final int BODY_END = 24;
+
+    private static final int LENGTH_BITS = 24;
+    private static final long LENGTH_MASK = (1L << LENGTH_BITS) - 1;
+    private static final int INITIAL_INDEX_SLOTS = 1 << 16;
+    private static final int INITIAL_BODY_BYTES = 16 << 20;
+    private static final int SEGMENT_SHIFT = 28;
+    private static final int SEGMENT_BYTES = 1 << SEGMENT_SHIFT;
+
+    private final FileChannel headerChannel;
+    private final FileChannel indexChannel;
+    private final FileChannel bodyChannel;
+    private final MappedByteBuffer header;
+    private MappedByteBuffer index;
+    private MappedByteBuffer[] segments = new MappedByteBuffer[4];
+    private int segmentCount;
+
+    // written since the last sync: body bytes [dirtyBodyFrom, dirtyBodyTo), index slots of
+    // sequence numbers [dirtySeqFrom, dirtySeqTo]; from > to when clean
+    private long dirtyBodyFrom = Long.MAX_VALUE;
+    private long dirtyBodyTo;
+    private int dirtySeqFrom = Integer.MAX_VALUE;
+    private int dirtySeqTo;
+
+    private final Charset charset = CharsetSupport.getCharsetInstance();
+    private final boolean singleByte = CharsetSupport.isStringEquivalent(charset);
+    private byte[] scratch = new byte[1024];
+    private final ScheduledFuture<?> syncTask;
+    private volatile boolean dirty;
+
+    public MappedMessageStore(Path directory, String prefix, ScheduledExecutorService syncer, long syncMillis)
+            throws IOException {
+        Files.createDirectories(directory);
+        headerChannel = open(directory.resolve(prefix + ".mheader"));
+        indexChannel = open(directory.resolve(prefix + ".mindex"));
+        bodyChannel = open(directory.resolve(prefix + ".mbody"));
+
+        header = headerChannel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES);
+        index = indexChannel.map(FileChannel.MapMode.READ_WRITE, 0,
+                Math.max(indexChannel.size(), (long) INITIAL_INDEX_SLOTS * Long.BYTES));
+        if (header.getInt(0) != MAGIC) {
+            header.putInt(0, MAGIC);
+            initialize();
+        }
+        long fileBytes = bodyChannel.size();
+        int lastSegment = (int) (Math.max(fileBytes - 1, header.getLong(BODY_END)) >>> SEGMENT_SHIFT);
+        for (int segment = 0; segment <= lastSegment; segment++) {
+            long remaining = fileBytes - ((long) segment << SEGMENT_SHIFT);
+            mapSegment(segment, (int) Math.min(SEGMENT_BYTES, Math.max(INITIAL_BODY_BYTES, remaining)));
+        }
+        syncTask = syncMillis > 0
+                ? syncer.scheduleWithFixedDelay(this::syncQuietly, syncMillis, syncMillis, TimeUnit.MILLISECONDS)
+                : null;
+    }
+
+    @Override
+    public synchronized boolean set(int sequence, String message) throws IOException {
+        int length = singleByte ? message.length() : message.getBytes(charset).length;
+        if (length > LENGTH_MASK) {
+            throw new IOException("Message of " + length + " bytes is too large for the mapped store");
+        }
+        long offset = reserve(length);
+        ensureIndex(sequence);
+        MappedByteBuffer segment = segments[(int) (offset >>> SEGMENT_SHIFT)];
+        int position = (int) (offset & (SEGMENT_BYTES - 1));
+        if (singleByte) {
+            for (int i = 0; i < length; i++) {
+                segment.put(position + i, (byte) message.charAt(i));
+            }
+        } else {
+            segment.put(position, message.getBytes(charset));
+        }
+        dirtyBodyFrom = Math.min(dirtyBodyFrom, offset);
+        dirtyBodyTo = Math.max(dirtyBodyTo, offset + length);
+        index.putLong(sequence * Long.BYTES, offset << LENGTH_BITS | length);
+        dirtySeqFrom = Math.min(dirtySeqFrom, sequence);
+        dirtySeqTo = Math.max(dirtySeqTo, sequence);
+        header.putLong(BODY_END, offset + length);
+        if (sequence > header.getInt(HIGHEST_SEQ)) {
+            header.putInt(HIGHEST_SEQ, sequence);
+        }
+        dirty = true;
+        return true;
+    }
+
+    @Override
+    public synchronized void get(int startSequence, int endSequence, Collection<String> messages) {
+        int last = Math.min(endSequence, header.getInt(HIGHEST_SEQ));
+        for (int sequence = Math.max(1, startSequence); sequence <= last; sequence++) {
+            long entry = index.getLong(sequence * Long.BYTES);
+            if (entry == 0) {
+                continue;
+            }
+            long offset = entry >>> LENGTH_BITS;
+            int length = (int) (entry & LENGTH_MASK);
+            if (scratch.length < length) {
+                scratch = new byte[Math.max(length, scratch.length * 2)];
+            }
+            segments[(int) (offset >>> SEGMENT_SHIFT)].get((int) (offset & (SEGMENT_BYTES - 1)), scratch, 0, length);
+            messages.add(new String(scratch, 0, length, charset));
+        }
+    }
+
+    @Override
+    public synchronized int getNextSenderMsgSeqNum() {
+        return header.getInt(NEXT_SENDER);
+    }
+
+    @Override
+    public synchronized int getNextTargetMsgSeqNum() {
+        return header.getInt(NEXT_TARGET);
+    }
+
+    @Override
+    public synchronized void setNextSenderMsgSeqNum(int next) {
+        header.putInt(NEXT_SENDER, next);
+        dirty = true;
+    }
+
+    @Override
+    public synchronized void setNextTargetMsgSeqNum(int next) {
+        header.putInt(NEXT_TARGET, next);
+        dirty = true;
+    }
+
+    @Override
+    public synchronized void incrNextSenderMsgSeqNum() {
+        setNextSenderMsgSeqNum(getNextSenderMsgSeqNum() + 1);
+    }
+
+    @Override
+    public synchronized void incrNextTargetMsgSeqNum() {
+        setNextTargetMsgSeqNum(getNextTargetMsgSeqNum() + 1);
+    }
+
+    @Override
+    public synchronized Date getCreationTime() {
+        return new Date(header.getLong(CREATION_TIME));
+    }
+
+    @Override
+    public synchronized void reset() {
+        int highest = header.getInt(HIGHEST_SEQ);
+        for (int sequence = 1; sequence <= highest; sequence++) {
+            index.putLong(sequence * Long.BYTES, 0);
+        }
+        if (highest > 0) {
+            dirtySeqFrom = 1;
+            dirtySeqTo = Math.max(dirtySeqTo, highest);
+        }
+        initialize();
+    }
+
+    /**
+     * Nothing to reload: the header is read from the mapping on every call.
+     */
+    @Override
+    public void refresh() {
+    }
+
+    /**
+     * Forces the ranges written since the last sync to disk. Only taking note of them holds the
+     * store's lock; writes that race with the msync are marked dirty again and go with the next one.
+     */
+    public void sync() {
+        MappedByteBuffer[] bodies;
+        MappedByteBuffer slots;
+        long bodyFrom;
+        long bodyTo;
+        int seqFrom;
+        int seqTo;
+        synchronized (this) {
+            if (!dirty) {
+                return;
+            }
+            dirty = false;
+            bodies = segments.clone();
+            slots = index;
+            bodyFrom = dirtyBodyFrom;
+            bodyTo = dirtyBodyTo;
+            seqFrom = dirtySeqFrom;
+            seqTo = dirtySeqTo;
+            dirtyBodyFrom = Long.MAX_VALUE;
+            dirtyBodyTo = 0;
+            dirtySeqFrom = Integer.MAX_VALUE;
+            dirtySeqTo = 0;
+        }
+        if (bodyFrom < bodyTo) {
+            int first = (int) (bodyFrom >>> SEGMENT_SHIFT);
+            int last = (int) ((bodyTo - 1) >>> SEGMENT_SHIFT);
+            for (int segment = first; segment <= last; segment++) {
+                int from = segment == first ? (int) (bodyFrom & (SEGMENT_BYTES - 1)) : 0;
+                int to = segment == last ? (int) ((bodyTo - 1) & (SEGMENT_BYTES - 1)) + 1 : bodies[segment].capacity();
+                bodies[segment].force(from, to - from);
+            }
+        }
+        if (seqFrom <= seqTo) {
+            slots.force(seqFrom * Long.BYTES, (seqTo - seqFrom + 1) * Long.BYTES);
+        }
+        header.force();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (syncTask != null) {
+            syncTask.cancel(false);
+        }
+        sync();
+        headerChannel.close();
+        indexChannel.close();
+        bodyChannel.close();
+    }
+
+    private void initialize() {
+        header.putInt(NEXT_SENDER, 1);
+        header.putInt(NEXT_TARGET, 1);
+        header.putInt(HIGHEST_SEQ, 0);
+        header.putLong(CREATION_TIME, System.currentTimeMillis());
+        header.putLong(BODY_END, 0);
+        dirty = true;
+    }
+
+    private void ensureIndex(int sequence) throws IOException {
+        long needed = (sequence + 1L) * Long.BYTES;
+        if (needed > Integer.MAX_VALUE) {
+            throw new IOException("Sequence number " + sequence + " is beyond the mapped store index");
+        }
+        if (needed > index.capacity()) {
+            // pages written through the old mapping stay dirty in the page cache and are forced
+            // through the new one, which maps the same file
+            index = indexChannel.map(FileChannel.MapMode.READ_WRITE, 0, grow(index.capacity(), needed, Integer.MAX_VALUE));
+        }
+    }
+
+    // start of the next message, moved to a fresh segment if it would not fit in the current one
+    private long reserve(int length) throws IOException {
+        long offset = header.getLong(BODY_END);
+        int segment = (int) (offset >>> SEGMENT_SHIFT);
+        int position = (int) (offset & (SEGMENT_BYTES - 1));
+        if (position + length > SEGMENT_BYTES) {
+            segment++;
+            position = 0;
+            offset = (long) segment << SEGMENT_SHIFT;
+        }
+        if (segment >= segmentCount) {
+            mapSegment(segment, Math.max(INITIAL_BODY_BYTES, length));
+        } else if (position + length > segments[segment].capacity()) {
+            mapSegment(segment, (int) grow(segments[segment].capacity(), position + length, SEGMENT_BYTES));
+        }
+        return offset;
+    }
+
+    private void mapSegment(int segment, int size) throws IOException {
+        if (segment >= segments.length) {
+            segments = Arrays.copyOf(segments, segments.length * 2);
+        }
+        segments[segment] = bodyChannel.map(FileChannel.MapMode.READ_WRITE, (long) segment << SEGMENT_SHIFT, size);
+        segmentCount = Math.max(segmentCount, segment + 1);
+    }
+
+    // doubles, but never past limit, which needed is within
+    private static long grow(long current, long needed, long limit) {
+        long size = current;
+        while (size < needed) {
+            size *= 2;
+        }
+        return Math.min(size, limit);
+    }
+
+    private void syncQuietly() {
+        try {
+            sync();
+        } catch (RuntimeException e) {
+            // force() only fails if the mapping is gone; the ranges are lost, later writes are retried
+            log.warn("[STORE] Failed to sync mapped store: {}", e.toString());
+        }
+    }
+
+    private static FileChannel open(Path file) throws IOException {
+        return FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+}
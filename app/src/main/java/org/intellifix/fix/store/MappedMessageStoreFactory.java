@@ -0,0 +1,53 @@
+package org.intellifix.fix.store;
+
+import quickfix.ConfigError;
+import quickfix.FieldConvertError;
+import quickfix.FileStoreFactory;
+import quickfix.FileUtil;
+import quickfix.MessageStore;
+import quickfix.MessageStoreFactory;
+import quickfix.RuntimeError;
+import quickfix.SessionID;
+import quickfix.SessionSettings;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+/**
+ * Creates {@link MappedMessageStore}s under each session's {@code FileStorePath}. All stores of
+ * the factory share one background sync thread; {@code MappedStoreSyncMillis} (default 100)
+ * sets the flush interval, 0 leaves flushing to the operating system.
+ */
+public class MappedMessageStoreFactory implements MessageStoreFactory {
+
+    public static final String MAPPED_STORE_SYNC_MILLIS = "MappedStoreSyncMillis";
+    public static final long DEFAULT_SYNC_MILLIS = 100;
+
+    private final SessionSettings settings;
+    private final ScheduledExecutorService syncer = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "mapped-store-sync");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public MappedMessageStoreFactory(SessionSettings settings) {
+        this.settings = settings;
+    }
+
+    @Override
+    public MessageStore create(SessionID sessionID) {
+        try {
+            String path = settings.isSetting(sessionID, FileStoreFactory.SETTING_FILE_STORE_PATH)
+                    ? settings.getString(sessionID, FileStoreFactory.SETTING_FILE_STORE_PATH)
+                    : "store";
+            long syncMillis = settings.isSetting(sessionID, MAPPED_STORE_SYNC_MILLIS)
+                    ? settings.getLong(sessionID, MAPPED_STORE_SYNC_MILLIS)
+                    : DEFAULT_SYNC_MILLIS;
+            return new MappedMessageStore(Path.of(path), FileUtil.sessionIdFileName(sessionID), syncer, syncMillis);
+        } catch (ConfigError | FieldConvertError | IOException e) {
+            throw new RuntimeError(e);
+        }
+    }
+}
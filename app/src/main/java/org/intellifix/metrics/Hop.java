@@ -0,0 +1,10 @@
+package org.intellifix.metrics;
+
+public enum Hop {
+    /** Client sends 35=D/G/F until the first 35=8 with the same ClOrdID comes back. */
+    CLIENT_TO_ER,
+    /** Hub receives a message until it has been forwarded to the other side. */
+    HUB_HOP,
+    /** Broker receives a NewOrderSingle until its ExecutionReport is sent. */
+    BROKER_TURNAROUND
+}
@@ -0,0 +1,184 @@
+package org.intellifix.metrics;
+
+import lombok.extern.slf4j.Slf4j;
+import org.intellifix.redis.base.MessagePublisher;
+import quickfix.ConfigError;
+import quickfix.FieldConvertError;
+import quickfix.SessionID;
+import quickfix.SessionSettings;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Latency histograms of one simulator process, one per hop, session and MsgType.
+ * <p>
+ * Histograms are created on first use; after that a recording is two map lookups on existing
+ * keys and a histogram update. Client-to-ER latency is correlated through {@link #markSent} and
+ * {@link #recordReply}, which keep the send time per ClOrdID in a fixed 4-way set-associative
+ * table: nothing is allocated per order, and when a set is full its oldest entry is dropped.
+ */
+@Slf4j
+public final class LatencyRecorder {
+
+    public static final int DEFAULT_PENDING_CAPACITY = 1 << 16;
+    public static final String LATENCY_REPORT_PATH = "LatencyReportPath";
+
+    private static final double[] PERCENTILES = { 50, 90, 99, 99.9, 99.99 };
+    private static final int WAYS = 4;
+
+    private final Map<Hop, Map<SessionID, Map<String, LatencyHistogram>>> byHop = new EnumMap<>(Hop.class);
+
+    private final int setMask;
+    private final String[] pendingKeys;
+    private final String[] pendingTypes;
+    private final long[] pendingNanos;
+    private long unmatched;
+    private long overwritten;
+
+    public LatencyRecorder() {
+        this(DEFAULT_PENDING_CAPACITY);
+    }
+
+    public LatencyRecorder(int pendingCapacity) {
+        // filled once here and only read afterwards
+        for (Hop hop : Hop.values()) {
+            byHop.put(hop, new ConcurrentHashMap<>());
+        }
+        int sets = Integer.highestOneBit(Math.max(WAYS, pendingCapacity) / WAYS);
+        this.setMask = sets - 1;
+        this.pendingKeys = new String[sets * WAYS];
+        this.pendingTypes = new String[sets * WAYS];
+        this.pendingNanos = new long[sets * WAYS];
+    }
+
+    /**
+     * {@code LatencyReportPath} from the session config, or {@code log/latency-<role>.txt}.
+     */
+    public static Path reportPath(SessionSettings settings, String role) throws ConfigError, FieldConvertError {
+        return Path.of(settings.isSetting(LATENCY_REPORT_PATH)
+                ? settings.getString(LATENCY_REPORT_PATH)
+                : "log/latency-" + role + ".txt");
+    }
+
+    public void record(Hop hop, SessionID sessionID, String msgType, long nanos) {
+        histogram(hop, sessionID, msgType).record(nanos);
+    }
+
+    public LatencyHistogram histogram(Hop hop, SessionID sessionID, String msgType) {
+        Map<SessionID, Map<String, LatencyHistogram>> bySessionID = byHop.get(hop);
+        Map<String, LatencyHistogram> bySession = bySessionID.get(sessionID);
+        if (bySession == null) {
+            bySession = bySessionID.computeIfAbsent(sessionID, s -> new ConcurrentHashMap<>());
+        }
+        LatencyHistogram histogram = bySession.get(msgType);
+        if (histogram == null) {
+            histogram = bySession.computeIfAbsent(msgType, t -> new LatencyHistogram());
+        }
+        return histogram;
+    }
+
+    /**
+     * Remembers when the request carrying {@code clOrdId} was (or was scheduled to be) sent.
+     */
+    public synchronized void markSent(String clOrdId, String msgType, long nanos) {
+        int base = set(clOrdId);
+        int target = base;
+        for (int i = base; i < base + WAYS; i++) {
+            if (pendingKeys[i] == null || pendingKeys[i].equals(clOrdId)) {
+                target = i;
+                break;
+            }
+            if (pendingNanos[i] - pendingNanos[target] < 0) {
+                target = i;
+            }
+        }
+        if (pendingKeys[target] != null && !pendingKeys[target].equals(clOrdId)) {
+            overwritten++;
+        }
+        pendingKeys[target] = clOrdId;
+        pendingTypes[target] = msgType;
+        pendingNanos[target] = nanos;
+    }
+
+    /**
+     * Records {@link Hop#CLIENT_TO_ER} for the first reply to {@code clOrdId}; later replies to
+     * the same ClOrdID are ignored.
+     */
+    public void recordReply(SessionID sessionID, String clOrdId, long nowNanos) {
+        String msgType = null;
+        long sent = 0;
+        synchronized (this) {
+            int base = set(clOrdId);
+            for (int i = base; i < base + WAYS; i++) {
+                if (clOrdId.equals(pendingKeys[i])) {
+                    msgType = pendingTypes[i];
+                    sent = pendingNanos[i];
+                    pendingKeys[i] = null;
+                    pendingTypes[i] = null;
+                    break;
+                }
+            }
+            if (msgType == null) {
+                unmatched++;
+                return;
+            }
+        }
+        record(Hop.CLIENT_TO_ER, sessionID, msgType, nowNanos - sent);
+    }
+
+    /**
+     * Writes one line per histogram, in microseconds, to {@code file} and to the publisher.
+     */
+    public void writeReport(Path file, MessagePublisher publisher) {
+        List<String> lines = new ArrayList<>();
+        lines.add("hop session msgType count mean_us p50_us p90_us p99_us p99.9_us p99.99_us max_us");
+        for (Hop hop : Hop.values()) {
+            byHop.get(hop).forEach((sessionID, byType) -> byType.forEach((msgType, histogram) -> {
+                StringBuilder line = new StringBuilder()
+                        .append(hop).append(' ').append(sessionID).append(' ').append(msgType)
+                        .append(' ').append(histogram.count())
+                        .append(' ').append(micros((long) histogram.mean()));
+                for (double p : PERCENTILES) {
+                    line.append(' ').append(micros(histogram.percentile(p)));
+                }
+                lines.add(line.append(' ').append(micros(histogram.max())).toString());
+            }));
+        }
+        synchronized (this) {
+            lines.add("unmatched replies=" + unmatched + " dropped send times=" + overwritten);
+        }
+
+        try {
+            if (file.getParent() != null) {
+                Files.createDirectories(file.getParent());
+            }
+            try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(file, StandardCharsets.UTF_8))) {
+                lines.forEach(out::println);
+            }
+            log.info("[LATENCY] Report written to {}", file);
+        } catch (IOException e) {
+            log.error("[LATENCY] Failed to write report {}", file, e);
+        }
+        for (String line : lines) {
+            publisher.publishMessage("Latency " + line);
+        }
+    }
+
+    private int set(String clOrdId) {
+        int h = clOrdId.hashCode() * 0x9E3779B9;
+        return ((h ^ (h >>> 16)) & setMask) * WAYS;
+    }
+
+    private static String micros(long nanos) {
+        return String.format("%.1f", nanos / 1000.0);
+    }
+}
@@ -0,0 +1,128 @@
+package org.intellifix.redis;
+
+import org.intellifix.common.Lz4Block;
+import org.intellifix.fix.model.MessageDirection;
+import org.intellifix.redis.base.FixEvent;
+import quickfix.SessionID;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Reads entry values written by {@link BinaryBatchEncoder}. Session IDs are parsed once and
+ * kept across batches. Not thread-safe; use one decoder per consumer thread.
+ */
+public final class BinaryBatchDecoder {
+
+    // a stream only ever sees a handful of sessions; this just bounds a misbehaving one
+    private static final int MAX_CACHED_SESSIONS = 4096;
+
+    private final FixEvent event = new FixEvent();
+    private final Map<String, SessionID> sessions = new HashMap<>();
+    private byte[] inflated = new byte[0];
+    private String[] strings = new String[64];
+    private byte[] data;
+    private int pos;
+
+    /**
+     * Hands each event of the batch to {@code handler} and returns how many there were. The same
+     * event instance is reused for every call, so handlers must copy what they keep.
+     *
+     * @throws IllegalArgumentException if {@code value} is not a valid batch
+     */
+    public int decode(byte[] value, Consumer<FixEvent> handler) {
+        if (value.length < 2 || value[0] != BinaryBatchEncoder.VERSION) {
+            throw new IllegalArgumentException("Unsupported batch version "
+                    + (value.length == 0 ? "(empty)" : Integer.toString(value[0])));
+        }
+        try {
+            data = value;
+            pos = 2;
+            int length = (int) varint();
+            if ((value[1] & BinaryBatchEncoder.FLAG_LZ4) != 0) {
+                if (inflated.length < length) {
+                    inflated = new byte[length];
+                }
+                int inflatedLength = Lz4Block.decompress(value, pos, value.length - pos, inflated);
+                if (inflatedLength != length) {
+                    throw new IllegalArgumentException("Batch inflated to " + inflatedLength + " bytes, expected "
+                            + length);
+                }
+                data = inflated;
+                pos = 0;
+            }
+            return events(handler);
+        } catch (IndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Truncated batch", e);
+        } finally {
+            data = null;
+        }
+    }
+
+    private int events(Consumer<FixEvent> handler) {
+        long base = 0;
+        for (int i = 0; i < 8; i++) {
+            base |= (data[pos++] & 0xFFL) << (8 * i);
+        }
+        int count = (int) varint();
+        if (strings.length < count) {
+            strings = new String[Math.max(count, strings.length * 2)];
+        }
+        for (int i = 0; i < count; i++) {
+            int length = (int) varint();
+            strings[i] = new String(data, pos, length, StandardCharsets.UTF_8);
+            pos += length;
+        }
+
+        int events = (int) varint();
+        for (int i = 0; i < events; i++) {
+            int kind = data[pos++];
+            long delta = varint();
+            long timestamp = base + ((delta >>> 1) ^ -(delta & 1));
+            if (kind == BinaryBatchEncoder.KIND_TEXT) {
+                handler.accept(event.text(strings[(int) varint()], timestamp));
+                continue;
+            }
+            MessageDirection direction = switch (kind) {
+                case BinaryBatchEncoder.KIND_SENT -> MessageDirection.SENT;
+                case BinaryBatchEncoder.KIND_RECEIVED -> MessageDirection.RECEIVED;
+                default -> throw new IllegalArgumentException("Unknown event kind " + kind);
+            };
+            SessionID sessionID = session(strings[(int) varint()]);
+            int simId = (int) varint();
+            String source = strings[(int) varint()];
+            String msgType = strings[(int) varint()];
+            int length = (int) varint();
+            handler.accept(event.set(source, direction, sessionID, msgType, simId == 0 ? null : strings[simId - 1],
+                    data, pos, length, timestamp));
+            pos += length;
+        }
+        return events;
+    }
+
+    private SessionID session(String id) {
+        SessionID sessionID = sessions.get(id);
+        if (sessionID == null) {
+            if (sessions.size() >= MAX_CACHED_SESSIONS) {
+                sessions.clear();
+            }
+            sessionID = new SessionID(id);
+            sessions.put(id, sessionID);
+        }
+        return sessionID;
+    }
+
+    private long varint() {
+        long v = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = data[pos++];
+            v |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return v;
+            }
+        }
+        throw new IllegalArgumentException("Malformed varint at " + pos);
+    }
+}
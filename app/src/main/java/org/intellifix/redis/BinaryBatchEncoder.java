@@ -0,0 +1,224 @@
+package org.intellifix.redis;
+
+import org.intellifix.common.Lz4Block;
+import org.intellifix.fix.model.MessageDirection;
+import org.intellifix.redis.base.FixEvent;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Packs a batch of events into the value of one stream entry, read back by
+ * {@link BinaryBatchDecoder}. Varints are unsigned LEB128; timestamps are zigzag deltas from the
+ * batch's first event.
+ * <pre>
+ * byte    version (1)
+ * byte    flags, bit 0: the payload is an LZ4 block
+ * varint  payload length (uncompressed)
+ * ...     payload
+ *
+ * payload:
+ * long    base timestamp, nanoseconds since the epoch, little-endian
+ * varint  string count, then per string: varint length, UTF-8 bytes
+ * varint  event count, then per event:
+ *   byte    kind: 0 text, 1 sent, 2 received
+ *   varint  timestamp delta
+ *   text:    varint string index
+ *   message: varint session index, varint sim_id index + 1 (0 for none), varint source index,
+ *            varint MsgType index, varint length, raw FIX bytes
+ * </pre>
+ * Session IDs, sim IDs, sources and MsgTypes are interned in a per-batch string table, so each
+ * entry decodes on its own whichever group member reads it. Not thread-safe; the writer thread
+ * owns its encoder.
+ */
+public final class BinaryBatchEncoder {
+
+    public static final String FIELD = "batch";
+
+    static final int VERSION = 1;
+    static final int FLAG_LZ4 = 1;
+    static final int KIND_TEXT = 0;
+    static final int KIND_SENT = 1;
+    static final int KIND_RECEIVED = 2;
+
+    // smaller payloads rarely shrink enough to pay for the block
+    private static final int MIN_COMPRESS_LENGTH = 256;
+
+    private final boolean compress;
+    private final Lz4Block lz4 = new Lz4Block();
+    private final Map<String, Integer> index = new HashMap<>();
+    private final List<String> strings = new ArrayList<>();
+    private byte[] payload = new byte[64 * 1024];
+    private int size;
+    private byte[] compressed = new byte[0];
+
+    private long eventBytes;
+    private long encodedBytes;
+
+    public BinaryBatchEncoder(boolean compress) {
+        this.compress = compress;
+    }
+
+    /**
+     * Encodes {@code batch} into a new array. The events are only read.
+     */
+    public byte[] encode(List<FixEvent> batch) {
+        index.clear();
+        strings.clear();
+        for (FixEvent event : batch) {
+            if (event.isText()) {
+                intern(event.text());
+            } else {
+                intern(event.sessionID().toString());
+                if (event.simId() != null) {
+                    intern(event.simId());
+                }
+                intern(event.source());
+                intern(event.msgType());
+            }
+        }
+
+        size = 0;
+        long base = batch.isEmpty() ? 0 : batch.get(0).timestampNanos();
+        putLong(base);
+        putVarint(strings.size());
+        for (String string : strings) {
+            putString(string);
+        }
+        putVarint(batch.size());
+        for (FixEvent event : batch) {
+            long delta = event.timestampNanos() - base;
+            if (event.isText()) {
+                put(KIND_TEXT);
+                putVarint((delta << 1) ^ (delta >> 63));
+                putVarint(index.get(event.text()));
+                continue;
+            }
+            put(event.direction() == MessageDirection.SENT ? KIND_SENT : KIND_RECEIVED);
+            putVarint((delta << 1) ^ (delta >> 63));
+            putVarint(index.get(event.sessionID().toString()));
+            putVarint(event.simId() == null ? 0 : index.get(event.simId()) + 1);
+            putVarint(index.get(event.source()));
+            putVarint(index.get(event.msgType()));
+            putVarint(event.length());
+            ensure(event.length());
+            System.arraycopy(event.raw(), 0, payload, size, event.length());
+            size += event.length();
+            eventBytes += event.length();
+        }
+        return frame();
+    }
+
+    private byte[] frame() {
+        byte[] body = payload;
+        int bodyLength = size;
+        int flags = 0;
+        if (compress && size >= MIN_COMPRESS_LENGTH) {
+            int max = Lz4Block.maxCompressedLength(size);
+            if (compressed.length < max) {
+                compressed = new byte[max];
+            }
+            int length = lz4.compress(payload, size, compressed);
+            if (length < size) {
+                body = compressed;
+                bodyLength = length;
+                flags |= FLAG_LZ4;
+            }
+        }
+        byte[] out = new byte[2 + varintLength(size) + bodyLength];
+        out[0] = VERSION;
+        out[1] = (byte) flags;
+        int pos = 2;
+        long v = size;
+        while ((v & ~0x7FL) != 0) {
+            out[pos++] = (byte) ((v & 0x7F) | 0x80);
+            v >>>= 7;
+        }
+        out[pos++] = (byte) v;
+        System.arraycopy(body, 0, out, pos, bodyLength);
+        encodedBytes += out.length;
+        return out;
+    }
+
+    private void intern(String string) {
+        if (!index.containsKey(string)) {
+            index.put(string, strings.size());
+            strings.add(string);
+        }
+    }
+
+    private void putString(String string) {
+        int chars = string.length();
+        boolean ascii = true;
+        for (int i = 0; i < chars && ascii; i++) {
+            ascii = string.charAt(i) < 0x80;
+        }
+        if (!ascii) {
+            byte[] utf8 = string.getBytes(StandardCharsets.UTF_8);
+            putVarint(utf8.length);
+            ensure(utf8.length);
+            System.arraycopy(utf8, 0, payload, size, utf8.length);
+            size += utf8.length;
+            return;
+        }
+        putVarint(chars);
+        ensure(chars);
+        for (int i = 0; i < chars; i++) {
+            payload[size++] = (byte) string.charAt(i);
+        }
+    }
+
+    private void put(int b) {
+        ensure(1);
+        payload[size++] = (byte) b;
+    }
+
+    private void putVarint(long v) {
+        ensure(10);
+        while ((v & ~0x7FL) != 0) {
+            payload[size++] = (byte) ((v & 0x7F) | 0x80);
+            v >>>= 7;
+        }
+        payload[size++] = (byte) v;
+    }
+
+    private void putLong(long v) {
+        ensure(8);
+        for (int i = 0; i < 8; i++) {
+            payload[size++] = (byte) (v >>> (8 * i));
+        }
+    }
+
+    private void ensure(int more) {
+        if (size + more > payload.length) {
+            payload = Arrays.copyOf(payload, Math.max(size + more, payload.length * 2));
+        }
+    }
+
+    private static int varintLength(long v) {
+        int length = 1;
+        while ((v & ~0x7FL) != 0) {
+            v >>>= 7;
+            length++;
+        }
+        return length;
+    }
+
+    /**
+     * Raw FIX bytes encoded so far.
+     */
+    public long eventBytes() {
+        return eventBytes;
+    }
+
+    /**
+     * Entry values produced so far, headers and string tables included.
+     */
+    public long encodedBytes() {
+        return encodedBytes;
+    }
+}
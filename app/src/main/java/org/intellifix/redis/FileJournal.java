@@ -0,0 +1,326 @@
+package org.intellifix.redis;
+
+import lombok.extern.slf4j.Slf4j;
+import org.intellifix.common.ExecutionState;
+import org.intellifix.redis.base.FixEvent;
+import org.intellifix.redis.config.FsyncPolicy;
+import org.intellifix.redis.config.JournalConfig;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Append-only text journal that keeps a single {@link FileChannel} open.
+ * Entries are encoded into a reused direct buffer and written out in groups, either when
+ * {@code commitBytes} have accumulated or every {@code commitIntervalMillis}.
+ * The active file keeps its name; closed segments are renamed with a timestamp suffix.
+ */
+@Slf4j
+public class FileJournal implements AutoCloseable {
+
+    private static final DateTimeFormatter SECOND_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.");
+    private static final DateTimeFormatter SEGMENT_FORMATTER = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss-SSS");
+    private static final byte[] LINE_SEPARATOR = System.lineSeparator().getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] SPACE = {' '};
+    private static final byte[] MSG_TYPE_PREFIX = " 35=".getBytes(StandardCharsets.US_ASCII);
+    private static final long SESSION_GAP_MS = 5000;
+
+    private final JournalConfig config;
+    private final Path directory;
+    private final String fileName;
+    private final boolean markSessionGap;
+    private final ZoneId zone = ZoneId.systemDefault();
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final ByteBuffer buffer;
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private final ScheduledExecutorService committer;
+    private final LongAdder forces = new LongAdder();
+
+    // "[yyyy-MM-dd HH:mm:ss.SSS] " - refreshed once per second, millis patched in place
+    private final byte[] timestampPrefix = new byte[26];
+    private long cachedSecond = Long.MIN_VALUE;
+
+    private FileChannel channel;
+    private Path activePath;
+    private long segmentBytes;
+    private long segmentOpenedAt;
+    private long lastForceAt;
+    private boolean dirty;
+
+    public FileJournal(String fileName, JournalConfig config, boolean markSessionGap) {
+        this.config = config;
+        this.directory = Paths.get(config.directory());
+        this.fileName = fileName;
+        this.markSessionGap = markSessionGap;
+        this.buffer = ByteBuffer.allocateDirect(Math.max(config.bufferBytes(), config.commitBytes()));
+        this.committer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "journal-commit-" + fileName);
+            t.setDaemon(true);
+            return t;
+        });
+        this.committer.scheduleWithFixedDelay(this::timedCommit, config.commitIntervalMillis(),
+                config.commitIntervalMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    public void append(String message) {
+        lock.lock();
+        try {
+            begin(System.currentTimeMillis());
+            putChars(message);
+            end();
+        } catch (IOException e) {
+            log.error("Failed to append to journal {}", fileName, e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Writes the event in the same one-line form as {@link FixEvent#format()}, straight from its
+     * raw bytes, stamped with the event's own time.
+     */
+    public void append(FixEvent event) {
+        if (event.isText()) {
+            append(event.text());
+            return;
+        }
+        lock.lock();
+        try {
+            begin(event.timestampNanos() / 1_000_000);
+            putChars(event.source());
+            put(SPACE);
+            putChars(event.direction().label());
+            put(MSG_TYPE_PREFIX);
+            putChars(event.msgType());
+            put(SPACE);
+            putRaw(event.raw(), event.length());
+            end();
+        } catch (IOException e) {
+            log.error("Failed to append to journal {}", fileName, e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void begin(long now) throws IOException {
+        if (channel == null) {
+            open(now);
+        } else if (shouldRoll(now)) {
+            roll(now);
+        }
+        if (markSessionGap && ExecutionState.isFirstMessage.getAndSet(false)) {
+            markSessionGap(now);
+        }
+        put(timestamp(now));
+    }
+
+    private void end() throws IOException {
+        put(LINE_SEPARATOR);
+        dirty = true;
+        if (buffer.position() >= config.commitBytes()) {
+            commit();
+        }
+    }
+
+    private void timedCommit() {
+        lock.lock();
+        try {
+            if (dirty) {
+                commit();
+            }
+            if (channel != null && config.fsyncPolicy() == FsyncPolicy.PERIODIC
+                    && System.currentTimeMillis() - lastForceAt >= config.fsyncIntervalMillis()) {
+                force();
+            }
+        } catch (IOException e) {
+            log.error("Failed to commit journal {}", fileName, e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void commit() throws IOException {
+        writeBuffer();
+        dirty = false;
+        if (config.fsyncPolicy() == FsyncPolicy.ON_COMMIT) {
+            force();
+        }
+    }
+
+    private void writeBuffer() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            segmentBytes += channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private void force() throws IOException {
+        channel.force(false);
+        forces.increment();
+        lastForceAt = System.currentTimeMillis();
+    }
+
+    private void open(long now) throws IOException {
+        Files.createDirectories(directory);
+        activePath = directory.resolve(fileName);
+        channel = FileChannel.open(activePath, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+        segmentBytes = channel.size();
+        segmentOpenedAt = now;
+        lastForceAt = now;
+    }
+
+    private boolean shouldRoll(long now) {
+        long pending = segmentBytes + buffer.position();
+        return (config.segmentMaxBytes() > 0 && pending >= config.segmentMaxBytes())
+                || (config.segmentMaxAgeMillis() > 0 && now - segmentOpenedAt >= config.segmentMaxAgeMillis());
+    }
+
+    private void roll(long now) throws IOException {
+        closeChannel();
+        String suffix = LocalDateTime.ofInstant(Instant.ofEpochMilli(now), zone).format(SEGMENT_FORMATTER);
+        Path rolled = rolledPath(suffix);
+        // size rollover can come round more than once a millisecond
+        for (int n = 1; Files.exists(rolled); n++) {
+            rolled = rolledPath(suffix + "-" + n);
+        }
+        Files.move(activePath, rolled);
+        log.info("Journal segment rolled: {}", rolled.getFileName());
+        open(now);
+    }
+
+    private Path rolledPath(String suffix) {
+        int dot = fileName.lastIndexOf('.');
+        return directory.resolve(dot < 0 ? fileName + "-" + suffix
+                : fileName.substring(0, dot) + "-" + suffix + fileName.substring(dot));
+    }
+
+    private void markSessionGap(long now) throws IOException {
+        if (segmentBytes > 0) {
+            long lastModified = Files.getLastModifiedTime(activePath).toMillis();
+            if (now - lastModified > SESSION_GAP_MS) {
+                put(LINE_SEPARATOR);
+            }
+        }
+    }
+
+    private byte[] timestamp(long now) {
+        long second = Math.floorDiv(now, 1000);
+        if (second != cachedSecond) {
+            cachedSecond = second;
+            String prefix = "[" + LocalDateTime.ofInstant(Instant.ofEpochSecond(second), zone).format(SECOND_FORMATTER);
+            System.arraycopy(prefix.getBytes(StandardCharsets.US_ASCII), 0, timestampPrefix, 0, 21);
+            timestampPrefix[24] = ']';
+            timestampPrefix[25] = ' ';
+        }
+        int millis = Math.floorMod(now, 1000);
+        timestampPrefix[21] = (byte) ('0' + millis / 100);
+        timestampPrefix[22] = (byte) ('0' + millis / 10 % 10);
+        timestampPrefix[23] = (byte) ('0' + millis % 10);
+        return timestampPrefix;
+    }
+
+    private void put(byte[] bytes) throws IOException {
+        if (buffer.remaining() < bytes.length) {
+            writeBuffer();
+        }
+        buffer.put(bytes);
+    }
+
+    // SOH shown as '|', as in the text form
+    private void putRaw(byte[] raw, int length) throws IOException {
+        for (int i = 0; i < length; i++) {
+            if (!buffer.hasRemaining()) {
+                writeBuffer();
+            }
+            byte b = raw[i];
+            buffer.put(b == 1 ? (byte) '|' : b);
+        }
+    }
+
+    private void putChars(String message) throws IOException {
+        int length = message.length();
+        for (int i = 0; i < length; i++) {
+            char c = message.charAt(i);
+            if (c >= 0x80) {
+                encodeSlow(message, i);
+                return;
+            }
+            if (!buffer.hasRemaining()) {
+                writeBuffer();
+            }
+            buffer.put((byte) c);
+        }
+    }
+
+    private void encodeSlow(String message, int from) throws IOException {
+        CharBuffer chars = CharBuffer.wrap(message, from, message.length());
+        encoder.reset();
+        CoderResult result;
+        while ((result = encoder.encode(chars, buffer, true)).isOverflow()) {
+            writeBuffer();
+        }
+        while (encoder.flush(buffer).isOverflow()) {
+            writeBuffer();
+        }
+        if (result.isError()) {
+            log.warn("Journal {} could not encode entry", fileName);
+        }
+    }
+
+    private void closeChannel() throws IOException {
+        if (channel == null) {
+            return;
+        }
+        writeBuffer();
+        dirty = false;
+        if (config.fsyncPolicy() != FsyncPolicy.NEVER) {
+            force();
+        }
+        channel.close();
+        channel = null;
+    }
+
+    /**
+     * Times the journal has forced its file to the device.
+     */
+    long forces() {
+        return forces.sum();
+    }
+
+    @Override
+    public void close() {
+        committer.shutdown();
+        lock.lock();
+        try {
+            closeChannel();
+        } catch (IOException e) {
+            log.error("Failed to close journal {}", fileName, e);
+        } finally {
+            lock.unlock();
+        }
+    }
+}
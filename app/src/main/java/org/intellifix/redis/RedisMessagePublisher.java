@@ -1,63 +1,62 @@
 package org.intellifix.redis;
 
+import org.intellifix.fix.model.MessageDirection;
+import org.intellifix.redis.base.FixEventPool;
 import org.intellifix.redis.base.MessagePublisher;
 
-import org.intellifix.common.ExecutionState;
 import lombok.extern.slf4j.Slf4j;
-import java.io.IOException;
-import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.nio.file.StandardOpenOption;
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
-import java.nio.file.attribute.FileTime;
-import java.time.Duration;
-import java.time.Instant;
-
+import org.intellifix.redis.config.JournalConfig;
+import org.intellifix.redis.config.PublisherConfig;
+import org.intellifix.redis.config.RedisClientConfig;
+import quickfix.Message;
+import quickfix.SessionID;
+import redis.clients.jedis.JedisPooled;
+
+/**
+ * Publishes to a Redis stream and to the {@code redis_stream.log} journal. The calling thread
+ * only copies the message into a pooled event and queues it; journaling, formatting and the
+ * Redis round-trip all happen on the {@link RedisStreamWriter} thread.
+ */
 @Slf4j
 public class RedisMessagePublisher implements MessagePublisher {
-    private static final String LOGS_DIR = "log";
     private static final String LOG_FILE_NAME = "redis_stream.log";
-    private static final DateTimeFormatter LOG_TIME_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS");
-    private static final long SESSION_GAP_MS = 5000;
+    private static final String SPILL_FILE_NAME = "redis_spill.log";
+
+    private final JedisPooled jedis;
+    private final FileJournal journal;
+    private final FileJournal spillJournal;
+    private final FixEventPool pool;
+    private final RedisStreamWriter writer;
+
+    public RedisMessagePublisher() {
+        this(RedisClientConfig.jedis(), PublisherConfig.fromSystemProperties(), JournalConfig.fromSystemProperties());
+    }
+
+    public RedisMessagePublisher(JedisPooled jedis, PublisherConfig config, JournalConfig journalConfig) {
+        this.jedis = jedis;
+        this.journal = new FileJournal(LOG_FILE_NAME, journalConfig, true);
+        this.spillJournal = new FileJournal(SPILL_FILE_NAME, journalConfig, false);
+        this.pool = new FixEventPool(config.queueCapacity());
+        this.writer = new RedisStreamWriter(jedis, config, journal::append, spillJournal::append, pool);
+    }
 
     @Override
     public void publishMessage(String message) {
-        // TODO logic to publish message to Redis
-        log.info("To Redis:" + message);
-        saveToFile(message);
+        writer.submit(pool.acquire().text(message));
     }
 
-    private void saveToFile(String message) {
-        try {
-            Path logsPath = Paths.get(LOGS_DIR);
-            if (!Files.exists(logsPath)) {
-                Files.createDirectories(logsPath);
-            }
-
-            Path filePath = logsPath.resolve(LOG_FILE_NAME);
-
-            if (ExecutionState.isFirstMessage.getAndSet(false)) {
-                if (Files.exists(filePath)) {
-                    FileTime lastModified = Files.getLastModifiedTime(filePath);
-                    long idleTime = Duration.between(lastModified.toInstant(), Instant.now()).toMillis();
-                    if (idleTime > SESSION_GAP_MS) {
-                        Files.write(filePath, System.lineSeparator().getBytes(StandardCharsets.UTF_8),
-                                StandardOpenOption.APPEND);
-                    }
-                }
-            }
-
-            String timestamp = LocalDateTime.now().format(LOG_TIME_FORMATTER);
-            String logEntry = String.format("[%s] %s%n", timestamp, message);
-
-            Files.write(filePath, logEntry.getBytes(StandardCharsets.UTF_8),
-                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
-            log.info("Message saved to file: {}", filePath.toAbsolutePath());
-        } catch (IOException e) {
-            log.error("Failed to save message to file", e);
-        }
+    @Override
+    public void publishEvent(String source, MessageDirection direction, SessionID sessionID, String msgType,
+            String simId, Message message) {
+        writer.submit(pool.acquire().set(source, direction, sessionID, msgType, simId, message.toString()));
+    }
+
+    @Override
+    public void close() {
+        writer.close();
+        log.info("[REDIS] Publisher closed. events allocated={}", pool.created());
+        journal.close();
+        spillJournal.close();
+        jedis.close();
     }
 }
@@ -0,0 +1,259 @@
+package org.intellifix.redis;
+
+import lombok.extern.slf4j.Slf4j;
+import org.intellifix.common.MpscRingBuffer;
+import org.intellifix.redis.base.FixEvent;
+import org.intellifix.redis.base.FixEventPool;
+import org.intellifix.redis.config.PublisherConfig;
+import org.intellifix.redis.config.StreamEncoding;
+import redis.clients.jedis.JedisPooled;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.params.XAddParams;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * Decouples FIX session threads from Redis round-trips.
+ * Callers only hand events over to a bounded lock-free queue; a dedicated writer thread drains it,
+ * journals and formats each event, ships each batch as one pipelined run of
+ * {@code XADD ... MAXLEN ~ n} and returns the events to the pool.
+ * <p>
+ * With the {@link StreamEncoding#TEXT} encoding every entry has a {@code message} field with the
+ * one-line text form; entries for FIX messages also carry {@code sim_id}, {@code session_id},
+ * {@code direction}, {@code msg_type}, {@code timestamp_nanos} and {@code fix_message}. With
+ * {@link StreamEncoding#BINARY} each batch is one entry whose {@code batch} field is written by
+ * {@link BinaryBatchEncoder}; {@code MAXLEN} then counts batches.
+ */
+@Slf4j
+public class RedisStreamWriter implements AutoCloseable {
+
+    static final String MESSAGE_FIELD = "message";
+    static final String SIM_ID_FIELD = "sim_id";
+    static final String SESSION_ID_FIELD = "session_id";
+    static final String DIRECTION_FIELD = "direction";
+    static final String MSG_TYPE_FIELD = "msg_type";
+    static final String TIMESTAMP_FIELD = "timestamp_nanos";
+    static final String FIX_MESSAGE_FIELD = "fix_message";
+    private static final byte[] BATCH_FIELD = BinaryBatchEncoder.FIELD.getBytes(StandardCharsets.UTF_8);
+
+    private static final long IDLE_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(200);
+    private static final long BLOCK_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+    private static final long CLOSE_TIMEOUT_MS = 5000;
+
+    private final JedisPooled jedis;
+    private final PublisherConfig config;
+    private final Consumer<FixEvent> journal;
+    private final Consumer<FixEvent> spill;
+    private final FixEventPool pool;
+    private final MpscRingBuffer<FixEvent> queue;
+    // Jedis encodes the fields as the command is queued, so one map serves every entry
+    private final Map<String, String> fields = new HashMap<>();
+    private final BinaryBatchEncoder encoder;
+    private final byte[] streamKey;
+    private final Map<byte[], byte[]> batchFields = new HashMap<>();
+    private final XAddParams xAddParams;
+    private final Thread writerThread;
+
+    private final LongAdder published = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder spilled = new LongAdder();
+    private final LongAdder failedBatches = new LongAdder();
+
+    private volatile boolean running = true;
+
+    public RedisStreamWriter(JedisPooled jedis, PublisherConfig config, Consumer<FixEvent> journal,
+            Consumer<FixEvent> spill, FixEventPool pool) {
+        this.jedis = jedis;
+        this.config = config;
+        this.journal = journal;
+        this.spill = spill;
+        this.pool = pool;
+        this.queue = new MpscRingBuffer<>(config.queueCapacity());
+        this.xAddParams = XAddParams.xAddParams().maxLen(config.maxLen()).approximateTrimming();
+        this.encoder = config.encoding() == StreamEncoding.BINARY ? new BinaryBatchEncoder(config.compress()) : null;
+        this.streamKey = config.streamKey().getBytes(StandardCharsets.UTF_8);
+        this.writerThread = new Thread(this::run, "redis-stream-writer");
+        this.writerThread.setDaemon(true);
+        this.writerThread.start();
+    }
+
+    /**
+     * Hands an event to the writer, which owns it from then on. Returns {@code false} when the
+     * event was dropped or spilled because the queue was full; it is still journaled and released
+     * on the calling thread.
+     */
+    public boolean submit(FixEvent event) {
+        if (queue.offer(event)) {
+            return true;
+        }
+        switch (config.overflowPolicy()) {
+            case BLOCK -> {
+                while (!queue.offer(event)) {
+                    if (!running) {
+                        dropped.increment();
+                        discard(event);
+                        return false;
+                    }
+                    LockSupport.parkNanos(BLOCK_PARK_NANOS);
+                }
+                return true;
+            }
+            case SPILL -> {
+                spilled.increment();
+                journal.accept(event);
+                spill.accept(event);
+                pool.release(event);
+                return false;
+            }
+            default -> {
+                dropped.increment();
+                discard(event);
+                return false;
+            }
+        }
+    }
+
+    private void discard(FixEvent event) {
+        journal.accept(event);
+        pool.release(event);
+    }
+
+    private void run() {
+        int batchSize = config.batchSize();
+        long lingerNanos = TimeUnit.MILLISECONDS.toNanos(config.lingerMillis());
+        List<FixEvent> batch = new ArrayList<>(batchSize);
+        long batchStart = 0;
+
+        while (running || !queue.isEmpty()) {
+            boolean wasEmpty = batch.isEmpty();
+            queue.drainTo(batch, batchSize - batch.size());
+            if (batch.isEmpty()) {
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+                continue;
+            }
+            if (wasEmpty) {
+                batchStart = System.nanoTime();
+            }
+            if (batch.size() >= batchSize || System.nanoTime() - batchStart >= lingerNanos || !running) {
+                flush(batch);
+                batch.clear();
+            } else {
+                LockSupport.parkNanos(Math.min(IDLE_PARK_NANOS, lingerNanos));
+            }
+        }
+        if (!batch.isEmpty()) {
+            flush(batch);
+        }
+    }
+
+    private void flush(List<FixEvent> batch) {
+        for (FixEvent event : batch) {
+            journal.accept(event);
+        }
+        try {
+            if (encoder != null) {
+                publishBinary(batch);
+            } else {
+                publishText(batch);
+            }
+            published.add(batch.size());
+        } catch (Exception e) {
+            failedBatches.increment();
+            log.error("[REDIS] Failed to publish batch of {} entries to {}: {}",
+                    batch.size(), config.streamKey(), e.getMessage());
+            switch (config.overflowPolicy()) {
+                case SPILL -> {
+                    spilled.add(batch.size());
+                    batch.forEach(spill);
+                }
+                default -> dropped.add(batch.size());
+            }
+        } finally {
+            batch.forEach(pool::release);
+        }
+    }
+
+    private void publishText(List<FixEvent> batch) {
+        try (Pipeline pipeline = jedis.pipelined()) {
+            for (FixEvent event : batch) {
+                pipeline.xadd(config.streamKey(), xAddParams, fields(event));
+            }
+            pipeline.sync();
+        }
+    }
+
+    private void publishBinary(List<FixEvent> batch) {
+        byte[] value = encoder.encode(batch);
+        if (log.isDebugEnabled()) {
+            log.debug("[REDIS] To Redis: batch of {} events in {} bytes", batch.size(), value.length);
+        }
+        batchFields.clear();
+        batchFields.put(BATCH_FIELD, value);
+        jedis.xadd(streamKey, xAddParams, batchFields);
+    }
+
+    private Map<String, String> fields(FixEvent event) {
+        String message = event.format();
+        if (log.isDebugEnabled()) {
+            log.debug("[REDIS] To Redis: {}", message);
+        }
+        fields.clear();
+        fields.put(MESSAGE_FIELD, message);
+        if (!event.isText()) {
+            if (event.simId() != null) {
+                fields.put(SIM_ID_FIELD, event.simId());
+            }
+            fields.put(SESSION_ID_FIELD, event.sessionID().toString());
+            fields.put(DIRECTION_FIELD, event.direction().name());
+            fields.put(MSG_TYPE_FIELD, event.msgType());
+            fields.put(TIMESTAMP_FIELD, Long.toString(event.timestampNanos()));
+            fields.put(FIX_MESSAGE_FIELD, event.fixMessage());
+        }
+        return fields;
+    }
+
+    public int queueDepth() {
+        return queue.size();
+    }
+
+    public long published() {
+        return published.sum();
+    }
+
+    public long dropped() {
+        return dropped.sum();
+    }
+
+    public long spilled() {
+        return spilled.sum();
+    }
+
+    public long failedBatches() {
+        return failedBatches.sum();
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        LockSupport.unpark(writerThread);
+        try {
+            writerThread.join(CLOSE_TIMEOUT_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        log.info("[REDIS] Writer stopped. published={} dropped={} spilled={} failedBatches={}",
+                published(), dropped(), spilled(), failedBatches());
+        if (encoder != null) {
+            log.info("[REDIS] Binary batches: {} bytes of FIX messages in {} bytes of entries",
+                    encoder.eventBytes(), encoder.encodedBytes());
+        }
+    }
+}
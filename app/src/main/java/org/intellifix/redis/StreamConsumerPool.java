@@ -0,0 +1,402 @@
+package org.intellifix.redis;
+
+import lombok.extern.slf4j.Slf4j;
+import org.intellifix.redis.config.ConsumerConfig;
+import redis.clients.jedis.JedisPooled;
+import redis.clients.jedis.StreamEntryID;
+import redis.clients.jedis.exceptions.JedisDataException;
+import redis.clients.jedis.params.XAddParams;
+import redis.clients.jedis.params.XAutoClaimParams;
+import redis.clients.jedis.params.XPendingParams;
+import redis.clients.jedis.params.XReadGroupParams;
+import redis.clients.jedis.resps.StreamGroupInfo;
+import redis.clients.jedis.resps.StreamPendingEntry;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Consumer group reader for the FIX stream.
+ * <p>
+ * {@code consumers} virtual threads each read with {@code XREADGROUP} and hand the entries to
+ * the handler in order. The read count adapts: it doubles while reads come back full and the
+ * batch was handled within {@code targetBatchMillis}, and halves when handling took longer, so a
+ * slow handler never holds more than it can get through and the backlog stays in the stream
+ * (bounded by the publisher's {@code MAXLEN}). Handled IDs are acknowledged in one {@code XACK}
+ * per {@code ackBatch} entries or {@code ackIntervalMillis}, and straight away once a consumer
+ * has caught up; while an {@code XACK} keeps failing, the consumer stops reading.
+ * <p>
+ * The group is created with {@code MKSTREAM} if missing. A reclaim thread moves entries that
+ * have been pending for {@code claimIdleMillis} (a consumer that died mid-batch) to its own
+ * consumer with {@code XAUTOCLAIM} and handles them; a {@code claimIdleMillis} of 0 turns it off. Entries whose handler throws stay pending
+ * and are retried that way, until {@code XPENDING} shows that {@code maxDeliveries} deliveries
+ * have failed: then they are copied to the {@code deadLetterKey} stream, with their original ID,
+ * group and delivery count, and acknowledged.
+ * <p>
+ * Entries are read with the binary commands and handed over as {@link StreamRecord}s, so
+ * {@link BinaryBatchEncoder} batches arrive intact.
+ */
+@Slf4j
+public class StreamConsumerPool implements AutoCloseable {
+
+    public static final String DEAD_LETTER_ID = "dead_letter_id";
+    public static final String DEAD_LETTER_GROUP = "dead_letter_group";
+    public static final String DEAD_LETTER_DELIVERIES = "dead_letter_deliveries";
+
+    private static final long RETRY_MILLIS = 1000;
+    private static final long CLOSE_TIMEOUT_MS = 5000;
+    private static final byte[] UNRECEIVED = ">".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] CLAIM_START = "0-0".getBytes(StandardCharsets.US_ASCII);
+
+    private final JedisPooled jedis;
+    private final ConsumerConfig config;
+    private final Consumer<StreamRecord> handler;
+    private final byte[] streamKey;
+    private final byte[] group;
+    private final List<Thread> threads = new ArrayList<>();
+
+    private final LongAdder processed = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder acked = new LongAdder();
+    private final LongAdder ackCalls = new LongAdder();
+    private final LongAdder reads = new LongAdder();
+    private final LongAdder claimed = new LongAdder();
+    private final LongAdder deadLettered = new LongAdder();
+
+    private volatile boolean running = true;
+
+    public StreamConsumerPool(JedisPooled jedis, ConsumerConfig config, Consumer<StreamRecord> handler) {
+        this.jedis = jedis;
+        this.config = config;
+        this.handler = handler;
+        this.streamKey = config.streamKey().getBytes(StandardCharsets.UTF_8);
+        this.group = config.group().getBytes(StandardCharsets.UTF_8);
+    }
+
+    public void start() {
+        createGroup();
+        for (int i = 0; i < config.consumers(); i++) {
+            String name = config.consumerName() + "-" + i;
+            threads.add(Thread.ofVirtual().name("stream-consumer-" + i).start(() -> consume(name)));
+        }
+        if (config.claimIdleMillis() > 0) {
+            threads.add(Thread.ofVirtual().name("stream-reclaim").start(this::reclaimLoop));
+        }
+        threads.add(Thread.ofVirtual().name("stream-metrics").start(this::metricsLoop));
+        log.info("[CONSUMER] {} consumers on {} group {} (count {}..{}, ack batch {})", config.consumers(),
+                config.streamKey(), config.group(), config.minCount(), config.maxCount(), config.ackBatch());
+    }
+
+    private void createGroup() {
+        try {
+            jedis.xgroupCreate(config.streamKey(), config.group(), new StreamEntryID(), true);
+            log.info("[CONSUMER] Created group {} on {}", config.group(), config.streamKey());
+        } catch (JedisDataException e) {
+            if (e.getMessage() == null || !e.getMessage().startsWith("BUSYGROUP")) {
+                throw e;
+            }
+        }
+    }
+
+    private void consume(String name) {
+        XReadGroupParams params = XReadGroupParams.xReadGroupParams().block(config.blockMillis());
+        byte[] consumer = name.getBytes(StandardCharsets.UTF_8);
+        StreamOffset[] streams = {new StreamOffset(streamKey, UNRECEIVED)};
+        Acks acks = new Acks();
+        int count = config.minCount();
+
+        while (running) {
+            try {
+                if (!acks.flushIfDue(false)) {
+                    // processing is not finished until the acks are in; don't read more meanwhile
+                    pause();
+                    continue;
+                }
+                List<Object> results = jedis.xreadGroup(group, consumer, params.count(count), streams);
+                reads.increment();
+                int received = 0;
+                long started = System.nanoTime();
+                if (results != null) {
+                    // [[key, entries], ...]
+                    for (Object result : results) {
+                        received += handle(records(((List<?>) result).get(1)), acks);
+                    }
+                }
+                long tookMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+                // caught up: nothing else to batch the acks with
+                boolean caughtUp = received < count;
+                count = adapt(count, received, tookMillis);
+                acks.flushIfDue(caughtUp);
+            } catch (RuntimeException e) {
+                log.error("[CONSUMER] {} read failed: {}", name, e.getMessage());
+                pause();
+            }
+        }
+        acks.flushIfDue(true);
+    }
+
+    private int adapt(int count, int received, long tookMillis) {
+        if (tookMillis > config.targetBatchMillis()) {
+            return Math.max(config.minCount(), count / 2);
+        }
+        if (received >= count) {
+            return Math.min(config.maxCount(), count * 2);
+        }
+        return count;
+    }
+
+    private int handle(List<StreamRecord> entries, Acks acks) {
+        for (StreamRecord entry : entries) {
+            try {
+                handler.accept(entry);
+                processed.increment();
+                acks.add(entry.id());
+            } catch (RuntimeException e) {
+                failed.increment();
+                log.error("[CONSUMER] Handler failed for {}; left pending for reclaim", entry.id(), e);
+            }
+        }
+        return entries.size();
+    }
+
+    /**
+     * Parses the RESP2 entry list {@code [[id, [field, value, ...]], ...]}. An entry deleted while
+     * pending has no fields.
+     */
+    private static List<StreamRecord> records(Object reply) {
+        List<?> entries = (List<?>) reply;
+        List<StreamRecord> records = new ArrayList<>(entries.size());
+        for (Object item : entries) {
+            List<?> entry = (List<?>) item;
+            StreamEntryID id = new StreamEntryID(new String((byte[]) entry.get(0), StandardCharsets.US_ASCII));
+            Map<String, byte[]> fields = new LinkedHashMap<>();
+            List<?> values = entry.size() > 1 ? (List<?>) entry.get(1) : null;
+            if (values != null) {
+                for (int i = 0; i + 1 < values.size(); i += 2) {
+                    fields.put(new String((byte[]) values.get(i), StandardCharsets.UTF_8),
+                            (byte[]) values.get(i + 1));
+                }
+            }
+            records.add(new StreamRecord(id, fields));
+        }
+        return records;
+    }
+
+    private void reclaimLoop() {
+        String consumer = config.consumerName() + "-reclaim";
+        byte[] name = consumer.getBytes(StandardCharsets.UTF_8);
+        XAutoClaimParams params = XAutoClaimParams.xAutoClaimParams().count(config.maxCount());
+        Acks acks = new Acks();
+        while (running) {
+            sleep(config.claimIntervalMillis());
+            try {
+                byte[] cursor = CLAIM_START;
+                do {
+                    // [next cursor, entries, deleted IDs]
+                    List<Object> result = jedis.xautoclaim(streamKey, group, name, config.claimIdleMillis(), cursor,
+                            params);
+                    cursor = (byte[]) result.get(0);
+                    List<StreamRecord> entries = records(result.get(1));
+                    if (!entries.isEmpty()) {
+                        claimed.add(entries.size());
+                        log.warn("[CONSUMER] Reclaimed {} stale pending entries", entries.size());
+                        handle(withoutDeadLetters(entries, consumer), acks);
+                    }
+                } while (running && !Arrays.equals(CLAIM_START, cursor));
+                acks.flushIfDue(true);
+            } catch (RuntimeException e) {
+                log.error("[CONSUMER] Reclaim failed: {}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Dead-letters the claimed entries whose {@code maxDeliveries} deliveries have all failed and
+     * returns the rest. XAUTOCLAIM already counted the delivery it just made.
+     */
+    private List<StreamRecord> withoutDeadLetters(List<StreamRecord> entries, String consumer) {
+        if (config.maxDeliveries() <= 0) {
+            return entries;
+        }
+        // a short reply just leaves the entries it misses to the handler this time
+        List<StreamPendingEntry> pending = jedis.xpending(config.streamKey(), config.group(),
+                XPendingParams.xPendingParams(entries.get(0).id(), entries.get(entries.size() - 1).id(),
+                        entries.size()).consumer(consumer));
+        Map<StreamEntryID, Long> deliveries = new HashMap<>();
+        for (StreamPendingEntry entry : pending) {
+            deliveries.put(entry.getID(), entry.getDeliveredTimes());
+        }
+        List<StreamRecord> live = new ArrayList<>(entries.size());
+        for (StreamRecord entry : entries) {
+            long delivered = deliveries.getOrDefault(entry.id(), 0L);
+            if (delivered > config.maxDeliveries()) {
+                deadLetter(entry, delivered);
+            } else {
+                live.add(entry);
+            }
+        }
+        return live;
+    }
+
+    private void deadLetter(StreamRecord entry, long delivered) {
+        Map<byte[], byte[]> fields = new LinkedHashMap<>();
+        entry.fields().forEach((field, value) -> fields.put(field.getBytes(StandardCharsets.UTF_8), value));
+        fields.put(DEAD_LETTER_ID.getBytes(StandardCharsets.UTF_8),
+                entry.id().toString().getBytes(StandardCharsets.US_ASCII));
+        fields.put(DEAD_LETTER_GROUP.getBytes(StandardCharsets.UTF_8), group);
+        fields.put(DEAD_LETTER_DELIVERIES.getBytes(StandardCharsets.UTF_8),
+                Long.toString(delivered).getBytes(StandardCharsets.US_ASCII));
+        // added before the XACK: a failure in between leaves a duplicate, never a lost entry
+        jedis.xadd(config.deadLetterKey().getBytes(StandardCharsets.UTF_8), XAddParams.xAddParams(), fields);
+        jedis.xack(config.streamKey(), config.group(), entry.id());
+        deadLettered.increment();
+        log.error("[CONSUMER] Moved {} to {} after {} deliveries", entry.id(), config.deadLetterKey(), delivered);
+    }
+
+    private void metricsLoop() {
+        long lastProcessed = 0;
+        long lastTime = System.nanoTime();
+        while (running) {
+            sleep(config.metricsIntervalMillis());
+            long now = System.nanoTime();
+            long total = processed.sum();
+            double perSecond = (total - lastProcessed) * 1e9 / Math.max(1, now - lastTime);
+            lastProcessed = total;
+            lastTime = now;
+            String pending = "?";
+            String lag = "?";
+            try {
+                for (StreamGroupInfo group : jedis.xinfoGroups(config.streamKey())) {
+                    if (group.getName().equals(config.group())) {
+                        pending = Long.toString(group.getPending());
+                        // reported by Redis 7 and later
+                        Object groupLag = group.getGroupInfo().get("lag");
+                        lag = groupLag == null ? "?" : groupLag.toString();
+                    }
+                }
+            } catch (RuntimeException e) {
+                log.debug("[CONSUMER] XINFO GROUPS failed: {}", e.getMessage());
+            }
+            log.info("[CONSUMER] {}/s processed={} failed={} acked={} ({} XACKs) reads={} reclaimed={} "
+                    + "deadLettered={} pending={} lag={}", Math.round(perSecond), total, failed.sum(), acked.sum(),
+                    ackCalls.sum(), reads.sum(), claimed.sum(), deadLettered.sum(), pending, lag);
+        }
+    }
+
+    private void pause() {
+        sleep(RETRY_MILLIS);
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public long processed() {
+        return processed.sum();
+    }
+
+    public long failed() {
+        return failed.sum();
+    }
+
+    public long acked() {
+        return acked.sum();
+    }
+
+    public long claimed() {
+        return claimed.sum();
+    }
+
+    public long deadLettered() {
+        return deadLettered.sum();
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        try {
+            for (Thread thread : threads) {
+                thread.interrupt();
+                thread.join(CLOSE_TIMEOUT_MS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        log.info("[CONSUMER] Stopped. processed={} failed={} acked={} reclaimed={} deadLettered={}", processed(),
+                failed(), acked(), claimed(), deadLettered());
+    }
+
+    /**
+     * A stream and the ID to read it from, for the binary xreadGroup. Its own type, unlike
+     * {@code Map.Entry<byte[], byte[]>}, can have an array without an unchecked generic array.
+     */
+    private record StreamOffset(byte[] key, byte[] id) implements Map.Entry<byte[], byte[]> {
+
+        @Override
+        public byte[] getKey() {
+            return key;
+        }
+
+        @Override
+        public byte[] getValue() {
+            return id;
+        }
+
+        @Override
+        public byte[] setValue(byte[] value) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    /**
+     * IDs handled by one consumer and not yet acknowledged. Owned by that consumer's thread.
+     */
+    private final class Acks {
+
+        private final List<StreamEntryID> ids = new ArrayList<>();
+        private long oldestAt;
+
+        void add(StreamEntryID id) {
+            if (ids.isEmpty()) {
+                oldestAt = System.nanoTime();
+            }
+            ids.add(id);
+        }
+
+        /**
+         * Sends the XACK if it is due (or {@code force}); returns {@code false} if it failed and the
+         * IDs are still held.
+         */
+        boolean flushIfDue(boolean force) {
+            if (ids.isEmpty()) {
+                return true;
+            }
+            if (!force && ids.size() < config.ackBatch()
+                    && System.nanoTime() - oldestAt < TimeUnit.MILLISECONDS.toNanos(config.ackIntervalMillis())) {
+                return true;
+            }
+            try {
+                jedis.xack(config.streamKey(), config.group(), ids.toArray(new StreamEntryID[0]));
+                acked.add(ids.size());
+                ackCalls.increment();
+                ids.clear();
+                return true;
+            } catch (RuntimeException e) {
+                log.error("[CONSUMER] XACK of {} entries failed: {}", ids.size(), e.getMessage());
+                return false;
+            }
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package org.intellifix.redis;
+
+import redis.clients.jedis.StreamEntryID;
+
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * One stream entry as read by {@link StreamConsumerPool}. Values are kept as bytes so binary
+ * batches survive; {@link #string} decodes text fields.
+ */
+public record StreamRecord(StreamEntryID id, Map<String, byte[]> fields) {
+
+    public String string(String field) {
+        byte[] value = fields.get(field);
+        return value == null ? null : new String(value, StandardCharsets.UTF_8);
+    }
+
+    public Map<String, String> strings() {
+        Map<String, String> strings = new LinkedHashMap<>();
+        fields.forEach((field, value) -> strings.put(field, new String(value, StandardCharsets.UTF_8)));
+        return strings;
+    }
+}
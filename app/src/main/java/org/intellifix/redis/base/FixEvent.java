@@ -0,0 +1,191 @@
+package org.intellifix.redis.base;
+
+import org.intellifix.fix.model.MessageDirection;
+import quickfix.SessionID;
+
+import java.time.Instant;
+
+/**
+ * One published FIX message, kept as the raw bytes plus the fields needed to describe it.
+ * <p>
+ * Events are mutable and come from a {@link FixEventPool}: the session thread fills one in,
+ * hands it to a publisher and must not touch it afterwards; whoever consumes it last releases
+ * it. The text form ({@code "<source> sent 35=D 8=FIX.4.4|..."}) is only built by
+ * {@link #format()}, on the consumer's thread. Free-text entries such as report lines use
+ * {@link #text(String)} instead of the message fields.
+ */
+public final class FixEvent {
+
+    private static final long EPOCH_NANOS_AT_START;
+    private static final long NANO_TIME_AT_START = System.nanoTime();
+
+    static {
+        Instant now = Instant.now();
+        EPOCH_NANOS_AT_START = now.getEpochSecond() * 1_000_000_000L + now.getNano();
+    }
+
+    private String source;
+    private MessageDirection direction;
+    private SessionID sessionID;
+    private String msgType;
+    private String simId;
+    private String text;
+    private byte[] raw = new byte[512];
+    private int length;
+    private long timestampNanos;
+
+    /**
+     * Fills the event from a FIX message; {@code message} is copied, one byte per char.
+     */
+    public FixEvent set(String source, MessageDirection direction, SessionID sessionID, String msgType, String simId,
+            String message) {
+        this.source = source;
+        this.direction = direction;
+        this.sessionID = sessionID;
+        this.msgType = msgType;
+        this.simId = simId;
+        this.text = null;
+        int chars = message.length();
+        if (raw.length < chars) {
+            raw = new byte[Math.max(chars, raw.length * 2)];
+        }
+        for (int i = 0; i < chars; i++) {
+            char c = message.charAt(i);
+            raw[i] = c <= 0xFF ? (byte) c : (byte) '?';
+        }
+        this.length = chars;
+        this.timestampNanos = now();
+        return this;
+    }
+
+    /**
+     * Fills the event with fields decoded elsewhere; {@code src[offset, offset + length)} is copied.
+     */
+    public FixEvent set(String source, MessageDirection direction, SessionID sessionID, String msgType, String simId,
+            byte[] src, int offset, int length, long timestampNanos) {
+        this.source = source;
+        this.direction = direction;
+        this.sessionID = sessionID;
+        this.msgType = msgType;
+        this.simId = simId;
+        this.text = null;
+        if (raw.length < length) {
+            raw = new byte[Math.max(length, raw.length * 2)];
+        }
+        System.arraycopy(src, offset, raw, 0, length);
+        this.length = length;
+        this.timestampNanos = timestampNanos;
+        return this;
+    }
+
+    /**
+     * Makes this a free-text event.
+     */
+    public FixEvent text(String text) {
+        return text(text, now());
+    }
+
+    public FixEvent text(String text, long timestampNanos) {
+        this.source = null;
+        this.direction = null;
+        this.sessionID = null;
+        this.msgType = null;
+        this.simId = null;
+        this.text = text;
+        this.length = 0;
+        this.timestampNanos = timestampNanos;
+        return this;
+    }
+
+    public boolean isText() {
+        return text != null;
+    }
+
+    /**
+     * The legacy one-line form, SOH shown as '|'.
+     */
+    public String format() {
+        if (text != null) {
+            return text;
+        }
+        StringBuilder sb = new StringBuilder(source.length() + msgType.length() + length + 16);
+        sb.append(source).append(' ').append(direction.label()).append(" 35=").append(msgType).append(' ');
+        appendRaw(sb);
+        return sb.toString();
+    }
+
+    /**
+     * The raw message with SOH shown as '|'.
+     */
+    public String fixMessage() {
+        return appendRaw(new StringBuilder(length)).toString();
+    }
+
+    private StringBuilder appendRaw(StringBuilder sb) {
+        for (int i = 0; i < length; i++) {
+            sb.append(raw[i] == 1 ? '|' : (char) (raw[i] & 0xFF));
+        }
+        return sb;
+    }
+
+    void clear() {
+        source = null;
+        direction = null;
+        sessionID = null;
+        msgType = null;
+        simId = null;
+        text = null;
+        length = 0;
+    }
+
+    public String source() {
+        return source;
+    }
+
+    public MessageDirection direction() {
+        return direction;
+    }
+
+    public SessionID sessionID() {
+        return sessionID;
+    }
+
+    public String msgType() {
+        return msgType;
+    }
+
+    public String simId() {
+        return simId;
+    }
+
+    public String text() {
+        return text;
+    }
+
+    /**
+     * Backing array of the raw message; only the first {@link #length()} bytes are valid.
+     */
+    public byte[] raw() {
+        return raw;
+    }
+
+    public int length() {
+        return length;
+    }
+
+    /**
+     * Wall-clock time the event was filled in, in nanoseconds since the epoch.
+     */
+    public long timestampNanos() {
+        return timestampNanos;
+    }
+
+    @Override
+    public String toString() {
+        return format();
+    }
+
+    private static long now() {
+        return EPOCH_NANOS_AT_START + (System.nanoTime() - NANO_TIME_AT_START);
+    }
+}
@@ -0,0 +1,47 @@
+package org.intellifix.redis.base;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded free list of {@link FixEvent}s. An empty pool hands out a new event and a full pool
+ * lets a released one go, so neither side ever waits for the other. The lock is held for a
+ * single array access.
+ */
+public final class FixEventPool {
+
+    private final FixEvent[] free;
+    private int size;
+    private final LongAdder created = new LongAdder();
+
+    public FixEventPool(int capacity) {
+        this.free = new FixEvent[capacity];
+    }
+
+    public FixEvent acquire() {
+        synchronized (this) {
+            if (size > 0) {
+                FixEvent event = free[--size];
+                free[size] = null;
+                return event;
+            }
+        }
+        created.increment();
+        return new FixEvent();
+    }
+
+    public void release(FixEvent event) {
+        event.clear();
+        synchronized (this) {
+            if (size < free.length) {
+                free[size++] = event;
+            }
+        }
+    }
+
+    /**
+     * Events allocated because the pool was empty, including the ones that filled it.
+     */
+    public long created() {
+        return created.sum();
+    }
+}
@@ -1,6 +1,24 @@
 package org.intellifix.redis.base;
 
-public interface MessagePublisher {
+import org.intellifix.fix.model.MessageDirection;
+import quickfix.Message;
+import quickfix.SessionID;
+
+public interface MessagePublisher extends AutoCloseable {
 
     public void publishMessage(String message);
+
+    /**
+     * Publishes a FIX message the application sent or received. Publishers that queue events
+     * copy the raw message and format it later on their own thread; this default formats it
+     * straight away.
+     */
+    default void publishEvent(String source, MessageDirection direction, SessionID sessionID, String msgType,
+            String simId, Message message) {
+        publishMessage(new FixEvent().set(source, direction, sessionID, msgType, simId, message.toString()).format());
+    }
+
+    @Override
+    default void close() {
+    }
 }
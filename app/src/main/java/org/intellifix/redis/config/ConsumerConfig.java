@@ -0,0 +1,60 @@
+package org.intellifix.redis.config;
+
+/**
+ * Tuning for the Redis stream consumer group behind {@code App}.
+ * Values are read from {@code intellifix.consumer.*} system properties; the consumer name
+ * defaults to one per process so that a restarted process leaves its old pending entries to be
+ * reclaimed, and a {@code claimIdleMillis} of 0 turns reclaiming off. An entry whose handler
+ * failed on {@code maxDeliveries} deliveries is moved to {@code deadLetterKey}; 0 retries it
+ * forever.
+ */
+public record ConsumerConfig(
+        String streamKey,
+        String group,
+        String consumerName,
+        int consumers,
+        int minCount,
+        int maxCount,
+        int blockMillis,
+        long targetBatchMillis,
+        int ackBatch,
+        long ackIntervalMillis,
+        long claimIdleMillis,
+        long claimIntervalMillis,
+        long metricsIntervalMillis,
+        int maxDeliveries,
+        String deadLetterKey) {
+
+    private static final String PREFIX = "intellifix.consumer.";
+
+    public static ConsumerConfig defaults() {
+        return new ConsumerConfig("fix-stream", "fix-group", "consumer-" + ProcessHandle.current().pid(), 4, 16,
+                1024, 1000, 200, 256, 100, 30_000, 5_000, 10_000, 5, "fix-stream-dead");
+    }
+
+    public static ConsumerConfig fromSystemProperties() {
+        return fromSystemProperties(PREFIX, defaults());
+    }
+
+    /**
+     * Reads the same keys under another {@code prefix}, falling back to {@code d}.
+     */
+    public static ConsumerConfig fromSystemProperties(String prefix, ConsumerConfig d) {
+        return new ConsumerConfig(
+                System.getProperty(prefix + "streamKey", d.streamKey()),
+                System.getProperty(prefix + "group", d.group()),
+                System.getProperty(prefix + "consumerName", d.consumerName()),
+                Integer.getInteger(prefix + "consumers", d.consumers()),
+                Integer.getInteger(prefix + "minCount", d.minCount()),
+                Integer.getInteger(prefix + "maxCount", d.maxCount()),
+                Integer.getInteger(prefix + "blockMillis", d.blockMillis()),
+                Long.getLong(prefix + "targetBatchMillis", d.targetBatchMillis()),
+                Integer.getInteger(prefix + "ackBatch", d.ackBatch()),
+                Long.getLong(prefix + "ackIntervalMillis", d.ackIntervalMillis()),
+                Long.getLong(prefix + "claimIdleMillis", d.claimIdleMillis()),
+                Long.getLong(prefix + "claimIntervalMillis", d.claimIntervalMillis()),
+                Long.getLong(prefix + "metricsIntervalMillis", d.metricsIntervalMillis()),
+                Integer.getInteger(prefix + "maxDeliveries", d.maxDeliveries()),
+                System.getProperty(prefix + "deadLetterKey", d.deadLetterKey()));
+    }
+}
@@ -0,0 +1,13 @@
+package org.intellifix.redis.config;
+
+/**
+ * When the journal forces written data to the storage device.
+ */
+public enum FsyncPolicy {
+    /** Leave it to the OS page cache. */
+    NEVER,
+    /** {@code force} after every group commit. */
+    ON_COMMIT,
+    /** {@code force} at most once per {@code fsyncIntervalMillis}. */
+    PERIODIC
+}
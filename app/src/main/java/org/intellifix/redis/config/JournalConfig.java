@@ -0,0 +1,38 @@
+package org.intellifix.redis.config;
+
+/**
+ * Tuning for the file journal behind {@code RedisMessagePublisher}.
+ * Values are read from {@code intellifix.journal.*} system properties.
+ * A segment max of {@code 0} disables that rollover trigger.
+ */
+public record JournalConfig(
+        String directory,
+        int bufferBytes,
+        int commitBytes,
+        long commitIntervalMillis,
+        FsyncPolicy fsyncPolicy,
+        long fsyncIntervalMillis,
+        long segmentMaxBytes,
+        long segmentMaxAgeMillis) {
+
+    private static final String PREFIX = "intellifix.journal.";
+
+    public static JournalConfig defaults() {
+        return new JournalConfig("log", 256 * 1024, 64 * 1024, 50, FsyncPolicy.PERIODIC, 1000,
+                256L * 1024 * 1024, 0);
+    }
+
+    public static JournalConfig fromSystemProperties() {
+        JournalConfig d = defaults();
+        return new JournalConfig(
+                System.getProperty(PREFIX + "directory", d.directory()),
+                Integer.getInteger(PREFIX + "bufferBytes", d.bufferBytes()),
+                Integer.getInteger(PREFIX + "commitBytes", d.commitBytes()),
+                Long.getLong(PREFIX + "commitIntervalMillis", d.commitIntervalMillis()),
+                FsyncPolicy.valueOf(System.getProperty(PREFIX + "fsyncPolicy", d.fsyncPolicy().name())
+                        .toUpperCase()),
+                Long.getLong(PREFIX + "fsyncIntervalMillis", d.fsyncIntervalMillis()),
+                Long.getLong(PREFIX + "segmentMaxBytes", d.segmentMaxBytes()),
+                Long.getLong(PREFIX + "segmentMaxAgeMillis", d.segmentMaxAgeMillis()));
+    }
+}
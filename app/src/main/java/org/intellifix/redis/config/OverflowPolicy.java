@@ -0,0 +1,13 @@
+package org.intellifix.redis.config;
+
+/**
+ * What a publishing thread does when the Redis handoff queue is full.
+ */
+public enum OverflowPolicy {
+    /** Wait (spin/park) for the writer to free a slot. Never waits on Redis itself. */
+    BLOCK,
+    /** Drop the entry and count it. */
+    DROP,
+    /** Append the entry to the local spill file instead. */
+    SPILL
+}
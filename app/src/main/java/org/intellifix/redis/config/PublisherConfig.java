@@ -0,0 +1,39 @@
+package org.intellifix.redis.config;
+
+/**
+ * Tuning for the asynchronous Redis stream writer.
+ * Values are read from {@code intellifix.redis.*} system properties so they can be passed
+ * through the Gradle run tasks without touching the session configs.
+ * {@code compress} only applies to the {@link StreamEncoding#BINARY} encoding.
+ */
+public record PublisherConfig(
+        String streamKey,
+        int queueCapacity,
+        int batchSize,
+        long lingerMillis,
+        OverflowPolicy overflowPolicy,
+        long maxLen,
+        StreamEncoding encoding,
+        boolean compress) {
+
+    private static final String PREFIX = "intellifix.redis.";
+
+    public static PublisherConfig defaults() {
+        return new PublisherConfig("fix-stream", 65536, 256, 2, OverflowPolicy.SPILL, 1_000_000,
+                StreamEncoding.TEXT, true);
+    }
+
+    public static PublisherConfig fromSystemProperties() {
+        PublisherConfig d = defaults();
+        return new PublisherConfig(
+                System.getProperty(PREFIX + "streamKey", d.streamKey()),
+                Integer.getInteger(PREFIX + "queueCapacity", d.queueCapacity()),
+                Integer.getInteger(PREFIX + "batchSize", d.batchSize()),
+                Long.getLong(PREFIX + "lingerMillis", d.lingerMillis()),
+                OverflowPolicy.valueOf(System.getProperty(PREFIX + "overflowPolicy", d.overflowPolicy().name())
+                        .toUpperCase()),
+                Long.getLong(PREFIX + "maxLen", d.maxLen()),
+                StreamEncoding.valueOf(System.getProperty(PREFIX + "encoding", d.encoding().name()).toUpperCase()),
+                Boolean.parseBoolean(System.getProperty(PREFIX + "compress", Boolean.toString(d.compress()))));
+    }
+}
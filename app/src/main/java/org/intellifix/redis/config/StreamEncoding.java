@@ -0,0 +1,11 @@
+package org.intellifix.redis.config;
+
+/**
+ * How the stream writer lays out entries.
+ */
+public enum StreamEncoding {
+    /** One entry per event with readable fields. */
+    TEXT,
+    /** One entry per batch holding the events in the binary batch format. */
+    BINARY
+}
@@ -0,0 +1,63 @@
+package org.intellifix.common;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class Lz4BlockTest {
+
+    @Test void roundTripsRepetitiveFixText() {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 200; i++) {
+            text.append("8=FIX.4.4\u00019=120\u000135=8\u000149=BROKER1\u000156=HUB\u000111=HUB").append(i)
+                    .append("\u000139=0\u0001150=0\u000155=AAPL\u000154=1\u000138=100\u000110=000\u0001");
+        }
+        byte[] src = text.toString().getBytes(StandardCharsets.ISO_8859_1);
+        byte[] compressed = roundTrip(src);
+        assertTrue(compressed.length < src.length / 4, "compressed to " + compressed.length);
+    }
+
+    @Test void roundTripsIncompressibleInputWithinTheWorstCase() {
+        byte[] src = new byte[10_000];
+        new Random(42).nextBytes(src);
+        byte[] compressed = roundTrip(src);
+        assertTrue(compressed.length <= Lz4Block.maxCompressedLength(src.length));
+    }
+
+    @Test void roundTripsLongRunsAndShortInputs() {
+        // overlapping matches with lengths past the 15 and 255 extension thresholds
+        byte[] run = new byte[5000];
+        Arrays.fill(run, (byte) 'x');
+        roundTrip(run);
+        for (int length = 0; length <= 16; length++) {
+            roundTrip(Arrays.copyOf("abcdabcdabcdabcd".getBytes(StandardCharsets.US_ASCII), length));
+        }
+    }
+
+    @Test void rejectsAMatchBeforeTheStartOfTheOutput() {
+        // token: no literals, match length 4; offset 1 with nothing written yet
+        byte[] block = {0x00, 0x01, 0x00};
+        assertThrows(IllegalArgumentException.class, () -> Lz4Block.decompress(block, 0, block.length, new byte[16]));
+    }
+
+    @Test void rejectsATruncatedBlock() {
+        byte[] src = "hello hello hello hello hello".getBytes(StandardCharsets.US_ASCII);
+        byte[] compressed = new byte[Lz4Block.maxCompressedLength(src.length)];
+        int length = new Lz4Block().compress(src, src.length, compressed);
+        assertThrows(IllegalArgumentException.class,
+                () -> Lz4Block.decompress(compressed, 0, length, new byte[src.length / 2]));
+    }
+
+    private static byte[] roundTrip(byte[] src) {
+        byte[] compressed = new byte[Lz4Block.maxCompressedLength(src.length)];
+        int length = new Lz4Block().compress(src, src.length, compressed);
+        byte[] restored = new byte[src.length];
+        assertEquals(src.length, Lz4Block.decompress(compressed, 0, length, restored));
+        assertArrayEquals(src, restored);
+        return Arrays.copyOf(compressed, length);
+    }
+}
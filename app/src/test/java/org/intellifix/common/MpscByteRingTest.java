@@ -0,0 +1,118 @@
+package org.intellifix.common;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MpscByteRingTest {
+
+    @Test void padsARecordThatWouldRunPastTheEnd() {
+        MpscByteRing ring = new MpscByteRing(128);
+        assertEquals(128, ring.capacity());
+        assertEquals(0, write(ring, 104, 1));
+        assertEquals(List.of(1), drain(ring));
+
+        // 24 bytes left before the end: the next 32-byte record starts again at 0
+        assertEquals(0, write(ring, 32, 2));
+        assertEquals(-24, ByteBuffer.wrap(ring.buffer()).order(ByteOrder.LITTLE_ENDIAN).getInt(104));
+        // the padding counts against the space: 24 + 32 bytes in use, 80 more do not fit
+        assertEquals(-1, ring.claim(80));
+
+        assertEquals(List.of(2), drain(ring));
+        assertTrue(ring.isEmpty());
+        assertEquals(32, write(ring, 80, 3));
+    }
+
+    @Test void keepsVariableLengthRecordsInOrderAcrossWraps() {
+        MpscByteRing ring = new MpscByteRing(256);
+        List<Integer> expected = new ArrayList<>();
+        List<Integer> seen = new ArrayList<>();
+        int next = 0;
+        for (int round = 0; round < 2000; round++) {
+            int length = 8 + (round * 13) % 57;
+            while (write(ring, length, next) >= 0) {
+                expected.add(next++);
+            }
+            seen.addAll(drain(ring, 1 + round % 3));
+        }
+        seen.addAll(drain(ring));
+        assertEquals(expected, seen);
+        assertTrue(ring.isEmpty());
+    }
+
+    @Test void deliversEveryProducersRecordsInTheirOrder() throws InterruptedException {
+        int producers = 4;
+        int count = 50_000;
+        MpscByteRing ring = new MpscByteRing(1024);
+        List<Thread> threads = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            int producer = p;
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < count; i++) {
+                    while (write(ring, 12 + (i % 5) * 8, producer * count + i) < 0) {
+                        Thread.yield();
+                    }
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+
+        int[] next = new int[producers];
+        int received = 0;
+        while (received < producers * count) {
+            List<Integer> batch = drain(ring, 64);
+            if (batch.isEmpty()) {
+                Thread.yield();
+            }
+            for (int value : batch) {
+                int producer = value / count;
+                assertEquals(next[producer]++, value % count);
+                received++;
+            }
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertTrue(ring.isEmpty());
+    }
+
+    /**
+     * Claims a record of {@code length} bytes holding {@code value} in every int after the length
+     * word and returns its offset, or -1 when the ring is full.
+     */
+    private static int write(MpscByteRing ring, int length, int value) {
+        int offset = ring.claim(length);
+        if (offset < 0) {
+            return offset;
+        }
+        ByteBuffer record = ByteBuffer.wrap(ring.buffer()).order(ByteOrder.LITTLE_ENDIAN);
+        for (int i = MpscByteRing.LENGTH_BYTES; i + Integer.BYTES <= length; i += Integer.BYTES) {
+            record.putInt(offset + i, value);
+        }
+        ring.commit(offset, length);
+        return offset;
+    }
+
+    private static List<Integer> drain(MpscByteRing ring) {
+        return drain(ring, Integer.MAX_VALUE);
+    }
+
+    private static List<Integer> drain(MpscByteRing ring, int max) {
+        List<Integer> values = new ArrayList<>();
+        ring.drain((buffer, offset, length) -> {
+            ByteBuffer record = ByteBuffer.wrap(buffer).order(ByteOrder.LITTLE_ENDIAN);
+            int value = record.getInt(offset + MpscByteRing.LENGTH_BYTES);
+            for (int i = MpscByteRing.LENGTH_BYTES; i + Integer.BYTES <= length; i += Integer.BYTES) {
+                assertEquals(value, record.getInt(offset + i));
+            }
+            values.add(value);
+        }, max);
+        return values;
+    }
+}
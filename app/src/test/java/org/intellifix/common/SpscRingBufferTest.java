@@ -0,0 +1,71 @@
+package org.intellifix.common;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SpscRingBufferTest {
+
+    @Test void roundsCapacityUpToPowerOfTwo() {
+        assertEquals(8, new SpscRingBuffer<Integer>(5).capacity());
+        assertEquals(8, new SpscRingBuffer<Integer>(8).capacity());
+    }
+
+    @Test void rejectsOfferWhenFullAndAcceptsAgainAfterPoll() {
+        SpscRingBuffer<Integer> ring = new SpscRingBuffer<>(4);
+        for (int i = 0; i < 4; i++) {
+            assertTrue(ring.offer(i));
+        }
+        assertFalse(ring.offer(4));
+        assertEquals(4, ring.size());
+
+        assertEquals(0, ring.poll());
+        assertTrue(ring.offer(4));
+        assertFalse(ring.offer(5));
+    }
+
+    @Test void keepsFifoOrderAcrossManyWrapArounds() {
+        SpscRingBuffer<Integer> ring = new SpscRingBuffer<>(4);
+        int next = 0;
+        int expected = 0;
+        for (int round = 0; round < 1000; round++) {
+            while (ring.offer(next)) {
+                next++;
+            }
+            for (int i = 0; i < 3; i++) {
+                assertEquals(expected++, ring.poll());
+            }
+        }
+        Integer element;
+        while ((element = ring.poll()) != null) {
+            assertEquals(expected++, element);
+        }
+        assertEquals(next, expected);
+        assertTrue(ring.isEmpty());
+    }
+
+    @Test void deliversEveryElementFromAnotherThreadInOrder() throws InterruptedException {
+        int count = 100_000;
+        SpscRingBuffer<Integer> ring = new SpscRingBuffer<>(16);
+        Thread producer = new Thread(() -> {
+            for (int i = 0; i < count; i++) {
+                while (!ring.offer(i)) {
+                    Thread.yield();
+                }
+            }
+        });
+        producer.start();
+
+        int expected = 0;
+        while (expected < count) {
+            Integer element = ring.poll();
+            if (element == null) {
+                Thread.yield();
+                continue;
+            }
+            assertEquals(expected++, element);
+        }
+        producer.join();
+        assertNull(ring.poll());
+    }
+}
@@ -0,0 +1,209 @@
+package org.intellifix.fix.base;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import quickfix.ConfigError;
+import quickfix.DataDictionary;
+import quickfix.FieldException;
+import quickfix.IncorrectTagValue;
+import quickfix.Message;
+import quickfix.field.Account;
+import quickfix.field.BeginString;
+import quickfix.field.ClOrdID;
+import quickfix.field.MsgSeqNum;
+import quickfix.field.NoPartyIDs;
+import quickfix.field.OrdType;
+import quickfix.field.OrderQty;
+import quickfix.field.PartyID;
+import quickfix.field.PartyIDSource;
+import quickfix.field.PartyRole;
+import quickfix.field.SenderCompID;
+import quickfix.field.SendingTime;
+import quickfix.field.Side;
+import quickfix.field.Symbol;
+import quickfix.field.TargetCompID;
+import quickfix.field.TransactTime;
+import quickfix.fix44.NewOrderSingle;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DataDictionarySnapshotTest {
+
+    private static final String FIX44 = "FIX44.xml";
+    private static final String CHARS = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz";
+
+    @TempDir
+    Path directory;
+
+    @Test void restoresTheSameFieldsEnumsMessagesAndGroups() throws ConfigError, IOException {
+        DataDictionary xml = new DataDictionary(FIX44);
+        DataDictionary snapshot = roundTrip(xml);
+
+        assertEquals(xml.getVersion(), snapshot.getVersion());
+        assertArrayEquals(xml.getOrderedFields(), snapshot.getOrderedFields());
+        for (int tag : xml.getOrderedFields()) {
+            assertEquals(xml.getFieldName(tag), snapshot.getFieldName(tag), "name of " + tag);
+            assertEquals(xml.getFieldType(tag), snapshot.getFieldType(tag), "type of " + tag);
+            assertEquals(tag, snapshot.getFieldTag(xml.getFieldName(tag)));
+            assertEquals(xml.isHeaderField(tag), snapshot.isHeaderField(tag));
+            assertEquals(xml.isTrailerField(tag), snapshot.isTrailerField(tag));
+            assertEquals(xml.isDataField(tag), snapshot.isDataField(tag));
+            assertEquals(xml.hasFieldValue(tag), snapshot.hasFieldValue(tag), "enum of " + tag);
+            if (xml.hasFieldValue(tag)) {
+                for (String value : values()) {
+                    assertEquals(xml.isFieldValue(tag, value), snapshot.isFieldValue(tag, value), tag + "=" + value);
+                    assertEquals(xml.getValueName(tag, value), snapshot.getValueName(tag, value));
+                }
+            }
+        }
+
+        List<String> msgTypes = msgTypes(xml);
+        assertTrue(msgTypes.size() > 90, msgTypes.toString());
+        for (String msgType : values()) {
+            assertEquals(xml.isMsgType(msgType), snapshot.isMsgType(msgType), msgType);
+        }
+        for (String msgType : msgTypes) {
+            assertEquals(xml.isAdminMessage(msgType), snapshot.isAdminMessage(msgType));
+            assertSameMessage(xml, snapshot, msgType, xml.getOrderedFields());
+        }
+    }
+
+    @Test void validatesLikeTheXmlDictionary() throws Exception {
+        DataDictionary xml = new DataDictionary(FIX44);
+        DataDictionary snapshot = roundTrip(xml);
+
+        NewOrderSingle valid = order();
+        xml.validate(valid, true);
+        snapshot.validate(valid, true);
+
+        NewOrderSingle badSide = order();
+        badSide.setChar(Side.FIELD, 'Z');
+        assertSameFailure(xml, snapshot, badSide, IncorrectTagValue.class);
+
+        NewOrderSingle missingOrdType = order();
+        missingOrdType.removeField(OrdType.FIELD);
+        assertSameFailure(xml, snapshot, missingOrdType, FieldException.class);
+
+        NewOrderSingle badPartyRole = order();
+        NewOrderSingle.NoPartyIDs party = new NewOrderSingle.NoPartyIDs();
+        party.set(new PartyID("DESK2"));
+        party.set(new PartyIDSource('D'));
+        party.setInt(PartyRole.FIELD, 9999);
+        badPartyRole.addGroup(party);
+        assertSameFailure(xml, snapshot, badPartyRole, IncorrectTagValue.class);
+    }
+
+    @Test void loadWritesTheSnapshotOnceAndReadsItAfterwards() throws ConfigError {
+        String previous = System.getProperty("intellifix.dictionary.snapshotDir");
+        System.setProperty("intellifix.dictionary.snapshotDir", directory.toString());
+        try {
+            Path snapshot = DataDictionarySnapshot.snapshotPath(FIX44, DataDictionarySnapshot.readXml(FIX44));
+            assertTrue(snapshot.startsWith(directory));
+            assertFalse(Files.exists(snapshot));
+
+            DataDictionary first = DataDictionarySnapshot.load(FIX44);
+            assertTrue(Files.exists(snapshot));
+            DataDictionary second = DataDictionarySnapshot.load(FIX44);
+            assertNotSame(first, second);
+            assertEquals(first.getFieldName(Side.FIELD), second.getFieldName(Side.FIELD));
+            assertTrue(second.isGroup(NewOrderSingle.MSGTYPE, NoPartyIDs.FIELD));
+        } finally {
+            if (previous == null) {
+                System.clearProperty("intellifix.dictionary.snapshotDir");
+            } else {
+                System.setProperty("intellifix.dictionary.snapshotDir", previous);
+            }
+        }
+    }
+
+    @Test void rejectsACorruptSnapshot() throws ConfigError, IOException {
+        Path file = directory.resolve("FIX44.ddsnap");
+        DataDictionarySnapshot.write(new DataDictionary(FIX44), file);
+        byte[] bytes = Files.readAllBytes(file);
+        Files.write(file, Arrays.copyOf(bytes, bytes.length / 2));
+        assertThrows(IOException.class, () -> DataDictionarySnapshot.read(file));
+    }
+
+    private DataDictionary roundTrip(DataDictionary dd) throws IOException {
+        Path file = directory.resolve("FIX44.ddsnap");
+        DataDictionarySnapshot.write(dd, file);
+        DataDictionary snapshot = DataDictionarySnapshot.read(file);
+        assertNotSame(dd, snapshot);
+        return snapshot;
+    }
+
+    /**
+     * Compares the fields of {@code msgType}, recursing into its groups' dictionaries.
+     */
+    private static void assertSameMessage(DataDictionary xml, DataDictionary snapshot, String msgType, int[] tags) {
+        for (int tag : tags) {
+            String where = msgType + "/" + tag;
+            assertEquals(xml.isMsgField(msgType, tag), snapshot.isMsgField(msgType, tag), where);
+            assertEquals(xml.isRequiredField(msgType, tag), snapshot.isRequiredField(msgType, tag), where);
+            assertEquals(xml.isGroup(msgType, tag), snapshot.isGroup(msgType, tag), where);
+            if (xml.isGroup(msgType, tag)) {
+                DataDictionary.GroupInfo expected = xml.getGroup(msgType, tag);
+                DataDictionary.GroupInfo actual = snapshot.getGroup(msgType, tag);
+                assertEquals(expected.getDelimiterField(), actual.getDelimiterField(), where);
+                DataDictionary expectedGroup = expected.getDataDictionary();
+                DataDictionary actualGroup = actual.getDataDictionary();
+                assertArrayEquals(expectedGroup.getOrderedFields(), actualGroup.getOrderedFields(), where);
+                assertSameMessage(expectedGroup, actualGroup, msgType, expectedGroup.getOrderedFields());
+            }
+        }
+    }
+
+    private static void assertSameFailure(DataDictionary xml, DataDictionary snapshot, Message message,
+            Class<? extends Exception> type) {
+        Exception expected = assertThrows(type, () -> xml.validate(message, true));
+        Exception actual = assertThrows(type, () -> snapshot.validate(message, true));
+        assertEquals(expected.getMessage(), actual.getMessage());
+    }
+
+    private static NewOrderSingle order() {
+        NewOrderSingle order = new NewOrderSingle(new ClOrdID("ORD1"), new Side(Side.BUY), new TransactTime(),
+                new OrdType(OrdType.MARKET));
+        order.getHeader().setString(BeginString.FIELD, "FIX.4.4");
+        order.getHeader().setString(SenderCompID.FIELD, "CLIENT1");
+        order.getHeader().setString(TargetCompID.FIELD, "HUB");
+        order.getHeader().setInt(MsgSeqNum.FIELD, 1);
+        order.getHeader().setUtcTimeStamp(SendingTime.FIELD, LocalDateTime.now());
+        order.set(new Symbol("AAPL"));
+        order.set(new OrderQty(100));
+        order.set(new Account("ACC1"));
+        NewOrderSingle.NoPartyIDs party = new NewOrderSingle.NoPartyIDs();
+        party.set(new PartyID("DESK1"));
+        party.set(new PartyIDSource('D'));
+        party.set(new PartyRole(PartyRole.EXECUTING_FIRM));
+        order.addGroup(party);
+        // fills in BodyLength and CheckSum
+        order.toString();
+        return order;
+    }
+
+    /**
+     * Every one- and two-character value: all single-character enums and every FIX 4.4 MsgType.
+     */
+    private static List<String> values() {
+        List<String> values = new ArrayList<>();
+        for (char first : CHARS.toCharArray()) {
+            values.add(String.valueOf(first));
+            for (char second : CHARS.toCharArray()) {
+                values.add("" + first + second);
+            }
+        }
+        return values;
+    }
+
+    private static List<String> msgTypes(DataDictionary dd) {
+        return values().stream().filter(dd::isMsgType).toList();
+    }
+}
@@ -0,0 +1,87 @@
+package org.intellifix.fix.base;
+
+import org.junit.jupiter.api.Test;
+import quickfix.ConfigError;
+import quickfix.Message;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.intellifix.fix.base.MatchRulesTest.message;
+import static org.junit.jupiter.api.Assertions.*;
+
+class ExpectationRegistryTest {
+
+    @Test void matchesPendingExpectationBySuffixKey() throws ConfigError {
+        ExpectationRegistry registry = registry("* 11 suffix");
+        Expectation first = expectation(message("8", 11, "ORD1"));
+        Expectation second = expectation(message("8", 11, "ORD2"));
+        registry.expect(first);
+        registry.expect(second);
+
+        assertTrue(registry.onInbound(message("8", 11, "sim1-CLIENT1-ORD2")));
+        assertTrue(second.isDone());
+        assertFalse(first.isDone());
+        assertEquals(1, registry.pendingCount());
+    }
+
+    @Test void keepsUnmatchedInboundForALaterExpectation() throws ConfigError {
+        ExpectationRegistry registry = registry("* 11 suffix");
+        assertFalse(registry.onInbound(message("8", 11, "sim1-CLIENT1-ORD1")));
+        assertEquals(1, registry.earlyCount());
+
+        Expectation expectation = expectation(message("8", 11, "ORD1"));
+        registry.expect(expectation);
+
+        assertTrue(expectation.isDone());
+        assertEquals(0, registry.earlyCount());
+        assertEquals(0, registry.pendingCount());
+    }
+
+    @Test void ignoredKeyTagMatchesAcrossValues() throws ConfigError {
+        ExpectationRegistry registry = registry("* 11 ignore\n8 39 exact");
+        Expectation expectation = expectation(message("8", 11, "ORD1", 39, "2"));
+        registry.expect(expectation);
+
+        assertFalse(registry.onInbound(message("8", 11, "ORD9", 39, "0")));
+        assertTrue(registry.onInbound(message("8", 11, "ORD7", 39, "2")));
+        assertTrue(expectation.isDone());
+    }
+
+    @Test void regexAndOtherSeparatorsAreNotBucketedByDash() throws ConfigError {
+        ExpectationRegistry regex = registry("* 11 regex ^X-.*");
+        Expectation byPattern = expectation(message("8", 11, "A-1"));
+        regex.expect(byPattern);
+        assertTrue(regex.onInbound(message("8", 11, "X-2")));
+        assertTrue(byPattern.isDone());
+
+        ExpectationRegistry colon = registry("* 11 suffix :");
+        Expectation bySuffix = expectation(message("8", 11, "a-ORD:1"));
+        colon.expect(bySuffix);
+        assertTrue(colon.onInbound(message("8", 11, "b-X:1")));
+        assertTrue(bySuffix.isDone());
+    }
+
+    @Test void evictsOldestEarlyMessageBeyondCapacity() throws ConfigError {
+        MatchRules rules = MatchRules.parse("* 11 exact");
+        ExpectationRegistry registry = new ExpectationRegistry(11, rules, 2, rules);
+        registry.onInbound(message("8", 11, "A"));
+        registry.onInbound(message("8", 11, "B"));
+        registry.onInbound(message("8", 11, "C"));
+
+        assertEquals(2, registry.earlyCount());
+        assertEquals(1, registry.earlyEvictions());
+        Expectation evicted = expectation(message("8", 11, "A"));
+        registry.expect(evicted);
+        assertFalse(evicted.isDone());
+    }
+
+    private static ExpectationRegistry registry(String rules) throws ConfigError {
+        MatchRules matchRules = MatchRules.parse(rules);
+        return new ExpectationRegistry(11, matchRules, ExpectationRegistry.DEFAULT_EARLY_CAPACITY, matchRules);
+    }
+
+    private static Expectation expectation(Message expected) {
+        AtomicInteger completions = new AtomicInteger();
+        return new Expectation(expected, Long.MAX_VALUE, completions::incrementAndGet);
+    }
+}
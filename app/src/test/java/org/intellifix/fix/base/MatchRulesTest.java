@@ -0,0 +1,97 @@
+package org.intellifix.fix.base;
+
+import org.junit.jupiter.api.Test;
+import quickfix.ConfigError;
+import quickfix.Message;
+import quickfix.field.MsgType;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MatchRulesTest {
+
+    @Test void suffixComparesAfterTheLastSeparator() throws ConfigError {
+        MatchRules rules = MatchRules.parse("* 11 suffix");
+
+        assertTrue(rules.test(message("D", 11, "ORD1"), message("D", 11, "sim1-CLIENT1-ORD1")));
+        assertFalse(rules.test(message("D", 11, "ORD1"), message("D", 11, "sim1-CLIENT1-ORD12")));
+        assertFalse(rules.test(message("D", 11, "ORD1"), message("D", 526, "ORD1")));
+        assertFalse(rules.test(message("D", 11, "ORD1"), message("F", 11, "ORD1")));
+    }
+
+    @Test void optionalRulePassesWhenActualLacksTheTag() throws ConfigError {
+        MatchRules rules = MatchRules.parse("* 11 suffix?");
+
+        assertTrue(rules.test(message("8", 11, "ORD1"), message("8", 37, "X")));
+        assertTrue(rules.test(message("8", 37, "X"), message("8", 11, "anything")));
+    }
+
+    @Test void customSeparatorAndPerTypeOverride() throws ConfigError {
+        MatchRules rules = MatchRules.parse("""
+                # comment line
+                *  11  suffix :     # trailing comment
+                8  11  ignore
+                """);
+
+        assertTrue(rules.test(message("D", 11, "ORD1"), message("D", 11, "a-b:ORD1")));
+        assertFalse(rules.test(message("D", 11, "ORD1"), message("D", 11, "a:b-ORD1")));
+        assertTrue(rules.test(message("8", 11, "ORD1"), message("8", 11, "other")));
+    }
+
+    @Test void toleranceRegexPresentAndAbsent() throws ConfigError {
+        MatchRules rules = MatchRules.parse("""
+                8  44    tolerance 0.01
+                8  58    regex ^Fill.*
+                8  37    present
+                8  9999  absent
+                """);
+        Message expected = message("8", 44, "100.00");
+
+        assertTrue(rules.test(expected, message("8", 44, "100.005", 58, "Filled", 37, "1")));
+        assertFalse(rules.test(expected, message("8", 44, "100.02", 58, "Filled", 37, "1")));
+        assertFalse(rules.test(expected, message("8", 44, "100", 58, "Partial", 37, "1")));
+        assertFalse(rules.test(expected, message("8", 44, "100", 58, "Filled")));
+        assertFalse(rules.test(expected, message("8", 44, "100", 58, "Filled", 37, "1", 9999, "x")));
+        assertFalse(rules.test(expected, message("8", 44, "abc", 58, "Filled", 37, "1")));
+    }
+
+    @Test void scaledParsesPlainDecimalsOnly() {
+        assertEquals(1_500_000_000L, MatchRules.scaled("1.5"));
+        assertEquals(-250_000_000L, MatchRules.scaled("-0.25"));
+        assertEquals(Long.MIN_VALUE, MatchRules.scaled("1e5"));
+        assertEquals(Long.MIN_VALUE, MatchRules.scaled("."));
+        assertEquals(Long.MIN_VALUE, MatchRules.scaled("99999999999"));
+    }
+
+    @Test void rejectsMalformedRules() {
+        assertThrows(ConfigError.class, () -> MatchRules.parse("* 11"));
+        assertThrows(ConfigError.class, () -> MatchRules.parse("* x exact"));
+        assertThrows(ConfigError.class, () -> MatchRules.parse("* 11 fuzzy"));
+        assertThrows(ConfigError.class, () -> MatchRules.parse("* 11 suffix ab"));
+        assertThrows(ConfigError.class, () -> MatchRules.parse("* 58 regex"));
+        assertThrows(ConfigError.class, () -> MatchRules.parse("* 58 regex ("));
+        assertThrows(ConfigError.class, () -> MatchRules.parse("* 44 tolerance -1"));
+    }
+
+    @Test void indexKeyFollowsTheRuleForTheTag() throws ConfigError {
+        MatchRules rules = MatchRules.parse("""
+                *  11  suffix
+                *  526 exact
+                8  11  regex .*
+                """);
+
+        assertEquals("ORD1", rules.indexKey("D", 11, message("D", 11, "sim1-CLIENT1-ORD1")));
+        assertEquals("a-b", rules.indexKey("D", 526, message("D", 526, "a-b")));
+        assertNull(rules.indexKey("8", 11, message("8", 11, "sim1-CLIENT1-ORD1")));
+        assertNull(rules.indexKey("D", 37, message("D", 37, "X")));
+        assertNull(rules.indexKey("D", 11, message("D", 37, "X")));
+    }
+
+    static Message message(String msgType, Object... tagsAndValues) {
+        Message message = new Message();
+        message.getHeader().setString(MsgType.FIELD, msgType);
+        for (int i = 0; i < tagsAndValues.length; i += 2) {
+            message.setString((Integer) tagsAndValues[i], (String) tagsAndValues[i + 1]);
+        }
+        return message;
+    }
+}
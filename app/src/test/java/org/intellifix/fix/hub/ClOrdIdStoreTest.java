@@ -0,0 +1,128 @@
+package org.intellifix.fix.hub;
+
+import org.junit.jupiter.api.Test;
+import quickfix.SessionID;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ClOrdIdStoreTest {
+
+    private static final SessionID CLIENT_A = new SessionID("FIX.4.4", "HUB", "CLIENT_A");
+    private static final SessionID CLIENT_B = new SessionID("FIX.4.4", "HUB", "CLIENT_B");
+    private static final SessionID BROKER = new SessionID("FIX.4.4", "HUB", "BROKER1");
+
+    private final ClOrdIdGenerator generator = new ClOrdIdGenerator(1);
+
+    @Test void translatesBothWays() {
+        ClOrdIdStore store = new ClOrdIdStore(16, 0);
+        long id = store.issue(generator, "CL1", CLIENT_A, BROKER, 0);
+
+        assertEquals("CL1", store.get(id));
+        assertEquals(CLIENT_A, store.clientSessionOf(id));
+        assertEquals(BROKER, store.brokerSessionOf(id));
+        assertEquals(id, store.idFor(CLIENT_A, "CL1"));
+        assertEquals(-1, store.idFor(CLIENT_A, "CL2"));
+        assertNull(store.get(-1));
+    }
+
+    @Test void keepsSameClOrdIdOfDifferentClientsApart() {
+        ClOrdIdStore store = new ClOrdIdStore(16, 0);
+        long a = store.issue(generator, "ORD-1", CLIENT_A, BROKER, 0);
+        long b = store.issue(generator, "ORD-1", CLIENT_B, BROKER, 0);
+
+        assertNotEquals(a, b);
+        assertEquals(a, store.idFor(CLIENT_A, "ORD-1"));
+        assertEquals(b, store.idFor(CLIENT_B, "ORD-1"));
+
+        store.complete(a);
+        assertEquals(-1, store.idFor(CLIENT_A, "ORD-1"));
+        assertEquals(b, store.idFor(CLIENT_B, "ORD-1"));
+    }
+
+    @Test void findsEveryEntryOfACollidingProbeChainAfterDeletes() {
+        // "Aa" and "BB" share a hash code, so these all start probing at the same position
+        List<String> colliding = List.of("AaAa", "AaBB", "BBAa", "BBBB");
+        ClOrdIdStore store = new ClOrdIdStore(16, 0);
+        List<Long> ids = new ArrayList<>();
+        for (String clOrdId : colliding) {
+            ids.add(store.issue(generator, clOrdId, CLIENT_A, BROKER, 0));
+        }
+
+        store.complete(ids.get(1));
+
+        assertEquals(ids.get(0), store.idFor(CLIENT_A, "AaAa"));
+        assertEquals(-1, store.idFor(CLIENT_A, "AaBB"));
+        assertEquals(ids.get(2), store.idFor(CLIENT_A, "BBAa"));
+        assertEquals(ids.get(3), store.idFor(CLIENT_A, "BBBB"));
+        assertEquals(3, store.size());
+        assertEquals(1, store.completed());
+    }
+
+    @Test void evictsOldestWhenRingWraps() {
+        ClOrdIdStore store = new ClOrdIdStore(4, 0);
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            ids.add(store.issue(generator, "CL" + i, CLIENT_A, BROKER, 0));
+        }
+
+        assertEquals(4, store.size());
+        assertEquals(2, store.capacityEvictions());
+        assertNull(store.get(ids.get(0)));
+        assertEquals(-1, store.idFor(CLIENT_A, "CL1"));
+        assertEquals("CL2", store.get(ids.get(2)));
+        assertEquals(ids.get(5), store.idFor(CLIENT_A, "CL5"));
+    }
+
+    @Test void evictsEntriesOlderThanTtlOnNextIssue() {
+        ClOrdIdStore store = new ClOrdIdStore(16, 1000);
+        long old = store.issue(generator, "CL1", CLIENT_A, BROKER, 0);
+        long recent = store.issue(generator, "CL2", CLIENT_A, BROKER, 600);
+
+        long fresh = store.issue(generator, "CL3", CLIENT_A, BROKER, 1200);
+
+        assertNull(store.get(old));
+        assertEquals(-1, store.idFor(CLIENT_A, "CL1"));
+        assertEquals("CL2", store.get(recent));
+        assertEquals("CL3", store.get(fresh));
+        assertEquals(1, store.ttlEvictions());
+        assertEquals(2, store.size());
+    }
+
+    @Test void issuesDistinctIdsToConcurrentSessions() throws InterruptedException {
+        ClOrdIdStore store = new ClOrdIdStore(1 << 16, 0);
+        ClOrdIdGenerator shared = new ClOrdIdGenerator(1);
+        ConcurrentHashMap<Long, String> issued = new ConcurrentHashMap<>();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (SessionID client : List.of(CLIENT_A, CLIENT_B)) {
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < 10_000; i++) {
+                    String clOrdId = "CL" + i;
+                    long id = store.issue(shared, clOrdId, client, BROKER, 0);
+                    assertNull(issued.put(id, clOrdId));
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(20_000, store.size());
+        assertEquals(0, store.capacityEvictions());
+        assertEquals("CL9999", store.get(store.idFor(CLIENT_B, "CL9999")));
+        assertNotEquals(store.idFor(CLIENT_A, "CL42"), store.idFor(CLIENT_B, "CL42"));
+    }
+}
@@ -0,0 +1,159 @@
+package org.intellifix.fix.hub;
+
+import org.intellifix.fix.model.ForwardOverflow;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ForwardQueueTest {
+
+    private static final String SOURCE = "FIX.4.4:HUB->CLIENT1";
+    // file header, then the first record at offset 0 of the data area
+    private static final int FIRST_RECORD = 64;
+
+    @TempDir
+    Path directory;
+
+    @Test void keepsHeldMessagesAndCountersAcrossReopen() throws IOException {
+        try (ForwardQueue queue = open(ForwardOverflow.DROP_NEWEST)) {
+            assertTrue(queue.offer(ForwardQueue.UNTRANSLATED, SOURCE, "first", 1000));
+            assertTrue(queue.offer(ForwardQueue.TRANSLATED, SOURCE, "second", 2000));
+            assertTrue(queue.offer(ForwardQueue.UNTRANSLATED, SOURCE, "third", 3000));
+            ForwardQueue.Entry entry = new ForwardQueue.Entry();
+            assertTrue(queue.peek(entry));
+            queue.remove(entry);
+            queue.sync();
+        }
+
+        try (ForwardQueue queue = open(ForwardOverflow.DROP_NEWEST)) {
+            assertEquals(2, queue.size());
+            assertEquals(3, queue.parked());
+            assertEquals(1, queue.drained());
+            assertEquals(500, queue.oldestAgeMillis(2500));
+
+            ForwardQueue.Entry entry = new ForwardQueue.Entry();
+            assertTrue(queue.peek(entry));
+            assertEquals("second", entry.message());
+            assertEquals(SOURCE, entry.source());
+            assertEquals(ForwardQueue.TRANSLATED, entry.kind());
+            assertEquals(2000, entry.queuedMillis());
+            queue.remove(entry);
+            assertTrue(queue.peek(entry));
+            assertEquals("third", entry.message());
+            queue.remove(entry);
+            assertFalse(queue.peek(entry));
+            assertEquals(0, queue.usedBytes());
+        }
+    }
+
+    @Test void wrapsAroundTheDataArea() throws IOException {
+        try (ForwardQueue queue = open(ForwardOverflow.DROP_NEWEST)) {
+            ForwardQueue.Entry entry = new ForwardQueue.Entry();
+            String padding = "x".repeat(90);
+            for (int i = 0; i < 100; i++) {
+                assertTrue(queue.offer(ForwardQueue.TRANSLATED, SOURCE, i + padding, i));
+                assertTrue(queue.offer(ForwardQueue.TRANSLATED, SOURCE, (i + 1000) + padding, i));
+                assertTrue(queue.peek(entry));
+                assertEquals(i + padding, entry.message());
+                queue.remove(entry);
+                assertTrue(queue.peek(entry));
+                assertEquals((i + 1000) + padding, entry.message());
+                queue.remove(entry);
+            }
+            assertEquals(0, queue.size());
+            assertEquals(200, queue.drained());
+        }
+    }
+
+    @Test void appliesTheOverflowPolicyWhenFull() throws IOException {
+        String message = "m".repeat(200);
+        try (ForwardQueue newest = new ForwardQueue(directory.resolve("newest.fwdq"), 1024,
+                ForwardOverflow.DROP_NEWEST)) {
+            int parked = 0;
+            for (int i = 0; i < 10; i++) {
+                parked += newest.offer(ForwardQueue.TRANSLATED, SOURCE, i + message, i) ? 1 : 0;
+            }
+            assertEquals(10 - parked, newest.dropped());
+            ForwardQueue.Entry entry = new ForwardQueue.Entry();
+            assertTrue(newest.peek(entry));
+            assertEquals(0 + message, entry.message());
+        }
+        try (ForwardQueue oldest = new ForwardQueue(directory.resolve("oldest.fwdq"), 1024,
+                ForwardOverflow.DROP_OLDEST)) {
+            for (int i = 0; i < 10; i++) {
+                assertTrue(oldest.offer(ForwardQueue.TRANSLATED, SOURCE, i + message, i));
+            }
+            assertEquals(10 - oldest.size(), oldest.dropped());
+            ForwardQueue.Entry entry = new ForwardQueue.Entry();
+            String last = null;
+            while (oldest.peek(entry)) {
+                last = entry.message();
+                oldest.remove(entry);
+            }
+            assertEquals(9 + message, last);
+        }
+    }
+
+    @Test void treatsACorruptLengthAsTheEndOfTheQueue() throws IOException {
+        try (ForwardQueue queue = open(ForwardOverflow.DROP_NEWEST)) {
+            queue.offer(ForwardQueue.TRANSLATED, SOURCE, "first", 1);
+            queue.offer(ForwardQueue.TRANSLATED, SOURCE, "second", 2);
+            queue.offer(ForwardQueue.TRANSLATED, SOURCE, "third", 3);
+        }
+        // the second record claims to run far past the end of the file
+        int second = FIRST_RECORD + align(16 + SOURCE.length() + "first".length());
+        overwrite(second, Integer.MAX_VALUE - 7);
+
+        try (ForwardQueue queue = open(ForwardOverflow.DROP_NEWEST)) {
+            assertEquals(3, queue.size());
+            ForwardQueue.Entry entry = new ForwardQueue.Entry();
+            assertTrue(queue.startDraining());
+            assertTrue(queue.peek(entry));
+            assertEquals("first", entry.message());
+            queue.remove(entry);
+
+            assertFalse(queue.peek(entry));
+            assertEquals(0, queue.size());
+            assertEquals(2, queue.dropped());
+            assertFalse(queue.backlogged());
+
+            assertTrue(queue.offer(ForwardQueue.TRANSLATED, SOURCE, "after", 4));
+            assertTrue(queue.peek(entry));
+            assertEquals("after", entry.message());
+        }
+    }
+
+    @Test void treatsAnImpossibleSourceLengthAsTheEndOfTheQueue() throws IOException {
+        try (ForwardQueue queue = open(ForwardOverflow.DROP_NEWEST)) {
+            queue.offer(ForwardQueue.TRANSLATED, SOURCE, "first", 1);
+        }
+        overwrite(FIRST_RECORD + 4, 0x0000_7fff);
+
+        try (ForwardQueue queue = open(ForwardOverflow.DROP_NEWEST)) {
+            assertEquals(0, queue.oldestAgeMillis(10));
+            assertFalse(queue.peek(new ForwardQueue.Entry()));
+            assertEquals(1, queue.dropped());
+        }
+    }
+
+    private ForwardQueue open(ForwardOverflow overflow) throws IOException {
+        return new ForwardQueue(directory.resolve("CLIENT1.fwdq"), 1024, overflow);
+    }
+
+    private void overwrite(long position, int value) throws IOException {
+        try (FileChannel channel = FileChannel.open(directory.resolve("CLIENT1.fwdq"), StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.allocate(Integer.BYTES).putInt(0, value), position);
+        }
+    }
+
+    private static int align(int length) {
+        return (length + 7) & ~7;
+    }
+}
@@ -0,0 +1,130 @@
+package org.intellifix.fix.hub;
+
+import org.junit.jupiter.api.Test;
+import quickfix.FieldNotFound;
+import quickfix.Message;
+import quickfix.SessionID;
+import quickfix.field.ClOrdID;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HubPipelineTest {
+
+    private static final long TIMEOUT_MILLIS = 10_000;
+    private static final SessionID CLIENT1 = new SessionID("FIX.4.4", "HUB", "CLIENT1");
+    private static final SessionID CLIENT2 = new SessionID("FIX.4.4", "HUB", "CLIENT2");
+    private static final SessionID BROKER = new SessionID("FIX.4.4", "HUB", "BROKER1");
+
+    @Test void keepsEachSourceInOrder() throws InterruptedException {
+        int count = 20_000;
+        Map<SessionID, List<Integer>> received = new ConcurrentHashMap<>();
+        AtomicInteger total = new AtomicInteger();
+        try (HubPipeline pipeline = new HubPipeline(16, (message, msgType, source, destination, receivedNanos) -> {
+            assertEquals(BROKER, destination);
+            received.computeIfAbsent(source, s -> Collections.synchronizedList(new ArrayList<>()))
+                    .add(Integer.parseInt(clOrdId(message)));
+            total.incrementAndGet();
+        })) {
+            Thread first = producer(pipeline, CLIENT1, count);
+            Thread second = producer(pipeline, CLIENT2, count);
+            first.join(TIMEOUT_MILLIS);
+            second.join(TIMEOUT_MILLIS);
+            await(() -> total.get() == 2 * count);
+        }
+        for (SessionID source : List.of(CLIENT1, CLIENT2)) {
+            List<Integer> sequence = received.get(source);
+            assertEquals(count, sequence.size());
+            for (int i = 0; i < count; i++) {
+                assertEquals(i, sequence.get(i));
+            }
+        }
+    }
+
+    @Test void holdsTheSourceWhileItsRingIsFull() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger sent = new AtomicInteger();
+        try (HubPipeline pipeline = new HubPipeline(4, (message, msgType, source, destination, receivedNanos) -> {
+            try {
+                release.await(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            sent.incrementAndGet();
+        })) {
+            Thread producer = producer(pipeline, CLIENT1, 20);
+            // one message held in the sink, a full ring behind it
+            await(() -> pipeline.depth(BROKER) == 4);
+            producer.join(200);
+            assertTrue(producer.isAlive(), "source should wait for room");
+            assertEquals(0, sent.get());
+
+            release.countDown();
+            producer.join(TIMEOUT_MILLIS);
+            assertFalse(producer.isAlive());
+            await(() -> sent.get() == 20);
+            assertEquals(0, pipeline.depth(BROKER));
+        }
+    }
+
+    @Test void sendsWhatIsSubmittedWhileClosing() throws InterruptedException {
+        // every first message to a destination starts its sender, which widens the window for close
+        for (int round = 0; round < 20; round++) {
+            AtomicInteger sent = new AtomicInteger();
+            HubPipeline pipeline = new HubPipeline(1024,
+                    (message, msgType, source, destination, receivedNanos) -> sent.incrementAndGet());
+            CountDownLatch start = new CountDownLatch(1);
+            Thread producer = new Thread(() -> {
+                start.countDown();
+                for (int i = 0; i < 200; i++) {
+                    pipeline.submit(CLIENT1, new SessionID("FIX.4.4", "HUB", "BROKER" + i), new Message(), "D",
+                            System.nanoTime());
+                }
+            });
+            producer.start();
+            start.await();
+            pipeline.close();
+            producer.join(TIMEOUT_MILLIS);
+            assertEquals(200, sent.get(), "round " + round);
+        }
+    }
+
+    private static Thread producer(HubPipeline pipeline, SessionID source, int count) {
+        Thread thread = new Thread(() -> {
+            for (int i = 0; i < count; i++) {
+                Message message = new Message();
+                message.setField(new ClOrdID(Integer.toString(i)));
+                pipeline.submit(source, BROKER, message, "D", System.nanoTime());
+            }
+        });
+        thread.start();
+        return thread;
+    }
+
+    private static String clOrdId(Message message) {
+        try {
+            return message.getString(ClOrdID.FIELD);
+        } catch (FieldNotFound e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) {
+                fail("condition not met within " + TIMEOUT_MILLIS + " ms");
+            }
+            Thread.sleep(10);
+        }
+    }
+}
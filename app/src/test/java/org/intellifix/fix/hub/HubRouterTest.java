@@ -0,0 +1,105 @@
+package org.intellifix.fix.hub;
+
+import org.junit.jupiter.api.Test;
+import quickfix.Message;
+import quickfix.SessionID;
+import quickfix.field.Account;
+import quickfix.field.Symbol;
+
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HubRouterTest {
+
+    @Test void routesToTheLeastOutstandingBrokerOfSmallGroups() throws Exception {
+        HubRouter router = new HubRouter(Set.of("CLIENT1"), new LinkedHashSet<>(List.of("B1", "B2", "B3")));
+        SessionID b1 = broker("B1");
+        SessionID b2 = broker("B2");
+        SessionID b3 = broker("B3");
+        assertNull(router.route(order("AAPL")));
+        router.onLogon(b1);
+        router.onLogon(b2);
+        router.onLogon(b3);
+
+        for (int i = 0; i < 3; i++) {
+            router.orderOpened(router.route(order("AAPL")));
+        }
+        assertEquals(1, router.outstanding("B1"));
+        assertEquals(1, router.outstanding("B2"));
+        assertEquals(1, router.outstanding("B3"));
+
+        router.orderClosed(b2);
+        assertEquals(b2, router.route(order("AAPL")));
+    }
+
+    @Test void keepsOutstandingCountsAcrossLogout() throws Exception {
+        HubRouter router = new HubRouter(Set.of("CLIENT1"), Set.of("B1", "B2"));
+        SessionID b1 = broker("B1");
+        SessionID b2 = broker("B2");
+        router.onLogon(b1);
+        router.onLogon(b2);
+        router.orderOpened(b1);
+        router.orderOpened(b1);
+
+        router.onLogout(b1);
+        assertEquals(2, router.outstanding("B1"));
+        assertEquals(b2, router.route(order("AAPL")));
+
+        router.onLogon(b1);
+        assertEquals(b2, router.route(order("AAPL")));
+    }
+
+    @Test void followsTheRoutingRules() throws Exception {
+        Map<String, String[]> bySymbol = new HashMap<>();
+        bySymbol.put("MSFT", new String[] {"B2"});
+        HubRouter router = new HubRouter(Set.of("CLIENT1"), Set.of("B1", "B2"), Map.of(),
+                Map.of("ACC1", new String[] {"B1"}), bySymbol);
+        router.onLogon(broker("B1"));
+
+        Message msft = order("MSFT");
+        assertNull(router.route(msft));
+        assertEquals("B2", router.intendedBroker(msft));
+
+        msft.setString(Account.FIELD, "ACC1");
+        assertEquals(broker("B1"), router.route(msft));
+    }
+
+    @Test void spreadsOrdersOverLargeGroups() throws Exception {
+        Set<String> compIDs = new LinkedHashSet<>();
+        for (int i = 0; i < 16; i++) {
+            compIDs.add("B" + i);
+        }
+        HubRouter router = new HubRouter(Set.of("CLIENT1"), compIDs);
+        compIDs.forEach(compID -> router.onLogon(broker(compID)));
+
+        for (int i = 0; i < 1600; i++) {
+            router.orderOpened(router.route(order("AAPL")));
+        }
+        for (String compID : compIDs) {
+            // two random choices keep every broker close to the mean of 100
+            int outstanding = router.outstanding(compID);
+            assertTrue(outstanding > 80 && outstanding < 120, compID + " has " + outstanding);
+        }
+
+        // a logged-out broker is never picked
+        router.onLogout(broker("B0"));
+        for (int i = 0; i < 100; i++) {
+            assertNotEquals("B0", router.route(order("AAPL")).getTargetCompID());
+        }
+    }
+
+    private static SessionID broker(String compID) {
+        return new SessionID("FIX.4.4", "HUB", compID);
+    }
+
+    private static Message order(String symbol) {
+        Message message = new Message();
+        message.setString(Symbol.FIELD, symbol);
+        return message;
+    }
+}
@@ -0,0 +1,108 @@
+package org.intellifix.fix.log;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import quickfix.Log;
+import quickfix.SessionID;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BinaryLogFactoryTest {
+
+    private static final SessionID CLIENT = new SessionID("FIX.4.4", "HUB", "CLIENT1");
+    private static final SessionID BROKER = new SessionID("FIX.4.4", "HUB", "BROKER1");
+    private static final String ORDER = "8=FIX.4.4\u00019=60\u000135=D\u000149=CLIENT1\u000156=HUB\u000111=ORD1\u000110=000\u0001";
+    private static final String HEARTBEAT = "8=FIX.4.4\u00019=50\u000135=0\u000149=CLIENT1\u000156=HUB\u000110=000\u0001";
+
+    @TempDir
+    Path directory;
+
+    @Test void readsBackEveryCategoryPerSession() throws IOException {
+        Path file = directory.resolve("hub.binlog");
+        try (BinaryLogFactory factory = new BinaryLogFactory(file, 64 << 10, true, true, true, false, 1)) {
+            Log client = factory.create(CLIENT);
+            Log broker = factory.create(BROKER);
+            client.onIncoming(ORDER);
+            client.onIncoming(HEARTBEAT);
+            broker.onOutgoing(ORDER);
+            client.onEvent("Logon received");
+            broker.onErrorEvent("Disconnected");
+            assertEquals(0, factory.dropped());
+        }
+
+        List<String> lines = render(file, null);
+        assertEquals(4, lines.size());
+        assertTrue(lines.get(0).endsWith(" IN    " + CLIENT + " " + ORDER.replace('\u0001', '|')), lines.get(0));
+        assertTrue(lines.get(1).endsWith(" OUT   " + BROKER + " " + ORDER.replace('\u0001', '|')), lines.get(1));
+        assertTrue(lines.get(2).endsWith(" EVENT " + CLIENT + " Logon received"), lines.get(2));
+        assertTrue(lines.get(3).endsWith(" ERROR " + BROKER + " Disconnected"), lines.get(3));
+
+        assertEquals(List.of(lines.get(1), lines.get(3)), render(file, "BROKER1"));
+    }
+
+    @Test void wrapsTheRingManyTimesWithoutLosingOrder() throws IOException {
+        Path file = directory.resolve("wrap.binlog");
+        int count = 20_000;
+        try (BinaryLogFactory factory = new BinaryLogFactory(file, 4 << 10, true, true, true, true, 1)) {
+            Log log = factory.create(CLIENT);
+            int written = 0;
+            while (written < count) {
+                // odd lengths, so records are padded to 8 bytes and wrap at varying offsets
+                String text = "event " + written + " " + "x".repeat(written % 37);
+                int before = (int) factory.dropped();
+                log.onEvent(text);
+                if (factory.dropped() == before) {
+                    written++;
+                } else {
+                    Thread.yield();
+                }
+            }
+        }
+
+        List<String> lines = render(file, null);
+        assertEquals(count, lines.size());
+        for (int i = 0; i < count; i++) {
+            assertTrue(lines.get(i).endsWith(" event " + i + " " + "x".repeat(i % 37)), lines.get(i));
+        }
+    }
+
+    @Test void writesRecordsLargerThanTheStagingBuffer() throws IOException {
+        Path file = directory.resolve("large.binlog");
+        // half of an 8 MB ring may be one record, beyond the 1 MB staging buffer
+        String large = "a".repeat(3 << 20);
+        String oversize = "b".repeat(5 << 20);
+        try (BinaryLogFactory factory = new BinaryLogFactory(file, 8 << 20, true, true, true, true, 1)) {
+            Log log = factory.create(CLIENT);
+            log.onEvent("before");
+            log.onEvent(large);
+            log.onEvent(oversize);
+            log.onEvent("after");
+        }
+
+        List<String> lines = render(file, null);
+        assertEquals(4, lines.size());
+        assertTrue(lines.get(0).endsWith(" before"));
+        assertTrue(lines.get(1).endsWith(" " + large));
+        // cut to half the ring
+        assertTrue(lines.get(2).endsWith(" " + "b".repeat((4 << 20) - BinaryLogFactory.RECORD_HEADER_BYTES)));
+        assertTrue(lines.get(3).endsWith(" after"));
+    }
+
+    private static List<String> render(Path file, String filter) throws IOException {
+        ByteArrayOutputStream text = new ByteArrayOutputStream();
+        try (DataInputStream in = new DataInputStream(Files.newInputStream(file));
+                PrintStream out = new PrintStream(text, true, StandardCharsets.ISO_8859_1)) {
+            BinaryLogReader.render(in, filter, out);
+        }
+        return text.toString(StandardCharsets.ISO_8859_1).lines().toList();
+    }
+}
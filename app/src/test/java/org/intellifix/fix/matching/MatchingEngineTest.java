@@ -0,0 +1,201 @@
+package org.intellifix.fix.matching;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import quickfix.SessionID;
+import quickfix.field.OrdType;
+import quickfix.field.Side;
+import quickfix.field.TimeInForce;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MatchingEngineTest {
+
+    private static final SessionID SESSION = new SessionID("FIX.4.4", "BROKER", "HUB");
+
+    private final List<String> events = new ArrayList<>();
+    private MatchingEngine engine;
+
+    @BeforeEach void setUp() {
+        engine = new MatchingEngine(new Recorder(), 16);
+    }
+
+    @Test void restsNonCrossingLimitOrders() {
+        limit("B1", Side.BUY, 10, 99.0);
+        limit("S1", Side.SELL, 10, 101.0);
+
+        assertEquals(List.of("new B1", "new S1"), events);
+        assertEquals(1, engine.depth("EUR", Side.BUY));
+        assertEquals(1, engine.depth("EUR", Side.SELL));
+        assertEquals(2, engine.liveOrders());
+    }
+
+    @Test void crossesAtRestingPriceInTimePriority() {
+        limit("S1", Side.SELL, 5, 100.0);
+        limit("S2", Side.SELL, 5, 100.0);
+        limit("S3", Side.SELL, 5, 99.0);
+        events.clear();
+
+        limit("B1", Side.BUY, 12, 100.0);
+
+        assertEquals(List.of("new B1",
+                "fill S3 5@99.0 leaves=0", "fill B1 5@99.0 leaves=7",
+                "fill S1 5@100.0 leaves=0", "fill B1 5@100.0 leaves=2",
+                "fill S2 2@100.0 leaves=3", "fill B1 2@100.0 leaves=0"), events);
+        assertEquals(1, engine.liveOrders());
+        assertEquals(0, engine.depth("EUR", Side.BUY));
+        assertEquals(3, engine.fills());
+    }
+
+    @Test void cancelsUnfilledRestOfIocAndMarketOrders() {
+        limit("S1", Side.SELL, 5, 100.0);
+        events.clear();
+
+        engine.newOrder(SESSION, "B1", null, "EUR", Side.BUY, OrdType.LIMIT, TimeInForce.IMMEDIATE_OR_CANCEL, 8,
+                MatchingEngine.toTicks(100.0));
+        engine.newOrder(SESSION, "B2", null, "EUR", Side.BUY, OrdType.MARKET, TimeInForce.DAY, 3, 0);
+
+        assertEquals(List.of("new B1", "fill S1 5@100.0 leaves=0", "fill B1 5@100.0 leaves=3", "canceled B1",
+                "new B2", "canceled B2"), events);
+        assertEquals(0, engine.liveOrders());
+    }
+
+    @Test void fillOrKillTradesOnlyWhenItCanFillCompletely() {
+        limit("S1", Side.SELL, 5, 100.0);
+        limit("S2", Side.SELL, 5, 101.0);
+        events.clear();
+
+        engine.newOrder(SESSION, "B1", null, "EUR", Side.BUY, OrdType.LIMIT, TimeInForce.FILL_OR_KILL, 8,
+                MatchingEngine.toTicks(100.0));
+        assertEquals(List.of("new B1", "canceled B1"), events);
+        assertEquals(2, engine.liveOrders());
+        events.clear();
+
+        engine.newOrder(SESSION, "B2", null, "EUR", Side.BUY, OrdType.LIMIT, TimeInForce.FILL_OR_KILL, 8,
+                MatchingEngine.toTicks(101.0));
+        assertEquals(List.of("new B2", "fill S1 5@100.0 leaves=0", "fill B2 5@100.0 leaves=3",
+                "fill S2 3@101.0 leaves=2", "fill B2 3@101.0 leaves=0"), events);
+        assertEquals(0, engine.depth("EUR", Side.BUY));
+    }
+
+    @Test void cancelRemovesRestingOrder() {
+        limit("B1", Side.BUY, 10, 99.0);
+        events.clear();
+
+        engine.cancel(SESSION, "C1", "B1", null);
+        engine.cancel(SESSION, "C2", "B1", null);
+
+        assertEquals(List.of("canceled C1 orig=B1", "cancelReject C2 orig=B1 Unknown order"), events);
+        assertEquals(0, engine.liveOrders());
+        assertEquals(0, engine.depth("EUR", Side.BUY));
+    }
+
+    @Test void replaceToCrossingPriceTradesAndStopsEchoingOrigClOrdId() {
+        limit("S1", Side.SELL, 4, 100.0);
+        limit("B1", Side.BUY, 10, 99.0);
+        events.clear();
+
+        engine.replace(SESSION, "R1", "B1", null, 10, MatchingEngine.toTicks(100.0));
+        limit("S2", Side.SELL, 2, 100.0);
+
+        assertEquals(List.of("replaced R1 orig=B1", "fill S1 4@100.0 leaves=0", "fill R1 4@100.0 leaves=6",
+                "new S2", "fill R1 2@100.0 leaves=4", "fill S2 2@100.0 leaves=0"), events);
+    }
+
+    @Test void quantityDecreaseKeepsTimePriority() {
+        limit("B1", Side.BUY, 10, 100.0);
+        limit("B2", Side.BUY, 10, 100.0);
+        engine.replace(SESSION, "R1", "B1", null, 4, MatchingEngine.toTicks(100.0));
+        events.clear();
+
+        limit("S1", Side.SELL, 6, 100.0);
+
+        assertEquals(List.of("new S1", "fill R1 4@100.0 leaves=0", "fill S1 4@100.0 leaves=2",
+                "fill B2 2@100.0 leaves=8", "fill S1 2@100.0 leaves=0"), events);
+    }
+
+    @Test void rejectsReplaceOfLimitOrderWithoutPositivePrice() {
+        limit("B1", Side.BUY, 10, 99.0);
+        events.clear();
+
+        engine.replace(SESSION, "R1", "B1", null, 10, 0);
+        engine.replace(SESSION, "R2", "B1", null, 10, -5);
+        limit("S1", Side.SELL, 10, 50.0);
+
+        assertEquals(List.of("replaceReject R1 orig=B1 Invalid price", "replaceReject R2 orig=B1 Invalid price",
+                "new S1", "fill B1 10@99.0 leaves=0", "fill S1 10@99.0 leaves=0"), events);
+    }
+
+    @Test void rejectsReplaceNotAboveFilledQuantity() {
+        limit("S1", Side.SELL, 6, 100.0);
+        limit("B1", Side.BUY, 10, 100.0);
+        events.clear();
+
+        engine.replace(SESSION, "R1", "B1", null, 6, MatchingEngine.toTicks(100.0));
+
+        assertEquals(List.of("replaceReject R1 orig=B1 Quantity not above filled quantity"), events);
+    }
+
+    @Test void rejectsFractionalAndInvalidOrders() {
+        assertEquals(-1, MatchingEngine.toQuantity(1.5));
+        assertEquals(7, MatchingEngine.toQuantity(7.0));
+
+        engine.newOrder(SESSION, "B1", null, "EUR", Side.BUY, OrdType.LIMIT, TimeInForce.DAY,
+                MatchingEngine.toQuantity(2.5), MatchingEngine.toTicks(100.0));
+        limit("B2", Side.BUY, 5, 0);
+        limit("B3", Side.BUY, 5, 99.0);
+        limit("B3", Side.BUY, 5, 99.0);
+
+        assertEquals(List.of("rejected B1 Invalid quantity", "rejected B2 Invalid price", "new B3",
+                "rejected B3 Duplicate ClOrdID"), events);
+        assertEquals(1, engine.liveOrders());
+    }
+
+    private void limit(String clOrdId, char side, long quantity, double price) {
+        engine.newOrder(SESSION, clOrdId, null, "EUR", side, OrdType.LIMIT, TimeInForce.DAY, quantity,
+                MatchingEngine.toTicks(price));
+    }
+
+    private final class Recorder implements ExecutionListener {
+
+        @Override
+        public void onNew(Order order) {
+            events.add("new " + order.clOrdId());
+        }
+
+        @Override
+        public void onFill(Order order, long lastQty, long lastPxTicks) {
+            events.add("fill " + order.clOrdId() + withOrig(order) + " " + lastQty + "@"
+                    + MatchingEngine.toPrice(lastPxTicks) + " leaves=" + order.leaves());
+        }
+
+        @Override
+        public void onCanceled(Order order) {
+            events.add("canceled " + order.clOrdId() + withOrig(order));
+        }
+
+        @Override
+        public void onReplaced(Order order) {
+            events.add("replaced " + order.clOrdId() + withOrig(order));
+        }
+
+        @Override
+        public void onRejected(Order order, String reason) {
+            events.add("rejected " + order.clOrdId() + " " + reason);
+        }
+
+        @Override
+        public void onCancelRejected(SessionID session, String clOrdId, String origClOrdId,
+                String secondaryClOrdId, boolean replace, String reason) {
+            events.add((replace ? "replaceReject " : "cancelReject ") + clOrdId + " orig=" + origClOrdId + " "
+                    + reason);
+        }
+
+        private String withOrig(Order order) {
+            return order.origClOrdId() == null ? "" : " orig=" + order.origClOrdId();
+        }
+    }
+}
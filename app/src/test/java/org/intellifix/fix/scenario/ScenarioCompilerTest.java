@@ -0,0 +1,157 @@
+package org.intellifix.fix.scenario;
+
+import org.intellifix.fix.model.Step;
+import org.intellifix.fix.model.StepType;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import quickfix.DataDictionary;
+import quickfix.Message;
+import quickfix.field.MsgType;
+import quickfix.field.NoPartyIDs;
+import quickfix.field.PartyID;
+import quickfix.fix44.NewOrderSingle;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ScenarioCompilerTest {
+
+    private static final String SCENARIO = """
+            # orders
+            1: 8=FIX.4.4|9=20|35=D|49=CLIENT1|56=HUB|11=A1|10=000|
+            8=FIX.4.4|9=20|35=8|49=HUB|56=CLIENT1|11=A1|10=000|
+
+            // keep going
+            8=FIX.4.4|9=20|35=F|49=CLIENT1|56=HUB|11=A2|41=A1|10=000|
+            """;
+
+    @TempDir
+    Path directory;
+
+    @Test void compilesOnceAndReadsStepsBackWithLineNumbers() throws Exception {
+        Path source = write(SCENARIO);
+        Path cache = directory.resolve("cache");
+        AtomicInteger parsed = new AtomicInteger();
+        List<Long> lines = Collections.synchronizedList(new ArrayList<>());
+        StepParser parser = (fix, lineNumber) -> {
+            parsed.incrementAndGet();
+            lines.add(lineNumber);
+            Message message = new Message(fix, null, false);
+            String msgType = message.getHeader().getString(MsgType.FIELD);
+            // an outbound-only filter, as a client simulator applies
+            return msgType.equals("8") ? null : new Step(StepType.OUTBOUND, message);
+        };
+
+        try (StepSource steps = new ScenarioCompiler(cache).open(source, "client|CLIENT1", parser)) {
+            assertEquals(List.of("D", "F"), msgTypes(steps));
+        }
+        assertEquals(List.of(2L, 3L, 6L), lines);
+
+        try (StepSource steps = new ScenarioCompiler(cache).open(source, "client|CLIENT1", parser)) {
+            assertEquals(List.of("D", "F"), msgTypes(steps));
+            assertEquals(2, ((CompiledStepSource) steps).size());
+        }
+        assertEquals(3, parsed.get(), "the second open is served from the cache");
+
+        new ScenarioCompiler(cache).open(source, "broker|BROKER1", parser).close();
+        try (Stream<Path> files = Files.list(cache)) {
+            assertEquals(2, files.count(), "one cache file per variant");
+        }
+    }
+
+    @Test void closeReleasesUnfinishedIterators() throws Exception {
+        Path source = write(SCENARIO);
+        StepSource steps = new ScenarioCompiler(directory.resolve("cache")).open(source, "v",
+                (fix, lineNumber) -> new Step(StepType.OUTBOUND, new Message(fix, null, false)));
+        Iterator<Step> first = steps.iterator();
+        Iterator<Step> second = steps.iterator();
+        assertTrue(first.hasNext());
+        first.next();
+        assertTrue(second.hasNext());
+
+        steps.close();
+        assertFalse(first.hasNext());
+        assertFalse(second.hasNext());
+        assertThrows(IllegalStateException.class, steps::iterator);
+    }
+
+    @Test void rebuildsMessagesWithTheirGroupsWithoutParsing() throws Exception {
+        DataDictionary dd = new DataDictionary("FIX44.xml");
+        Path source = write("8=FIX.4.4|9=20|35=D|49=CLIENT1|56=HUB|11=A1|453=2|448=P1|447=D|452=1|448=P2|447=D|452=3"
+                + "|55=AAPL|54=1|60=20260105-14:30:00|38=100|40=1|10=000|\n");
+        List<String> parsed = new ArrayList<>();
+        StepParser parser = (fix, lineNumber) -> {
+            Message message = new Message(fix, dd, false);
+            parsed.add(message.toString());
+            return new Step(StepType.OUTBOUND, message);
+        };
+        Path cache = directory.resolve("cache");
+        new ScenarioCompiler(cache).open(source, "v", parser).close();
+
+        try (StepSource steps = new ScenarioCompiler(cache).open(source, "v", parser)) {
+            Message message = steps.iterator().next().message();
+            assertEquals(parsed.get(0), message.toString());
+            assertEquals(1, parsed.size(), "the warm open does not parse");
+            assertEquals(2, message.getGroupCount(NoPartyIDs.FIELD));
+            assertEquals("P2", message.getGroup(2, new NewOrderSingle.NoPartyIDs()).getString(PartyID.FIELD));
+        }
+    }
+
+    @Test void findsStepsThroughTheKeyIndex() throws Exception {
+        Path source = write(SCENARIO);
+        try (CompiledStepSource steps = new ScenarioCompiler(directory.resolve("cache")).open(source, "v",
+                (fix, lineNumber) -> new Step(StepType.OUTBOUND, new Message(fix, null, false)))) {
+            assertEquals(List.of("D", "8"), msgTypes(steps.find(11, "A1")));
+            assertEquals(List.of("F"), msgTypes(steps.find(11, "A2")));
+            assertEquals(List.of(), steps.find(526, "A1"));
+        }
+    }
+
+    @Test void replacesTheCacheOfAChangedSourceAndKeepsItForATouchedOne() throws Exception {
+        Path source = write(SCENARIO);
+        Path cache = directory.resolve("cache");
+        AtomicInteger parsed = new AtomicInteger();
+        StepParser parser = (fix, lineNumber) -> {
+            parsed.incrementAndGet();
+            return new Step(StepType.OUTBOUND, new Message(fix, null, false));
+        };
+        new ScenarioCompiler(cache).open(source, "v", parser).close();
+        assertEquals(3, parsed.get());
+
+        Files.setLastModifiedTime(source, FileTime.fromMillis(Files.getLastModifiedTime(source).toMillis() + 5000));
+        new ScenarioCompiler(cache).open(source, "v", parser).close();
+        assertEquals(3, parsed.get(), "same content under a new time is not recompiled");
+
+        Files.writeString(source, SCENARIO.replace("A2", "B2"));
+        try (StepSource steps = new ScenarioCompiler(cache).open(source, "v", parser)) {
+            assertEquals(6, parsed.get());
+            assertEquals(3, ((CompiledStepSource) steps).size());
+        }
+        try (Stream<Path> files = Files.list(cache)) {
+            assertEquals(1, files.count(), "the old cache file is replaced");
+        }
+    }
+
+    private Path write(String text) throws Exception {
+        Path source = directory.resolve("scenario.txt");
+        Files.writeString(source, text);
+        return source;
+    }
+
+    private static List<String> msgTypes(Iterable<Step> steps) throws Exception {
+        List<String> types = new ArrayList<>();
+        for (Step step : steps) {
+            types.add(step.message().getHeader().getString(MsgType.FIELD));
+        }
+        return types;
+    }
+}
@@ -0,0 +1,128 @@
+package org.intellifix.fix.store;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MappedMessageStoreTest {
+
+    private final ScheduledExecutorService syncer = Executors.newSingleThreadScheduledExecutor();
+
+    @TempDir
+    Path directory;
+
+    @AfterEach void tearDown() {
+        syncer.shutdownNow();
+    }
+
+    @Test void servesStoredMessagesBySequenceRange() throws IOException {
+        try (MappedMessageStore store = open(0)) {
+            store.set(1, "8=FIX.4.4\u00019=5\u000135=D\u0001");
+            store.set(2, "second");
+            store.set(4, "fourth");
+
+            assertEquals(List.of("second", "fourth"), get(store, 2, 10));
+            assertEquals(List.of("8=FIX.4.4\u00019=5\u000135=D\u0001"), get(store, 1, 1));
+        }
+    }
+
+    @Test void recoversMessagesAndSequenceNumbersAfterReopen() throws IOException {
+        try (MappedMessageStore store = open(10)) {
+            for (int sequence = 1; sequence <= 100; sequence++) {
+                store.set(sequence, "message " + sequence);
+            }
+            store.setNextSenderMsgSeqNum(101);
+            store.setNextTargetMsgSeqNum(42);
+        }
+
+        try (MappedMessageStore store = open(10)) {
+            assertEquals(101, store.getNextSenderMsgSeqNum());
+            assertEquals(42, store.getNextTargetMsgSeqNum());
+            assertEquals(List.of("message 99", "message 100"), get(store, 99, 200));
+
+            store.set(101, "after restart");
+            store.incrNextSenderMsgSeqNum();
+            assertEquals(List.of("message 100", "after restart"), get(store, 100, 101));
+            assertEquals(102, store.getNextSenderMsgSeqNum());
+        }
+    }
+
+    @Test void growsIndexBeyondItsInitialMapping() throws IOException {
+        try (MappedMessageStore store = open(0)) {
+            store.set(1, "first");
+            store.set(200_000, "far");
+        }
+        try (MappedMessageStore store = open(0)) {
+            assertEquals(List.of("first"), get(store, 1, 1));
+            assertEquals(List.of("far"), get(store, 199_999, 200_001));
+        }
+    }
+
+    @Test void growsIndexPastTheSizeOfABodySegment() throws IOException {
+        // 40M slots of 8 bytes: 320 MB of (sparse) index, more than one 256 MB body segment
+        try (MappedMessageStore store = open(0)) {
+            store.set(1, "first");
+            store.set(40_000_000, "far");
+            assertEquals(List.of("far"), get(store, 39_999_999, 40_000_001));
+            // the index is one int-sized mapping; beyond it the store refuses the message
+            assertThrows(IOException.class, () -> store.set(Integer.MAX_VALUE / Long.BYTES, "too far"));
+        }
+        try (MappedMessageStore store = open(0)) {
+            assertEquals(List.of("first"), get(store, 1, 1));
+            assertEquals(List.of("far"), get(store, 40_000_000, 40_000_000));
+        }
+    }
+
+    @Test void resetClearsMessagesAndSequenceNumbers() throws IOException {
+        try (MappedMessageStore store = open(0)) {
+            store.set(1, "old");
+            store.setNextSenderMsgSeqNum(5);
+            store.reset();
+            store.sync();
+        }
+        try (MappedMessageStore store = open(0)) {
+            assertEquals(1, store.getNextSenderMsgSeqNum());
+            assertEquals(1, store.getNextTargetMsgSeqNum());
+            assertTrue(get(store, 1, 10).isEmpty());
+        }
+    }
+
+    @Test void keepsWritesThatRaceWithSync() throws Exception {
+        try (MappedMessageStore store = open(0)) {
+            for (int sequence = 1; sequence <= 1000; sequence++) {
+                store.set(sequence, "x".repeat(500));
+            }
+            Thread syncing = new Thread(() -> {
+                for (int i = 0; i < 50; i++) {
+                    store.sync();
+                }
+            });
+            syncing.start();
+            for (int sequence = 1001; sequence <= 3000; sequence++) {
+                store.set(sequence, "message " + sequence);
+            }
+            syncing.join();
+            store.sync();
+            assertEquals(List.of("message 3000"), get(store, 3000, 3000));
+        }
+    }
+
+    private MappedMessageStore open(long syncMillis) throws IOException {
+        return new MappedMessageStore(directory, "FIX.4.4-HUB-CLIENT1", syncer, syncMillis);
+    }
+
+    private static List<String> get(MappedMessageStore store, int start, int end) {
+        List<String> messages = new ArrayList<>();
+        store.get(start, end, messages);
+        return messages;
+    }
+}
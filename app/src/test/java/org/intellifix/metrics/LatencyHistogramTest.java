@@ -0,0 +1,71 @@
+package org.intellifix.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LatencyHistogramTest {
+
+    @Test void givesEveryValueBelow256ItsOwnBucket() {
+        for (long value = 0; value < 256; value++) {
+            assertEquals(value, LatencyHistogram.index(value));
+            assertEquals(value, LatencyHistogram.highestValue((int) value));
+        }
+    }
+
+    @Test void splitsEachPowerOfTwoAbove256Into128Buckets() {
+        // 256..511 in buckets of 2
+        assertEquals(256, LatencyHistogram.index(256));
+        assertEquals(256, LatencyHistogram.index(257));
+        assertEquals(257, LatencyHistogram.index(258));
+        assertEquals(257, LatencyHistogram.highestValue(256));
+        assertEquals(383, LatencyHistogram.index(511));
+        assertEquals(511, LatencyHistogram.highestValue(383));
+        // 512..1023 in buckets of 4
+        assertEquals(384, LatencyHistogram.index(512));
+        assertEquals(384, LatencyHistogram.index(515));
+        assertEquals(385, LatencyHistogram.index(516));
+        assertEquals(515, LatencyHistogram.highestValue(384));
+    }
+
+    @Test void bucketsAreContiguousAndTightAcrossTheWholeRange() {
+        int last = LatencyHistogram.index(Long.MAX_VALUE);
+        assertEquals(Long.MAX_VALUE, LatencyHistogram.highestValue(last));
+        for (int index = 1; index <= last; index++) {
+            long lowest = LatencyHistogram.highestValue(index - 1) + 1;
+            long highest = LatencyHistogram.highestValue(index);
+            assertEquals(index, LatencyHistogram.index(lowest), "lowest of " + index);
+            assertEquals(index, LatencyHistogram.index(highest), "highest of " + index);
+            // within 0.8% of any value in the bucket
+            assertTrue(highest - lowest <= lowest / 128, "width of " + index);
+        }
+    }
+
+    @Test void reportsPercentilesAsTheHighestValueOfTheirBucket() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.percentile(50));
+        for (long value = 1; value <= 1000; value++) {
+            histogram.record(value);
+        }
+        assertEquals(1000, histogram.count());
+        assertEquals(1, histogram.min());
+        assertEquals(1000, histogram.max());
+        assertEquals(500.5, histogram.mean());
+        assertEquals(255, histogram.percentile(25.5));
+        assertEquals(501, histogram.percentile(50));
+        assertEquals(991, histogram.percentile(99));
+        // never above the recorded maximum
+        assertEquals(1000, histogram.percentile(100));
+    }
+
+    @Test void capsThePercentileAtTheMaximum() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(256);
+        assertEquals(256, histogram.percentile(50));
+        histogram.record(Long.MAX_VALUE);
+        assertEquals(Long.MAX_VALUE, histogram.percentile(100));
+        assertEquals(Long.MAX_VALUE, histogram.max());
+        histogram.record(-5);
+        assertEquals(0, histogram.min());
+    }
+}
@@ -0,0 +1,79 @@
+package org.intellifix.redis;
+
+import org.intellifix.fix.model.MessageDirection;
+import org.intellifix.redis.base.FixEvent;
+import org.junit.jupiter.api.Test;
+import quickfix.SessionID;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BinaryBatchEncoderTest {
+
+    private static final SessionID SESSION = new SessionID("FIX.4.4", "CLIENT1", "HUB");
+
+    @Test void roundTripsEventsWithAndWithoutCompression() {
+        List<FixEvent> batch = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            String fix = "8=FIX.4.4\u00019=60\u000135=D\u000149=CLIENT1\u000156=HUB\u000111=ORD" + i
+                    + "\u000155=AAPL\u000154=1\u000138=100\u000110=000\u0001";
+            batch.add(new FixEvent().set("client", i % 2 == 0 ? MessageDirection.SENT : MessageDirection.RECEIVED,
+                    SESSION, "D", i % 3 == 0 ? null : "sim-7", fix));
+        }
+        batch.add(new FixEvent().text("report line"));
+
+        byte[] plain = new BinaryBatchEncoder(false).encode(batch);
+        byte[] compressed = new BinaryBatchEncoder(true).encode(batch);
+        assertEquals(0, plain[1] & BinaryBatchEncoder.FLAG_LZ4);
+        assertEquals(BinaryBatchEncoder.FLAG_LZ4, compressed[1] & BinaryBatchEncoder.FLAG_LZ4);
+        assertTrue(compressed.length < plain.length);
+
+        assertEquals(render(batch), decode(plain));
+        assertEquals(render(batch), decode(compressed));
+    }
+
+    @Test void sendsIncompressibleBatchesUncompressed() {
+        byte[] noise = new byte[2000];
+        new Random(7).nextBytes(noise);
+        FixEvent event = new FixEvent().set("broker", MessageDirection.SENT, SESSION, "8", null, noise, 0,
+                noise.length, 1_000L);
+        List<FixEvent> batch = List.of(event);
+
+        byte[] value = new BinaryBatchEncoder(true).encode(batch);
+        assertEquals(0, value[1] & BinaryBatchEncoder.FLAG_LZ4);
+        assertEquals(render(batch), decode(value));
+    }
+
+    @Test void rejectsUnknownVersionsAndTruncatedBatches() {
+        byte[] value = new BinaryBatchEncoder(false).encode(List.of(new FixEvent().text("line")));
+        BinaryBatchDecoder decoder = new BinaryBatchDecoder();
+        byte[] wrongVersion = value.clone();
+        wrongVersion[0] = 99;
+        assertThrows(IllegalArgumentException.class, () -> decoder.decode(wrongVersion, e -> { }));
+        byte[] truncated = Arrays.copyOf(value, value.length - 3);
+        assertThrows(IllegalArgumentException.class, () -> decoder.decode(truncated, e -> { }));
+    }
+
+    private static List<String> decode(byte[] value) {
+        List<String> events = new ArrayList<>();
+        int count = new BinaryBatchDecoder().decode(value, e -> events.add(describe(e)));
+        assertEquals(events.size(), count);
+        return events;
+    }
+
+    private static List<String> render(List<FixEvent> batch) {
+        List<String> events = new ArrayList<>();
+        batch.forEach(e -> events.add(describe(e)));
+        return events;
+    }
+
+    private static String describe(FixEvent event) {
+        return event.isText()
+                ? event.text() + "@" + event.timestampNanos()
+                : event.format() + "|" + event.sessionID() + "|" + event.simId() + "@" + event.timestampNanos();
+    }
+}
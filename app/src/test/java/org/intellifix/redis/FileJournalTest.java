@@ -0,0 +1,211 @@
+package org.intellifix.redis;
+
+import org.intellifix.common.ExecutionState;
+import org.intellifix.fix.model.MessageDirection;
+import org.intellifix.redis.base.FixEvent;
+import org.intellifix.redis.config.FsyncPolicy;
+import org.intellifix.redis.config.JournalConfig;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import quickfix.SessionID;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FileJournalTest {
+
+    private static final long TIMEOUT_MILLIS = 10_000;
+    private static final long NEVER_MILLIS = 3_600_000;
+    private static final String FILE = "journal.log";
+    private static final SessionID SESSION = new SessionID("FIX.4.4", "CLIENT1", "HUB");
+
+    @TempDir
+    Path directory;
+
+    @Test void writesOnlyOnceCommitBytesHaveAccumulated() throws IOException {
+        Path file = directory.resolve(FILE);
+        try (FileJournal journal = new FileJournal(FILE, config(1024, NEVER_MILLIS, FsyncPolicy.NEVER, 0, 0), false)) {
+            for (int i = 0; i < 10; i++) {
+                journal.append("entry " + i);
+            }
+            assertEquals(0, Files.size(file));
+            int i = 10;
+            while (Files.size(file) == 0) {
+                journal.append("entry " + i++);
+            }
+            assertTrue(Files.size(file) >= 1024);
+            assertEquals(i, entries(file).size());
+        }
+        assertEquals("entry 0", entries(file).get(0));
+    }
+
+    @Test void commitsAPartialGroupOnTheInterval() throws IOException, InterruptedException {
+        Path file = directory.resolve(FILE);
+        try (FileJournal journal = new FileJournal(FILE, config(1 << 16, 10, FsyncPolicy.NEVER, 0, 0), false)) {
+            journal.append("first");
+            journal.append("second");
+            await(() -> entries(file).size() == 2);
+        }
+        assertEquals(List.of("first", "second"), entries(file));
+    }
+
+    @Test void rollsBySizeWithoutLosingOrReorderingEntries() throws IOException {
+        try (FileJournal journal = new FileJournal(FILE, config(64, NEVER_MILLIS, FsyncPolicy.NEVER, 300, 0), false)) {
+            for (int i = 0; i < 200; i++) {
+                journal.append("entry " + i);
+            }
+        }
+        List<Path> segments;
+        try (Stream<Path> files = Files.list(directory)) {
+            segments = files.toList();
+        }
+        // rolls within the same millisecond get a counter, so none is overwritten
+        assertTrue(segments.size() > 10, segments.toString());
+        List<Integer> all = new ArrayList<>();
+        for (Path segment : segments) {
+            // the size is checked before each entry, so a segment passes the limit by one entry at most
+            assertTrue(Files.size(segment) < 300 + 40, segment + " has " + Files.size(segment) + " bytes");
+            List<Integer> numbers = entries(segment).stream().map(e -> Integer.parseInt(e.substring(6))).toList();
+            for (int i = 1; i < numbers.size(); i++) {
+                assertEquals(numbers.get(i - 1) + 1, numbers.get(i));
+            }
+            all.addAll(numbers);
+        }
+        all.sort(null);
+        for (int i = 0; i < 200; i++) {
+            assertEquals(i, all.get(i));
+        }
+    }
+
+    @Test void rollsByAgeOfTheSegment() throws IOException {
+        long start = System.currentTimeMillis();
+        try (FileJournal journal = new FileJournal(FILE, config(64, NEVER_MILLIS, FsyncPolicy.NEVER, 0, 1000), false)) {
+            journal.append(event("ORD1", start));
+            journal.append(event("ORD2", start + 500));
+            journal.append(event("ORD3", start + 1500));
+        }
+        String suffix = LocalDateTime.ofInstant(Instant.ofEpochMilli(start + 1500), ZoneId.systemDefault())
+                .format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss-SSS"));
+        Path rolled = directory.resolve("journal-" + suffix + ".log");
+        assertEquals(2, entries(rolled).size());
+        assertTrue(entries(rolled).get(1).endsWith("|11=ORD2|"), entries(rolled).get(1));
+
+        List<String> active = entries(directory.resolve(FILE));
+        assertEquals(1, active.size());
+        assertTrue(active.get(0).startsWith("client "), active.get(0));
+        assertTrue(active.get(0).contains(" 35=D "), active.get(0));
+        assertTrue(active.get(0).endsWith("|11=ORD3|"), active.get(0));
+    }
+
+    @Test void forcesAfterEveryCommitOnCommit() {
+        try (FileJournal journal = new FileJournal(FILE, config(1, NEVER_MILLIS, FsyncPolicy.ON_COMMIT, 0, 0), false)) {
+            for (int i = 0; i < 5; i++) {
+                journal.append("entry " + i);
+            }
+            assertEquals(5, journal.forces());
+            journal.close();
+            assertEquals(6, journal.forces());
+        }
+    }
+
+    @Test void neverForces() {
+        try (FileJournal journal = new FileJournal(FILE, config(1, 10, FsyncPolicy.NEVER, 0, 0), false)) {
+            for (int i = 0; i < 5; i++) {
+                journal.append("entry " + i);
+            }
+            journal.close();
+            assertEquals(0, journal.forces());
+        }
+    }
+
+    @Test void forcesPeriodicallyOnlyOnceTheIntervalHasPassed() throws InterruptedException {
+        JournalConfig slow = new JournalConfig(directory.toString(), 1024, 1, 5, FsyncPolicy.PERIODIC, NEVER_MILLIS,
+                0, 0);
+        try (FileJournal journal = new FileJournal(FILE, slow, false)) {
+            journal.append("entry");
+            Thread.sleep(50);
+            assertEquals(0, journal.forces());
+            journal.close();
+            assertEquals(1, journal.forces());
+        }
+
+        JournalConfig fast = new JournalConfig(directory.toString(), 1024, 1, 5, FsyncPolicy.PERIODIC, 20, 0, 0);
+        try (FileJournal journal = new FileJournal("fast.log", fast, false)) {
+            journal.append("entry");
+            await(() -> journal.forces() > 0);
+        }
+    }
+
+    @Test void marksAGapAfterAQuietFileOnTheFirstMessage() throws IOException {
+        Path file = directory.resolve(FILE);
+        try (FileJournal journal = new FileJournal(FILE, config(1, NEVER_MILLIS, FsyncPolicy.NEVER, 0, 0), false)) {
+            journal.append("before");
+        }
+
+        // written moments ago: no gap
+        ExecutionState.isFirstMessage.set(true);
+        try (FileJournal journal = new FileJournal(FILE, config(1, NEVER_MILLIS, FsyncPolicy.NEVER, 0, 0), true)) {
+            journal.append("recent");
+        }
+        assertEquals(2, Files.readAllLines(file).size());
+
+        Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis() - 60_000));
+        ExecutionState.isFirstMessage.set(true);
+        try (FileJournal journal = new FileJournal(FILE, config(1, NEVER_MILLIS, FsyncPolicy.NEVER, 0, 0), true)) {
+            journal.append("after");
+            journal.append("again");
+        }
+        List<String> lines = Files.readAllLines(file);
+        assertEquals(5, lines.size());
+        assertEquals("", lines.get(2));
+        assertTrue(lines.get(3).endsWith(" after"));
+        assertTrue(lines.get(4).endsWith(" again"));
+        assertFalse(ExecutionState.isFirstMessage.get());
+    }
+
+    private JournalConfig config(int commitBytes, long commitIntervalMillis, FsyncPolicy fsync, long segmentMaxBytes,
+            long segmentMaxAgeMillis) {
+        return new JournalConfig(directory.toString(), 4096, commitBytes, commitIntervalMillis, fsync, 1000,
+                segmentMaxBytes, segmentMaxAgeMillis);
+    }
+
+    private static FixEvent event(String clOrdId, long millis) {
+        byte[] raw = ("8=FIX.4.4\u000135=D\u000111=" + clOrdId + "\u0001").getBytes(StandardCharsets.US_ASCII);
+        return new FixEvent().set("client", MessageDirection.SENT, SESSION, "D", null, raw, 0, raw.length,
+                millis * 1_000_000);
+    }
+
+    /**
+     * The entries of {@code file} without their "[yyyy-MM-dd HH:mm:ss.SSS] " prefix.
+     */
+    private static List<String> entries(Path file) {
+        try {
+            return Files.readAllLines(file).stream().map(line -> line.substring(26)).toList();
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) {
+                fail("condition not met within " + TIMEOUT_MILLIS + " ms");
+            }
+            Thread.sleep(10);
+        }
+    }
+}
@@ -0,0 +1,304 @@
+package org.intellifix.redis;
+
+import org.intellifix.fix.model.MessageDirection;
+import org.intellifix.redis.base.FixEvent;
+import org.intellifix.redis.base.FixEventPool;
+import org.intellifix.redis.config.OverflowPolicy;
+import org.intellifix.redis.config.PublisherConfig;
+import org.intellifix.redis.config.StreamEncoding;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import quickfix.SessionID;
+import redis.clients.jedis.JedisPooled;
+import redis.clients.jedis.resps.StreamEntry;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Runs against the Redis at {@code intellifix.test.redis.host}/{@code port} (localhost:6379) and
+ * is skipped when none answers.
+ */
+class RedisStreamWriterTest {
+
+    private static final long TIMEOUT_MILLIS = 10_000;
+    private static final SessionID SESSION = new SessionID("FIX.4.4", "CLIENT1", "HUB");
+    private static final String WRITER_THREAD = "redis-stream-writer";
+
+    private JedisPooled jedis;
+    private String streamKey;
+    private final FixEventPool pool = new FixEventPool(64);
+    private final ConcurrentLinkedQueue<String> journaled = new ConcurrentLinkedQueue<>();
+    private final ConcurrentLinkedQueue<String> spilled = new ConcurrentLinkedQueue<>();
+
+    @BeforeEach
+    void connect() {
+        jedis = new JedisPooled(System.getProperty("intellifix.test.redis.host", "localhost"),
+                Integer.getInteger("intellifix.test.redis.port", 6379));
+        boolean available;
+        try {
+            available = "PONG".equals(jedis.ping());
+        } catch (RuntimeException e) {
+            available = false;
+        }
+        if (!available) {
+            jedis.close();
+        }
+        assumeTrue(available, "no Redis server");
+        streamKey = "test-writer-" + UUID.randomUUID();
+    }
+
+    @AfterEach
+    void cleanUp() {
+        if (streamKey != null) {
+            jedis.del(streamKey);
+            jedis.close();
+        }
+    }
+
+    @Test
+    void fullBatchesArePublishedWithTheirFields() throws InterruptedException {
+        // a linger far beyond the test timeout, so only a full batch can go out
+        try (RedisStreamWriter writer = writer(config(1024, 10, 60_000, OverflowPolicy.DROP, 1000,
+                StreamEncoding.TEXT), journaled::add, spilled::add)) {
+            for (int i = 0; i < 25; i++) {
+                assertTrue(writer.submit(order(i)));
+            }
+            await(() -> writer.published() == 20);
+            assertEquals(20, jedis.xlen(streamKey));
+        }
+        // close flushes the partial batch
+        assertEquals(25, jedis.xlen(streamKey));
+        assertEquals(25, journaled.size());
+
+        StreamEntry first = entries().get(0);
+        Map<String, String> fields = first.getFields();
+        assertEquals("sim-1", fields.get(RedisStreamWriter.SIM_ID_FIELD));
+        assertEquals(SESSION.toString(), fields.get(RedisStreamWriter.SESSION_ID_FIELD));
+        assertEquals(MessageDirection.SENT.name(), fields.get(RedisStreamWriter.DIRECTION_FIELD));
+        assertEquals("D", fields.get(RedisStreamWriter.MSG_TYPE_FIELD));
+        assertTrue(fields.get(RedisStreamWriter.FIX_MESSAGE_FIELD).contains("|11=ORD0|"));
+        assertNotNull(fields.get(RedisStreamWriter.MESSAGE_FIELD));
+    }
+
+    @Test
+    void partialBatchIsPublishedAfterTheLinger() throws InterruptedException {
+        try (RedisStreamWriter writer = writer(config(1024, 100, 20, OverflowPolicy.DROP, 1000,
+                StreamEncoding.TEXT), journaled::add, spilled::add)) {
+            for (int i = 0; i < 3; i++) {
+                writer.submit(order(i));
+            }
+            await(() -> writer.published() == 3);
+            assertEquals(3, jedis.xlen(streamKey));
+            assertEquals(List.of("ORD0", "ORD1", "ORD2"), entries().stream()
+                    .map(e -> clOrdId(e.getFields().get(RedisStreamWriter.FIX_MESSAGE_FIELD))).toList());
+        }
+    }
+
+    @Test
+    void dropCountsAndJournalsWhatDoesNotFit() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        try (RedisStreamWriter writer = writer(config(4, 1, 0, OverflowPolicy.DROP, 1000, StreamEncoding.TEXT),
+                holdWriter(release), spilled::add)) {
+            int accepted = fillWhileHeld(writer, 20);
+            assertEquals(20 - accepted, writer.dropped());
+            // dropped events are journaled on the submitting thread, next to the held one
+            assertEquals(1 + 20 - accepted, journaled.size());
+            release.countDown();
+            await(() -> writer.published() == accepted);
+        }
+        assertTrue(spilled.isEmpty());
+        assertEquals(20, journaled.size());
+    }
+
+    @Test
+    void spillHandsWhatDoesNotFitToTheSpillFile() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        try (RedisStreamWriter writer = writer(config(4, 1, 0, OverflowPolicy.SPILL, 1000, StreamEncoding.TEXT),
+                holdWriter(release), spilled::add)) {
+            int accepted = fillWhileHeld(writer, 20);
+            assertEquals(20 - accepted, writer.spilled());
+            assertEquals(20 - accepted, spilled.size());
+            assertEquals(0, writer.dropped());
+            release.countDown();
+            await(() -> writer.published() == accepted);
+        }
+        assertEquals(20, journaled.size());
+    }
+
+    @Test
+    void spillTakesBatchesRedisRejected() throws InterruptedException {
+        try (JedisPooled unreachable = new JedisPooled("localhost", 1);
+                RedisStreamWriter writer = new RedisStreamWriter(unreachable,
+                        config(64, 5, 0, OverflowPolicy.SPILL, 1000, StreamEncoding.TEXT),
+                        e -> journaled.add(e.format()), e -> spilled.add(e.format()), pool)) {
+            for (int i = 0; i < 5; i++) {
+                writer.submit(order(i));
+            }
+            await(() -> writer.spilled() == 5);
+            assertTrue(writer.failedBatches() >= 1);
+            assertEquals(0, writer.published());
+        }
+        assertEquals(5, journaled.size());
+    }
+
+    @Test
+    void blockWaitsForTheWriterAndLosesNothing() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        try (RedisStreamWriter writer = writer(config(4, 2, 0, OverflowPolicy.BLOCK, 1000, StreamEncoding.TEXT),
+                holdWriter(release), spilled::add)) {
+            Thread producer = new Thread(() -> {
+                for (int i = 0; i < 50; i++) {
+                    writer.submit(order(i));
+                }
+            });
+            producer.start();
+            await(() -> writer.queueDepth() == 4);
+            producer.join(200);
+            assertTrue(producer.isAlive(), "producer should wait while the queue is full");
+
+            release.countDown();
+            producer.join(TIMEOUT_MILLIS);
+            assertFalse(producer.isAlive());
+            await(() -> writer.published() == 50);
+            assertEquals(0, writer.dropped());
+            assertEquals(0, writer.spilled());
+        }
+        List<String> ids = new ArrayList<>();
+        entries().forEach(e -> ids.add(clOrdId(e.getFields().get(RedisStreamWriter.FIX_MESSAGE_FIELD))));
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            expected.add("ORD" + i);
+        }
+        assertEquals(expected, ids);
+    }
+
+    @Test
+    void maxLenTrimsTheStream() throws InterruptedException {
+        try (RedisStreamWriter writer = writer(config(4096, 50, 1, OverflowPolicy.BLOCK, 10, StreamEncoding.TEXT),
+                journaled::add, spilled::add)) {
+            for (int i = 0; i < 1000; i++) {
+                writer.submit(order(i));
+            }
+            await(() -> writer.published() == 1000);
+        }
+        // MAXLEN ~ only removes whole stream nodes (100 entries by default)
+        long length = jedis.xlen(streamKey);
+        assertTrue(length >= 10 && length < 1000, "stream length " + length);
+    }
+
+    @Test
+    void binaryBatchesDecodeToTheSubmittedEvents() throws InterruptedException {
+        try (RedisStreamWriter writer = writer(config(1024, 10, 60_000, OverflowPolicy.DROP, 1000,
+                StreamEncoding.BINARY), journaled::add, spilled::add)) {
+            for (int i = 0; i < 20; i++) {
+                writer.submit(order(i));
+            }
+            await(() -> writer.published() == 20);
+        }
+        assertEquals(2, jedis.xlen(streamKey));
+        List<String> ids = new ArrayList<>();
+        BinaryBatchDecoder decoder = new BinaryBatchDecoder();
+        for (Map.Entry<byte[], byte[]> field : rawBatches()) {
+            assertEquals(BinaryBatchEncoder.FIELD, new String(field.getKey()));
+            assertEquals(10, decoder.decode(field.getValue(), e -> ids.add(clOrdId(e.fixMessage()))));
+        }
+        assertEquals(20, ids.size());
+        assertEquals("ORD0", ids.get(0));
+        assertEquals("ORD19", ids.get(19));
+    }
+
+    private RedisStreamWriter writer(PublisherConfig config, Consumer<String> journal, Consumer<String> spill) {
+        return new RedisStreamWriter(jedis, config, e -> journal.accept(e.format()), e -> spill.accept(e.format()),
+                pool);
+    }
+
+    private PublisherConfig config(int queueCapacity, int batchSize, long lingerMillis, OverflowPolicy policy,
+            long maxLen, StreamEncoding encoding) {
+        return new PublisherConfig(streamKey, queueCapacity, batchSize, lingerMillis, policy, maxLen, encoding,
+                true);
+    }
+
+    /**
+     * A journal that holds the writer thread in its first flush until {@code release} opens, so
+     * the queue fills up behind it.
+     */
+    private Consumer<String> holdWriter(CountDownLatch release) {
+        return line -> {
+            journaled.add(line);
+            if (Thread.currentThread().getName().equals(WRITER_THREAD)) {
+                try {
+                    release.await(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+    }
+
+    /**
+     * Submits one event, waits until the writer is held in its flush, then submits the rest.
+     * Returns how many were accepted.
+     */
+    private int fillWhileHeld(RedisStreamWriter writer, int count) throws InterruptedException {
+        assertTrue(writer.submit(order(0)));
+        await(() -> journaled.size() == 1);
+        int accepted = 1;
+        for (int i = 1; i < count; i++) {
+            if (writer.submit(order(i))) {
+                accepted++;
+            }
+        }
+        assertEquals(1 + writer.queueDepth(), accepted);
+        assertTrue(accepted < count);
+        return accepted;
+    }
+
+    private FixEvent order(int i) {
+        String fix = "8=FIX.4.4\u00019=60\u000135=D\u000149=CLIENT1\u000156=HUB\u000111=ORD" + i
+                + "\u000155=AAPL\u000154=1\u000138=100\u000110=000\u0001";
+        return pool.acquire().set("client", MessageDirection.SENT, SESSION, "D", "sim-1", fix);
+    }
+
+    private static String clOrdId(String fix) {
+        // SOH is published as '|'
+        int start = fix.indexOf("|11=") + 4;
+        return fix.substring(start, fix.indexOf('|', start));
+    }
+
+    private List<StreamEntry> entries() {
+        return jedis.xrange(streamKey, "-", "+");
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Map.Entry<byte[], byte[]>> rawBatches() {
+        List<Map.Entry<byte[], byte[]>> batches = new ArrayList<>();
+        for (Object entry : jedis.xrange(streamKey.getBytes(), "-".getBytes(), "+".getBytes())) {
+            List<Object> idAndFields = (List<Object>) entry;
+            List<byte[]> fields = (List<byte[]>) idAndFields.get(1);
+            batches.add(Map.entry(fields.get(0), fields.get(1)));
+        }
+        return batches;
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) {
+                fail("condition not met within " + TIMEOUT_MILLIS + " ms");
+            }
+            Thread.sleep(10);
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package org.intellifix.redis;
+
+import org.intellifix.redis.config.ConsumerConfig;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import redis.clients.jedis.JedisPooled;
+import redis.clients.jedis.StreamEntryID;
+import redis.clients.jedis.params.XAddParams;
+import redis.clients.jedis.params.XPendingParams;
+import redis.clients.jedis.resps.StreamEntry;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Runs against the Redis at {@code intellifix.test.redis.host}/{@code port} (localhost:6379) and
+ * is skipped when none answers.
+ */
+class StreamConsumerPoolTest {
+
+    private static final long TIMEOUT_MILLIS = 10_000;
+
+    private JedisPooled jedis;
+    private String streamKey;
+    private String deadLetterKey;
+
+    @BeforeEach
+    void connect() {
+        jedis = new JedisPooled(System.getProperty("intellifix.test.redis.host", "localhost"),
+                Integer.getInteger("intellifix.test.redis.port", 6379));
+        boolean available;
+        try {
+            available = "PONG".equals(jedis.ping());
+        } catch (RuntimeException e) {
+            available = false;
+        }
+        if (!available) {
+            jedis.close();
+        }
+        assumeTrue(available, "no Redis server");
+        streamKey = "test-stream-" + UUID.randomUUID();
+        deadLetterKey = streamKey + "-dead";
+    }
+
+    @AfterEach
+    void cleanUp() {
+        if (streamKey != null) {
+            jedis.del(streamKey, deadLetterKey);
+            jedis.close();
+        }
+    }
+
+    @Test
+    void handledEntriesAreAcknowledged() throws InterruptedException {
+        for (int i = 0; i < 50; i++) {
+            add(i);
+        }
+        Set<String> seen = ConcurrentHashMap.newKeySet();
+        try (StreamConsumerPool pool = new StreamConsumerPool(jedis, config(60_000, 60_000, 5),
+                record -> seen.add(record.string("n")))) {
+            pool.start();
+            await(() -> pool.acked() == 50);
+            assertEquals(50, pool.processed());
+            assertEquals(0, pool.failed());
+        }
+        assertEquals(50, seen.size());
+        assertEquals(0, pendingCount());
+    }
+
+    @Test
+    void failedEntryIsReclaimedAndRetried() throws InterruptedException {
+        add(1);
+        AtomicInteger attempts = new AtomicInteger();
+        try (StreamConsumerPool pool = new StreamConsumerPool(jedis, config(50, 50, 5), record -> {
+            if (attempts.incrementAndGet() == 1) {
+                throw new IllegalStateException("first attempt fails");
+            }
+        })) {
+            pool.start();
+            await(() -> pool.acked() == 1);
+            assertEquals(1, pool.failed());
+            assertEquals(1, pool.processed());
+            assertTrue(pool.claimed() >= 1);
+        }
+        assertEquals(2, attempts.get());
+        assertEquals(0, pendingCount());
+        assertEquals(0, jedis.xlen(deadLetterKey));
+    }
+
+    @Test
+    void poisonEntryIsDeadLetteredAfterMaxDeliveries() throws InterruptedException {
+        StreamEntryID poison = add(1);
+        add(2);
+        AtomicInteger attempts = new AtomicInteger();
+        try (StreamConsumerPool pool = new StreamConsumerPool(jedis, config(50, 50, 3), record -> {
+            if ("1".equals(record.string("n"))) {
+                attempts.incrementAndGet();
+                throw new IllegalStateException("poison");
+            }
+        })) {
+            pool.start();
+            await(() -> pool.deadLettered() == 1 && pool.acked() == 1);
+            assertEquals(1, pool.processed());
+        }
+        assertEquals(3, attempts.get());
+        assertEquals(0, pendingCount());
+
+        List<StreamEntry> dead = jedis.xrange(deadLetterKey, (StreamEntryID) null, (StreamEntryID) null);
+        assertEquals(1, dead.size());
+        Map<String, String> fields = dead.get(0).getFields();
+        assertEquals("1", fields.get("n"));
+        assertEquals(poison.toString(), fields.get(StreamConsumerPool.DEAD_LETTER_ID));
+        assertEquals("test-group", fields.get(StreamConsumerPool.DEAD_LETTER_GROUP));
+        assertEquals("4", fields.get(StreamConsumerPool.DEAD_LETTER_DELIVERIES));
+    }
+
+    private ConsumerConfig config(long claimIdleMillis, long claimIntervalMillis, int maxDeliveries) {
+        return new ConsumerConfig(streamKey, "test-group", "test-consumer", 2, 4, 16, 100, 200, 8, 20,
+                claimIdleMillis, claimIntervalMillis, 60_000, maxDeliveries, deadLetterKey);
+    }
+
+    private StreamEntryID add(int n) {
+        return jedis.xadd(streamKey, XAddParams.xAddParams(), Map.of("n", Integer.toString(n)));
+    }
+
+    private int pendingCount() {
+        return jedis.xpending(streamKey, "test-group", XPendingParams.xPendingParams().count(100)).size();
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "timed out");
+            Thread.sleep(10);
+        }
+    }
+}
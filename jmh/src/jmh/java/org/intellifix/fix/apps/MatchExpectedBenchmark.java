@@ -0,0 +1,71 @@
+package org.intellifix.fix.apps;
+
+import org.intellifix.fix.base.MatchRules;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import quickfix.Message;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The expectation matchers of both simulators, on the inbound message each one waits for in
+ * the sample scenario, and a larger {@link MatchRules} set with exact, tolerance, regex and
+ * absent rules on the client's ExecutionReport.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class MatchExpectedBenchmark {
+
+    private ClientApp client;
+    private BrokerApp broker;
+    private MatchRules rules;
+    private Message clientExpected;
+    private Message clientActual;
+    private Message brokerExpected;
+    private Message brokerActual;
+
+    @Setup
+    public void setUp() throws Exception {
+        client = new ClientApp(null, null, message -> { });
+        broker = new BrokerApp(message -> { });
+        rules = MatchRules.parse("""
+                * 11 suffix?
+                8 39 exact
+                8 150 exact
+                8 55 regex [A-Z]{1,5}
+                8 44 tolerance 0.0001
+                8 58 absent
+                """);
+        clientExpected = new Message("8=FIX.4.4\u00019=000\u000135=8\u000149=HUB\u000156=CLIENT1\u000134=2"
+                + "\u000111=CLORD123\u000117=EXEC1\u0001150=0\u000139=0\u000155=AAPL\u000110=000\u0001", false);
+        clientActual = new Message("8=FIX.4.4\u00019=000\u000135=8\u000149=HUB\u000156=CLIENT1\u000134=7"
+                + "\u000111=sim1-CLIENT1-CLORD123\u000117=EXEC9\u0001150=0\u000139=0\u000155=AAPL\u000110=000\u0001",
+                false);
+        brokerExpected = new Message("8=FIX.4.4\u00019=000\u000135=D\u000149=HUB\u000156=BROKER1\u000134=10"
+                + "\u000111=Seq1\u000155=AAPL\u000154=1\u000138=100\u0001526=CLORD123\u000110=000\u0001", false);
+        brokerActual = new Message("8=FIX.4.4\u00019=000\u000135=D\u000149=HUB\u000156=BROKER1\u000134=3"
+                + "\u000111=1767623400000000001\u000155=AAPL\u000154=1\u000138=100\u0001526=sim1-CLIENT1-CLORD123"
+                + "\u000110=000\u0001", false);
+    }
+
+    @Benchmark
+    public boolean client() {
+        return client.matchesExpected(clientExpected, clientActual);
+    }
+
+    @Benchmark
+    public boolean broker() {
+        return broker.matchesExpected(brokerExpected, brokerActual);
+    }
+
+    @Benchmark
+    public boolean rules() {
+        return rules.test(clientExpected, clientActual);
+    }
+}
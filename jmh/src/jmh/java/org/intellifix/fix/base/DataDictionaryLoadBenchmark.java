@@ -0,0 +1,58 @@
+package org.intellifix.fix.base;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import quickfix.DataDictionary;
+
+import java.io.ByteArrayInputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Simulator startup: parsing the FIX 4.4 dictionary XML next to loading its
+ * {@link DataDictionarySnapshot}, once per fresh JVM. The Gradle task's warmup settings override
+ * the annotations, so for cold numbers run the jar directly:
+ * {@code java -jar jmh/build/libs/jmh-jmh.jar DataDictionaryLoad -f 10 -wi 0 -i 1}.
+ * The first snapshot fork also writes the snapshot in its setup.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(10)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+public class DataDictionaryLoadBenchmark {
+
+    private static final String LOCATION = "FIX44.xml";
+
+    @Param({ "xml", "snapshot" })
+    public String source;
+
+    @Setup
+    public void setUp() throws Exception {
+        if (source.equals("snapshot")) {
+            Path dir = Path.of(System.getProperty("java.io.tmpdir"), "intellifix-dictionary-bench");
+            System.setProperty("intellifix.dictionary.snapshotDir", dir.toString());
+            byte[] xml = DataDictionarySnapshot.readXml(LOCATION);
+            Path snapshot = DataDictionarySnapshot.snapshotPath(LOCATION, xml);
+            if (!Files.exists(snapshot)) {
+                DataDictionarySnapshot.write(new DataDictionary(new ByteArrayInputStream(xml)), snapshot);
+            }
+        }
+    }
+
+    @Benchmark
+    public DataDictionary load() throws Exception {
+        return source.equals("snapshot") ? DataDictionarySnapshot.load(LOCATION) : new DataDictionary(LOCATION);
+    }
+}
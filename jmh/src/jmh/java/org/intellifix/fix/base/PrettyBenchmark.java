@@ -0,0 +1,44 @@
+package org.intellifix.fix.base;
+
+import org.intellifix.fix.FixClientSimulator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import quickfix.Message;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The {@code pretty()} rendering every app callback applies before publishing, against plain
+ * {@code toString()} to show what the SOH replacement adds.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class PrettyBenchmark {
+
+    private final FixClientSimulator engine = new FixClientSimulator();
+    private Message report;
+
+    @Setup
+    public void setUp() throws Exception {
+        report = new Message("8=FIX.4.4\u00019=000\u000135=8\u000149=HUB\u000156=CLIENT1\u000134=2"
+                + "\u000152=20260105-14:30:00.105\u000160=20260105-14:30:00.095\u000137=ORD98765\u000111=CLORD123"
+                + "\u000117=EXEC1\u000120=0\u0001150=0\u000139=0\u000155=AAPL\u000154=1\u000138=100\u000140=2"
+                + "\u000144=150.25\u000114=0\u0001151=100\u000110=000\u0001", false);
+    }
+
+    @Benchmark
+    public String pretty() {
+        return engine.pretty(report);
+    }
+
+    @Benchmark
+    public String toStringOnly() {
+        return report.toString();
+    }
+}
@@ -0,0 +1,103 @@
+package org.intellifix.fix.base;
+
+import org.intellifix.fix.FixClientSimulator;
+import org.intellifix.fix.model.Step;
+import org.intellifix.fix.scenario.StepSource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import quickfix.DataDictionary;
+import quickfix.SessionID;
+
+import java.io.BufferedWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Scenario loading for the client simulator: the eager {@code readSteps} list, the memory-mapped
+ * {@code streamSteps} reader and a warm {@code compiledSteps} cache, over a generated capture of
+ * {@code lines} lines.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ReadStepsBenchmark {
+
+    private static final String[] TEMPLATE = {
+            "8=FIX.4.4|9=000|35=D|49=CLIENT1|56=HUB|34=%d|52=20260105-14:30:00.000|60=20260105-14:30:00.000|11=CLORD%d|21=1|55=AAPL|54=1|38=100|40=2|44=150.25|59=0|10=000|",
+            "8=FIX.4.4|9=000|35=D|49=HUB|56=BROKER1|34=%d|52=20260105-14:30:00.005|60=20260105-14:30:00.000|11=Seq%d|21=1|55=AAPL|54=1|38=100|40=2|44=150.25|59=0|526=CLORD123|10=000|",
+            "8=FIX.4.4|9=000|35=8|49=BROKER1|56=HUB|34=%d|52=20260105-14:30:00.100|60=20260105-14:30:00.095|37=ORD98765|11=Seq%d|17=EXEC1|20=0|150=0|39=0|55=AAPL|54=1|38=100|40=2|44=150.25|14=0|151=100|10=000|",
+            "8=FIX.4.4|9=000|35=8|49=HUB|56=CLIENT1|34=%d|52=20260105-14:30:00.105|60=20260105-14:30:00.095|37=ORD98765|11=CLORD%d|17=EXEC1|20=0|150=0|39=0|55=AAPL|54=1|38=100|40=2|44=150.25|14=0|151=100|10=000|"
+    };
+
+    @Param({ "10000" })
+    public int lines;
+
+    private final FixClientSimulator engine = new FixClientSimulator();
+    private final SessionID sid = new SessionID("FIX.4.4", "CLIENT1", "HUB");
+    private DataDictionary dd;
+    private Path scenario;
+    private Path cacheDir;
+
+    @Setup
+    public void setUp() throws Exception {
+        dd = new DataDictionary("FIX44.xml");
+        scenario = Files.createTempFile("scenario", ".txt");
+        try (BufferedWriter out = Files.newBufferedWriter(scenario)) {
+            for (int i = 0; i < lines; i++) {
+                out.write(TEMPLATE[i % TEMPLATE.length].formatted(i + 1, i / TEMPLATE.length));
+                out.newLine();
+            }
+        }
+        cacheDir = Files.createTempDirectory("scenario_cache");
+        // compiled once here, so the benchmark measures warm loads
+        engine.compiledSteps(scenario.toString(), dd, sid, cacheDir).close();
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        Files.deleteIfExists(scenario);
+        try (Stream<Path> files = Files.list(cacheDir)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(cacheDir);
+    }
+
+    @Benchmark
+    public List<Step> readSteps() throws Exception {
+        return engine.readSteps(scenario.toString(), dd, sid);
+    }
+
+    @Benchmark
+    public long streamSteps() throws Exception {
+        long count = 0;
+        try (StepSource steps = engine.streamSteps(scenario.toString(), dd, sid)) {
+            for (Step ignored : steps) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Benchmark
+    public long compiledSteps() throws Exception {
+        long count = 0;
+        try (StepSource steps = engine.compiledSteps(scenario.toString(), dd, sid, cacheDir)) {
+            for (Step ignored : steps) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
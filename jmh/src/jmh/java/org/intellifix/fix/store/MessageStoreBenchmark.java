@@ -0,0 +1,104 @@
+package org.intellifix.fix.store;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import quickfix.FileStoreFactory;
+import quickfix.MessageStore;
+import quickfix.SessionID;
+import quickfix.SessionSettings;
+
+import java.io.Closeable;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Session stores side by side: {@code send} is what every outbound message costs (store the
+ * message, bump the sender sequence number), with the store reset every {@code messages} sends so
+ * that the in-memory store stays bounded; {@code resendStorm} answers one ResendRequest for the
+ * whole history of {@code messages} messages.
+ */
+@State(Scope.Benchmark)
+public class MessageStoreBenchmark {
+
+    private static final String MESSAGE = "8=FIX.4.4\u00019=153\u000135=D\u000134=%d\u000149=HUB\u000152=20260105-14:30:00.005"
+            + "\u000156=BROKER1\u000111=1767623400005000001\u000121=1\u000138=100\u000140=2\u000144=150.25\u000154=1"
+            + "\u000155=AAPL\u000159=0\u000160=20260105-14:30:00.000\u0001526=CLORD123\u000110=000\u0001";
+
+    @Param({ "FILE", "MAPPED", "MEMORY" })
+    public String storeType;
+
+    @Param({ "10000" })
+    public int messages;
+
+    private final SessionID sid = new SessionID("FIX.4.4", "HUB", "BROKER1");
+    private final String message = MESSAGE.formatted(1);
+    private Path directory;
+    private MessageStore sendStore;
+    private MessageStore resendStore;
+
+    @Setup
+    public void setUp() throws Exception {
+        directory = Files.createTempDirectory("store-bench");
+        sendStore = create("send");
+        resendStore = create("resend");
+        for (int sequence = 1; sequence <= messages; sequence++) {
+            resendStore.set(sequence, MESSAGE.formatted(sequence));
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        for (MessageStore store : List.of(sendStore, resendStore)) {
+            if (store instanceof Closeable closeable) {
+                closeable.close();
+            }
+        }
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public int send() throws Exception {
+        int sequence = sendStore.getNextSenderMsgSeqNum();
+        if (sequence > messages) {
+            sendStore.reset();
+            sequence = 1;
+        }
+        sendStore.set(sequence, message);
+        sendStore.incrNextSenderMsgSeqNum();
+        return sequence;
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public List<String> resendStorm() throws Exception {
+        List<String> resent = new ArrayList<>(messages);
+        resendStore.get(1, messages, resent);
+        return resent;
+    }
+
+    private MessageStore create(String name) {
+        SessionSettings settings = new SessionSettings();
+        settings.setString(sid, FileStoreFactory.SETTING_FILE_STORE_PATH, directory.resolve(name).toString());
+        settings.setString(sid, ConfiguredStoreFactory.MESSAGE_STORE_TYPE, storeType);
+        return new ConfiguredStoreFactory(settings).create(sid);
+    }
+}
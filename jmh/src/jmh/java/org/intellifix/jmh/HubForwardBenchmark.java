@@ -0,0 +1,90 @@
+package org.intellifix.jmh;
+
+import org.intellifix.fix.apps.HubApp;
+import org.intellifix.fix.hub.ClOrdIdStore;
+import org.intellifix.fix.hub.HubRouter;
+import org.intellifix.fix.model.ForwardMode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import quickfix.Message;
+import quickfix.SessionID;
+import quickfix.field.ClOrdID;
+
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@code HubApp.fromApp} through {@code forward} for a client order (D) and a broker report (8),
+ * with both hub sessions logged on against stub responders.
+ * <p>
+ * Forwarding rewrites the inbound message, so every call parses a fresh one; per-invocation
+ * setup would cost more in timer overhead than the call itself. {@code parseOrder} and
+ * {@code parseReport} measure that parse alone, to subtract.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class HubForwardBenchmark {
+
+    static final String ORDER = "8=FIX.4.4\u00019=000\u000135=D\u000149=CLIENT1\u000156=HUB\u000134=1"
+            + "\u000152=20260105-14:30:00.000\u000160=20260105-14:30:00.000\u000111=CLORD123\u000121=1\u000155=AAPL"
+            + "\u000154=1\u000138=100\u000140=2\u000144=150.25\u000159=0\u000110=000\u0001";
+    static final String REPORT = "8=FIX.4.4\u00019=000\u000135=8\u000149=BROKER1\u000156=HUB\u000134=21"
+            + "\u000152=20260105-14:30:00.100\u000160=20260105-14:30:00.095\u000137=ORD98765\u000111=%s"
+            + "\u000117=EXEC1\u000120=0\u0001150=0\u000139=0\u000155=AAPL\u000154=1\u000138=100\u000140=2\u000144=150.25"
+            + "\u000114=0\u0001151=100\u000110=000\u0001";
+
+    @Param({ "IN_PLACE", "REPARSE" })
+    public ForwardMode forwardMode;
+
+    private final SessionID clientSession = new SessionID("FIX.4.4", "HUB", "CLIENT1");
+    private final SessionID brokerSession = new SessionID("FIX.4.4", "HUB", "BROKER1");
+    private final StubSessions.Sink clientSink = new StubSessions.Sink();
+    private final StubSessions.Sink brokerSink = new StubSessions.Sink();
+
+    private HubApp hub;
+    private String report;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        hub = new HubApp(new HubRouter(Set.of("CLIENT1"), Set.of("BROKER1")), forwardMode,
+                new ClOrdIdStore(ClOrdIdStore.DEFAULT_CAPACITY, ClOrdIdStore.DEFAULT_TTL_MILLIS));
+        // the stub logon calls hub.onLogon
+        StubSessions.loggedOn(hub, clientSession, clientSink);
+        StubSessions.loggedOn(hub, brokerSession, brokerSink);
+
+        // learn the hub ClOrdID the broker will echo back in its reports
+        hub.fromApp(new Message(ORDER, false), clientSession);
+        String hubClOrdId = new Message(brokerSink.last(), false).getString(ClOrdID.FIELD);
+        report = REPORT.formatted(hubClOrdId);
+    }
+
+    @Benchmark
+    public long newOrderToBroker() throws Exception {
+        hub.fromApp(new Message(ORDER, false), clientSession);
+        return brokerSink.sent();
+    }
+
+    @Benchmark
+    public long executionReportToClient() throws Exception {
+        hub.fromApp(new Message(report, false), brokerSession);
+        return clientSink.sent();
+    }
+
+    @Benchmark
+    public Message parseOrder() throws Exception {
+        return new Message(ORDER, false);
+    }
+
+    @Benchmark
+    public Message parseReport() throws Exception {
+        return new Message(report, false);
+    }
+}
@@ -0,0 +1,71 @@
+package org.intellifix.jmh;
+
+import org.intellifix.fix.model.MessageDirection;
+import org.intellifix.redis.RedisMessagePublisher;
+import org.intellifix.redis.config.FsyncPolicy;
+import org.intellifix.redis.config.JournalConfig;
+import org.intellifix.redis.config.OverflowPolicy;
+import org.intellifix.redis.config.PublisherConfig;
+import org.intellifix.redis.config.StreamEncoding;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import quickfix.Message;
+import quickfix.SessionID;
+import redis.clients.jedis.JedisPooled;
+
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Caller-side cost of {@code RedisMessagePublisher}: {@code publishMessage} with a string the
+ * caller has already built the way the apps used to, against {@code publishEvent}, which only
+ * copies the message into a pooled event. Journaling and formatting happen on the writer thread
+ * either way. No Redis is needed; the writer drops what it cannot send, so the queue never blocks
+ * the caller.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class PublishMessageBenchmark {
+
+    private static final String FIX = "8=FIX.4.4\u00019=178\u000135=8\u000134=2\u000149=HUB\u0001"
+            + "52=20260105-14:30:00.105\u000156=CLIENT1\u000111=CLORD123\u000114=0\u000117=EXEC1\u000120=0\u0001"
+            + "37=ORD98765\u000138=100\u000139=0\u000140=2\u000144=150.25\u000154=1\u000155=AAPL\u0001"
+            + "60=20260105-14:30:00.095\u0001150=0\u0001151=100\u000110=123\u0001";
+    private static final SessionID SESSION = new SessionID("FIX.4.4", "CLIENT1", "HUB");
+
+    private RedisMessagePublisher publisher;
+    private Message message;
+
+    @Setup
+    public void setUp() throws Exception {
+        JournalConfig journal = new JournalConfig(Files.createTempDirectory("journal").toString(), 256 * 1024,
+                64 * 1024, 50, FsyncPolicy.NEVER, 1000, 256L * 1024 * 1024, 0);
+        PublisherConfig redis = new PublisherConfig("fix-stream-bench", 65536, 256, 2, OverflowPolicy.DROP,
+                1_000_000, StreamEncoding.TEXT, true);
+        publisher = new RedisMessagePublisher(new JedisPooled("localhost", 1), redis, journal);
+        message = new Message();
+        message.fromString(FIX, null, false);
+    }
+
+    @TearDown
+    public void tearDown() {
+        publisher.close();
+    }
+
+    @Benchmark
+    public void publishMessage() {
+        publisher.publishMessage("Client received 35=8 " + message.toString().replace('\u0001', '|'));
+    }
+
+    @Benchmark
+    public void publishEvent() {
+        publisher.publishEvent("Client", MessageDirection.RECEIVED, SESSION, "8", "sim1", message);
+    }
+}
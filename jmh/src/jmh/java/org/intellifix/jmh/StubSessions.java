@@ -0,0 +1,97 @@
+package org.intellifix.jmh;
+
+import quickfix.Application;
+import quickfix.CompositeLogFactory;
+import quickfix.ConfigError;
+import quickfix.DefaultMessageFactory;
+import quickfix.DefaultSessionFactory;
+import quickfix.LogFactory;
+import quickfix.Message;
+import quickfix.NoopStoreFactory;
+import quickfix.Responder;
+import quickfix.Session;
+import quickfix.SessionID;
+import quickfix.SessionSettings;
+import quickfix.field.EncryptMethod;
+import quickfix.field.HeartBtInt;
+import quickfix.field.MsgSeqNum;
+import quickfix.field.SenderCompID;
+import quickfix.field.SendingTime;
+import quickfix.field.TargetCompID;
+import quickfix.fix44.Logon;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * Logged-on QuickFIX/J sessions without sockets, for driving application callbacks in
+ * benchmarks. Sessions use a no-op store and log; outbound messages go to a {@link Sink}.
+ */
+public final class StubSessions {
+
+    private StubSessions() {
+    }
+
+    /**
+     * Collects what a session would have written to the wire.
+     */
+    public static final class Sink implements Responder {
+        private volatile String last;
+        private long sent;
+
+        @Override
+        public boolean send(String data) {
+            last = data;
+            sent++;
+            return true;
+        }
+
+        @Override
+        public void disconnect() {
+        }
+
+        @Override
+        public String getRemoteAddress() {
+            return "stub";
+        }
+
+        public String last() {
+            return last;
+        }
+
+        public long sent() {
+            return sent;
+        }
+    }
+
+    /**
+     * Creates an acceptor session for {@code sessionID} and logs it on by feeding it the
+     * counterparty's Logon.
+     */
+    public static Session loggedOn(Application application, SessionID sessionID, Sink sink) throws Exception {
+        SessionSettings settings = new SessionSettings();
+        settings.setString(sessionID, "ConnectionType", "acceptor");
+        settings.setString(sessionID, "StartTime", "00:00:00");
+        settings.setString(sessionID, "EndTime", "00:00:00");
+        settings.setString(sessionID, "HeartBtInt", "30");
+        settings.setString(sessionID, "UseDataDictionary", "N");
+        settings.setString(sessionID, "CheckLatency", "N");
+
+        LogFactory noLog = new CompositeLogFactory(new LogFactory[0]);
+        Session session = new DefaultSessionFactory(application, new NoopStoreFactory(), noLog,
+                new DefaultMessageFactory()).create(sessionID, settings);
+        session.setResponder(sink);
+
+        Logon logon = new Logon(new EncryptMethod(EncryptMethod.NONE_OTHER), new HeartBtInt(30));
+        Message.Header header = logon.getHeader();
+        header.setString(SenderCompID.FIELD, sessionID.getTargetCompID());
+        header.setString(TargetCompID.FIELD, sessionID.getSenderCompID());
+        header.setInt(MsgSeqNum.FIELD, 1);
+        header.setUtcTimeStamp(SendingTime.FIELD, LocalDateTime.now(ZoneOffset.UTC));
+        session.next(logon);
+        if (!session.isLoggedOn()) {
+            throw new ConfigError("Stub session did not log on: " + sessionID);
+        }
+        return session;
+    }
+}